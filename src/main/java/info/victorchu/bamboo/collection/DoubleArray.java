@@ -0,0 +1,99 @@
+package info.victorchu.bamboo.collection;
+
+import info.victorchu.bamboo.memory.MemoryAllocationException;
+
+import static info.victorchu.bamboo.collection.PagedMemory.checkIndex;
+
+/**
+ * A growable list of doubles, stored in the pages of a {@link PageAllocator} instead of a Java array
+ * of boxed values. Appending never copies the elements, the list allocates one more page whenever
+ * the last one is full.
+ *
+ * <p>The pages are held until {@link #free()} returns them to the allocator. The list is not
+ * thread safe.
+ */
+public final class DoubleArray
+{
+    private final PagedMemory memory;
+
+    private long size;
+
+    /**
+     * Creates an empty list.
+     *
+     * @param allocator The allocator of the pages.
+     */
+    public DoubleArray(PageAllocator allocator)
+    {
+        this.memory = new PagedMemory(allocator, 3);
+    }
+
+    /**
+     * Appends a value to the end of the list.
+     *
+     * @param value The value to append.
+     * @throws MemoryAllocationException Thrown, if the list is full and the allocator has no page.
+     */
+    public void add(double value)
+            throws MemoryAllocationException
+    {
+        if (size == memory.capacity()) {
+            memory.ensureCapacity(size + 1);
+        }
+        memory.putLong(size++, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Gets the value at the given index.
+     *
+     * @param index The index, between zero and the size of the list.
+     * @return The value at the index.
+     */
+    public double get(long index)
+    {
+        checkIndex(index, size);
+        return Double.longBitsToDouble(memory.getLong(index));
+    }
+
+    /**
+     * Replaces the value at the given index.
+     *
+     * @param index The index, between zero and the size of the list.
+     * @param value The new value.
+     */
+    public void set(long index, double value)
+    {
+        checkIndex(index, size);
+        memory.putLong(index, Double.doubleToRawLongBits(value));
+    }
+
+    /** Gets the number of values in the list. */
+    public long size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /** Gets the number of bytes of the pages held by the list. */
+    public long getAllocatedBytes()
+    {
+        return memory.getAllocatedBytes();
+    }
+
+    /** Removes all values, but keeps the pages for new values. */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /** Removes all values and returns the pages to the allocator. */
+    public void free()
+    {
+        memory.free();
+        size = 0;
+    }
+}
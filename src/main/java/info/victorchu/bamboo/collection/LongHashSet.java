@@ -0,0 +1,104 @@
+package info.victorchu.bamboo.collection;
+
+import info.victorchu.bamboo.memory.MemoryAllocationException;
+
+/**
+ * A hash set of longs, which stores its keys in the pages of a {@link PageAllocator}: eight bytes
+ * per slot at a load factor of at most {@value #LOAD_FACTOR}, instead of the boxed keys and entry
+ * objects of a {@link java.util.HashSet}.
+ *
+ * <p>The pages are held until {@link #free()} returns them to the allocator. The set is not thread
+ * safe.
+ */
+public final class LongHashSet
+        extends LongHashTable
+{
+    /**
+     * Creates an empty set of one page of slots.
+     *
+     * @param allocator The allocator of the pages.
+     * @throws MemoryAllocationException Thrown, if the allocator has no pages for the slots.
+     */
+    public LongHashSet(PageAllocator allocator)
+            throws MemoryAllocationException
+    {
+        this(allocator, 0);
+    }
+
+    /**
+     * Creates an empty set with enough slots for the given number of keys.
+     *
+     * @param allocator The allocator of the pages.
+     * @param expectedSize The number of keys to size the set for.
+     * @throws MemoryAllocationException Thrown, if the allocator has no pages for the slots.
+     */
+    public LongHashSet(PageAllocator allocator, long expectedSize)
+            throws MemoryAllocationException
+    {
+        super(allocator, expectedSize, NO_VALUES);
+    }
+
+    public boolean contains(long key)
+    {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * Adds the given key.
+     *
+     * @param key The key.
+     * @return True, if the key was not contained before.
+     * @throws MemoryAllocationException Thrown, if the set must grow and the allocator has no
+     *     pages. The set is unchanged in that case.
+     */
+    public boolean add(long key)
+            throws MemoryAllocationException
+    {
+        return findOrInsertSlot(key) < 0;
+    }
+
+    /**
+     * Removes the given key.
+     *
+     * @param key The key.
+     * @return True, if the key was contained.
+     */
+    public boolean remove(long key)
+    {
+        return removeKey(key);
+    }
+
+    /**
+     * Gets a cursor over all keys. The cursor is invalidated by any insertion or removal.
+     *
+     * @return The cursor, positioned before the first key.
+     */
+    public Cursor cursor()
+    {
+        return new Cursor();
+    }
+
+    /** A cursor over the keys of the set, in no particular order. */
+    public final class Cursor
+    {
+        private long slot = -1;
+
+        private Cursor() {}
+
+        /**
+         * Moves to the next key.
+         *
+         * @return True, if the cursor is positioned on a key, false, if all keys have been visited.
+         */
+        public boolean next()
+        {
+            slot = nextSlot(slot);
+            return slot >= 0;
+        }
+
+        public long getKey()
+        {
+            return keyAt(slot);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package info.victorchu.bamboo.collection;
+
+import info.victorchu.bamboo.memory.MemoryAllocationException;
+
+import javax.annotation.Nullable;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+
+/**
+ * The open-addressing table behind the long keyed collections. The keys and the values are stored
+ * in two parallel {@link PagedMemory paged arrays}, so a table of long keys and int values needs
+ * twelve bytes per slot and no objects per entry.
+ *
+ * <p>A slot whose key is zero is empty. The key zero itself is kept outside of the arrays, in a
+ * virtual slot behind the last real slot. Collisions are resolved by linear probing, and removals
+ * shift the following entries of the probe sequence back, so the table needs no tombstones.
+ *
+ * <p>The slot count is a power of two and doubles when the load factor exceeds {@value
+ * #LOAD_FACTOR}, by rehashing into newly allocated pages and releasing the old ones.
+ */
+abstract class LongHashTable
+{
+    /** The load factor above which the table doubles. */
+    static final double LOAD_FACTOR = 0.75;
+
+    /** The value shift of a table without values. */
+    static final int NO_VALUES = -1;
+
+    private final PageAllocator allocator;
+
+    private final int valueShift;
+
+    private PagedMemory keys;
+
+    @Nullable
+    private PagedMemory values;
+
+    private long numSlots;
+
+    private long slotMask;
+
+    private long growthThreshold;
+
+    /** The number of keys, including the key zero. */
+    private long size;
+
+    private boolean hasZeroKey;
+
+    private long zeroKeyValue;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param allocator The allocator of the pages.
+     * @param expectedSize The number of keys the table is sized for up front.
+     * @param valueShift The binary logarithm of the value size, 2 or 3, or {@link #NO_VALUES}.
+     */
+    LongHashTable(PageAllocator allocator, long expectedSize, int valueShift)
+            throws MemoryAllocationException
+    {
+        checkArgument(expectedSize >= 0, "expectedSize must not be negative");
+        this.allocator = allocator;
+        this.valueShift = valueShift;
+        this.keys = new PagedMemory(allocator, 3);
+        allocateSlots(Math.max(keys.elementsPerPage(), slotsFor(expectedSize)));
+    }
+
+    private static long slotsFor(long numKeys)
+    {
+        long slots = (long) Math.ceil(numKeys / LOAD_FACTOR);
+        return slots <= 1 ? 1 : Long.highestOneBit(slots - 1) << 1;
+    }
+
+    private void allocateSlots(long newNumSlots)
+            throws MemoryAllocationException
+    {
+        PagedMemory newKeys = new PagedMemory(allocator, 3);
+        PagedMemory newValues = valueShift == NO_VALUES ? null : new PagedMemory(allocator, valueShift);
+        try {
+            newKeys.ensureCapacity(newNumSlots);
+            if (newValues != null) {
+                newValues.ensureCapacity(newNumSlots);
+            }
+        }
+        catch (MemoryAllocationException e) {
+            newKeys.free();
+            if (newValues != null) {
+                newValues.free();
+            }
+            throw e;
+        }
+        newKeys.zero();
+
+        this.keys = newKeys;
+        this.values = newValues;
+        this.numSlots = newNumSlots;
+        this.slotMask = newNumSlots - 1;
+        this.growthThreshold = (long) (newNumSlots * LOAD_FACTOR);
+    }
+
+    /**
+     * Spreads the bits of a key over the whole word, with the finalizer of MurmurHash3, so that
+     * sequential keys do not cluster in the table.
+     */
+    private static long mix(long key)
+    {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    // ------------------------------------------------------------------------
+    //  Slots
+    // ------------------------------------------------------------------------
+
+    /**
+     * Finds the slot of the given key.
+     *
+     * @return The slot of the key, or -1, if the key is not contained.
+     */
+    final long findSlot(long key)
+    {
+        if (key == 0) {
+            return hasZeroKey ? numSlots : -1;
+        }
+        if (numSlots == 0) {
+            return -1;
+        }
+        long slot = mix(key) & slotMask;
+        while (true) {
+            long slotKey = keys.getLong(slot);
+            if (slotKey == key) {
+                return slot;
+            }
+            if (slotKey == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+    }
+
+    /**
+     * Finds the slot of the given key, or inserts the key with a zero value.
+     *
+     * @return The slot of the key, encoded as {@code -slot - 1} if the key was inserted.
+     */
+    final long findOrInsertSlot(long key)
+            throws MemoryAllocationException
+    {
+        if (key == 0) {
+            if (hasZeroKey) {
+                return numSlots;
+            }
+            hasZeroKey = true;
+            zeroKeyValue = 0;
+            size++;
+            return -numSlots - 1;
+        }
+        if (numSlots == 0) {
+            allocateSlots(keys.elementsPerPage());
+        }
+
+        long slot = mix(key) & slotMask;
+        while (true) {
+            long slotKey = keys.getLong(slot);
+            if (slotKey == key) {
+                return slot;
+            }
+            if (slotKey == 0) {
+                break;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+
+        if (size >= growthThreshold) {
+            grow();
+            slot = mix(key) & slotMask;
+            while (keys.getLong(slot) != 0) {
+                slot = (slot + 1) & slotMask;
+            }
+        }
+        keys.putLong(slot, key);
+        setValueBits(slot, 0);
+        size++;
+        return -slot - 1;
+    }
+
+    private void grow()
+            throws MemoryAllocationException
+    {
+        PagedMemory oldKeys = keys;
+        PagedMemory oldValues = values;
+        long oldNumSlots = numSlots;
+
+        allocateSlots(oldNumSlots * 2);
+        for (long oldSlot = 0; oldSlot < oldNumSlots; oldSlot++) {
+            long key = oldKeys.getLong(oldSlot);
+            if (key != 0) {
+                long slot = mix(key) & slotMask;
+                while (keys.getLong(slot) != 0) {
+                    slot = (slot + 1) & slotMask;
+                }
+                keys.putLong(slot, key);
+                if (oldValues != null) {
+                    copyValue(oldValues, oldSlot, slot);
+                }
+            }
+        }
+
+        oldKeys.free();
+        if (oldValues != null) {
+            oldValues.free();
+        }
+    }
+
+    /**
+     * Removes the given key.
+     *
+     * @return True, if the key was contained.
+     */
+    final boolean removeKey(long key)
+    {
+        long slot = findSlot(key);
+        if (slot < 0) {
+            return false;
+        }
+        size--;
+        if (slot == numSlots) {
+            hasZeroKey = false;
+            return true;
+        }
+
+        // shift back the entries whose probe sequence passes the freed slot
+        long hole = slot;
+        long next = (hole + 1) & slotMask;
+        long nextKey;
+        while ((nextKey = keys.getLong(next)) != 0) {
+            long home = mix(nextKey) & slotMask;
+            if (((next - home) & slotMask) >= ((next - hole) & slotMask)) {
+                keys.putLong(hole, nextKey);
+                if (values != null) {
+                    copyValue(values, next, hole);
+                }
+                hole = next;
+            }
+            next = (next + 1) & slotMask;
+        }
+        keys.putLong(hole, 0);
+        return true;
+    }
+
+    /**
+     * Gets the occupied slot following the given slot, in slot order, with the slot of the key zero
+     * last.
+     *
+     * @param slot The previous slot, or -1 to get the first slot.
+     * @return The next occupied slot, or -1, if there is none.
+     */
+    final long nextSlot(long slot)
+    {
+        for (slot++; slot < numSlots; slot++) {
+            if (keys.getLong(slot) != 0) {
+                return slot;
+            }
+        }
+        return slot == numSlots && hasZeroKey ? slot : -1;
+    }
+
+    final long keyAt(long slot)
+    {
+        return slot == numSlots ? 0 : keys.getLong(slot);
+    }
+
+    final long getValueBits(long slot)
+    {
+        if (slot == numSlots) {
+            return zeroKeyValue;
+        }
+        return valueShift == 3 ? values.getLong(slot) : values.getInt(slot);
+    }
+
+    final void setValueBits(long slot, long bits)
+    {
+        if (slot == numSlots) {
+            zeroKeyValue = bits;
+        }
+        else if (valueShift == 3) {
+            values.putLong(slot, bits);
+        }
+        else if (valueShift == 2) {
+            values.putInt(slot, (int) bits);
+        }
+    }
+
+    private void copyValue(PagedMemory source, long sourceSlot, long targetSlot)
+    {
+        if (valueShift == 3) {
+            values.putLong(targetSlot, source.getLong(sourceSlot));
+        }
+        else {
+            values.putInt(targetSlot, source.getInt(sourceSlot));
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //  Properties and lifecycle
+    // ------------------------------------------------------------------------
+
+    /** Gets the number of keys. */
+    public long size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /** Gets the number of slots of the table. */
+    public long getNumSlots()
+    {
+        return numSlots;
+    }
+
+    /** Gets the number of bytes of the pages held by the table. */
+    public long getAllocatedBytes()
+    {
+        return keys.getAllocatedBytes() + (values == null ? 0 : values.getAllocatedBytes());
+    }
+
+    /** Removes all keys, but keeps the pages. */
+    public void clear()
+    {
+        keys.zero();
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    /**
+     * Removes all keys and returns the pages to the allocator. The table allocates a single page
+     * of slots again when it is used after being freed.
+     */
+    public void free()
+    {
+        keys.free();
+        if (values != null) {
+            values.free();
+        }
+        size = 0;
+        hasZeroKey = false;
+        numSlots = 0;
+        slotMask = 0;
+        growthThreshold = 0;
+    }
+}
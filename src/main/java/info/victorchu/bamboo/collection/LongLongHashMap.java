@@ -0,0 +1,153 @@
+package info.victorchu.bamboo.collection;
+
+import info.victorchu.bamboo.memory.MemoryAllocationException;
+
+/**
+ * A hash map from longs to longs, which stores its keys and values in the pages of a {@link
+ * PageAllocator}: sixteen bytes per slot at a load factor of at most {@value #LOAD_FACTOR}, instead
+ * of the boxed keys, values and entry objects of a {@link java.util.HashMap}.
+ *
+ * <p>The pages are held until {@link #free()} returns them to the allocator. The map is not thread
+ * safe.
+ */
+public final class LongLongHashMap
+        extends LongHashTable
+{
+    /**
+     * Creates an empty map of one page of slots.
+     *
+     * @param allocator The allocator of the pages.
+     * @throws MemoryAllocationException Thrown, if the allocator has no pages for the slots.
+     */
+    public LongLongHashMap(PageAllocator allocator)
+            throws MemoryAllocationException
+    {
+        this(allocator, 0);
+    }
+
+    /**
+     * Creates an empty map with enough slots for the given number of keys.
+     *
+     * @param allocator The allocator of the pages.
+     * @param expectedSize The number of keys to size the map for.
+     * @throws MemoryAllocationException Thrown, if the allocator has no pages for the slots.
+     */
+    public LongLongHashMap(PageAllocator allocator, long expectedSize)
+            throws MemoryAllocationException
+    {
+        super(allocator, expectedSize, 3);
+    }
+
+    public boolean containsKey(long key)
+    {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * Gets the value of the given key.
+     *
+     * @param key The key.
+     * @param defaultValue The value to return if the key is not contained.
+     * @return The value of the key, or the default value.
+     */
+    public long get(long key, long defaultValue)
+    {
+        long slot = findSlot(key);
+        return slot < 0 ? defaultValue : getValueBits(slot);
+    }
+
+    /**
+     * Sets the value of the given key.
+     *
+     * @param key The key.
+     * @param value The new value.
+     * @return True, if the key was not contained before.
+     * @throws MemoryAllocationException Thrown, if the map must grow and the allocator has no
+     *     pages. The map is unchanged in that case.
+     */
+    public boolean put(long key, long value)
+            throws MemoryAllocationException
+    {
+        long slot = findOrInsertSlot(key);
+        setValueBits(slot < 0 ? -slot - 1 : slot, value);
+        return slot < 0;
+    }
+
+    /**
+     * Adds the given delta to the value of the given key, which starts at zero if the key is not
+     * contained.
+     *
+     * @param key The key.
+     * @param delta The delta to add.
+     * @return The new value of the key.
+     * @throws MemoryAllocationException Thrown, if the map must grow and the allocator has no
+     *     pages. The map is unchanged in that case.
+     */
+    public long addTo(long key, long delta)
+            throws MemoryAllocationException
+    {
+        long slot = findOrInsertSlot(key);
+        if (slot < 0) {
+            slot = -slot - 1;
+        }
+        long value = getValueBits(slot) + delta;
+        setValueBits(slot, value);
+        return value;
+    }
+
+    /**
+     * Removes the given key.
+     *
+     * @param key The key.
+     * @return True, if the key was contained.
+     */
+    public boolean remove(long key)
+    {
+        return removeKey(key);
+    }
+
+    /**
+     * Gets a cursor over all entries. The cursor is invalidated by any insertion or removal.
+     *
+     * @return The cursor, positioned before the first entry.
+     */
+    public Cursor cursor()
+    {
+        return new Cursor();
+    }
+
+    /** A cursor over the entries of the map, in no particular order. */
+    public final class Cursor
+    {
+        private long slot = -1;
+
+        private Cursor() {}
+
+        /**
+         * Moves to the next entry.
+         *
+         * @return True, if the cursor is positioned on an entry, false, if all entries have been
+         *     visited.
+         */
+        public boolean next()
+        {
+            slot = nextSlot(slot);
+            return slot >= 0;
+        }
+
+        public long getKey()
+        {
+            return keyAt(slot);
+        }
+
+        public long getValue()
+        {
+            return getValueBits(slot);
+        }
+
+        public void setValue(long value)
+        {
+            setValueBits(slot, value);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package info.victorchu.bamboo.collection;
+
+import info.victorchu.bamboo.memory.MemoryAllocationException;
+import info.victorchu.bamboo.memory.MemorySegment;
+
+/**
+ * Provides the pages that the paged collections store their elements in, and takes them back when
+ * a collection grows into a new table or is freed. All pages of an allocator have the same size,
+ * which is a power of two. See {@link PageAllocators} for the common allocators.
+ */
+public interface PageAllocator
+{
+    /**
+     * Gets the size of the pages, a power of two of at least eight bytes.
+     *
+     * @return The size of the pages in bytes.
+     */
+    int getPageSize();
+
+    /**
+     * Allocates a page. The contents of the page are undefined.
+     *
+     * @return A page of {@link #getPageSize()} bytes.
+     * @throws MemoryAllocationException Thrown, if no page is available.
+     */
+    MemorySegment allocatePage()
+            throws MemoryAllocationException;
+
+    /**
+     * Releases a page allocated by this allocator. The page must not be accessed afterwards.
+     *
+     * @param page The page to release.
+     */
+    void releasePage(MemorySegment page);
+}
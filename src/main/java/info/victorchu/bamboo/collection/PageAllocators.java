@@ -0,0 +1,137 @@
+package info.victorchu.bamboo.collection;
+
+import info.victorchu.bamboo.memory.MemoryAllocationException;
+import info.victorchu.bamboo.memory.MemoryManager;
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemorySegments;
+import info.victorchu.bamboo.memory.ThreadCachingSegmentPool;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/** Factories for the common {@link PageAllocator page allocators}. */
+public final class PageAllocators
+{
+    private PageAllocators() {}
+
+    /**
+     * Creates an allocator of unpooled heap pages, which are reclaimed by the garbage collector.
+     *
+     * @param pageSize The size of the pages, a power of two.
+     * @return The allocator.
+     */
+    public static PageAllocator heap(int pageSize)
+    {
+        return new UnpooledAllocator(pageSize, false);
+    }
+
+    /**
+     * Creates an allocator of unpooled off-heap pages, whose memory is released as soon as the
+     * collection holding them is freed.
+     *
+     * @param pageSize The size of the pages, a power of two.
+     * @return The allocator.
+     */
+    public static PageAllocator offHeap(int pageSize)
+    {
+        return new UnpooledAllocator(pageSize, true);
+    }
+
+    /**
+     * Creates an allocator that requests the pages from a segment pool and recycles them into it.
+     *
+     * @param pool The pool of segments, whose segment size must be a power of two.
+     * @return The allocator.
+     */
+    public static PageAllocator pooled(ThreadCachingSegmentPool pool)
+    {
+        checkNotNull(pool, "pool is null");
+        return new PageAllocator()
+        {
+            @Override
+            public int getPageSize()
+            {
+                return pool.getSegmentSize();
+            }
+
+            @Override
+            public MemorySegment allocatePage()
+                    throws MemoryAllocationException
+            {
+                return pool.requestSegment();
+            }
+
+            @Override
+            public void releasePage(MemorySegment page)
+            {
+                pool.recycle(page);
+            }
+        };
+    }
+
+    /**
+     * Creates an allocator that allocates the pages from a memory manager, on behalf of the given
+     * owner, and releases them back to it.
+     *
+     * @param memoryManager The memory manager.
+     * @param owner The owner of the pages.
+     * @return The allocator.
+     */
+    public static PageAllocator managed(MemoryManager memoryManager, Object owner)
+    {
+        checkNotNull(memoryManager, "memoryManager is null");
+        checkNotNull(owner, "owner is null");
+        return new PageAllocator()
+        {
+            @Override
+            public int getPageSize()
+            {
+                return memoryManager.getPageSize();
+            }
+
+            @Override
+            public MemorySegment allocatePage()
+                    throws MemoryAllocationException
+            {
+                return memoryManager.allocatePages(owner, 1).get(0);
+            }
+
+            @Override
+            public void releasePage(MemorySegment page)
+            {
+                memoryManager.release(page);
+            }
+        };
+    }
+
+    private static final class UnpooledAllocator
+            implements PageAllocator
+    {
+        private final int pageSize;
+
+        private final boolean offHeap;
+
+        private UnpooledAllocator(int pageSize, boolean offHeap)
+        {
+            this.pageSize = pageSize;
+            this.offHeap = offHeap;
+        }
+
+        @Override
+        public int getPageSize()
+        {
+            return pageSize;
+        }
+
+        @Override
+        public MemorySegment allocatePage()
+        {
+            return offHeap ? MemorySegments.allocateOffHeap(pageSize) : MemorySegments.allocate(pageSize);
+        }
+
+        @Override
+        public void releasePage(MemorySegment page)
+        {
+            page.free();
+        }
+    }
+}
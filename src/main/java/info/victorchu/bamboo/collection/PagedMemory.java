@@ -0,0 +1,131 @@
+package info.victorchu.bamboo.collection;
+
+import info.victorchu.bamboo.memory.MemoryAllocationException;
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.utils.MathUtils;
+
+import java.util.Arrays;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * An array of fixed size elements spread over the pages of an allocator. The element size and the
+ * page size are powers of two, so an element never spans two pages and its page and offset follow
+ * from its index by a shift and a mask. Growing appends pages and never copies elements.
+ */
+final class PagedMemory
+{
+    private static final MemorySegment[] NO_PAGES = new MemorySegment[0];
+
+    private final PageAllocator allocator;
+
+    private final int elementShift;
+
+    private final int pageShift;
+
+    private final int pageMask;
+
+    private MemorySegment[] pages = NO_PAGES;
+
+    private int numPages;
+
+    PagedMemory(PageAllocator allocator, int elementShift)
+    {
+        this.allocator = checkNotNull(allocator, "allocator is null");
+        int pageSize = allocator.getPageSize();
+        checkArgument(MathUtils.isPowerOf2(pageSize) && pageSize >= 8, "The page size must be a power of two of at least eight bytes.");
+        this.elementShift = elementShift;
+        this.pageShift = MathUtils.log2strict(pageSize);
+        this.pageMask = pageSize - 1;
+    }
+
+    /** Gets the number of elements that fit into the allocated pages. */
+    long capacity()
+    {
+        return ((long) numPages << pageShift) >>> elementShift;
+    }
+
+    /** Gets the number of elements that fit into one page. */
+    long elementsPerPage()
+    {
+        return 1L << (pageShift - elementShift);
+    }
+
+    /** Gets the number of bytes of the allocated pages. */
+    long getAllocatedBytes()
+    {
+        return (long) numPages << pageShift;
+    }
+
+    /**
+     * Allocates pages until the given number of elements fits. Pages allocated before a failure
+     * are kept.
+     */
+    void ensureCapacity(long numElements)
+            throws MemoryAllocationException
+    {
+        long numBytes = numElements << elementShift;
+        while (((long) numPages << pageShift) < numBytes) {
+            MemorySegment page = allocator.allocatePage();
+            if (numPages == pages.length) {
+                pages = Arrays.copyOf(pages, Math.max(8, numPages * 2));
+            }
+            pages[numPages++] = page;
+        }
+    }
+
+    /** Sets all bytes of the allocated pages to zero. */
+    void zero()
+    {
+        int pageSize = pageMask + 1;
+        for (int i = 0; i < numPages; i++) {
+            MemorySegment page = pages[i];
+            for (int offset = 0; offset < pageSize; offset += 8) {
+                page.putLong(offset, 0L);
+            }
+        }
+    }
+
+    /** Releases all pages to the allocator. The memory may be grown again afterwards. */
+    void free()
+    {
+        for (int i = 0; i < numPages; i++) {
+            allocator.releasePage(pages[i]);
+            pages[i] = null;
+        }
+        pages = NO_PAGES;
+        numPages = 0;
+    }
+
+    static void checkIndex(long index, long size)
+    {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for size " + size + ".");
+        }
+    }
+
+    long getLong(long index)
+    {
+        long position = index << elementShift;
+        return pages[(int) (position >>> pageShift)].getLong((int) position & pageMask);
+    }
+
+    void putLong(long index, long value)
+    {
+        long position = index << elementShift;
+        pages[(int) (position >>> pageShift)].putLong((int) position & pageMask, value);
+    }
+
+    int getInt(long index)
+    {
+        long position = index << elementShift;
+        return pages[(int) (position >>> pageShift)].getInt((int) position & pageMask);
+    }
+
+    void putInt(long index, int value)
+    {
+        long position = index << elementShift;
+        pages[(int) (position >>> pageShift)].putInt((int) position & pageMask, value);
+    }
+}
@@ -0,0 +1,171 @@
+package info.victorchu.bamboo.compress;
+
+import info.victorchu.bamboo.memory.AbstractPagedInputView;
+import info.victorchu.bamboo.memory.ChecksumAlgorithm;
+import info.victorchu.bamboo.memory.MemorySegment;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import static info.victorchu.bamboo.compress.CompressedBlockOutputView.HEADER_LENGTH;
+import static info.victorchu.bamboo.compress.CompressedBlockOutputView.METHOD_LZ4;
+import static info.victorchu.bamboo.compress.CompressedBlockOutputView.METHOD_RAW;
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * An input view that reads the blocks written by a {@link CompressedBlockOutputView} from a
+ * channel. Every block is decompressed into the page of the view and its checksum is verified
+ * before any of its bytes are served, so corrupted data fails with an {@link IOException}.
+ *
+ * <p>The page of the view must be at least as large as the page of the writing view. Closing the
+ * view closes the channel.
+ */
+public class CompressedBlockInputView
+        extends AbstractPagedInputView
+        implements Closeable
+{
+    private final ReadableByteChannel channel;
+
+    private final MemorySegment page;
+
+    private final MemorySegment blockBuffer;
+
+    private int limit;
+
+    private boolean closed;
+
+    /**
+     * Creates a new view and reads the first block from the channel.
+     *
+     * @param channel The channel to read the blocks from.
+     * @param page The memory segment to decompress the blocks into.
+     * @param blockBuffer The memory segment to read the compressed blocks into, at least as large
+     *     as the page.
+     * @throws IOException Thrown, if the first block could not be read.
+     */
+    public CompressedBlockInputView(ReadableByteChannel channel, MemorySegment page, MemorySegment blockBuffer)
+            throws IOException
+    {
+        super(0);
+        this.channel = checkNotNull(channel, "channel is null");
+        this.page = checkNotNull(page, "page is null");
+        this.blockBuffer = checkNotNull(blockBuffer, "blockBuffer is null");
+        checkArgument(blockBuffer.size() >= page.size(), "The block buffer must be at least as large as the page.");
+
+        readBlock();
+        seekInput(page, 0, this.limit);
+    }
+
+    @Override
+    protected MemorySegment nextSegment(MemorySegment current)
+            throws IOException
+    {
+        if (!readBlock()) {
+            throw new EOFException();
+        }
+        return this.page;
+    }
+
+    @Override
+    protected int getLimitForSegment(MemorySegment segment)
+    {
+        return this.limit;
+    }
+
+    /**
+     * Reads the next block into the page.
+     *
+     * @return True, if a block was read, false if the channel is at its end.
+     */
+    private boolean readBlock()
+            throws IOException
+    {
+        if (this.closed) {
+            throw new IllegalStateException("view has been closed");
+        }
+        if (!readFully(0, HEADER_LENGTH, true)) {
+            return false;
+        }
+
+        byte method = this.blockBuffer.get(0);
+        int length = this.blockBuffer.getIntBigEndian(1);
+        int storedLength = this.blockBuffer.getIntBigEndian(5);
+        int expectedChecksum = this.blockBuffer.getIntBigEndian(9);
+        if (length <= 0 || length > this.page.size()) {
+            throw new IOException("Invalid block length " + length + " for a page of " + this.page.size() + " bytes.");
+        }
+
+        if (method == METHOD_RAW) {
+            if (storedLength != length) {
+                throw new IOException("Invalid stored length " + storedLength + " of an uncompressed block of " + length + " bytes.");
+            }
+            readFully(this.page.wrap(0, length));
+        }
+        else if (method == METHOD_LZ4) {
+            if (storedLength <= 0 || storedLength > this.blockBuffer.size() - HEADER_LENGTH) {
+                throw new IOException("Invalid compressed block length " + storedLength + ".");
+            }
+            readFully(HEADER_LENGTH, storedLength, false);
+            int decompressed = Lz4Decompressor.decompress(this.blockBuffer, HEADER_LENGTH, storedLength, this.page, 0, length);
+            if (decompressed != length) {
+                throw new IOException("Block decompressed to " + decompressed + " bytes instead of " + length + ".");
+            }
+        }
+        else {
+            throw new IOException("Unknown block compression method " + method + ".");
+        }
+
+        if ((int) this.page.checksum(0, length, ChecksumAlgorithm.CRC32C) != expectedChecksum) {
+            throw new IOException("Checksum mismatch of a block of " + length + " bytes.");
+        }
+        this.limit = length;
+        return true;
+    }
+
+    /**
+     * Reads the given range of the block buffer from the channel.
+     *
+     * @return False, if the channel was at its end before the first byte and that is allowed.
+     */
+    private boolean readFully(int offset, int length, boolean endAllowed)
+            throws IOException
+    {
+        ByteBuffer buffer = this.blockBuffer.wrap(offset, length);
+        if (endAllowed && this.channel.read(buffer) < 0) {
+            return false;
+        }
+        readFully(buffer);
+        return true;
+    }
+
+    private void readFully(ByteBuffer buffer)
+            throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer) < 0) {
+                throw new IOException("Truncated block.");
+            }
+        }
+    }
+
+    /**
+     * Closes the underlying channel. The memory segments are not released and may be reused by
+     * the caller afterwards.
+     *
+     * @throws IOException Thrown, if the channel could not be closed.
+     */
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (!this.closed) {
+            this.closed = true;
+            clear();
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package info.victorchu.bamboo.compress;
+
+import info.victorchu.bamboo.memory.AbstractPagedOutputView;
+import info.victorchu.bamboo.memory.ChecksumAlgorithm;
+import info.victorchu.bamboo.memory.MemorySegment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * An output view that compresses every filled page into a block and writes the blocks to a
+ * channel, for example a file or a socket. The blocks are read back by a {@link
+ * CompressedBlockInputView}.
+ *
+ * <p>Each block starts with a header of {@link #HEADER_LENGTH} bytes: the compression method, the
+ * uncompressed length, the stored length and a CRC32C checksum of the uncompressed bytes, followed
+ * by the stored bytes. A page that LZ4 does not shrink is stored as it is, so incompressible data
+ * costs only the header.
+ *
+ * <p>The view must be closed to write the last, partially filled page. Closing the view also
+ * closes the channel.
+ */
+public class CompressedBlockOutputView
+        extends AbstractPagedOutputView
+        implements Closeable
+{
+    /** The length of the header in front of each block. */
+    public static final int HEADER_LENGTH = 13;
+
+    static final byte METHOD_RAW = 0;
+
+    static final byte METHOD_LZ4 = 1;
+
+    private final WritableByteChannel channel;
+
+    private final MemorySegment blockBuffer;
+
+    private final Lz4Compressor compressor = new Lz4Compressor();
+
+    private long bytesWritten;
+
+    private long uncompressedBytes;
+
+    private boolean closed;
+
+    /**
+     * Creates a new view writing blocks to the given channel.
+     *
+     * @param channel The channel to write the blocks to.
+     * @param page The memory segment collecting the bytes of a block.
+     * @param blockBuffer The memory segment to compress into, at least as large as the page. A page
+     *     is compressed only if its compressed block, including the header, fits into this segment.
+     */
+    public CompressedBlockOutputView(WritableByteChannel channel, MemorySegment page, MemorySegment blockBuffer)
+    {
+        super(checkNotNull(page, "page is null"), page.size(), 0);
+        this.channel = checkNotNull(channel, "channel is null");
+        this.blockBuffer = checkNotNull(blockBuffer, "blockBuffer is null");
+        checkArgument(blockBuffer.size() >= page.size(), "The block buffer must be at least as large as the page.");
+        checkArgument(page.size() > HEADER_LENGTH, "The page is too small.");
+    }
+
+    @Override
+    protected MemorySegment nextSegment(MemorySegment current, int positionInCurrent)
+            throws IOException
+    {
+        writeBlock(current, positionInCurrent);
+        return current;
+    }
+
+    private void writeBlock(MemorySegment page, int length)
+            throws IOException
+    {
+        if (length == 0) {
+            return;
+        }
+
+        int checksum = (int) page.checksum(0, length, ChecksumAlgorithm.CRC32C);
+
+        // compression only pays off if it saves at least one byte
+        int maxCompressedLength = Math.min(length - 1, this.blockBuffer.size() - HEADER_LENGTH);
+        int compressedLength = this.compressor.compress(page, 0, length, this.blockBuffer, HEADER_LENGTH, maxCompressedLength);
+
+        this.blockBuffer.put(0, compressedLength < 0 ? METHOD_RAW : METHOD_LZ4);
+        this.blockBuffer.putIntBigEndian(1, length);
+        this.blockBuffer.putIntBigEndian(5, compressedLength < 0 ? length : compressedLength);
+        this.blockBuffer.putIntBigEndian(9, checksum);
+
+        if (compressedLength < 0) {
+            writeFully(this.blockBuffer.wrap(0, HEADER_LENGTH));
+            writeFully(page.wrap(0, length));
+            this.bytesWritten += HEADER_LENGTH + length;
+        }
+        else {
+            writeFully(this.blockBuffer.wrap(0, HEADER_LENGTH + compressedLength));
+            this.bytesWritten += HEADER_LENGTH + compressedLength;
+        }
+        this.uncompressedBytes += length;
+    }
+
+    private void writeFully(ByteBuffer buffer)
+            throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+    }
+
+    /**
+     * Gets the number of bytes written to the channel so far, including the block headers. Bytes
+     * that are still buffered in the current page are not included.
+     *
+     * @return The number of bytes written to the channel.
+     */
+    public long getBytesWritten()
+    {
+        return this.bytesWritten;
+    }
+
+    /**
+     * Gets the number of bytes written to the view, including the bytes that are still buffered.
+     *
+     * @return The number of uncompressed bytes.
+     */
+    public long getUncompressedBytes()
+    {
+        return this.closed ? this.uncompressedBytes : this.uncompressedBytes + getCurrentPositionInSegment();
+    }
+
+    /**
+     * Writes the buffered bytes as a last block and closes the underlying channel. The memory
+     * segments are not released and may be reused by the caller afterwards.
+     *
+     * @throws IOException Thrown, if the last block could not be written.
+     */
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            writeBlock(getCurrentSegment(), getCurrentPositionInSegment());
+        }
+        finally {
+            clear();
+            this.channel.close();
+        }
+    }
+}
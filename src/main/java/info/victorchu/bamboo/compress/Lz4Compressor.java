@@ -0,0 +1,233 @@
+package info.victorchu.bamboo.compress;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static info.victorchu.bamboo.compress.Lz4Decompressor.address;
+import static info.victorchu.bamboo.compress.Lz4Decompressor.base;
+import static info.victorchu.bamboo.compress.Lz4Decompressor.checkRange;
+import static info.victorchu.bamboo.compress.Lz4Decompressor.copy;
+
+/**
+ * A pure Java compressor for the LZ4 block format. The compressor reads and writes the memory of
+ * the segments directly through their address, so it works the same way on heap and off-heap
+ * segments and never copies the data into an intermediate array.
+ *
+ * <p>The compressor finds matches through a single probe into a hash table of the last positions
+ * of four byte sequences, like the fast mode of the reference implementation, and skips ahead
+ * faster the longer it does not find a match, so that incompressible data passes quickly.
+ *
+ * <p>A compressor holds its hash table between calls and is not thread safe.
+ */
+public final class Lz4Compressor
+{
+    @SuppressWarnings("restriction")
+    private static final sun.misc.Unsafe UNSAFE = Lz4Decompressor.UNSAFE;
+
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    static final int MIN_MATCH = 4;
+
+    static final int MAX_OFFSET = 0xFFFF;
+
+    /** The last five bytes of a block are always literals. */
+    static final int LAST_LITERALS = 5;
+
+    /** The last match must start at least twelve bytes before the end of the block. */
+    static final int MATCH_FIND_LIMIT = 12;
+
+    private static final int HASH_LOG = 12;
+
+    private static final int SKIP_TRIGGER = 6;
+
+    private final int[] hashTable = new int[1 << HASH_LOG];
+
+    /**
+     * Gets the maximum size of the compressed form of the given number of bytes.
+     */
+    public static int maxCompressedLength(int length)
+    {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses a range of one segment into another.
+     *
+     * @param source The segment holding the bytes to compress.
+     * @param sourceOffset The offset of the first byte to compress.
+     * @param length The number of bytes to compress.
+     * @param target The segment to write the compressed block to.
+     * @param targetOffset The offset to write the compressed block at.
+     * @param maxCompressedLength The maximum number of bytes to write.
+     * @return The length of the compressed block, or -1, if the block does not fit into {@code
+     *     maxCompressedLength} bytes.
+     */
+    @SuppressWarnings("restriction")
+    public int compress(MemorySegment source, int sourceOffset, int length, MemorySegment target, int targetOffset, int maxCompressedLength)
+    {
+        checkRange(source, sourceOffset, length);
+        checkRange(target, targetOffset, maxCompressedLength);
+
+        Object sourceBase = base(source);
+        long sourceAddress = address(source) + sourceOffset;
+        Object targetBase = base(target);
+        long targetAddress = address(target) + targetOffset;
+        long targetLimit = targetAddress + maxCompressedLength;
+
+        long op = targetAddress;
+        int anchor = 0;
+
+        if (length >= MATCH_FIND_LIMIT + 1) {
+            int[] table = this.hashTable;
+            Arrays.fill(table, -1);
+
+            int matchFindLimit = length - MATCH_FIND_LIMIT;
+            int matchLimit = length - LAST_LITERALS;
+
+            int ip = 0;
+            table[hash(UNSAFE.getInt(sourceBase, sourceAddress))] = 0;
+            ip++;
+
+            while (ip < matchFindLimit) {
+                int sequence = UNSAFE.getInt(sourceBase, sourceAddress + ip);
+                int h = hash(sequence);
+                int ref = table[h];
+                table[h] = ip;
+                if (ref < 0 || ip - ref > MAX_OFFSET || UNSAFE.getInt(sourceBase, sourceAddress + ref) != sequence) {
+                    ip += 1 + ((ip - anchor) >>> SKIP_TRIGGER);
+                    continue;
+                }
+
+                // extend the match backwards into the pending literals
+                while (ip > anchor && ref > 0
+                        && UNSAFE.getByte(sourceBase, sourceAddress + ip - 1) == UNSAFE.getByte(sourceBase, sourceAddress + ref - 1)) {
+                    ip--;
+                    ref--;
+                }
+
+                int matchLength = MIN_MATCH + commonLength(sourceBase, sourceAddress, ip + MIN_MATCH, ref + MIN_MATCH, matchLimit);
+
+                op = writeSequence(sourceBase, sourceAddress + anchor, ip - anchor, ip - ref, matchLength, targetBase, op, targetLimit);
+                if (op < 0) {
+                    return -1;
+                }
+
+                ip += matchLength;
+                anchor = ip;
+                if (ip < matchFindLimit) {
+                    // a position inside the match, to find repetitions of its end
+                    table[hash(UNSAFE.getInt(sourceBase, sourceAddress + ip - 2))] = ip - 2;
+                }
+            }
+        }
+
+        op = writeLastLiterals(sourceBase, sourceAddress + anchor, length - anchor, targetBase, op, targetLimit);
+        if (op < 0) {
+            return -1;
+        }
+        return (int) (op - targetAddress);
+    }
+
+    private static int hash(int sequence)
+    {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    /**
+     * Counts the equal bytes at the two positions, eight bytes at a time, up to the limit.
+     */
+    @SuppressWarnings("restriction")
+    private static int commonLength(Object base, long address, int position, int reference, int limit)
+    {
+        int start = position;
+        while (position <= limit - 8) {
+            long diff = UNSAFE.getLong(base, address + position) ^ UNSAFE.getLong(base, address + reference);
+            if (diff != 0) {
+                int equalBits = LITTLE_ENDIAN ? Long.numberOfTrailingZeros(diff) : Long.numberOfLeadingZeros(diff);
+                return position - start + (equalBits >>> 3);
+            }
+            position += 8;
+            reference += 8;
+        }
+        while (position < limit && UNSAFE.getByte(base, address + position) == UNSAFE.getByte(base, address + reference)) {
+            position++;
+            reference++;
+        }
+        return position - start;
+    }
+
+    @SuppressWarnings("restriction")
+    private static long writeSequence(
+            Object sourceBase,
+            long literalAddress,
+            int literalLength,
+            int offset,
+            int matchLength,
+            Object targetBase,
+            long op,
+            long targetLimit)
+    {
+        // token, literal length, literals, offset and match length
+        long needed = 1 + literalLength / 255 + 1 + literalLength + 2 + (matchLength - MIN_MATCH) / 255 + 1;
+        if (needed > targetLimit - op) {
+            return -1;
+        }
+
+        long tokenAddress = op++;
+        int token;
+        if (literalLength >= 15) {
+            token = 15 << 4;
+            op = writeLength(targetBase, op, literalLength - 15);
+        }
+        else {
+            token = literalLength << 4;
+        }
+        copy(sourceBase, literalAddress, targetBase, op, literalLength);
+        op += literalLength;
+
+        UNSAFE.putByte(targetBase, op++, (byte) offset);
+        UNSAFE.putByte(targetBase, op++, (byte) (offset >>> 8));
+
+        int extraMatchLength = matchLength - MIN_MATCH;
+        if (extraMatchLength >= 15) {
+            token |= 15;
+            op = writeLength(targetBase, op, extraMatchLength - 15);
+        }
+        else {
+            token |= extraMatchLength;
+        }
+        UNSAFE.putByte(targetBase, tokenAddress, (byte) token);
+        return op;
+    }
+
+    @SuppressWarnings("restriction")
+    private static long writeLastLiterals(Object sourceBase, long literalAddress, int literalLength, Object targetBase, long op, long targetLimit)
+    {
+        long needed = 1 + literalLength / 255 + 1 + literalLength;
+        if (needed > targetLimit - op) {
+            return -1;
+        }
+        if (literalLength >= 15) {
+            UNSAFE.putByte(targetBase, op++, (byte) (15 << 4));
+            op = writeLength(targetBase, op, literalLength - 15);
+        }
+        else {
+            UNSAFE.putByte(targetBase, op++, (byte) (literalLength << 4));
+        }
+        copy(sourceBase, literalAddress, targetBase, op, literalLength);
+        return op + literalLength;
+    }
+
+    @SuppressWarnings("restriction")
+    private static long writeLength(Object base, long op, int length)
+    {
+        while (length >= 255) {
+            UNSAFE.putByte(base, op++, (byte) 255);
+            length -= 255;
+        }
+        UNSAFE.putByte(base, op++, (byte) length);
+        return op;
+    }
+}
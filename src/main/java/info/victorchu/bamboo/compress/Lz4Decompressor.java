@@ -0,0 +1,187 @@
+package info.victorchu.bamboo.compress;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemoryUtils;
+
+import java.io.IOException;
+
+import static info.victorchu.bamboo.compress.Lz4Compressor.MIN_MATCH;
+import static info.victorchu.bamboo.utils.Preconditions.checkState;
+
+/**
+ * A pure Java decompressor for the LZ4 block format, working directly on the memory of heap and
+ * off-heap segments.
+ *
+ * <p>Every length and offset read from the block is checked against the bounds of the source and
+ * the target range before memory is touched, so a corrupted block fails with an exception instead
+ * of reading or writing outside of the segments.
+ */
+public final class Lz4Decompressor
+{
+    @SuppressWarnings("restriction")
+    static final sun.misc.Unsafe UNSAFE = MemoryUtils.UNSAFE;
+
+    @SuppressWarnings("restriction")
+    private static final long BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+
+    private static final int SHORT_COPY_LENGTH = 64;
+
+    private Lz4Decompressor() {}
+
+    /**
+     * Decompresses a block from one segment into another.
+     *
+     * @param source The segment holding the compressed block.
+     * @param sourceOffset The offset of the compressed block.
+     * @param compressedLength The length of the compressed block.
+     * @param target The segment to decompress into.
+     * @param targetOffset The offset to decompress to.
+     * @param maxLength The maximum number of decompressed bytes.
+     * @return The number of decompressed bytes.
+     * @throws IOException Thrown, if the block is malformed or decompresses to more than {@code
+     *     maxLength} bytes.
+     */
+    @SuppressWarnings("restriction")
+    public static int decompress(MemorySegment source, int sourceOffset, int compressedLength, MemorySegment target, int targetOffset, int maxLength)
+            throws IOException
+    {
+        checkRange(source, sourceOffset, compressedLength);
+        checkRange(target, targetOffset, maxLength);
+
+        Object sourceBase = base(source);
+        long sourceAddress = address(source) + sourceOffset;
+        long sourceLimit = sourceAddress + compressedLength;
+        long ip = sourceAddress;
+        Object targetBase = base(target);
+        long targetAddress = address(target) + targetOffset;
+        long op = targetAddress;
+        long targetLimit = targetAddress + maxLength;
+
+        while (true) {
+            if (ip >= sourceLimit) {
+                throw malformed(ip - sourceAddress);
+            }
+            int token = UNSAFE.getByte(sourceBase, ip++) & 0xFF;
+
+            long literalLength = token >>> 4;
+            if (literalLength == 15) {
+                long length = 0;
+                int b;
+                do {
+                    if (ip >= sourceLimit) {
+                        throw malformed(ip - sourceAddress);
+                    }
+                    b = UNSAFE.getByte(sourceBase, ip++) & 0xFF;
+                    length += b;
+                }
+                while (b == 255);
+                literalLength += length;
+            }
+            if (literalLength > sourceLimit - ip || literalLength > targetLimit - op) {
+                throw malformed(ip - sourceAddress);
+            }
+            copy(sourceBase, ip, targetBase, op, literalLength);
+            ip += literalLength;
+            op += literalLength;
+
+            if (ip == sourceLimit) {
+                // the last sequence has no match
+                return (int) (op - targetAddress);
+            }
+
+            if (sourceLimit - ip < 2) {
+                throw malformed(ip - sourceAddress);
+            }
+            int offset = (UNSAFE.getByte(sourceBase, ip) & 0xFF) | ((UNSAFE.getByte(sourceBase, ip + 1) & 0xFF) << 8);
+            ip += 2;
+            if (offset == 0 || offset > op - targetAddress) {
+                throw malformed(ip - sourceAddress);
+            }
+
+            long matchLength = token & 0x0F;
+            if (matchLength == 15) {
+                long length = 0;
+                int b;
+                do {
+                    if (ip >= sourceLimit) {
+                        throw malformed(ip - sourceAddress);
+                    }
+                    b = UNSAFE.getByte(sourceBase, ip++) & 0xFF;
+                    length += b;
+                }
+                while (b == 255);
+                matchLength += length;
+            }
+            matchLength += MIN_MATCH;
+            if (matchLength > targetLimit - op) {
+                throw malformed(ip - sourceAddress);
+            }
+
+            long ref = op - offset;
+            long matchEnd = op + matchLength;
+            if (offset >= matchLength) {
+                copy(targetBase, ref, targetBase, op, matchLength);
+                op = matchEnd;
+            }
+            else {
+                // an overlapping match repeats the last bytes, which must be copied front to back
+                if (offset >= 8) {
+                    for (; op <= matchEnd - 8; op += 8, ref += 8) {
+                        UNSAFE.putLong(targetBase, op, UNSAFE.getLong(targetBase, ref));
+                    }
+                }
+                for (; op < matchEnd; op++, ref++) {
+                    UNSAFE.putByte(targetBase, op, UNSAFE.getByte(targetBase, ref));
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies non-overlapping memory. Sequences are mostly short, and copying them in words is
+     * cheaper than a call to {@code copyMemory}.
+     */
+    @SuppressWarnings("restriction")
+    static void copy(Object sourceBase, long source, Object targetBase, long target, long length)
+    {
+        if (length > SHORT_COPY_LENGTH) {
+            UNSAFE.copyMemory(sourceBase, source, targetBase, target, length);
+            return;
+        }
+        long end = target + length;
+        for (; target <= end - 8; target += 8, source += 8) {
+            UNSAFE.putLong(targetBase, target, UNSAFE.getLong(sourceBase, source));
+        }
+        for (; target < end; target++, source++) {
+            UNSAFE.putByte(targetBase, target, UNSAFE.getByte(sourceBase, source));
+        }
+    }
+
+    private static IOException malformed(long position)
+    {
+        return new IOException("Malformed LZ4 block at byte " + position + ".");
+    }
+
+    // --------------------------------------------------------------------------------------------
+    //                                 Direct Segment Access
+    // --------------------------------------------------------------------------------------------
+
+    static Object base(MemorySegment segment)
+    {
+        return segment.isOffHeap() ? null : segment.getArray();
+    }
+
+    static long address(MemorySegment segment)
+    {
+        return segment.isOffHeap() ? segment.getAddress() : BYTE_ARRAY_BASE_OFFSET;
+    }
+
+    static void checkRange(MemorySegment segment, int offset, int length)
+    {
+        checkState(!segment.isFreed(), "segment has been freed");
+        if ((offset | length | (segment.size() - offset - length)) < 0) {
+            throw new IndexOutOfBoundsException(
+                    String.format("offset: %s, length: %s, segment size: %s", offset, length, segment.size()));
+        }
+    }
+}
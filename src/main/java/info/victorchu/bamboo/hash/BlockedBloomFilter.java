@@ -0,0 +1,218 @@
+package info.victorchu.bamboo.hash;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemorySegmentWritable;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * A bloom filter whose bits live in a range of a memory segment, split into blocks of the size of a
+ * cache line. A key sets and probes bits of a single block only, so a probe costs one cache miss
+ * instead of one per hash function, for a slightly higher false positive rate than a classic
+ * filter of the same size.
+ *
+ * <p>A block consists of eight longs. The upper half of the 64 bit hash of a key selects the block,
+ * and the lower half, multiplied with a different odd constant per long, selects one bit in each of
+ * the eight longs, like the split block filters of Parquet. At ten bits per key, about one percent
+ * of the probes for absent keys pass, at sixteen bits per key about one in a thousand.
+ *
+ * <p>The bits are the only state of the filter, so a filter is serialized by writing its range of
+ * the segment, for example to a {@link info.victorchu.bamboo.memory.DataOutputSerializer}, and two
+ * filters of the same size are merged by OR-ing their ranges.
+ *
+ * <p>A filter is not thread safe.
+ */
+public final class BlockedBloomFilter
+{
+    /** The size of a block, in bytes. */
+    public static final int BLOCK_SIZE = 64;
+
+    private static final int[] SALTS = {
+            0x47B6137B, 0x44974D91, 0x8824AD5B, 0xA2B7289D,
+            0x705495C7, 0x2DF1424B, 0x9EFC4947, 0x5C6BFB31};
+
+    private final MemorySegment segment;
+
+    private final int offset;
+
+    private final int numBlocks;
+
+    private BlockedBloomFilter(MemorySegment segment, int offset, int numBytes)
+    {
+        checkNotNull(segment, "segment is null");
+        checkArgument(numBytes > 0 && numBytes % BLOCK_SIZE == 0, "The size of the filter must be a positive multiple of %s bytes.", BLOCK_SIZE);
+        checkArgument(offset >= 0 && offset <= segment.size() - numBytes, "The filter is out of the bounds of the segment.");
+        this.segment = segment;
+        this.offset = offset;
+        this.numBlocks = numBytes / BLOCK_SIZE;
+    }
+
+    /**
+     * Creates an empty filter in the given range, whose bytes are cleared.
+     *
+     * @param segment The memory segment to hold the bits.
+     * @param offset The offset of the bits in the segment.
+     * @param numBytes The size of the filter, a multiple of {@link #BLOCK_SIZE}.
+     * @return The new filter.
+     */
+    public static BlockedBloomFilter create(MemorySegment segment, int offset, int numBytes)
+    {
+        BlockedBloomFilter filter = new BlockedBloomFilter(segment, offset, numBytes);
+        filter.clear();
+        return filter;
+    }
+
+    /**
+     * Creates a filter over bits written before, for example read back from a file.
+     *
+     * @param segment The memory segment holding the bits.
+     * @param offset The offset of the bits in the segment.
+     * @param numBytes The size of the filter, a multiple of {@link #BLOCK_SIZE}.
+     * @return The filter.
+     */
+    public static BlockedBloomFilter wrap(MemorySegment segment, int offset, int numBytes)
+    {
+        return new BlockedBloomFilter(segment, offset, numBytes);
+    }
+
+    /**
+     * Gets the size of a filter for the given number of keys.
+     *
+     * @param expectedKeys The number of keys.
+     * @param bitsPerKey The number of bits per key.
+     * @return The size in bytes, rounded up to whole blocks.
+     */
+    public static int sizeFor(long expectedKeys, int bitsPerKey)
+    {
+        checkArgument(expectedKeys >= 0 && bitsPerKey > 0, "expectedKeys and bitsPerKey must be positive");
+        long numBlocks = Math.max(1, (expectedKeys * bitsPerKey + BLOCK_SIZE * 8 - 1) / (BLOCK_SIZE * 8));
+        checkArgument(numBlocks <= Integer.MAX_VALUE / BLOCK_SIZE, "The filter would be larger than a memory segment.");
+        return (int) numBlocks * BLOCK_SIZE;
+    }
+
+    // ------------------------------------------------------------------------
+    //  Adding and probing
+    // ------------------------------------------------------------------------
+
+    /**
+     * Adds a key by its hash.
+     *
+     * @param hash The hash of the key. All its bits are mixed again, so the hash codes of keys that
+     *     share some bits, like the keys of one hash partition, may be passed as they are.
+     */
+    public void add(long hash)
+    {
+        hash = mix(hash);
+        int blockOffset = blockOffset(hash);
+        int key = (int) hash;
+        for (int i = 0; i < 8; i++) {
+            int position = blockOffset + (i << 3);
+            segment.putLong(position, segment.getLong(position) | bit(key, i));
+        }
+    }
+
+    /**
+     * Checks whether a key may have been added.
+     *
+     * @param hash The hash of the key.
+     * @return False, if the key has definitely not been added, true, if it probably has.
+     */
+    public boolean mightContain(long hash)
+    {
+        hash = mix(hash);
+        int blockOffset = blockOffset(hash);
+        int key = (int) hash;
+        for (int i = 0; i < 8; i++) {
+            long bit = bit(key, i);
+            if ((segment.getLong(blockOffset + (i << 3)) & bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int blockOffset(long hash)
+    {
+        // maps the upper half onto the blocks without a division
+        int block = (int) (((hash >>> 32) * numBlocks) >>> 32);
+        return offset + block * BLOCK_SIZE;
+    }
+
+    private static long bit(int key, int word)
+    {
+        return 1L << ((key * SALTS[word]) >>> 26);
+    }
+
+    /** The finalization mix of MurmurHash3 for 64 bit values. */
+    private static long mix(long h)
+    {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // ------------------------------------------------------------------------
+    //  Merging, serialization and properties
+    // ------------------------------------------------------------------------
+
+    /**
+     * Adds all keys of another filter of the same size to this filter.
+     *
+     * @param other The filter to merge into this one.
+     */
+    public void merge(BlockedBloomFilter other)
+    {
+        checkArgument(other.numBlocks == numBlocks, "Only filters of the same size can be merged.");
+        int numBytes = numBlocks * BLOCK_SIZE;
+        for (int i = 0; i < numBytes; i += 8) {
+            segment.putLong(offset + i, segment.getLong(offset + i) | other.segment.getLong(other.offset + i));
+        }
+    }
+
+    /** Removes all keys. */
+    public void clear()
+    {
+        int numBytes = numBlocks * BLOCK_SIZE;
+        for (int i = 0; i < numBytes; i += 8) {
+            segment.putLong(offset + i, 0L);
+        }
+    }
+
+    /**
+     * Writes the bits of the filter. Bits written on one machine are read back correctly on any
+     * machine of the same byte order.
+     *
+     * @param out The output to write to.
+     * @throws IOException Thrown, if the output could not be written.
+     */
+    public void writeTo(MemorySegmentWritable out)
+            throws IOException
+    {
+        out.write(segment, offset, numBlocks * BLOCK_SIZE);
+    }
+
+    /**
+     * Replaces the bits of the filter with bits written by {@link #writeTo(MemorySegmentWritable)}.
+     *
+     * @param in The input to read from.
+     * @throws IOException Thrown, if the input could not be read.
+     */
+    public void readFrom(DataInput in)
+            throws IOException
+    {
+        segment.put(in, offset, numBlocks * BLOCK_SIZE);
+    }
+
+    /** Gets the size of the filter, in bytes. */
+    public int getSizeInBytes()
+    {
+        return numBlocks * BLOCK_SIZE;
+    }
+}
@@ -0,0 +1,499 @@
+package info.victorchu.bamboo.hash;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.utils.MathUtils;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * An open-addressing hash table for binary keys with fixed-length binary values, which keeps all
+ * its data in memory segments from a fixed budget. It is meant for hash aggregations: the value
+ * of an entry is the accumulator of its key, which is updated in place.
+ *
+ * <p>The table consists of two areas:
+ *
+ * <ul>
+ *   <li>The bucket area is an array of 8 byte slots, probed linearly. A slot holds the 32 bit hash
+ *       code of its entry in the upper half and the pointer to the entry plus one in the lower
+ *       half, so an empty slot is zero. Comparing the stored hash codes first skips almost all
+ *       key comparisons against other keys.
+ *   <li>The record area holds the entries back to back, each as {@code [int key length][key
+ *       bytes][value bytes]}. An entry never spans two segments, so its key can be matched with
+ *       {@link MemorySegment#equalTo} and its value accessed directly in its segment.
+ * </ul>
+ *
+ * <p>The bucket area doubles whenever the load factor exceeds {@value #LOAD_FACTOR}. The stored hash
+ * codes make rehashing independent of the records. When the memory budget cannot provide the
+ * segments for a new entry, or for growing the bucket area, the table reports that it is full by
+ * returning {@code null}, and the caller is expected to flush or spill the table and {@link
+ * #reset()} it.
+ *
+ * <p>Lookups return a single, reused {@link Entry} cursor, so the table does not create any objects
+ * per record. The table is not thread-safe.
+ */
+public final class BytesHashTable
+{
+    /** The load factor above which the bucket area is doubled. */
+    public static final double LOAD_FACTOR = 0.75;
+
+    private static final int SLOT_SIZE = 8;
+
+    private static final int KEY_LENGTH_SIZE = 4;
+
+    /** Marks the end of the entries in a record segment whose remainder is unused. */
+    private static final int END_OF_SEGMENT = -1;
+
+    private static final int MIN_REQUIRED_BUFFERS = 2;
+
+    private final ArrayList<MemorySegment> freeMemory;
+
+    private final int totalNumBuffers;
+
+    private final int segmentSize;
+
+    private final int segmentSizeBits;
+
+    private final int segmentSizeMask;
+
+    private final int valueLength;
+
+    private final int slotsPerSegmentBits;
+
+    private final int slotsPerSegmentMask;
+
+    private final Entry entry = new Entry();
+
+    private MemorySegment[] buckets;
+
+    private int numSlots;
+
+    private int slotMask;
+
+    private int growthThreshold;
+
+    private final ArrayList<MemorySegment> records = new ArrayList<>();
+
+    private MemorySegment currentRecordSegment;
+
+    private int appendOffset;
+
+    private int numEntries;
+
+    /**
+     * Creates a new table.
+     *
+     * @param memory The memory budget of the table, segments of the same power of two size.
+     * @param valueLength The length of the value of every entry, in bytes.
+     */
+    public BytesHashTable(List<MemorySegment> memory, int valueLength)
+    {
+        checkNotNull(memory, "memory is null");
+        checkArgument(memory.size() >= MIN_REQUIRED_BUFFERS, "the hash table requires at least %s memory segments", MIN_REQUIRED_BUFFERS);
+        checkArgument(valueLength >= 0, "valueLength must not be negative");
+        this.totalNumBuffers = memory.size();
+        this.segmentSize = memory.get(0).size();
+        checkArgument(MathUtils.isPowerOf2(segmentSize) && segmentSize >= SLOT_SIZE, "segment size must be a power of two");
+        for (MemorySegment segment : memory) {
+            checkArgument(segment.size() == segmentSize, "All memory segments must have the same size.");
+        }
+        checkArgument(KEY_LENGTH_SIZE + valueLength <= segmentSize, "values must fit into a memory segment");
+
+        this.freeMemory = new ArrayList<>(memory);
+        this.segmentSizeBits = MathUtils.log2strict(segmentSize);
+        this.segmentSizeMask = segmentSize - 1;
+        this.slotsPerSegmentBits = segmentSizeBits - MathUtils.log2strict(SLOT_SIZE);
+        this.slotsPerSegmentMask = (1 << slotsPerSegmentBits) - 1;
+        this.valueLength = valueLength;
+
+        initBuckets();
+    }
+
+    // ------------------------------------------------------------------------
+    //  Lookup and insert
+    // ------------------------------------------------------------------------
+
+    /**
+     * Finds the entry of the given key.
+     *
+     * @param key The segment holding the key.
+     * @param offset The offset of the key in the segment.
+     * @param length The length of the key.
+     * @param hashCode The hash code of the key, see {@link #hash(MemorySegment, int, int)}.
+     * @return The reused cursor positioned on the entry, or {@code null}, if the key is not
+     *     contained.
+     */
+    @Nullable
+    public Entry lookup(MemorySegment key, int offset, int length, int hashCode)
+    {
+        int slot = findSlot(key, offset, length, hashCode);
+        long slotValue = getSlot(slot);
+        if (slotValue == 0) {
+            return null;
+        }
+        return entry.position(pointerOf(slotValue), false);
+    }
+
+    /**
+     * Finds the entry of the given key, or inserts a new entry with a zeroed value if the key is
+     * not contained. The caller then initializes or updates the value in place.
+     *
+     * @param key The segment holding the key.
+     * @param offset The offset of the key in the segment.
+     * @param length The length of the key.
+     * @param hashCode The hash code of the key, see {@link #hash(MemorySegment, int, int)}.
+     * @return The reused cursor positioned on the entry, or {@code null}, if the key is not
+     *     contained and the memory budget is exhausted.
+     */
+    @Nullable
+    public Entry lookupOrInsert(MemorySegment key, int offset, int length, int hashCode)
+    {
+        int slot = findSlot(key, offset, length, hashCode);
+        long slotValue = getSlot(slot);
+        if (slotValue != 0) {
+            return entry.position(pointerOf(slotValue), false);
+        }
+
+        if (numEntries >= growthThreshold) {
+            if (!growBuckets()) {
+                return null;
+            }
+            slot = findSlot(key, offset, length, hashCode);
+        }
+
+        int pointer = appendEntry(key, offset, length);
+        if (pointer < 0) {
+            return null;
+        }
+        setSlot(slot, ((long) hashCode << 32) | (pointer + 1L));
+        numEntries++;
+        return entry.position(pointer, true);
+    }
+
+    /**
+     * Probes for the slot of the given key, which is either the slot of its entry or the empty
+     * slot where its entry belongs.
+     */
+    private int findSlot(MemorySegment key, int offset, int length, int hashCode)
+    {
+        int slot = hashCode & slotMask;
+        while (true) {
+            long slotValue = getSlot(slot);
+            if (slotValue == 0) {
+                return slot;
+            }
+            if ((int) (slotValue >>> 32) == hashCode && keyEquals(pointerOf(slotValue), key, offset, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+    }
+
+    private boolean keyEquals(int pointer, MemorySegment key, int offset, int length)
+    {
+        MemorySegment segment = records.get(pointer >>> segmentSizeBits);
+        int entryOffset = pointer & segmentSizeMask;
+        return segment.getInt(entryOffset) == length
+                && segment.equalTo(key, entryOffset + KEY_LENGTH_SIZE, offset, length);
+    }
+
+    /**
+     * Appends an entry for the given key with a zeroed value to the record area.
+     *
+     * @return The pointer to the new entry, or -1 if no segment is left for it.
+     */
+    private int appendEntry(MemorySegment key, int offset, int length)
+    {
+        int entryLength = KEY_LENGTH_SIZE + length + valueLength;
+        checkArgument(entryLength <= segmentSize, "entry of %s bytes does not fit into a memory segment", entryLength);
+
+        if (currentRecordSegment == null || segmentSize - appendOffset < entryLength) {
+            if (freeMemory.isEmpty()) {
+                return -1;
+            }
+            if (((long) records.size() + 1) << segmentSizeBits > Integer.MAX_VALUE) {
+                // the pointers in the slots are 31 bit
+                return -1;
+            }
+            if (currentRecordSegment != null && segmentSize - appendOffset >= KEY_LENGTH_SIZE) {
+                currentRecordSegment.putInt(appendOffset, END_OF_SEGMENT);
+            }
+            currentRecordSegment = freeMemory.remove(freeMemory.size() - 1);
+            records.add(currentRecordSegment);
+            appendOffset = 0;
+        }
+
+        int pointer = ((records.size() - 1) << segmentSizeBits) | appendOffset;
+        currentRecordSegment.putInt(appendOffset, length);
+        key.copyTo(offset, currentRecordSegment, appendOffset + KEY_LENGTH_SIZE, length);
+        zero(currentRecordSegment, appendOffset + KEY_LENGTH_SIZE + length, valueLength);
+        appendOffset += entryLength;
+        return pointer;
+    }
+
+    // ------------------------------------------------------------------------
+    //  Bucket area
+    // ------------------------------------------------------------------------
+
+    private void initBuckets()
+    {
+        MemorySegment segment = freeMemory.remove(freeMemory.size() - 1);
+        zero(segment, 0, segmentSize);
+        setBuckets(new MemorySegment[] {segment});
+    }
+
+    private void setBuckets(MemorySegment[] buckets)
+    {
+        this.buckets = buckets;
+        this.numSlots = buckets.length << slotsPerSegmentBits;
+        this.slotMask = numSlots - 1;
+        this.growthThreshold = (int) (numSlots * LOAD_FACTOR);
+    }
+
+    /**
+     * Doubles the bucket area and re-inserts all slots. The old bucket segments are returned to
+     * the free memory afterwards.
+     *
+     * @return True, if the bucket area was grown, false if the memory budget does not suffice.
+     */
+    private boolean growBuckets()
+    {
+        int newNumSegments = buckets.length * 2;
+        if (freeMemory.size() < newNumSegments || (long) numSlots * 2 > Integer.MAX_VALUE) {
+            return false;
+        }
+
+        MemorySegment[] oldBuckets = buckets;
+        int oldNumSlots = numSlots;
+        MemorySegment[] newBuckets = new MemorySegment[newNumSegments];
+        for (int i = 0; i < newNumSegments; i++) {
+            newBuckets[i] = freeMemory.remove(freeMemory.size() - 1);
+            zero(newBuckets[i], 0, segmentSize);
+        }
+        setBuckets(newBuckets);
+
+        for (int oldSlot = 0; oldSlot < oldNumSlots; oldSlot++) {
+            long slotValue = oldBuckets[oldSlot >>> slotsPerSegmentBits].getLong((oldSlot & slotsPerSegmentMask) << 3);
+            if (slotValue != 0) {
+                int slot = ((int) (slotValue >>> 32)) & slotMask;
+                while (getSlot(slot) != 0) {
+                    slot = (slot + 1) & slotMask;
+                }
+                setSlot(slot, slotValue);
+            }
+        }
+
+        for (MemorySegment segment : oldBuckets) {
+            freeMemory.add(segment);
+        }
+        return true;
+    }
+
+    private long getSlot(int slot)
+    {
+        return buckets[slot >>> slotsPerSegmentBits].getLong((slot & slotsPerSegmentMask) << 3);
+    }
+
+    private void setSlot(int slot, long value)
+    {
+        buckets[slot >>> slotsPerSegmentBits].putLong((slot & slotsPerSegmentMask) << 3, value);
+    }
+
+    private static int pointerOf(long slotValue)
+    {
+        return (int) slotValue - 1;
+    }
+
+    private static void zero(MemorySegment segment, int offset, int length)
+    {
+        int end = offset + length;
+        int i = offset;
+        for (; i <= end - 8; i += 8) {
+            segment.putLong(i, 0L);
+        }
+        for (; i < end; i++) {
+            segment.put(i, (byte) 0);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //  Iteration and lifecycle
+    // ------------------------------------------------------------------------
+
+    /**
+     * Gets a cursor over all entries in insertion order, e.g. to flush the aggregated values. The
+     * cursor is invalidated by any modification of the table.
+     *
+     * @return The cursor, positioned before the first entry.
+     */
+    public EntryIterator entries()
+    {
+        return new EntryIterator();
+    }
+
+    /** Gets the number of entries in the table. */
+    public int size()
+    {
+        return numEntries;
+    }
+
+    public boolean isEmpty()
+    {
+        return numEntries == 0;
+    }
+
+    /** Gets the number of slots of the bucket area. */
+    public int getNumSlots()
+    {
+        return numSlots;
+    }
+
+    /** Gets the number of memory segments the table uses for its buckets and records. */
+    public int getNumOccupiedSegments()
+    {
+        return totalNumBuffers - freeMemory.size();
+    }
+
+    /**
+     * Removes all entries. The memory is kept, the bucket area shrinks to a single segment.
+     */
+    public void reset()
+    {
+        for (MemorySegment segment : buckets) {
+            freeMemory.add(segment);
+        }
+        freeMemory.addAll(records);
+        records.clear();
+        currentRecordSegment = null;
+        appendOffset = 0;
+        numEntries = 0;
+        initBuckets();
+    }
+
+    /**
+     * Returns all memory segments of the table. The table must not be used afterwards.
+     *
+     * @return The memory budget of the table.
+     */
+    public List<MemorySegment> dispose()
+    {
+        for (MemorySegment segment : buckets) {
+            freeMemory.add(segment);
+        }
+        freeMemory.addAll(records);
+        records.clear();
+        buckets = new MemorySegment[0];
+        currentRecordSegment = null;
+        return freeMemory;
+    }
+
+    /**
+     * Computes a hash code for the given key bytes, whose bits all depend on all bytes of the key,
+     * see {@link MemorySegment#hash(int, int)}.
+     */
+    public static int hash(MemorySegment key, int offset, int length)
+    {
+        return key.hash(offset, length);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * A cursor on an entry of the table. The key and value are accessed in place, in the segment
+     * returned by {@link #getSegment()}.
+     */
+    public final class Entry
+    {
+        private MemorySegment segment;
+
+        private int offset;
+
+        private boolean inserted;
+
+        private Entry() {}
+
+        private Entry position(int pointer, boolean inserted)
+        {
+            this.segment = records.get(pointer >>> segmentSizeBits);
+            this.offset = pointer & segmentSizeMask;
+            this.inserted = inserted;
+            return this;
+        }
+
+        /** Checks whether the entry was just inserted, so its value is still zeroed. */
+        public boolean isNew()
+        {
+            return inserted;
+        }
+
+        /** Gets the segment holding the key and the value of the entry. */
+        public MemorySegment getSegment()
+        {
+            return segment;
+        }
+
+        public int getKeyOffset()
+        {
+            return offset + KEY_LENGTH_SIZE;
+        }
+
+        public int getKeyLength()
+        {
+            return segment.getInt(offset);
+        }
+
+        public int getValueOffset()
+        {
+            return offset + KEY_LENGTH_SIZE + getKeyLength();
+        }
+
+        public int getValueLength()
+        {
+            return valueLength;
+        }
+    }
+
+    /**
+     * A cursor over all entries of the table, in insertion order.
+     */
+    public final class EntryIterator
+    {
+        private final Entry current = new Entry();
+
+        private int segmentIndex;
+
+        private int offset;
+
+        private EntryIterator() {}
+
+        /**
+         * Moves to the next entry.
+         *
+         * @return The reused entry cursor, or {@code null}, if all entries have been visited.
+         */
+        @Nullable
+        public Entry next()
+        {
+            while (segmentIndex < records.size()) {
+                MemorySegment segment = records.get(segmentIndex);
+                int limit = segment == currentRecordSegment ? appendOffset : segmentSize;
+                if (segmentSize - offset >= KEY_LENGTH_SIZE && offset < limit) {
+                    int keyLength = segment.getInt(offset);
+                    if (keyLength != END_OF_SEGMENT) {
+                        current.position((segmentIndex << segmentSizeBits) | offset, false);
+                        offset += KEY_LENGTH_SIZE + keyLength + valueLength;
+                        return current;
+                    }
+                }
+                segmentIndex++;
+                offset = 0;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package info.victorchu.bamboo.io;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * The base class of the channels that transfer whole memory segments asynchronously between
+ * memory and a {@link FileChannel}.
+ *
+ * <p>The blocks are transferred sequentially: every request covers the bytes after the previous
+ * request of the channel. All requests of a channel are served by the same I/O thread in their
+ * submission order. The number of requests in flight is bounded; submitting a request blocks while
+ * the bound is reached, which throttles producers that are faster than the disk.
+ *
+ * <p>Once a request failed, the channel is erroneous and all further requests are rejected with
+ * the exception of the first failure.
+ */
+public abstract class AbstractBlockChannel
+        implements AutoCloseable
+{
+    private final IOManager ioManager;
+
+    private final IOManager.IOThread ioThread;
+
+    private final FileChannel fileChannel;
+
+    @Nullable
+    private final RequestDoneCallback<MemorySegment> callback;
+
+    private final Semaphore outstandingRequests;
+
+    private final int maxOutstandingRequests;
+
+    private long position;
+
+    private volatile IOException error;
+
+    private volatile boolean closed;
+
+    AbstractBlockChannel(
+            IOManager ioManager,
+            IOManager.IOThread ioThread,
+            FileChannel fileChannel,
+            @Nullable RequestDoneCallback<MemorySegment> callback,
+            int maxOutstandingRequests)
+    {
+        this.ioManager = ioManager;
+        this.ioThread = ioThread;
+        this.fileChannel = checkNotNull(fileChannel, "fileChannel is null");
+        this.callback = callback;
+        this.maxOutstandingRequests = maxOutstandingRequests;
+        this.outstandingRequests = new Semaphore(maxOutstandingRequests);
+    }
+
+    FileChannel getFileChannel()
+    {
+        return fileChannel;
+    }
+
+    /**
+     * Gets the position in the file at which the next request of this channel starts.
+     */
+    public long getPosition()
+    {
+        return position;
+    }
+
+    /**
+     * Sets the position in the file at which the next request of this channel starts. Requests
+     * already submitted are not affected.
+     */
+    public void seekToPosition(long position)
+    {
+        checkArgument(position >= 0, "position must not be negative");
+        this.position = position;
+    }
+
+    /**
+     * Gets the number of requests that were submitted but did not complete yet.
+     */
+    public int getNumOutstandingRequests()
+    {
+        return maxOutstandingRequests - outstandingRequests.availablePermits();
+    }
+
+    /**
+     * Submits a request transferring the first bytes of the given segment, waiting while the
+     * maximal number of requests is in flight.
+     */
+    CompletableFuture<MemorySegment> submit(MemorySegment segment, int length, boolean write)
+            throws IOException
+    {
+        checkNotNull(segment, "segment is null");
+        checkArgument(length >= 0 && length <= segment.size(), "length must be in [0, %s]: %s", segment.size(), length);
+        checkErroneous();
+        if (closed) {
+            throw new IOException("channel has been closed");
+        }
+
+        try {
+            outstandingRequests.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for an outstanding request");
+        }
+
+        IORequest request = new IORequest(this, segment, position, length, write);
+        try {
+            ioManager.submit(ioThread, request);
+        }
+        catch (IOException | RuntimeException e) {
+            outstandingRequests.release();
+            throw e;
+        }
+        position += length;
+        return request.getFuture();
+    }
+
+    /**
+     * Called by the I/O thread after a request of this channel has completed, before its future
+     * is completed.
+     */
+    void requestDone(@Nullable IOException e)
+    {
+        if (e != null && error == null) {
+            error = e;
+        }
+        outstandingRequests.release();
+    }
+
+    /**
+     * Called by the I/O thread after the future of a request of this channel has been completed.
+     * A callback that throws must not stop the I/O thread, so its failure is recorded as the error
+     * of the channel, which fails the further requests and {@link #close()}.
+     */
+    void notifyCallback(MemorySegment segment, @Nullable IOException e)
+    {
+        if (callback == null) {
+            return;
+        }
+        try {
+            if (e == null) {
+                callback.requestSuccessful(segment);
+            }
+            else {
+                callback.requestFailed(segment, e);
+            }
+        }
+        catch (Throwable t) {
+            if (error == null) {
+                error = new IOException("request done callback failed", t);
+            }
+        }
+    }
+
+    private void checkErroneous()
+            throws IOException
+    {
+        IOException e = error;
+        if (e != null) {
+            throw new IOException("a previous request of the channel failed", e);
+        }
+    }
+
+    /**
+     * Waits for all outstanding requests to complete and closes the file channel.
+     *
+     * @throws IOException Thrown, if a request of the channel failed, or the file channel could
+     *     not be closed.
+     */
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            outstandingRequests.acquireUninterruptibly(maxOutstandingRequests);
+            outstandingRequests.release(maxOutstandingRequests);
+        }
+        finally {
+            fileChannel.close();
+        }
+        checkErroneous();
+    }
+}
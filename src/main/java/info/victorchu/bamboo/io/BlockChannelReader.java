@@ -0,0 +1,65 @@
+package info.victorchu.bamboo.io;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A channel that reads consecutive blocks of a file asynchronously into memory segments. Issuing
+ * several reads before consuming the first one reads the file ahead while the caller computes.
+ */
+public final class BlockChannelReader
+        extends AbstractBlockChannel
+{
+    BlockChannelReader(
+            IOManager ioManager,
+            IOManager.IOThread ioThread,
+            FileChannel fileChannel,
+            @Nullable RequestDoneCallback<MemorySegment> callback,
+            int maxOutstandingRequests)
+    {
+        super(ioManager, ioThread, fileChannel, callback, maxOutstandingRequests);
+    }
+
+    /**
+     * Reads the next block into the whole given segment. The request fails with an {@link
+     * java.io.EOFException}, if the file ends before the segment is filled.
+     *
+     * @param segment The segment to read into.
+     * @return A future completed with the segment once it has been filled.
+     * @throws IOException Thrown, if the channel is closed or erroneous.
+     */
+    public CompletableFuture<MemorySegment> readBlock(MemorySegment segment)
+            throws IOException
+    {
+        return readBlock(segment, segment.size());
+    }
+
+    /**
+     * Reads the next bytes of the file into the start of the given segment, typically for the
+     * last, shorter block of a file.
+     *
+     * @param segment The segment to read into.
+     * @param length The number of bytes to read.
+     * @return A future completed with the segment once it has been filled.
+     * @throws IOException Thrown, if the channel is closed or erroneous.
+     */
+    public CompletableFuture<MemorySegment> readBlock(MemorySegment segment, int length)
+            throws IOException
+    {
+        return submit(segment, length, false);
+    }
+
+    /**
+     * Gets the size of the file read by this channel.
+     */
+    public long getSize()
+            throws IOException
+    {
+        return getFileChannel().size();
+    }
+}
@@ -0,0 +1,55 @@
+package info.victorchu.bamboo.io;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A channel that writes memory segments asynchronously and back to back to a file. The segments
+ * must not be modified until their request has completed.
+ */
+public final class BlockChannelWriter
+        extends AbstractBlockChannel
+{
+    BlockChannelWriter(
+            IOManager ioManager,
+            IOManager.IOThread ioThread,
+            FileChannel fileChannel,
+            @Nullable RequestDoneCallback<MemorySegment> callback,
+            int maxOutstandingRequests)
+    {
+        super(ioManager, ioThread, fileChannel, callback, maxOutstandingRequests);
+    }
+
+    /**
+     * Writes the whole given segment after the previously written blocks.
+     *
+     * @param segment The segment to write.
+     * @return A future completed with the segment once it has been written.
+     * @throws IOException Thrown, if the channel is closed or erroneous.
+     */
+    public CompletableFuture<MemorySegment> writeBlock(MemorySegment segment)
+            throws IOException
+    {
+        return writeBlock(segment, segment.size());
+    }
+
+    /**
+     * Writes the first bytes of the given segment after the previously written blocks, typically
+     * for the last, partially filled block of a file.
+     *
+     * @param segment The segment to write.
+     * @param length The number of bytes to write from the start of the segment.
+     * @return A future completed with the segment once it has been written.
+     * @throws IOException Thrown, if the channel is closed or erroneous.
+     */
+    public CompletableFuture<MemorySegment> writeBlock(MemorySegment segment, int length)
+            throws IOException
+    {
+        return submit(segment, length, true);
+    }
+}
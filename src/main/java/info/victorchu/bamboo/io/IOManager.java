@@ -0,0 +1,225 @@
+package info.victorchu.bamboo.io;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+
+/**
+ * The I/O manager serves asynchronous read and write requests of memory segments with a fixed set
+ * of dedicated I/O threads, so that the threads producing and consuming the data can overlap their
+ * computation with the disk I/O.
+ *
+ * <p>Every channel created by the manager is bound to one I/O thread, assigned round-robin, which
+ * serves the requests of the channel in order. The requests transfer the segments with positional
+ * reads and writes, so the position of the file channel itself is never used.
+ *
+ * <p>Closing the manager stops the I/O threads. Requests that were not served until then fail.
+ */
+public class IOManager
+        implements AutoCloseable
+{
+    public static final int DEFAULT_NUM_IO_THREADS = 1;
+
+    public static final int DEFAULT_MAX_OUTSTANDING_REQUESTS = 4;
+
+    private static final IORequest SHUTDOWN_MARKER = new IORequest(null, null, 0, 0, false);
+
+    private final IOThread[] ioThreads;
+
+    private final int maxOutstandingRequestsPerChannel;
+
+    private final AtomicInteger nextThread = new AtomicInteger();
+
+    private volatile boolean shutdown;
+
+    public IOManager()
+    {
+        this(DEFAULT_NUM_IO_THREADS, DEFAULT_MAX_OUTSTANDING_REQUESTS);
+    }
+
+    /**
+     * Creates a new I/O manager and starts its I/O threads.
+     *
+     * @param numIOThreads The number of I/O threads, typically one per disk.
+     * @param maxOutstandingRequestsPerChannel The number of requests a channel may have in flight
+     *     before further requests block.
+     */
+    public IOManager(int numIOThreads, int maxOutstandingRequestsPerChannel)
+    {
+        checkArgument(numIOThreads > 0, "numIOThreads must be positive");
+        checkArgument(maxOutstandingRequestsPerChannel > 0, "maxOutstandingRequestsPerChannel must be positive");
+        this.maxOutstandingRequestsPerChannel = maxOutstandingRequestsPerChannel;
+        this.ioThreads = new IOThread[numIOThreads];
+        for (int i = 0; i < numIOThreads; i++) {
+            ioThreads[i] = new IOThread("bamboo-io-" + i);
+            ioThreads[i].start();
+        }
+    }
+
+    public BlockChannelWriter createBlockChannelWriter(FileChannel channel)
+            throws IOException
+    {
+        return createBlockChannelWriter(channel, null);
+    }
+
+    /**
+     * Creates a channel writing memory segments back to back to the given file channel, starting
+     * at position zero.
+     *
+     * @param channel The file channel to write to, which is closed with the returned channel.
+     * @param callback The callback run on the I/O thread after every request, may be null.
+     * @return The channel writer.
+     * @throws IOException Thrown, if the manager has been shut down.
+     */
+    public BlockChannelWriter createBlockChannelWriter(FileChannel channel, @Nullable RequestDoneCallback<MemorySegment> callback)
+            throws IOException
+    {
+        checkNotShutdown();
+        return new BlockChannelWriter(this, nextThread(), channel, callback, maxOutstandingRequestsPerChannel);
+    }
+
+    public BlockChannelReader createBlockChannelReader(FileChannel channel)
+            throws IOException
+    {
+        return createBlockChannelReader(channel, null);
+    }
+
+    /**
+     * Creates a channel reading consecutive blocks of the given file channel into memory segments,
+     * starting at position zero.
+     *
+     * @param channel The file channel to read from, which is closed with the returned channel.
+     * @param callback The callback run on the I/O thread after every request, may be null.
+     * @return The channel reader.
+     * @throws IOException Thrown, if the manager has been shut down.
+     */
+    public BlockChannelReader createBlockChannelReader(FileChannel channel, @Nullable RequestDoneCallback<MemorySegment> callback)
+            throws IOException
+    {
+        checkNotShutdown();
+        return new BlockChannelReader(this, nextThread(), channel, callback, maxOutstandingRequestsPerChannel);
+    }
+
+    private IOThread nextThread()
+    {
+        return ioThreads[Math.floorMod(nextThread.getAndIncrement(), ioThreads.length)];
+    }
+
+    private void checkNotShutdown()
+            throws IOException
+    {
+        if (shutdown) {
+            throw new IOException("I/O manager has been shut down");
+        }
+    }
+
+    void submit(IOThread thread, IORequest request)
+            throws IOException
+    {
+        checkNotShutdown();
+        thread.requests.add(request);
+        // the thread may have drained its queue concurrently to the shut down
+        if (shutdown && thread.requests.remove(request)) {
+            throw new IOException("I/O manager has been shut down");
+        }
+    }
+
+    public boolean isShutdown()
+    {
+        return shutdown;
+    }
+
+    /**
+     * Stops the I/O threads after they served the requests submitted so far, and waits for them
+     * to terminate.
+     */
+    @Override
+    public void close()
+    {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+
+        for (IOThread thread : ioThreads) {
+            thread.requests.add(SHUTDOWN_MARKER);
+        }
+        boolean interrupted = false;
+        for (IOThread thread : ioThreads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A thread serving the requests of its queue. The thread is never interrupted, since an
+     * interrupt during a transfer would close the file channel.
+     */
+    static final class IOThread
+            extends Thread
+    {
+        private final LinkedBlockingQueue<IORequest> requests = new LinkedBlockingQueue<>();
+
+        private IOThread(String name)
+        {
+            super(name);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run()
+        {
+            while (true) {
+                IORequest request;
+                try {
+                    request = requests.take();
+                }
+                catch (InterruptedException e) {
+                    continue;
+                }
+                if (request == SHUTDOWN_MARKER) {
+                    break;
+                }
+                try {
+                    request.execute();
+                }
+                catch (Throwable t) {
+                    // the thread serves the requests of other channels, so it must survive
+                    request.failIfIncomplete(t);
+                }
+            }
+
+            // fail the requests that raced with the shut down
+            List<IORequest> remaining = new ArrayList<>();
+            requests.drainTo(remaining);
+            for (IORequest request : remaining) {
+                if (request != SHUTDOWN_MARKER) {
+                    try {
+                        request.fail(new IOException("I/O manager has been shut down"));
+                    }
+                    catch (Throwable t) {
+                        request.failIfIncomplete(t);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package info.victorchu.bamboo.io;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A request to transfer a memory segment from or to a given position of a file channel, served by
+ * an I/O thread of the {@link IOManager}.
+ */
+final class IORequest
+{
+    private final AbstractBlockChannel channel;
+
+    private final MemorySegment segment;
+
+    private final long position;
+
+    private final int length;
+
+    private final boolean write;
+
+    private final CompletableFuture<MemorySegment> future = new CompletableFuture<>();
+
+    IORequest(AbstractBlockChannel channel, MemorySegment segment, long position, int length, boolean write)
+    {
+        this.channel = channel;
+        this.segment = segment;
+        this.position = position;
+        this.length = length;
+        this.write = write;
+    }
+
+    CompletableFuture<MemorySegment> getFuture()
+    {
+        return future;
+    }
+
+    /**
+     * Transfers the bytes. The segment is wrapped rather than copied, so for off-heap segments the
+     * channel reads and writes the segment memory directly.
+     */
+    void execute()
+    {
+        IOException error = null;
+        try {
+            FileChannel fileChannel = channel.getFileChannel();
+            ByteBuffer buffer = segment.wrap(0, length);
+            long current = position;
+            while (buffer.hasRemaining()) {
+                int transferred = write ? fileChannel.write(buffer, current) : fileChannel.read(buffer, current);
+                if (transferred < 0) {
+                    throw new EOFException("channel ended before the block was fully read");
+                }
+                current += transferred;
+            }
+        }
+        catch (IOException e) {
+            error = e;
+        }
+        catch (RuntimeException e) {
+            error = new IOException("I/O request failed", e);
+        }
+        complete(error);
+    }
+
+    void fail(IOException error)
+    {
+        complete(error);
+    }
+
+    /**
+     * Fails the request, if an unexpected error escaped before it was completed.
+     */
+    void failIfIncomplete(Throwable cause)
+    {
+        if (!future.isDone()) {
+            future.completeExceptionally(new IOException("I/O request failed", cause));
+        }
+    }
+
+    private void complete(IOException error)
+    {
+        try {
+            channel.requestDone(error);
+        }
+        finally {
+            // the future completes before the user callback runs, which may throw
+            if (error == null) {
+                future.complete(segment);
+            }
+            else {
+                future.completeExceptionally(error);
+            }
+        }
+        channel.notifyCallback(segment, error);
+    }
+}
@@ -0,0 +1,20 @@
+package info.victorchu.bamboo.io;
+
+import java.io.IOException;
+
+/**
+ * Callback to be executed by the I/O thread when an asynchronous I/O request has completed.
+ *
+ * <p>The callback runs on the I/O thread, so it must be short and must not block, otherwise it
+ * stalls all other requests served by the same thread. It runs after the future of the request
+ * has completed. An exception thrown by the callback marks the channel as erroneous, the thread
+ * keeps serving requests.
+ *
+ * @param <T> The type of the completed buffer.
+ */
+public interface RequestDoneCallback<T>
+{
+    void requestSuccessful(T buffer);
+
+    void requestFailed(T buffer, IOException e);
+}
@@ -0,0 +1,930 @@
+package info.victorchu.bamboo.join;
+
+import info.victorchu.bamboo.hash.BlockedBloomFilter;
+import info.victorchu.bamboo.memory.ChecksumAlgorithm;
+import info.victorchu.bamboo.memory.FileChannelInputView;
+import info.victorchu.bamboo.memory.FileChannelOutputView;
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.RandomAccessInputView;
+import info.victorchu.bamboo.memory.SimpleCollectingOutputView;
+import info.victorchu.bamboo.record.MutableObjectIterator;
+import info.victorchu.bamboo.record.RecordSerializer;
+import info.victorchu.bamboo.utils.MathUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+import static info.victorchu.bamboo.utils.Preconditions.checkState;
+
+/**
+ * An inner equi-join of two inputs that may be larger than its memory.
+ *
+ * <p>The records of the build side are hash partitioned on their binary keys into the pages of
+ * the join. Whenever the pages run out, the largest partition is spilled to a temporary file and
+ * all further build records of that partition are appended to the file, so the partitions that
+ * fit stay in memory. When the build side is consumed, the in-memory partitions are indexed by
+ * open addressing hash tables, and the probe side is streamed past them: probe records of
+ * in-memory partitions are joined right away, probe records of spilled partitions are written to
+ * a probe file of their partition. A bloom filter over the key hashes of every spilled build
+ * partition drops the probe records that cannot have a match before they are written.
+ *
+ * <p>The spilled partitions are then joined one after another, recursively re-partitioning them
+ * on the next bits of the key hashes. Once all hash bits are used up, which only happens for
+ * heavily skewed keys, a spilled partition is joined by loading as much of its build side as
+ * fits into memory and scanning its probe side once for every such chunk.
+ *
+ * <p>The records are kept in binary form, together with their binary key and its hash code. Build
+ * records are only deserialized for matches, probe records only once they have a match. Every
+ * page of a spill file is written with a {@link ChecksumAlgorithm#CRC32C} checksum, which is
+ * verified whenever the page is read back, before any of its entries is used.
+ *
+ * @param <B> The type of the records of the build side.
+ * @param <P> The type of the records of the probe side.
+ */
+public final class HybridHashJoin<B, P>
+        implements Closeable
+{
+    /** The maximum number of partitions the join partitions its inputs into by default. */
+    public static final int DEFAULT_MAX_PARTITIONS = 32;
+
+    /** The number of pages every spilled file is read ahead with. */
+    static final int READ_AHEAD_PAGES = 2;
+
+    /** The number of pages kept aside for the bloom filter and write buffer of the next spill. */
+    private static final int SPILL_RESERVE_PAGES = 2;
+
+    private static final String FILE_PREFIX = "bamboo-join-";
+
+    private static final String FILE_SUFFIX = ".spill";
+
+    private static final ChecksumAlgorithm CHECKSUM = ChecksumAlgorithm.CRC32C;
+
+    private final RecordSerializer<B> buildSerializer;
+
+    private final RecordSerializer<P> probeSerializer;
+
+    private final KeyExtractor<B> buildKeyExtractor;
+
+    private final KeyExtractor<P> probeKeyExtractor;
+
+    private final int pageSize;
+
+    private final int slotsPerPageBits;
+
+    private final File tempDirectory;
+
+    private final int numPartitions;
+
+    private final int partitionBits;
+
+    private final ArrayDeque<MemorySegment> freePages;
+
+    private final ArrayDeque<MemorySegment> spillReserve = new ArrayDeque<>();
+
+    private final Set<File> spillFiles = new LinkedHashSet<>();
+
+    private byte[] keyBuffer = new byte[64];
+
+    private int numSpilledPartitions;
+
+    private boolean closed;
+
+    public HybridHashJoin(
+            RecordSerializer<B> buildSerializer,
+            RecordSerializer<P> probeSerializer,
+            KeyExtractor<B> buildKeyExtractor,
+            KeyExtractor<P> probeKeyExtractor,
+            List<MemorySegment> memory,
+            File tempDirectory)
+    {
+        this(buildSerializer, probeSerializer, buildKeyExtractor, probeKeyExtractor, memory, tempDirectory, defaultNumPartitions(memory));
+    }
+
+    /**
+     * Creates a new hash join.
+     *
+     * @param buildSerializer The serializer for the records of the build side.
+     * @param probeSerializer The serializer for the records of the probe side.
+     * @param buildKeyExtractor The extractor of the keys of the build side.
+     * @param probeKeyExtractor The extractor of the keys of the probe side.
+     * @param memory The memory segments of the join, all of the same power of two size.
+     * @param tempDirectory The directory to spill partitions to.
+     * @param numPartitions The number of partitions per recursion level, a power of two.
+     */
+    public HybridHashJoin(
+            RecordSerializer<B> buildSerializer,
+            RecordSerializer<P> probeSerializer,
+            KeyExtractor<B> buildKeyExtractor,
+            KeyExtractor<P> probeKeyExtractor,
+            List<MemorySegment> memory,
+            File tempDirectory,
+            int numPartitions)
+    {
+        this.buildSerializer = checkNotNull(buildSerializer, "buildSerializer is null");
+        this.probeSerializer = checkNotNull(probeSerializer, "probeSerializer is null");
+        this.buildKeyExtractor = checkNotNull(buildKeyExtractor, "buildKeyExtractor is null");
+        this.probeKeyExtractor = checkNotNull(probeKeyExtractor, "probeKeyExtractor is null");
+        this.tempDirectory = checkNotNull(tempDirectory, "tempDirectory is null");
+        checkNotNull(memory, "memory is null");
+        checkArgument(numPartitions > 1 && MathUtils.isPowerOf2(numPartitions), "numPartitions must be a power of two larger than one");
+        // every partition may hold a bloom filter page and a write buffer page when it is spilled,
+        // while the in-memory partitions hold at most two pages each when there is nothing left to
+        // spill; a recursive pass additionally reads its input file
+        checkArgument(memory.size() >= minPages(numPartitions),
+                "the hash join requires at least %s memory segments for %s partitions", minPages(numPartitions), numPartitions);
+
+        this.pageSize = memory.get(0).size();
+        checkArgument(MathUtils.isPowerOf2(pageSize) && pageSize >= 64, "the size of the memory segments must be a power of two of at least 64 bytes");
+        for (MemorySegment segment : memory) {
+            checkArgument(segment.size() == pageSize, "All memory segments must have the same size.");
+        }
+        this.slotsPerPageBits = MathUtils.log2strict(pageSize >>> 3);
+        this.freePages = new ArrayDeque<>(memory);
+        this.numPartitions = numPartitions;
+        this.partitionBits = MathUtils.log2strict(numPartitions);
+    }
+
+    private static int minPages(int numPartitions)
+    {
+        return 4 * numPartitions + SPILL_RESERVE_PAGES + READ_AHEAD_PAGES;
+    }
+
+    private static int defaultNumPartitions(List<MemorySegment> memory)
+    {
+        int max = (checkNotNull(memory, "memory is null").size() - SPILL_RESERVE_PAGES - READ_AHEAD_PAGES) / 4;
+        return Math.max(2, Math.min(DEFAULT_MAX_PARTITIONS, max < 1 ? 1 : Integer.highestOneBit(max)));
+    }
+
+    /**
+     * Joins the given inputs, calling the join function for every pair of records with equal keys.
+     * The memory of the join is free again when the method returns, so the join may be used for
+     * several pairs of inputs.
+     *
+     * @param buildInput The build side, preferably the smaller input.
+     * @param probeInput The probe side.
+     * @param joinFunction The function called for every joined pair.
+     * @throws IOException Thrown, if partitions could not be spilled or read, if the inputs or the
+     *     join function failed, or if a single record is larger than the memory of the join.
+     */
+    public void join(MutableObjectIterator<B> buildInput, MutableObjectIterator<P> probeInput, JoinFunction<B, P> joinFunction)
+            throws IOException
+    {
+        checkState(!closed, "hash join has been closed");
+        checkNotNull(buildInput, "buildInput is null");
+        checkNotNull(probeInput, "probeInput is null");
+        checkNotNull(joinFunction, "joinFunction is null");
+
+        List<Partition> partitions = buildPhase(new InputSource<>(buildInput, buildSerializer, buildKeyExtractor), 0);
+        try {
+            probePhase(partitions, new InputSource<>(probeInput, probeSerializer, probeKeyExtractor), 0, joinFunction);
+        }
+        finally {
+            release(partitions);
+        }
+        joinSpilledPartitions(partitions, 0, joinFunction);
+    }
+
+    /**
+     * Gets the number of partitions spilled to disk so far, over all recursion levels.
+     */
+    public int getNumSpilledPartitions()
+    {
+        return numSpilledPartitions;
+    }
+
+    // ------------------------------------------------------------------------
+    //  Passes
+    // ------------------------------------------------------------------------
+
+    private List<Partition> buildPhase(RecordSource<B> source, int level)
+            throws IOException
+    {
+        List<Partition> partitions = new ArrayList<>(numPartitions);
+        for (int i = 0; i < numPartitions; i++) {
+            partitions.add(new Partition());
+        }
+        refillSpillReserve();
+
+        boolean success = false;
+        try {
+            JoinEntry entry = new JoinEntry();
+            while (source.next(entry)) {
+                Partition partition = partitions.get(partition(entry.hash(), level));
+                if (!partition.isSpilled()) {
+                    if (partition.buildBytes() + entry.size() >= Integer.MAX_VALUE) {
+                        // the index addresses the entries of a partition with int offsets
+                        spill(partition);
+                    }
+                    while (!partition.isSpilled() && freePages.size() < partition.pagesNeeded(entry.size())) {
+                        if (!spillLargestPartition(partitions, SPILL_RESERVE_PAGES + 1)) {
+                            throw new IOException("not enough memory to partition the build side of the hash join");
+                        }
+                    }
+                }
+                partition.append(entry);
+            }
+
+            for (Partition partition : partitions) {
+                if (partition.isSpilled()) {
+                    partition.closeSpillOutput();
+                }
+            }
+            // the index pages come from the same memory, so partitions may have to be spilled for them
+            while (freePages.size() < indexPagesNeeded(partitions)) {
+                Partition victim = largestInMemoryPartition(partitions, 1);
+                checkState(victim != null, "no partition left to spill");
+                spill(victim);
+                victim.closeSpillOutput();
+            }
+            success = true;
+            return partitions;
+        }
+        finally {
+            freePages.addAll(spillReserve);
+            spillReserve.clear();
+            if (!success) {
+                release(partitions);
+            }
+        }
+    }
+
+    private void probePhase(List<Partition> partitions, RecordSource<P> source, int level, JoinFunction<B, P> joinFunction)
+            throws IOException
+    {
+        for (Partition partition : partitions) {
+            if (partition.isSpilled()) {
+                partition.openProbeOutput();
+            }
+            else if (partition.buildCount > 0) {
+                partition.buildIndex(indexRotation(level));
+            }
+        }
+
+        JoinEntry entry = new JoinEntry();
+        while (source.next(entry)) {
+            Partition partition = partitions.get(partition(entry.hash(), level));
+            if (partition.isSpilled()) {
+                partition.spillProbe(entry);
+            }
+            else if (partition.buildCount > 0) {
+                partition.probe(entry, source, joinFunction);
+            }
+        }
+
+        for (Partition partition : partitions) {
+            if (partition.isSpilled()) {
+                partition.closeProbeOutput();
+            }
+        }
+    }
+
+    private void joinSpilledPartitions(List<Partition> partitions, int level, JoinFunction<B, P> joinFunction)
+            throws IOException
+    {
+        for (Partition partition : partitions) {
+            if (!partition.isSpilled()) {
+                continue;
+            }
+            if (partition.buildCount > 0 && partition.probeCount > 0) {
+                if ((level + 2) * partitionBits > Integer.SIZE) {
+                    chunkedJoin(partition, level + 1, joinFunction);
+                }
+                else {
+                    recursiveJoin(partition, level + 1, joinFunction);
+                }
+            }
+            delete(partition.buildFile);
+            delete(partition.probeFile);
+        }
+    }
+
+    /**
+     * Joins a spilled partition by re-partitioning it on the next bits of the key hashes.
+     */
+    private void recursiveJoin(Partition spilled, int level, JoinFunction<B, P> joinFunction)
+            throws IOException
+    {
+        List<Partition> partitions;
+        List<MemorySegment> readAheadPages = takePages(READ_AHEAD_PAGES);
+        try {
+            try (FileSource<B> build = new FileSource<>(spilled.buildFile, spilled.buildCount, readAheadPages, buildSerializer)) {
+                partitions = buildPhase(build, level);
+            }
+            try (FileSource<P> probe = new FileSource<>(spilled.probeFile, spilled.probeCount, readAheadPages, probeSerializer)) {
+                probePhase(partitions, probe, level, joinFunction);
+            }
+            finally {
+                release(partitions);
+            }
+        }
+        finally {
+            freePages.addAll(readAheadPages);
+        }
+        // all memory is free again, the next level starts from the files only
+        joinSpilledPartitions(partitions, level, joinFunction);
+    }
+
+    /**
+     * Joins a spilled partition whose keys cannot be partitioned any further, by loading chunks of
+     * its build side that fit into memory and scanning its probe side once for every chunk.
+     */
+    private void chunkedJoin(Partition spilled, int level, JoinFunction<B, P> joinFunction)
+            throws IOException
+    {
+        List<MemorySegment> buildReadAhead = takePages(READ_AHEAD_PAGES);
+        List<MemorySegment> probeReadAhead = takePages(READ_AHEAD_PAGES);
+        try (FileSource<B> build = new FileSource<>(spilled.buildFile, spilled.buildCount, buildReadAhead, buildSerializer)) {
+            JoinEntry entry = new JoinEntry();
+            JoinEntry probeEntry = new JoinEntry();
+            boolean pending = build.next(entry);
+            while (pending) {
+                Partition chunk = new Partition();
+                try {
+                    while (pending) {
+                        int needed = chunk.pagesNeeded(entry.size()) + indexPages(chunk.buildCount + 1);
+                        if (freePages.size() < needed || chunk.buildBytes() + entry.size() >= Integer.MAX_VALUE) {
+                            if (chunk.buildCount == 0) {
+                                throw new IOException("record is larger than the memory of the hash join");
+                            }
+                            break;
+                        }
+                        chunk.append(entry);
+                        pending = build.next(entry);
+                    }
+
+                    chunk.buildIndex(indexRotation(level));
+                    try (FileSource<P> probe = new FileSource<>(spilled.probeFile, spilled.probeCount, probeReadAhead, probeSerializer)) {
+                        while (probe.next(probeEntry)) {
+                            chunk.probe(probeEntry, probe, joinFunction);
+                        }
+                    }
+                }
+                finally {
+                    chunk.release();
+                }
+            }
+        }
+        finally {
+            freePages.addAll(buildReadAhead);
+            freePages.addAll(probeReadAhead);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //  Memory and spilling
+    // ------------------------------------------------------------------------
+
+    private int partition(int hash, int level)
+    {
+        return (hash >>> (level * partitionBits)) & (numPartitions - 1);
+    }
+
+    /**
+     * The index of a partition uses the hash bits above the bits that selected the partition.
+     */
+    private int indexRotation(int level)
+    {
+        return (level + 1) * partitionBits;
+    }
+
+    private int indexPages(long numEntries)
+    {
+        // a load factor of at most 0.75 keeps the probe sequences short
+        long slots = Math.max(numEntries + numEntries / 3 + 1, 1L << slotsPerPageBits);
+        checkState(slots <= 1 << 30, "too many entries for one partition");
+        return MathUtils.roundUpToPowerOfTwo((int) slots) >>> slotsPerPageBits;
+    }
+
+    private int indexPagesNeeded(List<Partition> partitions)
+    {
+        int pages = 0;
+        for (Partition partition : partitions) {
+            if (!partition.isSpilled() && partition.buildCount > 0) {
+                pages += indexPages(partition.buildCount);
+            }
+        }
+        return pages;
+    }
+
+    private List<MemorySegment> takePages(int count)
+    {
+        checkState(freePages.size() >= count, "not enough free memory segments");
+        List<MemorySegment> pages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pages.add(freePages.pollFirst());
+        }
+        return pages;
+    }
+
+    private void refillSpillReserve()
+    {
+        while (spillReserve.size() < SPILL_RESERVE_PAGES && !freePages.isEmpty()) {
+            spillReserve.addLast(freePages.pollFirst());
+        }
+    }
+
+    private MemorySegment takeSpillPage()
+            throws IOException
+    {
+        MemorySegment page = spillReserve.pollFirst();
+        if (page == null) {
+            page = freePages.pollFirst();
+        }
+        if (page == null) {
+            throw new IOException("not enough memory to spill a partition of the hash join");
+        }
+        return page;
+    }
+
+    private Partition largestInMemoryPartition(List<Partition> partitions, int minPages)
+    {
+        Partition largest = null;
+        for (Partition partition : partitions) {
+            if (!partition.isSpilled() && partition.pages.size() >= minPages
+                    && (largest == null || partition.pages.size() > largest.pages.size())) {
+                largest = partition;
+            }
+        }
+        return largest;
+    }
+
+    private boolean spillLargestPartition(List<Partition> partitions, int minPages)
+            throws IOException
+    {
+        Partition victim = largestInMemoryPartition(partitions, minPages);
+        if (victim == null) {
+            return false;
+        }
+        spill(victim);
+        return true;
+    }
+
+    private void spill(Partition partition)
+            throws IOException
+    {
+        MemorySegment bloomPage = takeSpillPage();
+        partition.bloomPage = bloomPage;
+        partition.bufferPage = takeSpillPage();
+        partition.bloomFilter = BlockedBloomFilter.create(bloomPage, 0, bloomPage.size());
+        partition.buildFile = createSpillFile();
+        numSpilledPartitions++;
+
+        partition.spillOutput = new FileChannelOutputView(openForWrite(partition.buildFile), partition.bufferPage, CHECKSUM);
+        partition.spillPages();
+        refillSpillReserve();
+    }
+
+    private void release(List<Partition> partitions)
+            throws IOException
+    {
+        IOException exception = null;
+        for (Partition partition : partitions) {
+            try {
+                partition.release();
+            }
+            catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+                else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private File createSpillFile()
+            throws IOException
+    {
+        File file = File.createTempFile(FILE_PREFIX, FILE_SUFFIX, tempDirectory);
+        spillFiles.add(file);
+        return file;
+    }
+
+    private static FileChannel openForWrite(File file)
+            throws IOException
+    {
+        return FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private void delete(File file)
+            throws IOException
+    {
+        if (file != null) {
+            spillFiles.remove(file);
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /**
+     * Deletes all spilled files that are left over from a failed join. The memory segments are not
+     * released and may be reused by the caller afterwards.
+     *
+     * @throws IOException Thrown, if a file could not be deleted.
+     */
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        IOException exception = null;
+        for (File file : spillFiles) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            }
+            catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+                else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        spillFiles.clear();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private boolean keyEquals(RandomAccessInputView view, int keyLength, JoinEntry probe)
+            throws IOException
+    {
+        if (keyLength != probe.keyLength()) {
+            return false;
+        }
+        if (keyBuffer.length < keyLength) {
+            keyBuffer = new byte[MathUtils.roundUpToPowerOfTwo(keyLength)];
+        }
+        view.readFully(keyBuffer, 0, keyLength);
+        byte[] probeKey = probe.keyBytes();
+        for (int i = 0; i < keyLength; i++) {
+            if (keyBuffer[i] != probeKey[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * One hash partition of the build side, either in memory or spilled. The entries of an
+     * in-memory partition are appended to its pages and indexed by a hash table of 8 byte slots
+     * holding the hash code of the key and the offset of the entry plus one, so that zero marks
+     * an empty slot.
+     */
+    private final class Partition
+    {
+        private final List<MemorySegment> pages = new ArrayList<>();
+
+        private SimpleCollectingOutputView buildOutput;
+
+        private long buildCount;
+
+        private MemorySegment[] indexPages;
+
+        private int slotMask;
+
+        private int rotation;
+
+        private RandomAccessInputView reader;
+
+        private File buildFile;
+
+        private MemorySegment bloomPage;
+
+        private BlockedBloomFilter bloomFilter;
+
+        private MemorySegment bufferPage;
+
+        private FileChannelOutputView spillOutput;
+
+        private File probeFile;
+
+        private FileChannelOutputView probeOutput;
+
+        private long probeCount;
+
+        boolean isSpilled()
+        {
+            return buildFile != null;
+        }
+
+        long buildBytes()
+        {
+            return buildOutput == null ? 0 : buildOutput.getCurrentOffset();
+        }
+
+        /** Gets the number of pages to add to the partition for an entry of the given size. */
+        int pagesNeeded(int size)
+        {
+            int remaining = buildOutput == null ? 0 : pageSize - buildOutput.getCurrentPositionInSegment();
+            return size <= remaining ? 0 : (size - remaining + pageSize - 1) / pageSize;
+        }
+
+        void append(JoinEntry entry)
+                throws IOException
+        {
+            if (isSpilled()) {
+                bloomFilter.add(entry.hash());
+                entry.writeTo(spillOutput);
+            }
+            else {
+                if (buildOutput == null) {
+                    buildOutput = new SimpleCollectingOutputView(pages, freePages::pollFirst, pageSize);
+                }
+                entry.writeTo(buildOutput);
+            }
+            buildCount++;
+        }
+
+        /**
+         * Writes the pages of the partition to the spill output, adds the hash codes of their
+         * entries to the bloom filter and releases the pages.
+         */
+        void spillPages()
+                throws IOException
+        {
+            if (pages.isEmpty()) {
+                return;
+            }
+            int limitInLastPage = buildOutput.getCurrentPositionInSegment();
+            for (int i = 0; i < pages.size(); i++) {
+                int length = i < pages.size() - 1 ? pageSize : limitInLastPage;
+                spillOutput.write(pages.get(i), 0, length);
+            }
+
+            RandomAccessInputView view = new RandomAccessInputView(pages, pageSize, limitInLastPage);
+            for (long i = 0; i < buildCount; i++) {
+                bloomFilter.add(view.readInt());
+                int keyLength = view.readInt();
+                int recordLength = view.readInt();
+                view.skipBytesToRead(keyLength + recordLength);
+            }
+            freePages.addAll(pages);
+            pages.clear();
+            buildOutput = null;
+        }
+
+        void closeSpillOutput()
+                throws IOException
+        {
+            FileChannelOutputView output = spillOutput;
+            spillOutput = null;
+            if (output != null) {
+                output.close();
+            }
+        }
+
+        void openProbeOutput()
+                throws IOException
+        {
+            probeFile = createSpillFile();
+            probeOutput = new FileChannelOutputView(openForWrite(probeFile), bufferPage, CHECKSUM);
+        }
+
+        void spillProbe(JoinEntry entry)
+                throws IOException
+        {
+            if (bloomFilter.mightContain(entry.hash())) {
+                entry.writeTo(probeOutput);
+                probeCount++;
+            }
+        }
+
+        void closeProbeOutput()
+                throws IOException
+        {
+            FileChannelOutputView output = probeOutput;
+            probeOutput = null;
+            if (output != null) {
+                output.close();
+            }
+        }
+
+        void buildIndex(int rotation)
+                throws IOException
+        {
+            int numIndexPages = indexPages(buildCount);
+            this.indexPages = new MemorySegment[numIndexPages];
+            for (int i = 0; i < numIndexPages; i++) {
+                MemorySegment page = freePages.pollFirst();
+                checkState(page != null, "not enough free memory segments for the index");
+                for (int offset = 0; offset < pageSize; offset += 8) {
+                    page.putLong(offset, 0L);
+                }
+                indexPages[i] = page;
+            }
+            this.slotMask = (numIndexPages << slotsPerPageBits) - 1;
+            this.rotation = rotation;
+
+            reader = new RandomAccessInputView(pages, pageSize, buildOutput.getCurrentPositionInSegment());
+            long offset = 0;
+            for (long i = 0; i < buildCount; i++) {
+                int hash = reader.readInt();
+                int keyLength = reader.readInt();
+                int recordLength = reader.readInt();
+                reader.skipBytesToRead(keyLength + recordLength);
+
+                int slot = Integer.rotateRight(hash, rotation) & slotMask;
+                while (getSlot(slot) != 0) {
+                    slot = (slot + 1) & slotMask;
+                }
+                setSlot(slot, ((long) hash << 32) | (offset + 1));
+                offset += JoinEntry.HEADER_LENGTH + keyLength + recordLength;
+            }
+        }
+
+        void probe(JoinEntry entry, RecordSource<P> source, JoinFunction<B, P> joinFunction)
+                throws IOException
+        {
+            int hash = entry.hash();
+            P probeRecord = null;
+            int slot = Integer.rotateRight(hash, rotation) & slotMask;
+            long value;
+            while ((value = getSlot(slot)) != 0) {
+                if ((int) (value >>> 32) == hash) {
+                    reader.setReadPosition((value & 0xffffffffL) - 1 + 4);
+                    int keyLength = reader.readInt();
+                    reader.readInt();
+                    if (keyEquals(reader, keyLength, entry)) {
+                        B buildRecord = buildSerializer.deserialize(reader);
+                        if (probeRecord == null) {
+                            probeRecord = source.record(entry);
+                        }
+                        joinFunction.join(buildRecord, probeRecord);
+                    }
+                }
+                slot = (slot + 1) & slotMask;
+            }
+        }
+
+        private long getSlot(int slot)
+        {
+            return indexPages[slot >>> slotsPerPageBits].getLong((slot & ((1 << slotsPerPageBits) - 1)) << 3);
+        }
+
+        private void setSlot(int slot, long value)
+        {
+            indexPages[slot >>> slotsPerPageBits].putLong((slot & ((1 << slotsPerPageBits) - 1)) << 3, value);
+        }
+
+        /**
+         * Returns all memory of the partition and closes its open files. The files themselves are
+         * kept for the recursive join.
+         */
+        void release()
+                throws IOException
+        {
+            freePages.addAll(pages);
+            pages.clear();
+            buildOutput = null;
+            reader = null;
+            if (indexPages != null) {
+                for (MemorySegment page : indexPages) {
+                    freePages.addLast(page);
+                }
+                indexPages = null;
+            }
+            try {
+                closeSpillOutput();
+            }
+            finally {
+                try {
+                    closeProbeOutput();
+                }
+                finally {
+                    if (bloomPage != null) {
+                        freePages.addLast(bloomPage);
+                        bloomPage = null;
+                        bloomFilter = null;
+                    }
+                    if (bufferPage != null) {
+                        freePages.addLast(bufferPage);
+                        bufferPage = null;
+                    }
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * A source of join entries, which can also provide the record of the current entry.
+     */
+    private interface RecordSource<T>
+    {
+        boolean next(JoinEntry entry)
+                throws IOException;
+
+        T record(JoinEntry entry)
+                throws IOException;
+    }
+
+    private static final class InputSource<T>
+            implements RecordSource<T>
+    {
+        private final MutableObjectIterator<T> input;
+
+        private final RecordSerializer<T> serializer;
+
+        private final KeyExtractor<T> keyExtractor;
+
+        private T current;
+
+        private InputSource(MutableObjectIterator<T> input, RecordSerializer<T> serializer, KeyExtractor<T> keyExtractor)
+        {
+            this.input = input;
+            this.serializer = serializer;
+            this.keyExtractor = keyExtractor;
+        }
+
+        @Override
+        public boolean next(JoinEntry entry)
+                throws IOException
+        {
+            current = input.next();
+            if (current == null) {
+                return false;
+            }
+            entry.set(current, serializer, keyExtractor);
+            return true;
+        }
+
+        @Override
+        public T record(JoinEntry entry)
+        {
+            return current;
+        }
+    }
+
+    private static final class FileSource<T>
+            implements RecordSource<T>, Closeable
+    {
+        private final FileChannelInputView view;
+
+        private final RecordSerializer<T> serializer;
+
+        private long remaining;
+
+        private FileSource(File file, long numEntries, List<MemorySegment> readAheadPages, RecordSerializer<T> serializer)
+                throws IOException
+        {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                this.view = new FileChannelInputView(channel, readAheadPages, CHECKSUM);
+            }
+            catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            this.serializer = serializer;
+            this.remaining = numEntries;
+        }
+
+        @Override
+        public boolean next(JoinEntry entry)
+                throws IOException
+        {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            entry.readFrom(view);
+            return true;
+        }
+
+        @Override
+        public T record(JoinEntry entry)
+                throws IOException
+        {
+            return entry.deserializeRecord(serializer);
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            view.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package info.victorchu.bamboo.join;
+
+import info.victorchu.bamboo.memory.DataInputDeserializer;
+import info.victorchu.bamboo.memory.DataInputView;
+import info.victorchu.bamboo.memory.DataOutputSerializer;
+import info.victorchu.bamboo.memory.DataOutputView;
+import info.victorchu.bamboo.record.RecordSerializer;
+import info.victorchu.bamboo.utils.ByteUtils;
+
+import java.io.IOException;
+
+/**
+ * A reusable holder for one record of a join input in binary form, together with its binary key
+ * and the hash code of the key. The entries are stored and spilled as {@code [int hash][int key
+ * length][int record length][key bytes][record bytes]}, so partitions can be re-partitioned and
+ * matched without deserializing the records.
+ */
+final class JoinEntry
+{
+    static final int HEADER_LENGTH = 12;
+
+    private final DataOutputSerializer key = new DataOutputSerializer(64);
+
+    private final DataOutputSerializer record = new DataOutputSerializer(256);
+
+    private final DataInputDeserializer recordInput = new DataInputDeserializer();
+
+    private int hash;
+
+    /**
+     * Sets this entry to the given record.
+     */
+    <T> void set(T value, RecordSerializer<T> serializer, KeyExtractor<T> keyExtractor)
+            throws IOException
+    {
+        key.clear();
+        keyExtractor.writeKey(value, key);
+        record.clear();
+        serializer.serialize(value, record);
+
+        hash = ByteUtils.hash(key.getSharedBuffer(), 0, key.length());
+    }
+
+    /**
+     * Sets this entry to the next entry of the given input.
+     */
+    void readFrom(DataInputView source)
+            throws IOException
+    {
+        hash = source.readInt();
+        int keyLength = source.readInt();
+        int recordLength = source.readInt();
+        key.clear();
+        key.write(source, keyLength);
+        record.clear();
+        record.write(source, recordLength);
+    }
+
+    void writeTo(DataOutputView target)
+            throws IOException
+    {
+        target.writeInt(hash);
+        target.writeInt(key.length());
+        target.writeInt(record.length());
+        target.write(key.getSharedBuffer(), 0, key.length());
+        target.write(record.getSharedBuffer(), 0, record.length());
+    }
+
+    <T> T deserializeRecord(RecordSerializer<T> serializer)
+            throws IOException
+    {
+        recordInput.setBuffer(record.getSharedBuffer(), 0, record.length());
+        return serializer.deserialize(recordInput);
+    }
+
+    int hash()
+    {
+        return hash;
+    }
+
+    byte[] keyBytes()
+    {
+        return key.getSharedBuffer();
+    }
+
+    int keyLength()
+    {
+        return key.length();
+    }
+
+    /** Gets the number of bytes of the entry in its stored form. */
+    int size()
+    {
+        return HEADER_LENGTH + key.length() + record.length();
+    }
+}
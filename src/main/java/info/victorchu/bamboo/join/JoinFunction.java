@@ -0,0 +1,23 @@
+package info.victorchu.bamboo.join;
+
+import java.io.IOException;
+
+/**
+ * The function called for every pair of joined records.
+ *
+ * @param <B> The type of the records of the build side.
+ * @param <P> The type of the records of the probe side.
+ */
+public interface JoinFunction<B, P>
+{
+    /**
+     * Processes a pair of records with equal keys. The records may be reused by the join after
+     * the call returns.
+     *
+     * @param build The record of the build side.
+     * @param probe The record of the probe side.
+     * @throws IOException Thrown, if the pair could not be processed.
+     */
+    void join(B build, P probe)
+            throws IOException;
+}
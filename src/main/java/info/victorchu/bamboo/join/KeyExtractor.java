@@ -0,0 +1,24 @@
+package info.victorchu.bamboo.join;
+
+import info.victorchu.bamboo.memory.DataOutputView;
+
+import java.io.IOException;
+
+/**
+ * Extracts the join key of a record in binary form. Two records join if and only if their binary
+ * keys are equal, so both inputs of a join must write equal keys in the same format.
+ *
+ * @param <T> The type of the records.
+ */
+public interface KeyExtractor<T>
+{
+    /**
+     * Writes the join key of the given record to the given target.
+     *
+     * @param record The record.
+     * @param target The output view to write the key to.
+     * @throws IOException Thrown, if the target could not be written.
+     */
+    void writeKey(T record, DataOutputView target)
+            throws IOException;
+}
@@ -0,0 +1,60 @@
+package info.victorchu.bamboo.memory;
+
+/**
+ * The checksums that are computed directly over the memory of segments, see {@link
+ * MemorySegment#checksum(int, int, ChecksumAlgorithm)}.
+ */
+public enum ChecksumAlgorithm
+{
+    /** The CRC32 of {@link java.util.zip.CRC32}, intrinsified by all JVMs. */
+    CRC32 {
+        @Override
+        public SegmentChecksum newChecksum()
+        {
+            return new Crc32Checksum();
+        }
+    },
+
+    /**
+     * The CRC32C (Castagnoli) checksum, computed by {@code java.util.zip.CRC32C} where the JVM
+     * has it, and by a table driven fallback before Java 9.
+     */
+    CRC32C {
+        @Override
+        public SegmentChecksum newChecksum()
+        {
+            return new Crc32cChecksum();
+        }
+    },
+
+    /** The 64 bit xxHash with seed zero, computed eight bytes at a time. */
+    XXHASH64 {
+        @Override
+        public SegmentChecksum newChecksum()
+        {
+            return new XxHash64(0);
+        }
+
+        @Override
+        long checksum(MemorySegment segment, int offset, int length)
+        {
+            return XxHash64.hash(segment, offset, length, 0);
+        }
+    };
+
+    /** A checksum per thread for the one-shot checksums, so they create no objects. */
+    private final ThreadLocal<SegmentChecksum> cachedChecksum = ThreadLocal.withInitial(this::newChecksum);
+
+    /**
+     * Creates a new streaming checksum of this algorithm.
+     */
+    public abstract SegmentChecksum newChecksum();
+
+    long checksum(MemorySegment segment, int offset, int length)
+    {
+        SegmentChecksum checksum = cachedChecksum.get();
+        checksum.reset();
+        checksum.update(segment, offset, length);
+        return checksum.getValue();
+    }
+}
@@ -0,0 +1,279 @@
+package info.victorchu.bamboo.memory;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * An input view that reads from another view and updates a checksum with every byte it reads or
+ * skips, to verify a stream written through a {@link ChecksumOutputView}.
+ *
+ * <p>Primitive values are read from the source as they are, and their encoded bytes are collected
+ * in a buffer that updates the checksum with whole ranges, like the output view does.
+ */
+public class ChecksumInputView
+        implements DataInputView
+{
+    private static final int BUFFER_SIZE = ChecksumOutputView.BUFFER_SIZE;
+
+    /** Reads shorter than this are collected in the buffer, longer ones are checksummed directly. */
+    private static final int DIRECT_THRESHOLD = 64;
+
+    private final DataInputView source;
+
+    private final SegmentChecksum checksum;
+
+    private final MemorySegment buffer = MemorySegments.allocate(BUFFER_SIZE);
+
+    private int bufferLength;
+
+    /**
+     * Creates a new view reading from the given source.
+     *
+     * @param source The view to read from.
+     * @param checksum The checksum to update with the read bytes.
+     */
+    public ChecksumInputView(DataInputView source, SegmentChecksum checksum)
+    {
+        this.source = checkNotNull(source, "source is null");
+        this.checksum = checkNotNull(checksum, "checksum is null");
+    }
+
+    /**
+     * Gets the checksum of the bytes read so far.
+     */
+    public SegmentChecksum getChecksum()
+    {
+        updateChecksum();
+        return checksum;
+    }
+
+    /**
+     * Checks the checksum of the bytes read so far against the expected one.
+     *
+     * @param expected The checksum of the bytes when they were written.
+     * @throws IOException Thrown, if the checksums differ.
+     */
+    public void verify(long expected)
+            throws IOException
+    {
+        long actual = getChecksum().getValue();
+        if (actual != expected) {
+            throw new IOException("Checksum mismatch: expected " + Long.toHexString(expected) + ", but got " + Long.toHexString(actual) + ".");
+        }
+    }
+
+    /** Reserves space for a value in the buffer and returns its offset. */
+    private int reserve(int length)
+    {
+        if (bufferLength + length > BUFFER_SIZE) {
+            updateChecksum();
+        }
+        int offset = bufferLength;
+        bufferLength += length;
+        return offset;
+    }
+
+    private void updateChecksum()
+    {
+        if (bufferLength > 0) {
+            checksum.update(buffer, 0, bufferLength);
+            bufferLength = 0;
+        }
+    }
+
+    private void record(byte[] b, int off, int len)
+    {
+        if (len < DIRECT_THRESHOLD) {
+            buffer.put(reserve(len), b, off, len);
+        }
+        else {
+            updateChecksum();
+            checksum.update(b, off, len);
+        }
+    }
+
+    @Override
+    public int read(byte[] b)
+            throws IOException
+    {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+            throws IOException
+    {
+        int read = source.read(b, off, len);
+        if (read > 0) {
+            record(b, off, read);
+        }
+        return read;
+    }
+
+    @Override
+    public void readFully(byte[] b)
+            throws IOException
+    {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len)
+            throws IOException
+    {
+        source.readFully(b, off, len);
+        record(b, off, len);
+    }
+
+    @Override
+    public boolean readBoolean()
+            throws IOException
+    {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte()
+            throws IOException
+    {
+        byte value = source.readByte();
+        buffer.put(reserve(1), value);
+        return value;
+    }
+
+    @Override
+    public int readUnsignedByte()
+            throws IOException
+    {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public short readShort()
+            throws IOException
+    {
+        short value = source.readShort();
+        buffer.putShortBigEndian(reserve(2), value);
+        return value;
+    }
+
+    @Override
+    public int readUnsignedShort()
+            throws IOException
+    {
+        return readShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar()
+            throws IOException
+    {
+        char value = source.readChar();
+        buffer.putCharBigEndian(reserve(2), value);
+        return value;
+    }
+
+    @Override
+    public int readInt()
+            throws IOException
+    {
+        int value = source.readInt();
+        buffer.putIntBigEndian(reserve(4), value);
+        return value;
+    }
+
+    @Override
+    public long readLong()
+            throws IOException
+    {
+        long value = source.readLong();
+        buffer.putLongBigEndian(reserve(8), value);
+        return value;
+    }
+
+    @Override
+    public float readFloat()
+            throws IOException
+    {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble()
+            throws IOException
+    {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    @Override
+    public String readLine()
+            throws IOException
+    {
+        int b;
+        try {
+            b = readUnsignedByte();
+        }
+        catch (EOFException eof) {
+            return null;
+        }
+
+        // read until a newline is found
+        StringBuilder bld = new StringBuilder(32);
+        while (b != '\n') {
+            bld.append((char) b);
+            try {
+                b = readUnsignedByte();
+            }
+            catch (EOFException eof) {
+                break;
+            }
+        }
+
+        // trim a trailing carriage return
+        int len = bld.length();
+        if (len > 0 && bld.charAt(len - 1) == '\r') {
+            bld.setLength(len - 1);
+        }
+        return bld.toString();
+    }
+
+    @Override
+    public String readUTF()
+            throws IOException
+    {
+        int utflen = readUnsignedShort();
+        byte[] bytes = new byte[utflen];
+        readFully(bytes, 0, utflen);
+        return Utf8.decodeModified(bytes, 0, utflen, new char[utflen]);
+    }
+
+    @Override
+    public int skipBytes(int n)
+            throws IOException
+    {
+        updateChecksum();
+        // the buffer is empty, so it serves as the read buffer
+        byte[] bytes = buffer.getArray();
+        int skipped = 0;
+        while (skipped < n) {
+            int read = source.read(bytes, 0, Math.min(n - skipped, BUFFER_SIZE));
+            if (read <= 0) {
+                break;
+            }
+            checksum.update(buffer, 0, read);
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public void skipBytesToRead(int numBytes)
+            throws IOException
+    {
+        if (skipBytes(numBytes) < numBytes) {
+            throw new EOFException("Could not skip " + numBytes + " bytes.");
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package info.victorchu.bamboo.memory;
+
+import java.io.IOException;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * An output view that passes everything written to it on to another view and updates a checksum
+ * with the written bytes, so the checksum matches a {@link ChecksumInputView} reading the same
+ * stream.
+ *
+ * <p>Primitive values are written to the target as they are, and their encoded bytes are collected
+ * in a buffer that updates the checksum with {@link #BUFFER_SIZE} bytes at a time, so the checksum
+ * is computed over whole ranges rather than value by value. Segments and larger arrays update the
+ * checksum in place. Skipped bytes are written as zeros, so they are covered by the checksum too.
+ */
+public class ChecksumOutputView
+        implements DataOutputView, MemorySegmentWritable
+{
+    /** The number of bytes of small values collected before the checksum is updated. */
+    static final int BUFFER_SIZE = 4096;
+
+    /** Writes shorter than this are collected in the buffer, longer ones are checksummed directly. */
+    private static final int DIRECT_THRESHOLD = 64;
+
+    private static final byte[] ZEROS = new byte[512];
+
+    private final DataOutputView target;
+
+    private final SegmentChecksum checksum;
+
+    private final MemorySegment buffer = MemorySegments.allocate(BUFFER_SIZE);
+
+    private int bufferLength;
+
+    /** encodes strings before they are checksummed and written. */
+    private final DataOutputSerializer scratch = new DataOutputSerializer(16);
+
+    /**
+     * Creates a new view writing to the given target.
+     *
+     * @param target The view to write to.
+     * @param checksum The checksum to update with the written bytes.
+     */
+    public ChecksumOutputView(DataOutputView target, SegmentChecksum checksum)
+    {
+        this.target = checkNotNull(target, "target is null");
+        this.checksum = checkNotNull(checksum, "checksum is null");
+    }
+
+    /**
+     * Gets the checksum of the bytes written so far.
+     */
+    public SegmentChecksum getChecksum()
+    {
+        updateChecksum();
+        return checksum;
+    }
+
+    /** Reserves space for a value in the buffer and returns its offset. */
+    private int reserve(int length)
+    {
+        if (bufferLength + length > BUFFER_SIZE) {
+            updateChecksum();
+        }
+        int offset = bufferLength;
+        bufferLength += length;
+        return offset;
+    }
+
+    private void updateChecksum()
+    {
+        if (bufferLength > 0) {
+            checksum.update(buffer, 0, bufferLength);
+            bufferLength = 0;
+        }
+    }
+
+    @Override
+    public void write(int b)
+            throws IOException
+    {
+        target.write(b);
+        buffer.put(reserve(1), (byte) b);
+    }
+
+    @Override
+    public void write(byte[] b)
+            throws IOException
+    {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len)
+            throws IOException
+    {
+        target.write(b, off, len);
+        if (len < DIRECT_THRESHOLD) {
+            buffer.put(reserve(len), b, off, len);
+        }
+        else {
+            updateChecksum();
+            checksum.update(b, off, len);
+        }
+    }
+
+    @Override
+    public void write(MemorySegment segment, int off, int len)
+            throws IOException
+    {
+        updateChecksum();
+        checksum.update(segment, off, len);
+        if (target instanceof MemorySegmentWritable) {
+            ((MemorySegmentWritable) target).write(segment, off, len);
+        }
+        else {
+            // the buffer is empty, so it serves as the copy buffer
+            byte[] bytes = buffer.getArray();
+            while (len > 0) {
+                int count = Math.min(len, BUFFER_SIZE);
+                segment.get(off, bytes, 0, count);
+                target.write(bytes, 0, count);
+                off += count;
+                len -= count;
+            }
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean v)
+            throws IOException
+    {
+        write(v ? 1 : 0);
+    }
+
+    @Override
+    public void writeByte(int v)
+            throws IOException
+    {
+        write(v);
+    }
+
+    @Override
+    public void writeShort(int v)
+            throws IOException
+    {
+        target.writeShort(v);
+        buffer.putShortBigEndian(reserve(2), (short) v);
+    }
+
+    @Override
+    public void writeChar(int v)
+            throws IOException
+    {
+        target.writeChar(v);
+        buffer.putCharBigEndian(reserve(2), (char) v);
+    }
+
+    @Override
+    public void writeInt(int v)
+            throws IOException
+    {
+        target.writeInt(v);
+        buffer.putIntBigEndian(reserve(4), v);
+    }
+
+    @Override
+    public void writeLong(long v)
+            throws IOException
+    {
+        target.writeLong(v);
+        buffer.putLongBigEndian(reserve(8), v);
+    }
+
+    @Override
+    public void writeFloat(float v)
+            throws IOException
+    {
+        writeInt(Float.floatToIntBits(v));
+    }
+
+    @Override
+    public void writeDouble(double v)
+            throws IOException
+    {
+        writeLong(Double.doubleToLongBits(v));
+    }
+
+    @Override
+    public void writeBytes(String s)
+            throws IOException
+    {
+        scratch.writeBytes(s);
+        writeScratch();
+    }
+
+    @Override
+    public void writeChars(String s)
+            throws IOException
+    {
+        scratch.writeChars(s);
+        writeScratch();
+    }
+
+    @Override
+    public void writeUTF(String s)
+            throws IOException
+    {
+        scratch.writeUTF(s);
+        writeScratch();
+    }
+
+    private void writeScratch()
+            throws IOException
+    {
+        write(scratch.getSharedBuffer(), 0, scratch.length());
+        scratch.clear();
+    }
+
+    /**
+     * Writes the given number of zero bytes, as the checksum must cover the skipped bytes with a
+     * value the reader sees as well. Unlike in a paged view, the skipped bytes cannot be written
+     * later.
+     */
+    @Override
+    public void skipBytesToWrite(int numBytes)
+            throws IOException
+    {
+        while (numBytes > 0) {
+            int count = Math.min(numBytes, ZEROS.length);
+            write(ZEROS, 0, count);
+            numBytes -= count;
+        }
+    }
+
+    @Override
+    public void write(DataInputView source, int numBytes)
+            throws IOException
+    {
+        updateChecksum();
+        // the buffer is empty, so it serves as the copy buffer
+        byte[] bytes = buffer.getArray();
+        while (numBytes > 0) {
+            int count = Math.min(numBytes, BUFFER_SIZE);
+            source.readFully(bytes, 0, count);
+            checksum.update(buffer, 0, count);
+            target.write(bytes, 0, count);
+            numBytes -= count;
+        }
+    }
+}
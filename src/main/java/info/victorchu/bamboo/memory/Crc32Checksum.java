@@ -0,0 +1,43 @@
+package info.victorchu.bamboo.memory;
+
+import java.util.zip.CRC32;
+
+/**
+ * A {@link SegmentChecksum} of {@link CRC32}, which reads heap and off-heap segments in place
+ * through a buffer wrapping their memory.
+ */
+final class Crc32Checksum
+        implements SegmentChecksum
+{
+    private final CRC32 crc = new CRC32();
+
+    @Override
+    public void update(MemorySegment segment, int offset, int length)
+    {
+        crc.update(segment.wrap(offset, length));
+    }
+
+    @Override
+    public void update(int b)
+    {
+        crc.update(b);
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len)
+    {
+        crc.update(b, off, len);
+    }
+
+    @Override
+    public long getValue()
+    {
+        return crc.getValue();
+    }
+
+    @Override
+    public void reset()
+    {
+        crc.reset();
+    }
+}
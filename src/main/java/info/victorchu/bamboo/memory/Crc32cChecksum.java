@@ -0,0 +1,175 @@
+package info.victorchu.bamboo.memory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * A {@link SegmentChecksum} of CRC32C. On Java 9 and later the checksum is computed by {@code
+ * java.util.zip.CRC32C}, which the JVM implements with the CRC32 instructions of the CPU, on a
+ * buffer wrapping the memory of the segment. The class is found reflectively, as it does not exist
+ * in Java 8, where a slicing-by-8 table implementation reads the segment eight bytes at a time.
+ */
+final class Crc32cChecksum
+        implements SegmentChecksum
+{
+    /** The reversed Castagnoli polynomial. */
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    /** Eight tables of 256 entries, the first one is the plain byte-wise table. */
+    private static final int[] TABLE = createTable();
+
+    private static final MethodHandle NEW_JDK_CRC32C;
+
+    private static final MethodHandle UPDATE_JDK_CRC32C;
+
+    static {
+        MethodHandle constructor = null;
+        MethodHandle update = null;
+        try {
+            Class<?> clazz = Class.forName("java.util.zip.CRC32C");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            constructor = lookup.findConstructor(clazz, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Checksum.class));
+            update = lookup.findVirtual(clazz, "update", MethodType.methodType(void.class, ByteBuffer.class))
+                    .asType(MethodType.methodType(void.class, Checksum.class, ByteBuffer.class));
+        }
+        catch (ReflectiveOperationException e) {
+            // before Java 9, the table implementation is used
+        }
+        NEW_JDK_CRC32C = constructor;
+        UPDATE_JDK_CRC32C = update;
+    }
+
+    private final Checksum jdkChecksum;
+
+    private int crc = 0xFFFFFFFF;
+
+    Crc32cChecksum()
+    {
+        this(true);
+    }
+
+    Crc32cChecksum(boolean useJdk)
+    {
+        this.jdkChecksum = useJdk && NEW_JDK_CRC32C != null ? newJdkChecksum() : null;
+    }
+
+    private static int[] createTable()
+    {
+        int[] table = new int[8 * 256];
+        for (int i = 0; i < 256; i++) {
+            int value = i;
+            for (int bit = 0; bit < 8; bit++) {
+                value = (value & 1) != 0 ? (value >>> 1) ^ POLYNOMIAL : value >>> 1;
+            }
+            table[i] = value;
+        }
+        for (int i = 256; i < table.length; i++) {
+            int previous = table[i - 256];
+            table[i] = (previous >>> 8) ^ table[previous & 0xFF];
+        }
+        return table;
+    }
+
+    private static Checksum newJdkChecksum()
+    {
+        try {
+            return (Checksum) NEW_JDK_CRC32C.invokeExact();
+        }
+        catch (RuntimeException | Error e) {
+            throw e;
+        }
+        catch (Throwable t) {
+            throw new IllegalStateException("Could not create a CRC32C checksum.", t);
+        }
+    }
+
+    @Override
+    public void update(MemorySegment segment, int offset, int length)
+    {
+        if (jdkChecksum != null) {
+            ByteBuffer buffer = segment.wrap(offset, length);
+            try {
+                UPDATE_JDK_CRC32C.invokeExact(jdkChecksum, buffer);
+            }
+            catch (RuntimeException | Error e) {
+                throw e;
+            }
+            catch (Throwable t) {
+                throw new IllegalStateException("Could not update a CRC32C checksum.", t);
+            }
+            return;
+        }
+
+        if ((offset | length | (segment.size() - offset - length)) < 0) {
+            throw new IndexOutOfBoundsException(
+                    String.format("offset: %s, length: %s, segment size: %s", offset, length, segment.size()));
+        }
+        int[] table = TABLE;
+        int value = crc;
+        int end = offset + length;
+        for (; offset <= end - 8; offset += 8) {
+            long bytes = segment.getLongLittleEndian(offset);
+            int low = (int) bytes ^ value;
+            int high = (int) (bytes >>> 32);
+            value = table[7 * 256 + (low & 0xFF)]
+                    ^ table[6 * 256 + ((low >>> 8) & 0xFF)]
+                    ^ table[5 * 256 + ((low >>> 16) & 0xFF)]
+                    ^ table[4 * 256 + (low >>> 24)]
+                    ^ table[3 * 256 + (high & 0xFF)]
+                    ^ table[2 * 256 + ((high >>> 8) & 0xFF)]
+                    ^ table[256 + ((high >>> 16) & 0xFF)]
+                    ^ table[high >>> 24];
+        }
+        for (; offset < end; offset++) {
+            value = (value >>> 8) ^ table[(value ^ segment.get(offset)) & 0xFF];
+        }
+        crc = value;
+    }
+
+    @Override
+    public void update(int b)
+    {
+        if (jdkChecksum != null) {
+            jdkChecksum.update(b);
+        }
+        else {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xFF];
+        }
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len)
+    {
+        if (jdkChecksum != null) {
+            jdkChecksum.update(b, off, len);
+            return;
+        }
+        if ((off | len | (b.length - off - len)) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        int value = crc;
+        for (int i = off; i < off + len; i++) {
+            value = (value >>> 8) ^ TABLE[(value ^ b[i]) & 0xFF];
+        }
+        crc = value;
+    }
+
+    @Override
+    public long getValue()
+    {
+        return jdkChecksum != null ? jdkChecksum.getValue() : ~crc & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset()
+    {
+        if (jdkChecksum != null) {
+            jdkChecksum.reset();
+        }
+        crc = 0xFFFFFFFF;
+    }
+}
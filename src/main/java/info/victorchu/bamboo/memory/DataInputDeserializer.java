@@ -8,10 +8,13 @@ import java.io.IOException;
 import java.io.UTFDataFormatException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 public class DataInputDeserializer implements DataInputView, java.io.Serializable {
 
     private static final byte[] EMPTY = new byte[0];
+    private static final int MAX_RETAINED_CHARS = 64 * 1024;
     private static final long serialVersionUID = 1L;
 
     // ------------------------------------------------------------------------
@@ -22,6 +25,14 @@ public class DataInputDeserializer implements DataInputView, java.io.Serializabl
 
     private int position;
 
+    /** The scratch array for decoding strings that are not ASCII. */
+    private transient char[] chars;
+
+    /** The strings of the string dictionary by id, or null until the first string is remembered. */
+    private transient String[] dictionary;
+
+    private transient int dictionarySize;
+
     // ------------------------------------------------------------------------
 
     public DataInputDeserializer() {
@@ -222,7 +233,7 @@ public class DataInputDeserializer implements DataInputView, java.io.Serializabl
     @Nonnull
     @Override
     public String readUTF() throws IOException {
-        return readString(readUnsignedShort());
+        return readModifiedUTF(readUnsignedShort());
     }
 
     /**
@@ -236,80 +247,376 @@ public class DataInputDeserializer implements DataInputView, java.io.Serializabl
      *     encoding of a string.
      */
     public String readLongUTF() throws IOException {
-        return readString(readInt());
+        return readModifiedUTF(readInt());
+    }
+
+    /**
+     * Reads a string written by {@link DataOutputSerializer#writeString(String)}. The string is
+     * decoded directly from the buffer; ASCII strings are created without any intermediate array.
+     *
+     * @return the string.
+     * @throws EOFException if the buffer ends within the string.
+     * @throws UTFDataFormatException if the bytes are not valid UTF-8.
+     */
+    public String readString() throws IOException {
+        return readUtf8(readVarInt());
+    }
+
+    /**
+     * Reads a string written by {@link DataOutputSerializer#writeDictionaryString(String)}.
+     * Strings that were read before in the scope of the string dictionary are returned as the same
+     * instance, without decoding them again. The stream tells which strings to remember, so no
+     * configuration is needed to read it.
+     *
+     * @return the string.
+     * @throws EOFException if the buffer ends within the string.
+     * @throws UTFDataFormatException if the bytes are not valid UTF-8.
+     * @throws IOException if the string refers to an unknown id of the string dictionary.
+     */
+    public String readDictionaryString() throws IOException {
+        final int tag = readVarInt();
+        if ((tag & 1) != 0) {
+            final int id = tag >>> 1;
+            if (id >= this.dictionarySize) {
+                throw new IOException("Unknown string dictionary id: " + id);
+            }
+            return this.dictionary[id];
+        }
+        final String string = readUtf8(tag >>> 2);
+        if ((tag & 2) != 0) {
+            if (this.dictionary == null) {
+                this.dictionary = new String[64];
+            } else if (this.dictionarySize == this.dictionary.length) {
+                this.dictionary = Arrays.copyOf(this.dictionary, this.dictionarySize * 2);
+            }
+            this.dictionary[this.dictionarySize++] = string;
+        }
+        return string;
+    }
+
+    private String readUtf8(int utflen) throws IOException {
+        checkStringAvailable(utflen);
+        final String string;
+        if (Utf8.isAscii(this.buffer, this.position, utflen)) {
+            string = new String(this.buffer, this.position, utflen, StandardCharsets.ISO_8859_1);
+        } else {
+            string = Utf8.decode(this.buffer, this.position, utflen, getCharBuffer(utflen));
+        }
+        this.position += utflen;
+        return string;
+    }
+
+    /**
+     * Forgets all remembered strings, which starts a new scope of the string dictionary. Must be
+     * called at the same point of the stream as {@link DataOutputSerializer#resetStringDictionary()}.
+     */
+    public void resetStringDictionary() {
+        if (this.dictionary != null) {
+            Arrays.fill(this.dictionary, 0, this.dictionarySize, null);
+            this.dictionarySize = 0;
+        }
+    }
+
+    private String readModifiedUTF(int utflen) throws IOException {
+        checkStringAvailable(utflen);
+        final String string;
+        if (Utf8.isAscii(this.buffer, this.position, utflen)) {
+            string = new String(this.buffer, this.position, utflen, StandardCharsets.ISO_8859_1);
+        } else {
+            string = Utf8.decodeModified(this.buffer, this.position, utflen, getCharBuffer(utflen));
+        }
+        this.position += utflen;
+        return string;
+    }
+
+    private void checkStringAvailable(int utflen) throws IOException {
+        if (utflen < 0) {
+            throw new UTFDataFormatException("Negative string length: " + utflen);
+        }
+        if (this.position > this.end - utflen) {
+            throw new EOFException();
+        }
+    }
+
+    /**
+     * Gets a scratch array for decoding a string of the given number of bytes. Arrays of
+     * moderate size are kept for the next string, larger ones are not retained.
+     */
+    private char[] getCharBuffer(int utflen) {
+        if (utflen > MAX_RETAINED_CHARS) {
+            return new char[utflen];
+        }
+        char[] chars = this.chars;
+        if (chars == null || chars.length < utflen) {
+            chars = new char[Math.max(utflen, 64)];
+            this.chars = chars;
+        }
+        return chars;
+    }
+
+    // ----------------------------------------------------------------------------------------
+    //                               Primitive arrays
+    // ----------------------------------------------------------------------------------------
+
+    // The following methods read a range of a primitive array written by the corresponding
+    // methods of DataOutputSerializer, with a single bounds check for the whole range.
+
+    public void readShorts(short[] target, int off, int len) throws IOException {
+        readArray(target, SHORT_ARRAY_BASE_OFFSET, target.length, off, len, 1, LITTLE_ENDIAN);
+    }
+
+    public void readShortsLittleEndian(short[] target, int off, int len) throws IOException {
+        readArray(target, SHORT_ARRAY_BASE_OFFSET, target.length, off, len, 1, !LITTLE_ENDIAN);
+    }
+
+    public void readChars(char[] target, int off, int len) throws IOException {
+        readArray(target, CHAR_ARRAY_BASE_OFFSET, target.length, off, len, 1, LITTLE_ENDIAN);
+    }
+
+    public void readCharsLittleEndian(char[] target, int off, int len) throws IOException {
+        readArray(target, CHAR_ARRAY_BASE_OFFSET, target.length, off, len, 1, !LITTLE_ENDIAN);
+    }
+
+    public void readInts(int[] target, int off, int len) throws IOException {
+        readArray(target, INT_ARRAY_BASE_OFFSET, target.length, off, len, 2, LITTLE_ENDIAN);
+    }
+
+    public void readIntsLittleEndian(int[] target, int off, int len) throws IOException {
+        readArray(target, INT_ARRAY_BASE_OFFSET, target.length, off, len, 2, !LITTLE_ENDIAN);
+    }
+
+    public void readLongs(long[] target, int off, int len) throws IOException {
+        readArray(target, LONG_ARRAY_BASE_OFFSET, target.length, off, len, 3, LITTLE_ENDIAN);
+    }
+
+    public void readLongsLittleEndian(long[] target, int off, int len) throws IOException {
+        readArray(target, LONG_ARRAY_BASE_OFFSET, target.length, off, len, 3, !LITTLE_ENDIAN);
+    }
+
+    public void readFloats(float[] target, int off, int len) throws IOException {
+        readArray(target, FLOAT_ARRAY_BASE_OFFSET, target.length, off, len, 2, LITTLE_ENDIAN);
+    }
+
+    public void readFloatsLittleEndian(float[] target, int off, int len) throws IOException {
+        readArray(target, FLOAT_ARRAY_BASE_OFFSET, target.length, off, len, 2, !LITTLE_ENDIAN);
+    }
+
+    public void readDoubles(double[] target, int off, int len) throws IOException {
+        readArray(target, DOUBLE_ARRAY_BASE_OFFSET, target.length, off, len, 3, LITTLE_ENDIAN);
+    }
+
+    public void readDoublesLittleEndian(double[] target, int off, int len) throws IOException {
+        readArray(target, DOUBLE_ARRAY_BASE_OFFSET, target.length, off, len, 3, !LITTLE_ENDIAN);
+    }
+
+    @SuppressWarnings("restriction")
+    private void readArray(
+            Object target, long arrayBaseOffset, int arrayLength, int off, int len, int shift, boolean swapBytes)
+            throws IOException {
+        checkBatchBounds(arrayLength, off, len);
+        long numBytes = ((long) len) << shift;
+        if (this.position < 0 || this.position > this.end - numBytes) {
+            throw new EOFException();
+        }
+        MemoryUtils.copyPrimitives(
+                this.buffer,
+                BASE_OFFSET + this.position,
+                target,
+                arrayBaseOffset + (((long) off) << shift),
+                numBytes,
+                1 << shift,
+                swapBytes);
+        this.position += (int) numBytes;
+    }
+
+    // ----------------------------------------------------------------------------------------
+    //                               Variable-length integers
+    // ----------------------------------------------------------------------------------------
+
+    /**
+     * Reads an int written by {@link DataOutputSerializer#writeVarInt(int)}.
+     *
+     * @return the int value.
+     * @throws EOFException if the buffer ends within the value.
+     * @throws IOException if the value is longer than five bytes.
+     */
+    public int readVarInt() throws IOException {
+        if (this.end - this.position >= DataOutputSerializer.MAX_VAR_INT_SIZE) {
+            return readVarIntUnchecked();
+        }
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed variable-length int.");
+    }
+
+    /**
+     * Reads a long written by {@link DataOutputSerializer#writeVarLong(long)}.
+     *
+     * @return the long value.
+     * @throws EOFException if the buffer ends within the value.
+     * @throws IOException if the value is longer than ten bytes.
+     */
+    public long readVarLong() throws IOException {
+        if (this.end - this.position >= DataOutputSerializer.MAX_VAR_LONG_SIZE) {
+            return readVarLongUnchecked();
+        }
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed variable-length long.");
+    }
+
+    /**
+     * Reads an int written by {@link DataOutputSerializer#writeZigZagInt(int)}.
+     *
+     * @return the int value.
+     * @throws IOException if the value could not be read.
+     */
+    public int readZigZagInt() throws IOException {
+        return zigZagDecode(readVarInt());
+    }
+
+    /**
+     * Reads a long written by {@link DataOutputSerializer#writeZigZagLong(long)}.
+     *
+     * @return the long value.
+     * @throws IOException if the value could not be read.
+     */
+    public long readZigZagLong() throws IOException {
+        return zigZagDecode(readVarLong());
+    }
+
+    /**
+     * Reads values written by {@link DataOutputSerializer#writeVarInts(int[], int, int)} into a
+     * range of an int array.
+     *
+     * @param target the array to read into.
+     * @param off the offset of the first value.
+     * @param len the number of values to read.
+     * @throws IOException if the values could not be read.
+     */
+    public void readVarInts(int[] target, int off, int len) throws IOException {
+        checkBatchBounds(target.length, off, len);
+        for (int i = off; i < off + len; i++) {
+            target[i] = readVarInt();
+        }
+    }
+
+    /**
+     * Reads values written by {@link DataOutputSerializer#writeVarLongs(long[], int, int)} into a
+     * range of a long array.
+     *
+     * @param target the array to read into.
+     * @param off the offset of the first value.
+     * @param len the number of values to read.
+     * @throws IOException if the values could not be read.
+     */
+    public void readVarLongs(long[] target, int off, int len) throws IOException {
+        checkBatchBounds(target.length, off, len);
+        for (int i = off; i < off + len; i++) {
+            target[i] = readVarLong();
+        }
     }
 
-    private String readString(int utflen) throws IOException {
-        byte[] bytearr = new byte[utflen];
-        char[] chararr = new char[utflen];
+    /**
+     * Reads values written by {@link DataOutputSerializer#writeZigZagInts(int[], int, int)} into a
+     * range of an int array.
+     *
+     * @param target the array to read into.
+     * @param off the offset of the first value.
+     * @param len the number of values to read.
+     * @throws IOException if the values could not be read.
+     */
+    public void readZigZagInts(int[] target, int off, int len) throws IOException {
+        checkBatchBounds(target.length, off, len);
+        for (int i = off; i < off + len; i++) {
+            target[i] = zigZagDecode(readVarInt());
+        }
+    }
 
-        int c, char2, char3;
-        int count = 0;
-        int chararrCount = 0;
+    /**
+     * Reads values written by {@link DataOutputSerializer#writeZigZagLongs(long[], int, int)} into
+     * a range of a long array.
+     *
+     * @param target the array to read into.
+     * @param off the offset of the first value.
+     * @param len the number of values to read.
+     * @throws IOException if the values could not be read.
+     */
+    public void readZigZagLongs(long[] target, int off, int len) throws IOException {
+        checkBatchBounds(target.length, off, len);
+        for (int i = off; i < off + len; i++) {
+            target[i] = zigZagDecode(readVarLong());
+        }
+    }
 
-        readFully(bytearr, 0, utflen);
+    private static void checkBatchBounds(int arrayLength, int off, int len) {
+        if (len < 0 || off < 0 || off > arrayLength - len) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+    }
+
+    static int zigZagDecode(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
 
-        while (count < utflen) {
-            c = (int) bytearr[count] & 0xff;
-            if (c > 127) {
-                break;
+    static long zigZagDecode(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Decodes a variable-length int without bounds checks, for when the longest encoding is
+     * known to be available.
+     */
+    @SuppressWarnings("restriction")
+    private int readVarIntUnchecked() throws IOException {
+        long address = BASE_OFFSET + this.position;
+        int b = UNSAFE.getByte(this.buffer, address++);
+        if (b >= 0) {
+            this.position++;
+            return b;
+        }
+        int result = b & 0x7F;
+        for (int shift = 7; shift < 32; shift += 7) {
+            b = UNSAFE.getByte(this.buffer, address++);
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                this.position = (int) (address - BASE_OFFSET);
+                return result;
             }
-            count++;
-            chararr[chararrCount++] = (char) c;
-        }
-
-        while (count < utflen) {
-            c = (int) bytearr[count] & 0xff;
-            switch (c >> 4) {
-                case 0:
-                case 1:
-                case 2:
-                case 3:
-                case 4:
-                case 5:
-                case 6:
-                case 7:
-                    /* 0xxxxxxx */
-                    count++;
-                    chararr[chararrCount++] = (char) c;
-                    break;
-                case 12:
-                case 13:
-                    /* 110x xxxx 10xx xxxx */
-                    count += 2;
-                    if (count > utflen) {
-                        throw new UTFDataFormatException(
-                                "malformed input: partial character at end");
-                    }
-                    char2 = (int) bytearr[count - 1];
-                    if ((char2 & 0xC0) != 0x80) {
-                        throw new UTFDataFormatException("malformed input around byte " + count);
-                    }
-                    chararr[chararrCount++] = (char) (((c & 0x1F) << 6) | (char2 & 0x3F));
-                    break;
-                case 14:
-                    /* 1110 xxxx 10xx xxxx 10xx xxxx */
-                    count += 3;
-                    if (count > utflen) {
-                        throw new UTFDataFormatException(
-                                "malformed input: partial character at end");
-                    }
-                    char2 = (int) bytearr[count - 2];
-                    char3 = (int) bytearr[count - 1];
-                    if (((char2 & 0xC0) != 0x80) || ((char3 & 0xC0) != 0x80)) {
-                        throw new UTFDataFormatException(
-                                "malformed input around byte " + (count - 1));
-                    }
-                    chararr[chararrCount++] =
-                            (char) (((c & 0x0F) << 12) | ((char2 & 0x3F) << 6) | (char3 & 0x3F));
-                    break;
-                default:
-                    /* 10xx xxxx, 1111 xxxx */
-                    throw new UTFDataFormatException("malformed input around byte " + count);
+        }
+        throw new IOException("Malformed variable-length int.");
+    }
+
+    @SuppressWarnings("restriction")
+    private long readVarLongUnchecked() throws IOException {
+        long address = BASE_OFFSET + this.position;
+        long b = UNSAFE.getByte(this.buffer, address++);
+        if (b >= 0) {
+            this.position++;
+            return b;
+        }
+        long result = b & 0x7F;
+        for (int shift = 7; shift < 64; shift += 7) {
+            b = UNSAFE.getByte(this.buffer, address++);
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                this.position = (int) (address - BASE_OFFSET);
+                return result;
             }
         }
-        // The number of chars produced may be less than utflen
-        return new String(chararr, 0, chararrCount);
+        throw new IOException("Malformed variable-length long.");
     }
 
     @Override
@@ -398,6 +705,24 @@ public class DataInputDeserializer implements DataInputView, java.io.Serializabl
     @SuppressWarnings("restriction")
     private static final long BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
 
+    @SuppressWarnings("restriction")
+    private static final long SHORT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(short[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long CHAR_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(char[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long INT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(int[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long LONG_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(long[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long FLOAT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(float[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long DOUBLE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(double[].class);
+
     private static final boolean LITTLE_ENDIAN =
             (MemoryUtils.NATIVE_BYTE_ORDER == ByteOrder.LITTLE_ENDIAN);
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import java.io.UTFDataFormatException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.HashMap;
 
 public class DataOutputSerializer implements DataOutputView, MemorySegmentWritable {
 
@@ -17,6 +18,11 @@ public class DataOutputSerializer implements DataOutputView, MemorySegmentWritab
 
     private ByteBuffer wrapper;
 
+    /** The ids of the strings in the string dictionary, or null if the dictionary is disabled. */
+    private HashMap<String, Integer> stringIds;
+
+    private int maxDictionaryEntries;
+
     // ------------------------------------------------------------------------
 
     public DataOutputSerializer(int startSize) {
@@ -129,14 +135,16 @@ public class DataOutputSerializer implements DataOutputView, MemorySegmentWritab
     @Override
     public void writeBytes(String s) throws IOException {
         final int sLen = s.length();
-        if (this.position >= this.buffer.length - sLen) {
+        if (this.position > this.buffer.length - sLen) {
             resize(sLen);
         }
 
+        final byte[] buffer = this.buffer;
+        int position = this.position;
         for (int i = 0; i < sLen; i++) {
-            writeByte(s.charAt(i));
+            buffer[position++] = (byte) s.charAt(i);
         }
-        this.position += sLen;
+        this.position = position;
     }
 
     @Override
@@ -213,28 +221,19 @@ public class DataOutputSerializer implements DataOutputView, MemorySegmentWritab
 
     @Override
     public void writeUTF(String str) throws IOException {
-        int strlen = str.length();
-        int utflen = 0;
-        int c;
-
-        /* use charAt instead of copying String to char array */
-        for (int i = 0; i < strlen; i++) {
-            c = str.charAt(i);
-            utflen += getUTFBytesSize(c);
-        }
+        // encode right away and patch the length in afterwards, instead of sizing the string first
+        final int start = this.position;
+        ensureStringCapacity(str.length(), 2);
+        this.position = start + 2;
+        writeUTFBytes(str);
 
+        final int utflen = this.position - start - 2;
         if (utflen > 65535) {
+            this.position = start;
             throw new UTFDataFormatException("Encoded string is too long: " + utflen);
-        } else if (this.position > this.buffer.length - utflen - 2) {
-            resize(utflen + 2);
         }
-
-        byte[] bytearr = this.buffer;
-
-        bytearr[this.position++] = (byte) ((utflen >>> 8) & 0xFF);
-        bytearr[this.position++] = (byte) (utflen & 0xFF);
-
-        writeUTFBytes(str);
+        this.buffer[start] = (byte) ((utflen >>> 8) & 0xFF);
+        this.buffer[start + 1] = (byte) (utflen & 0xFF);
     }
 
     /**
@@ -245,30 +244,416 @@ public class DataOutputSerializer implements DataOutputView, MemorySegmentWritab
      * @throws IOException if an I/O error occurs.
      */
     public void writeLongUTF(String str) throws IOException {
-        int strlen = str.length();
-        long utflen = 0;
-        int c;
+        final int start = this.position;
+        ensureStringCapacity(str.length(), 4);
+        this.position = start + 4;
+        writeUTFBytes(str);
 
-        /* use charAt instead of copying String to char array */
-        for (int i = 0; i < strlen; i++) {
-            c = str.charAt(i);
-            utflen += getUTFBytesSize(c);
+        writeIntUnsafe(this.position - start - 4, start);
+    }
 
-            if (utflen > Integer.MAX_VALUE) {
-                throw new UTFDataFormatException(
-                        "Encoded string reached maximum length: " + utflen);
-            }
+    /**
+     * Writes a string as standard UTF-8, prefixed with its length in bytes in the variable-length
+     * format of {@link #writeVarInt(int)}. Unlike {@link #writeUTF(String)}, the length of the
+     * string is only limited by the maximum array size, and short strings take a single byte of
+     * length. The string is encoded in a single pass.
+     *
+     * @param str the string value to be written.
+     * @throws IOException if the buffer could not be resized.
+     * @see Utf8#encode(String, byte[], int)
+     */
+    public void writeString(String str) throws IOException {
+        writeUtf8(str, 0, 0);
+    }
+
+    /**
+     * Writes a string like {@link #writeString(String)}, but through the string dictionary: a
+     * string that was written before in the scope of the dictionary is replaced by its id in the
+     * dictionary. The string must be read with {@link DataInputDeserializer#readDictionaryString()}.
+     *
+     * <p>The prefix of a string written by this method is tagged, so the stream describes itself:
+     * it is either the id of a remembered string, or the length of a literal string together with
+     * a flag telling the reader whether to remember it. The format does not depend on whether the
+     * dictionary is enabled, see {@link #enableStringDictionary(int)}. Without it, every string is
+     * written as a literal that is not remembered.
+     *
+     * @param str the string value to be written.
+     * @throws IOException if the buffer could not be resized.
+     */
+    public void writeDictionaryString(String str) throws IOException {
+        if (this.stringIds == null) {
+            writeUtf8(str, 2, 0);
+            return;
         }
 
-        if (utflen > Integer.MAX_VALUE - 4) {
+        Integer id = this.stringIds.get(str);
+        if (id != null) {
+            writeVarInt((id << 1) | 1);
+        } else if (this.stringIds.size() < this.maxDictionaryEntries
+                && str.length() <= MAX_DICTIONARY_STRING_LENGTH) {
+            writeUtf8(str, 2, 2);
+            this.stringIds.put(str, this.stringIds.size());
+        } else {
+            writeUtf8(str, 2, 0);
+        }
+    }
+
+    /**
+     * Writes the UTF-8 bytes of the string behind a variable-length prefix holding the number of
+     * bytes, shifted left by the given number of bits and combined with the given flags.
+     */
+    private void writeUtf8(String str, int shift, int flags) throws IOException {
+        final int start = this.position;
+        ensureStringCapacity(str.length(), MAX_VAR_INT_SIZE);
+
+        // most strings are ASCII, for which the number of chars is the exact length
+        final int reserved = getVarIntSize((str.length() << shift) | flags);
+        final int end = Utf8.encode(str, this.buffer, start + reserved);
+        final int utflen = end - start - reserved;
+        if (utflen > (Integer.MAX_VALUE >>> shift)) {
+            this.position = start;
             throw new UTFDataFormatException("Encoded string is too long: " + utflen);
-        } else if (this.position > this.buffer.length - utflen - 2) {
-            resize((int) utflen + 4);
         }
+        final int prefix = getVarIntSize((utflen << shift) | flags);
+        if (prefix != reserved) {
+            System.arraycopy(this.buffer, start + reserved, this.buffer, start + prefix, utflen);
+        }
+        putVarInt(this.buffer, start, (utflen << shift) | flags);
+        this.position = start + prefix + utflen;
+    }
 
-        writeInt((int) utflen);
+    // ----------------------------------------------------------------------------------------
+    //                               String dictionary
+    // ----------------------------------------------------------------------------------------
 
-        writeUTFBytes(str);
+    /**
+     * Enables the string dictionary for {@link #writeDictionaryString(String)}. Every string
+     * written with the dictionary enabled is remembered, up to the given number of strings, and
+     * written again as its id in the dictionary, which takes one or two bytes for the first 8192
+     * strings. Strings of more than {@link #MAX_DICTIONARY_STRING_LENGTH} chars are never
+     * remembered.
+     *
+     * <p>The reader needs no matching configuration, but it must read all dictionary strings of the
+     * scope of the dictionary in the same order. The scope ends with {@link
+     * #resetStringDictionary()}, which must be mirrored on the reading side at the same point of
+     * the stream, for example at the start of every page.
+     *
+     * @param maxEntries the maximum number of strings to remember.
+     */
+    public void enableStringDictionary(int maxEntries) {
+        Preconditions.checkArgument(maxEntries > 0, "maxEntries must be positive");
+        this.maxDictionaryEntries = maxEntries;
+        this.stringIds = new HashMap<>();
+    }
+
+    /** Disables the string dictionary and forgets all remembered strings. */
+    public void disableStringDictionary() {
+        this.stringIds = null;
+    }
+
+    /** Forgets all remembered strings, which starts a new scope of the string dictionary. */
+    public void resetStringDictionary() {
+        if (this.stringIds != null) {
+            this.stringIds.clear();
+        }
+    }
+
+    public boolean isStringDictionaryEnabled() {
+        return this.stringIds != null;
+    }
+
+    /**
+     * Ensures the buffer can hold the length prefix and the encoding of a string with the given
+     * number of chars, whatever the chars are.
+     */
+    private void ensureStringCapacity(int numChars, int prefixBytes) throws IOException {
+        long maxBytes = (long) Utf8.MAX_BYTES_PER_CHAR * numChars + prefixBytes;
+        if (this.position > this.buffer.length - maxBytes) {
+            if (this.position + maxBytes > Integer.MAX_VALUE) {
+                throw new UTFDataFormatException("Encoded string may exceed the maximum length: " + maxBytes);
+            }
+            resize((int) maxBytes);
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------
+    //                               Primitive arrays
+    // ----------------------------------------------------------------------------------------
+
+    // The following methods write a range of a primitive array at once, resizing the buffer at
+    // most once. The methods without a suffix write big-endian values, exactly like a loop over
+    // the single value methods would; the LittleEndian variants copy the memory as is on little
+    // endian platforms, which avoids swapping the bytes of every value.
+
+    public void writeShorts(short[] values, int off, int len) throws IOException {
+        writeArray(values, SHORT_ARRAY_BASE_OFFSET, values.length, off, len, 1, LITTLE_ENDIAN);
+    }
+
+    public void writeShortsLittleEndian(short[] values, int off, int len) throws IOException {
+        writeArray(values, SHORT_ARRAY_BASE_OFFSET, values.length, off, len, 1, !LITTLE_ENDIAN);
+    }
+
+    public void writeChars(char[] values, int off, int len) throws IOException {
+        writeArray(values, CHAR_ARRAY_BASE_OFFSET, values.length, off, len, 1, LITTLE_ENDIAN);
+    }
+
+    public void writeCharsLittleEndian(char[] values, int off, int len) throws IOException {
+        writeArray(values, CHAR_ARRAY_BASE_OFFSET, values.length, off, len, 1, !LITTLE_ENDIAN);
+    }
+
+    public void writeInts(int[] values, int off, int len) throws IOException {
+        writeArray(values, INT_ARRAY_BASE_OFFSET, values.length, off, len, 2, LITTLE_ENDIAN);
+    }
+
+    public void writeIntsLittleEndian(int[] values, int off, int len) throws IOException {
+        writeArray(values, INT_ARRAY_BASE_OFFSET, values.length, off, len, 2, !LITTLE_ENDIAN);
+    }
+
+    public void writeLongs(long[] values, int off, int len) throws IOException {
+        writeArray(values, LONG_ARRAY_BASE_OFFSET, values.length, off, len, 3, LITTLE_ENDIAN);
+    }
+
+    public void writeLongsLittleEndian(long[] values, int off, int len) throws IOException {
+        writeArray(values, LONG_ARRAY_BASE_OFFSET, values.length, off, len, 3, !LITTLE_ENDIAN);
+    }
+
+    public void writeFloats(float[] values, int off, int len) throws IOException {
+        writeArray(values, FLOAT_ARRAY_BASE_OFFSET, values.length, off, len, 2, LITTLE_ENDIAN);
+    }
+
+    public void writeFloatsLittleEndian(float[] values, int off, int len) throws IOException {
+        writeArray(values, FLOAT_ARRAY_BASE_OFFSET, values.length, off, len, 2, !LITTLE_ENDIAN);
+    }
+
+    public void writeDoubles(double[] values, int off, int len) throws IOException {
+        writeArray(values, DOUBLE_ARRAY_BASE_OFFSET, values.length, off, len, 3, LITTLE_ENDIAN);
+    }
+
+    public void writeDoublesLittleEndian(double[] values, int off, int len) throws IOException {
+        writeArray(values, DOUBLE_ARRAY_BASE_OFFSET, values.length, off, len, 3, !LITTLE_ENDIAN);
+    }
+
+    @SuppressWarnings("restriction")
+    private void writeArray(
+            Object values, long arrayBaseOffset, int arrayLength, int off, int len, int shift, boolean swapBytes)
+            throws IOException {
+        if (len < 0 || off < 0 || off > arrayLength - len) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        long numBytes = ((long) len) << shift;
+        if (this.position > this.buffer.length - numBytes) {
+            if (numBytes > Integer.MAX_VALUE) {
+                throw new IOException(
+                        "Serialization failed because the record length would exceed 2GB (max addressable array size in Java).");
+            }
+            resize((int) numBytes);
+        }
+        MemoryUtils.copyPrimitives(
+                values,
+                arrayBaseOffset + (((long) off) << shift),
+                this.buffer,
+                BASE_OFFSET + this.position,
+                numBytes,
+                1 << shift,
+                swapBytes);
+        this.position += (int) numBytes;
+    }
+
+    // ----------------------------------------------------------------------------------------
+    //                               Variable-length integers
+    // ----------------------------------------------------------------------------------------
+
+    /**
+     * Writes an int in the variable-length format: seven bits per byte, least significant group
+     * first, with the high bit of every byte but the last set. Values below 128 take a single byte,
+     * negative values always take five bytes; use {@link #writeZigZagInt(int)} for signed values.
+     *
+     * @param v the int value to be written.
+     * @throws IOException if the buffer could not be resized.
+     */
+    public void writeVarInt(int v) throws IOException {
+        if (this.position > this.buffer.length - MAX_VAR_INT_SIZE) {
+            resize(MAX_VAR_INT_SIZE);
+        }
+        this.position = putVarInt(this.buffer, this.position, v);
+    }
+
+    /**
+     * Writes a long in the variable-length format of {@link #writeVarInt(int)}, taking between one
+     * and ten bytes.
+     *
+     * @param v the long value to be written.
+     * @throws IOException if the buffer could not be resized.
+     */
+    public void writeVarLong(long v) throws IOException {
+        if (this.position > this.buffer.length - MAX_VAR_LONG_SIZE) {
+            resize(MAX_VAR_LONG_SIZE);
+        }
+        this.position = putVarLong(this.buffer, this.position, v);
+    }
+
+    /**
+     * Writes a signed int zig-zag encoded in the variable-length format, so that values of small
+     * magnitude take few bytes regardless of their sign.
+     *
+     * @param v the int value to be written.
+     * @throws IOException if the buffer could not be resized.
+     */
+    public void writeZigZagInt(int v) throws IOException {
+        writeVarInt(zigZagEncode(v));
+    }
+
+    /**
+     * Writes a signed long zig-zag encoded in the variable-length format.
+     *
+     * @param v the long value to be written.
+     * @throws IOException if the buffer could not be resized.
+     */
+    public void writeZigZagLong(long v) throws IOException {
+        writeVarLong(zigZagEncode(v));
+    }
+
+    /**
+     * Writes a range of an int array with {@link #writeVarInt(int)}. The buffer is resized at most
+     * once for the whole range.
+     *
+     * @param values the array holding the values.
+     * @param off the offset of the first value.
+     * @param len the number of values to write.
+     * @throws IOException if the buffer could not be resized.
+     */
+    public void writeVarInts(int[] values, int off, int len) throws IOException {
+        ensureBatchCapacity(values.length, off, len, MAX_VAR_INT_SIZE);
+        byte[] buffer = this.buffer;
+        int position = this.position;
+        for (int i = off; i < off + len; i++) {
+            position = putVarInt(buffer, position, values[i]);
+        }
+        this.position = position;
+    }
+
+    /**
+     * Writes a range of a long array with {@link #writeVarLong(long)}.
+     *
+     * @param values the array holding the values.
+     * @param off the offset of the first value.
+     * @param len the number of values to write.
+     * @throws IOException if the buffer could not be resized.
+     */
+    public void writeVarLongs(long[] values, int off, int len) throws IOException {
+        ensureBatchCapacity(values.length, off, len, MAX_VAR_LONG_SIZE);
+        byte[] buffer = this.buffer;
+        int position = this.position;
+        for (int i = off; i < off + len; i++) {
+            position = putVarLong(buffer, position, values[i]);
+        }
+        this.position = position;
+    }
+
+    /**
+     * Writes a range of an int array with {@link #writeZigZagInt(int)}.
+     *
+     * @param values the array holding the values.
+     * @param off the offset of the first value.
+     * @param len the number of values to write.
+     * @throws IOException if the buffer could not be resized.
+     */
+    public void writeZigZagInts(int[] values, int off, int len) throws IOException {
+        ensureBatchCapacity(values.length, off, len, MAX_VAR_INT_SIZE);
+        byte[] buffer = this.buffer;
+        int position = this.position;
+        for (int i = off; i < off + len; i++) {
+            position = putVarInt(buffer, position, zigZagEncode(values[i]));
+        }
+        this.position = position;
+    }
+
+    /**
+     * Writes a range of a long array with {@link #writeZigZagLong(long)}.
+     *
+     * @param values the array holding the values.
+     * @param off the offset of the first value.
+     * @param len the number of values to write.
+     * @throws IOException if the buffer could not be resized.
+     */
+    public void writeZigZagLongs(long[] values, int off, int len) throws IOException {
+        ensureBatchCapacity(values.length, off, len, MAX_VAR_LONG_SIZE);
+        byte[] buffer = this.buffer;
+        int position = this.position;
+        for (int i = off; i < off + len; i++) {
+            position = putVarLong(buffer, position, zigZagEncode(values[i]));
+        }
+        this.position = position;
+    }
+
+    /**
+     * Gets the number of bytes {@link #writeVarInt(int)} writes for the given value.
+     *
+     * @param v the int value.
+     * @return the encoded size, between one and five bytes.
+     */
+    public static int getVarIntSize(int v) {
+        // one byte per started group of seven significant bits
+        return (31 - Integer.numberOfLeadingZeros(v | 1)) / 7 + 1;
+    }
+
+    /**
+     * Gets the number of bytes {@link #writeVarLong(long)} writes for the given value.
+     *
+     * @param v the long value.
+     * @return the encoded size, between one and ten bytes.
+     */
+    public static int getVarLongSize(long v) {
+        return (63 - Long.numberOfLeadingZeros(v | 1)) / 7 + 1;
+    }
+
+    static int zigZagEncode(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    static long zigZagEncode(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private void ensureBatchCapacity(int arrayLength, int off, int len, int maxBytesPerValue)
+            throws IOException {
+        if (len < 0 || off < 0 || off > arrayLength - len) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        long maxBytes = (long) len * maxBytesPerValue;
+        if (this.position > this.buffer.length - maxBytes) {
+            if (maxBytes > Integer.MAX_VALUE) {
+                throw new IOException(
+                        "Serialization failed because the record length would exceed 2GB (max addressable array size in Java).");
+            }
+            resize((int) maxBytes);
+        }
+    }
+
+    /**
+     * Writes the variable-length encoding of the value without bounds checks. The caller must
+     * ensure that at least {@link #MAX_VAR_INT_SIZE} bytes are left in the buffer.
+     */
+    @SuppressWarnings("restriction")
+    private static int putVarInt(byte[] buffer, int position, int v) {
+        long address = BASE_OFFSET + position;
+        while ((v & ~0x7F) != 0) {
+            UNSAFE.putByte(buffer, address++, (byte) (v | 0x80));
+            v >>>= 7;
+        }
+        UNSAFE.putByte(buffer, address++, (byte) v);
+        return (int) (address - BASE_OFFSET);
+    }
+
+    @SuppressWarnings("restriction")
+    private static int putVarLong(byte[] buffer, int position, long v) {
+        long address = BASE_OFFSET + position;
+        while ((v & ~0x7FL) != 0) {
+            UNSAFE.putByte(buffer, address++, (byte) (v | 0x80));
+            v >>>= 7;
+        }
+        UNSAFE.putByte(buffer, address++, (byte) v);
+        return (int) (address - BASE_OFFSET);
     }
 
     private void writeUTFBytes(String str) {
@@ -305,16 +690,6 @@ public class DataOutputSerializer implements DataOutputView, MemorySegmentWritab
         this.position = count;
     }
 
-    private int getUTFBytesSize(int c) {
-        if ((c >= 0x0001) && (c <= 0x007F)) {
-            return 1;
-        } else if (c > 0x07FF) {
-            return 3;
-        } else {
-            return 2;
-        }
-    }
-
     private void resize(int minCapacityAdd) throws IOException {
         int newLen = Math.max(this.buffer.length * 2, this.buffer.length + minCapacityAdd);
         byte[] nb;
@@ -391,6 +766,33 @@ public class DataOutputSerializer implements DataOutputView, MemorySegmentWritab
     @SuppressWarnings("restriction")
     private static final long BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
 
+    @SuppressWarnings("restriction")
+    private static final long SHORT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(short[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long CHAR_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(char[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long INT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(int[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long LONG_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(long[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long FLOAT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(float[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long DOUBLE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(double[].class);
+
     private static final boolean LITTLE_ENDIAN =
             (MemoryUtils.NATIVE_BYTE_ORDER == ByteOrder.LITTLE_ENDIAN);
+
+    /** The maximum number of chars of a string that is remembered by the string dictionary. */
+    public static final int MAX_DICTIONARY_STRING_LENGTH = 256;
+
+    /** The maximum number of bytes of a variable-length int. */
+    static final int MAX_VAR_INT_SIZE = 5;
+
+    /** The maximum number of bytes of a variable-length long. */
+    static final int MAX_VAR_LONG_SIZE = 10;
 }
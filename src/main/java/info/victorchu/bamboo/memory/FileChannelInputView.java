@@ -0,0 +1,212 @@
+package info.victorchu.bamboo.memory;
+
+import javax.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * An input view that reads a {@link FileChannel} from its current position to its end. The view
+ * reads ahead into all of its memory segments with a single scattering read, and serves the
+ * following bytes from those segments before it goes back to the channel. The number of segments
+ * thus bounds both the memory of the view and the number of system calls it issues.
+ *
+ * <p>Given a {@link ChecksumAlgorithm}, the view reads a file of checksummed pages written by a
+ * {@link FileChannelOutputView} with pages of the same size. Every page read from the channel is
+ * verified against its trailer, directly from the page, before any of its bytes are served, so a
+ * corrupt page never reaches the caller, not even as a corrupt length field.
+ *
+ * <p>Closing the view closes the channel.
+ */
+public class FileChannelInputView
+        extends AbstractPagedInputView
+        implements Closeable
+{
+    private final FileChannel channel;
+
+    private final List<MemorySegment> segments;
+
+    private final ByteBuffer[] buffers;
+
+    private final int[] limits;
+
+    @Nullable
+    private final SegmentChecksum checksum;
+
+    private int numFilled;
+
+    private int currentIndex;
+
+    private boolean exhausted;
+
+    private boolean closed;
+
+    /**
+     * Creates a new view and reads the first pages from the channel.
+     *
+     * @param channel The channel to read from.
+     * @param readAheadPages The memory segments to read into, all of the same size.
+     * @throws IOException Thrown, if the first pages could not be read.
+     */
+    public FileChannelInputView(FileChannel channel, List<MemorySegment> readAheadPages)
+            throws IOException
+    {
+        this(channel, readAheadPages, null);
+    }
+
+    /**
+     * Creates a new view, which verifies the checksum of every page, and reads the first pages from
+     * the channel.
+     *
+     * @param channel The channel to read from.
+     * @param readAheadPages The memory segments to read into, all of the size of the pages the file
+     *     was written with.
+     * @param checksumAlgorithm The algorithm the page checksums were written with, or null for a
+     *     file of pages without a trailer.
+     * @throws IOException Thrown, if the first pages could not be read, or if one of them is
+     *     corrupt.
+     */
+    public FileChannelInputView(FileChannel channel, List<MemorySegment> readAheadPages, @Nullable ChecksumAlgorithm checksumAlgorithm)
+            throws IOException
+    {
+        super(0);
+        this.checksum = checksumAlgorithm == null ? null : checksumAlgorithm.newChecksum();
+        this.channel = checkNotNull(channel, "channel is null");
+        this.segments = checkNotNull(readAheadPages, "readAheadPages is null");
+        checkArgument(!readAheadPages.isEmpty(), "at least one read-ahead page is required");
+        for (MemorySegment segment : readAheadPages) {
+            checkArgument(segment.size() == readAheadPages.get(0).size(), "All memory segments must have the same size.");
+        }
+        this.buffers = new ByteBuffer[readAheadPages.size()];
+        this.limits = new int[readAheadPages.size()];
+
+        fill();
+        if (this.numFilled > 0) {
+            seekInput(this.segments.get(0), 0, this.limits[0]);
+        }
+        else {
+            seekInput(this.segments.get(0), 0, 0);
+        }
+    }
+
+    @Override
+    protected MemorySegment nextSegment(MemorySegment current)
+            throws IOException
+    {
+        if (this.currentIndex + 1 < this.numFilled) {
+            this.currentIndex++;
+        }
+        else {
+            fill();
+            if (this.numFilled == 0) {
+                throw new EOFException();
+            }
+        }
+        return this.segments.get(this.currentIndex);
+    }
+
+    @Override
+    protected int getLimitForSegment(MemorySegment segment)
+    {
+        return this.limits[this.currentIndex];
+    }
+
+    private void fill()
+            throws IOException
+    {
+        if (this.closed) {
+            throw new IllegalStateException("view has been closed");
+        }
+        this.numFilled = 0;
+        this.currentIndex = 0;
+        if (this.exhausted) {
+            return;
+        }
+
+        for (int i = 0; i < this.buffers.length; i++) {
+            MemorySegment segment = this.segments.get(i);
+            this.buffers[i] = segment.wrap(0, segment.size());
+        }
+        ByteBuffer last = this.buffers[this.buffers.length - 1];
+        while (last.hasRemaining()) {
+            if (this.channel.read(this.buffers) < 0) {
+                this.exhausted = true;
+                break;
+            }
+        }
+        if (!this.exhausted && this.channel.position() >= this.channel.size()) {
+            this.exhausted = true;
+        }
+
+        for (int i = 0; i < this.buffers.length; i++) {
+            this.limits[i] = this.buffers[i].position();
+            this.buffers[i] = null;
+            if (this.limits[i] > 0) {
+                this.numFilled++;
+            }
+        }
+        if (this.checksum != null) {
+            try {
+                for (int i = 0; i < this.numFilled; i++) {
+                    this.limits[i] = verifyPage(this.segments.get(i), this.limits[i]);
+                }
+            }
+            catch (IOException e) {
+                // nothing after a corrupt page is served, not even on a retry
+                this.numFilled = 0;
+                this.exhausted = true;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Verifies the trailer of a checksummed page and returns the length of its data.
+     */
+    private int verifyPage(MemorySegment page, int limit)
+            throws IOException
+    {
+        int length = limit >= FileChannelOutputView.PAGE_TRAILER_LENGTH
+                ? page.getIntBigEndian(limit - FileChannelOutputView.PAGE_TRAILER_LENGTH)
+                : -1;
+        if (length != limit - FileChannelOutputView.PAGE_TRAILER_LENGTH) {
+            throw new IOException(String.format(
+                    "Corrupt page of %s bytes: its trailer does not match, or it was written with a different page size.", limit));
+        }
+        this.checksum.reset();
+        this.checksum.update(page, 0, length);
+        int expected = page.getIntBigEndian(length + 4);
+        if ((int) this.checksum.getValue() != expected) {
+            throw new IOException(String.format(
+                    "Checksum mismatch of a page of %s bytes: expected %s, but the page has %s.",
+                    length,
+                    Integer.toHexString(expected),
+                    Integer.toHexString((int) this.checksum.getValue())));
+        }
+        return length;
+    }
+
+    /**
+     * Closes the underlying channel. The memory segments are not released and may be reused by
+     * the caller afterwards.
+     *
+     * @throws IOException Thrown, if the channel could not be closed.
+     */
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (!this.closed) {
+            this.closed = true;
+            clear();
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package info.victorchu.bamboo.memory;
+
+import javax.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * An output view that writes its data page by page to a {@link FileChannel}. The view buffers the
+ * written bytes in a single memory segment and writes the segment to the channel whenever it is
+ * full, so the bytes appear in the file as one contiguous stream.
+ *
+ * <p>Given a {@link ChecksumAlgorithm}, the view writes every page as a frame that ends with a
+ * trailer of {@link #PAGE_TRAILER_LENGTH} bytes: the length of the data in the page and the
+ * checksum of that data, both as big endian ints, computed directly from the page. The data then
+ * fills the page up to the trailer, so all frames but the last have the size of the page, and a
+ * {@link FileChannelInputView} with pages of the same size and the same algorithm verifies every
+ * page before it serves any of its bytes.
+ *
+ * <p>The view must be closed to write the last, partially filled page. Closing the view also
+ * closes the channel.
+ */
+public class FileChannelOutputView
+        extends AbstractPagedOutputView
+        implements Closeable
+{
+    /** The length of the trailer of a checksummed page. */
+    public static final int PAGE_TRAILER_LENGTH = 8;
+
+    private final FileChannel channel;
+
+    @Nullable
+    private final SegmentChecksum checksum;
+
+    private long bytesWritten;
+
+    private boolean closed;
+
+    /**
+     * Creates a new view writing to the current position of the given channel.
+     *
+     * @param channel The channel to write to.
+     * @param buffer The memory segment buffering the bytes before they are written.
+     */
+    public FileChannelOutputView(FileChannel channel, MemorySegment buffer)
+    {
+        this(channel, buffer, null);
+    }
+
+    /**
+     * Creates a new view writing to the current position of the given channel, which writes every
+     * page with a trailer holding the checksum of the page.
+     *
+     * @param channel The channel to write to.
+     * @param buffer The memory segment buffering the bytes before they are written.
+     * @param checksumAlgorithm The algorithm of the page checksums, or null to write the pages
+     *     without a trailer.
+     */
+    public FileChannelOutputView(FileChannel channel, MemorySegment buffer, @Nullable ChecksumAlgorithm checksumAlgorithm)
+    {
+        super(checkNotNull(buffer, "buffer is null"), usableSize(buffer, checksumAlgorithm), 0);
+        this.channel = checkNotNull(channel, "channel is null");
+        this.checksum = checksumAlgorithm == null ? null : checksumAlgorithm.newChecksum();
+    }
+
+    private static int usableSize(MemorySegment buffer, @Nullable ChecksumAlgorithm checksumAlgorithm)
+    {
+        if (checksumAlgorithm == null) {
+            return buffer.size();
+        }
+        checkArgument(buffer.size() > PAGE_TRAILER_LENGTH, "The buffer is too small for the page trailer.");
+        return buffer.size() - PAGE_TRAILER_LENGTH;
+    }
+
+    @Override
+    protected MemorySegment nextSegment(MemorySegment current, int positionInCurrent)
+            throws IOException
+    {
+        writeSegment(current, positionInCurrent);
+        return current;
+    }
+
+    private void writeSegment(MemorySegment segment, int length)
+            throws IOException
+    {
+        int frameLength = length;
+        if (this.checksum != null) {
+            if (length == 0) {
+                return;
+            }
+            this.checksum.reset();
+            this.checksum.update(segment, 0, length);
+            segment.putIntBigEndian(length, length);
+            segment.putIntBigEndian(length + 4, (int) this.checksum.getValue());
+            frameLength += PAGE_TRAILER_LENGTH;
+        }
+        ByteBuffer buffer = segment.wrap(0, frameLength);
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+        this.bytesWritten += frameLength;
+    }
+
+    /**
+     * Gets the number of bytes written to the channel, including the bytes that are still buffered
+     * and the trailers of the written pages.
+     *
+     * @return The number of bytes written.
+     */
+    public long getWriteOffset()
+    {
+        return this.closed ? this.bytesWritten : this.bytesWritten + getCurrentPositionInSegment();
+    }
+
+    /**
+     * Writes the buffered bytes and closes the underlying channel. The buffer segment is not
+     * released and may be reused by the caller afterwards.
+     *
+     * @throws IOException Thrown, if the buffered bytes could not be written.
+     */
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            writeSegment(getCurrentSegment(), getCurrentPositionInSegment());
+        }
+        finally {
+            clear();
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package info.victorchu.bamboo.memory;
+
+import javax.annotation.Nullable;
+
+import java.util.List;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/** Simple memory segment source that draws segments from a list. */
+public class ListMemorySegmentSource
+        implements MemorySegmentSource
+{
+    private final List<MemorySegment> segments;
+
+    public ListMemorySegmentSource(final List<MemorySegment> memorySegments)
+    {
+        this.segments = checkNotNull(memorySegments, "The segment list must not be null.");
+    }
+
+    @Nullable
+    @Override
+    public MemorySegment nextSegment()
+    {
+        if (this.segments.size() > 0) {
+            return this.segments.remove(this.segments.size() - 1);
+        }
+        else {
+            return null;
+        }
+    }
+}
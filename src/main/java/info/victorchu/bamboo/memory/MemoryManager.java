@@ -0,0 +1,503 @@
+package info.victorchu.bamboo.memory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+import static info.victorchu.bamboo.utils.Preconditions.checkState;
+
+/**
+ * The memory manager governs a budget of memory that is handed out as equally sized {@link
+ * MemorySegment pages}.
+ *
+ * <p>The memory behind released pages is recycled: it goes back to the pool and backs the pages of
+ * later allocations, so that steady state operation does not allocate new memory. Every released
+ * page is freed, so a stale reference to it can not accidentally corrupt the page of the next
+ * owner. The pool either pre-allocates the whole budget, or lazily grows up to it.
+ *
+ * <p>All allocated pages are accounted for per owner, so that an owner (for example an operator)
+ * can release all of its memory at once via {@link #releaseAll(Object)}.
+ */
+public class MemoryManager
+{
+    /** The default memory page size. Currently set to 32 KiBytes. */
+    public static final int DEFAULT_PAGE_SIZE = 32 * 1024;
+
+    /** The minimal memory page size. Currently set to 4 KiBytes. */
+    public static final int MIN_PAGE_SIZE = 4 * 1024;
+
+    // ------------------------------------------------------------------------
+
+    /** The lock used on the shared structures. */
+    private final Object lock = new Object();
+
+    /** The memory pool from which we draw memory segments. */
+    private final MemoryPool<?> memoryPool;
+
+    /** Memory segments allocated per memory owner. */
+    private final HashMap<Object, Set<MemorySegment>> allocatedSegments;
+
+    /** The size of the memory segments. */
+    private final int pageSize;
+
+    /** The total number of pages this memory manager can hand out. */
+    private final int totalNumPages;
+
+    /** The total size of the memory managed by this memory manager. */
+    private final long memorySize;
+
+    /** Flag whether the close() has already been invoked. */
+    private boolean isShutDown;
+
+    /**
+     * Creates a memory manager that lazily allocates heap pages of the default page size.
+     *
+     * @param memorySize The total size of the memory to be managed by this memory manager.
+     */
+    public MemoryManager(long memorySize)
+    {
+        this(memorySize, DEFAULT_PAGE_SIZE, false, false);
+    }
+
+    /**
+     * Creates a memory manager with the given capacity and given page size.
+     *
+     * @param memorySize The total size of the memory to be managed by this memory manager.
+     * @param pageSize The size of the pages handed out by the memory manager.
+     * @param offHeap True, if the pages are backed by native memory, false for heap memory.
+     * @param preAllocate True, if the whole budget should be allocated up front, false if the
+     *     pool should grow lazily.
+     */
+    public MemoryManager(long memorySize, int pageSize, boolean offHeap, boolean preAllocate)
+    {
+        checkArgument(memorySize > 0L, "Size of total memory must be positive.");
+        checkArgument(pageSize >= MIN_PAGE_SIZE, "The page size must be at least %s bytes.", MIN_PAGE_SIZE);
+        checkArgument((pageSize & (pageSize - 1)) == 0, "The given page size is not a power of two.");
+
+        final long numPagesLong = memorySize / pageSize;
+        checkArgument(numPagesLong <= Integer.MAX_VALUE, "The given number of memory bytes (%s) corresponds to more than MAX_INT pages.", memorySize);
+        checkArgument(numPagesLong >= 1, "The given amount of memory amounted to less than one page.");
+
+        this.pageSize = pageSize;
+        this.totalNumPages = (int) numPagesLong;
+        this.memorySize = numPagesLong * pageSize;
+        this.allocatedSegments = new HashMap<>();
+        this.memoryPool = offHeap
+                ? new OffHeapMemoryPool(totalNumPages, pageSize)
+                : new HeapMemoryPool(totalNumPages, pageSize);
+        if (preAllocate) {
+            memoryPool.preAllocate();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //  Shutdown
+    // ------------------------------------------------------------------------
+
+    /**
+     * Shuts the memory manager down, trying to release all the memory it managed. Depending on
+     * implementation details, the memory does not necessarily become reclaimable by the garbage
+     * collector, because there might still be references to allocated segments in the code that
+     * allocated them from the memory manager.
+     */
+    public void shutdown()
+    {
+        synchronized (lock) {
+            if (!isShutDown) {
+                isShutDown = true;
+                // go over all allocated segments and release them
+                for (Set<MemorySegment> segments : allocatedSegments.values()) {
+                    for (MemorySegment seg : segments) {
+                        seg.free();
+                    }
+                }
+                allocatedSegments.clear();
+                memoryPool.clear();
+            }
+        }
+    }
+
+    /**
+     * Checks whether the MemoryManager has been shut down.
+     *
+     * @return True, if the memory manager is shut down, false otherwise.
+     */
+    public boolean isShutdown()
+    {
+        return isShutDown;
+    }
+
+    /**
+     * Checks if the memory manager has all memory available.
+     *
+     * @return True, if the memory manager is empty and valid, false if it is not empty or
+     *     corrupted.
+     */
+    public boolean verifyEmpty()
+    {
+        synchronized (lock) {
+            return memoryPool.getNumberOfAvailableMemorySegments() == totalNumPages;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //  Memory allocation and release
+    // ------------------------------------------------------------------------
+
+    /**
+     * Allocates a set of memory segments from this memory manager.
+     *
+     * @param owner The owner to associate with the memory segment, for the fallback release.
+     * @param numPages The number of pages to allocate.
+     * @return A list with the memory segments.
+     * @throws MemoryAllocationException Thrown, if this memory manager does not have the requested
+     *     amount of memory pages any more.
+     */
+    public List<MemorySegment> allocatePages(Object owner, int numPages)
+            throws MemoryAllocationException
+    {
+        final ArrayList<MemorySegment> segs = new ArrayList<>(numPages);
+        allocatePages(owner, segs, numPages);
+        return segs;
+    }
+
+    /**
+     * Allocates a set of memory segments from this memory manager.
+     *
+     * @param owner The owner to associate with the memory segment, for the fallback release.
+     * @param target The list into which to put the allocated memory pages.
+     * @param numPages The number of pages to allocate.
+     * @throws MemoryAllocationException Thrown, if this memory manager does not have the requested
+     *     amount of memory pages any more.
+     */
+    public void allocatePages(Object owner, Collection<MemorySegment> target, int numPages)
+            throws MemoryAllocationException
+    {
+        // sanity check
+        checkNotNull(owner, "The memory owner must not be null.");
+        checkNotNull(target, "The target collection must not be null.");
+        checkArgument(numPages >= 0, "The number of pages must not be negative.");
+
+        synchronized (lock) {
+            checkState(!isShutDown, "Memory manager has been shut down.");
+
+            if (numPages > memoryPool.getNumberOfAvailableMemorySegments()) {
+                throw new MemoryAllocationException(String.format(
+                        "Could not allocate %d pages. Only %d pages are remaining.",
+                        numPages, memoryPool.getNumberOfAvailableMemorySegments()));
+            }
+
+            Set<MemorySegment> segmentsForOwner = allocatedSegments.computeIfAbsent(owner, k -> new HashSet<>(numPages));
+            for (int i = numPages; i > 0; i--) {
+                MemorySegment segment = memoryPool.requestSegmentFromPool(owner);
+                target.add(segment);
+                segmentsForOwner.add(segment);
+            }
+        }
+    }
+
+    /**
+     * Tries to release the memory for the specified segment. If the segment has already been
+     * released or is null, the request is simply ignored.
+     *
+     * <p>The segment is freed and its memory goes back to the memory pool, from where it backs the
+     * pages of later allocations.
+     *
+     * @param segment The segment to be released.
+     * @throws IllegalArgumentException Thrown, if the given segment was not allocated by this
+     *     memory manager.
+     */
+    public void release(MemorySegment segment)
+    {
+        // check if segment is null or has already been freed
+        if (segment == null || segment.getOwner() == null) {
+            return;
+        }
+
+        synchronized (lock) {
+            if (isShutDown) {
+                return;
+            }
+
+            // remove the reference in the map for the owner, the segment may have been freed by
+            // its user already, its memory goes back to the pool all the same
+            Object owner = segment.getOwner();
+            Set<MemorySegment> segsForOwner = allocatedSegments.get(owner);
+            if (segsForOwner == null || !segsForOwner.remove(segment)) {
+                // prevent double return to this memory manager
+                if (segment.isFreed()) {
+                    return;
+                }
+                throw new IllegalArgumentException("The segment was not allocated by this memory manager.");
+            }
+            if (segsForOwner.isEmpty()) {
+                allocatedSegments.remove(owner);
+            }
+            memoryPool.returnSegmentToPool(segment);
+        }
+    }
+
+    /**
+     * Tries to release many memory segments together.
+     *
+     * @param segments The segments to be released.
+     */
+    public void release(Collection<MemorySegment> segments)
+    {
+        if (segments == null) {
+            return;
+        }
+
+        synchronized (lock) {
+            for (MemorySegment segment : segments) {
+                release(segment);
+            }
+            segments.clear();
+        }
+    }
+
+    /**
+     * Releases all memory segments for the given owner.
+     *
+     * @param owner The owner memory segments are to be released.
+     */
+    public void releaseAll(Object owner)
+    {
+        if (owner == null) {
+            return;
+        }
+
+        synchronized (lock) {
+            if (isShutDown) {
+                return;
+            }
+
+            // get all segments
+            final Set<MemorySegment> segments = allocatedSegments.remove(owner);
+
+            // all segments may have been freed previously individually
+            if (segments == null || segments.isEmpty()) {
+                return;
+            }
+
+            for (MemorySegment segment : segments) {
+                memoryPool.returnSegmentToPool(segment);
+            }
+            segments.clear();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //  Properties, sizes and size conversions
+    // ------------------------------------------------------------------------
+
+    /**
+     * Gets the size of the pages handled by the memory manager.
+     *
+     * @return The size of the pages handled by the memory manager.
+     */
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+    /**
+     * Returns the total size of memory handled by this memory manager.
+     *
+     * @return The total size of memory.
+     */
+    public long getMemorySize()
+    {
+        return memorySize;
+    }
+
+    /**
+     * Gets the total number of memory pages managed by this memory manager.
+     *
+     * @return The total number of memory pages managed by this memory manager.
+     */
+    public int getTotalNumPages()
+    {
+        return totalNumPages;
+    }
+
+    /**
+     * Gets the number of pages that can currently be allocated from this memory manager.
+     *
+     * @return The number of available pages.
+     */
+    public int getAvailableNumPages()
+    {
+        synchronized (lock) {
+            return memoryPool.getNumberOfAvailableMemorySegments();
+        }
+    }
+
+    /**
+     * Computes to how many pages the given number of bytes corresponds. If the given number of
+     * bytes is not an exact multiple of a page size, the result is rounded down, such that a
+     * portion of the memory (smaller than the page size) is not included.
+     *
+     * @param numBytes The number of bytes to convert to a page count.
+     * @return The number of pages to which the given number of bytes corresponds.
+     */
+    public int computeNumberOfPages(long numBytes)
+    {
+        checkArgument(numBytes >= 0, "The number of bytes must not be negative.");
+        return (int) Math.min(numBytes / pageSize, Integer.MAX_VALUE);
+    }
+
+    // ------------------------------------------------------------------------
+    //  Memory Pools
+    // ------------------------------------------------------------------------
+
+    /**
+     * A pool of equally sized chunks of memory. Chunks are created lazily, up to the configured
+     * number, and recycled once their segment is returned. The pool remembers the chunk behind
+     * every segment it handed out, so that the memory goes back even if the segment was freed in
+     * the meantime. All methods are called under the lock of the memory manager.
+     *
+     * @param <C> The type of the chunks.
+     */
+    private abstract static class MemoryPool<C>
+    {
+        private final int totalNumChunks;
+        protected final int chunkSize;
+        private int numCreatedChunks;
+
+        /** The collection of available memory chunks. */
+        private final ArrayDeque<C> availableMemory;
+
+        /** The chunks behind the segments handed out, by segment identity. */
+        private final IdentityHashMap<MemorySegment, C> lentMemory;
+
+        MemoryPool(int totalNumChunks, int chunkSize)
+        {
+            this.totalNumChunks = totalNumChunks;
+            this.chunkSize = chunkSize;
+            this.availableMemory = new ArrayDeque<>();
+            this.lentMemory = new IdentityHashMap<>();
+        }
+
+        int getNumberOfAvailableMemorySegments()
+        {
+            return availableMemory.size() + (totalNumChunks - numCreatedChunks);
+        }
+
+        void preAllocate()
+        {
+            while (numCreatedChunks < totalNumChunks) {
+                availableMemory.add(createChunk());
+                numCreatedChunks++;
+            }
+        }
+
+        MemorySegment requestSegmentFromPool(Object owner)
+        {
+            if (availableMemory.isEmpty()) {
+                checkState(numCreatedChunks < totalNumChunks, "Memory pool is exhausted.");
+                availableMemory.add(createChunk());
+                numCreatedChunks++;
+            }
+            C memory = availableMemory.remove();
+            MemorySegment segment = wrapChunk(memory, owner);
+            lentMemory.put(segment, memory);
+            return segment;
+        }
+
+        /** Frees the given segment, unless it is freed already, and puts its memory back into the pool. */
+        void returnSegmentToPool(MemorySegment segment)
+        {
+            C memory = lentMemory.remove(segment);
+            checkState(memory != null, "The segment was not handed out by this memory pool.");
+            segment.free();
+            availableMemory.add(memory);
+        }
+
+        /** Releases the memory of all chunks. */
+        void clear()
+        {
+            availableMemory.clear();
+            lentMemory.clear();
+            releaseChunks();
+        }
+
+        abstract C createChunk();
+
+        abstract MemorySegment wrapChunk(C memory, Object owner);
+
+        /** Releases the memory of all chunks ever created, if it is not left to the garbage collector. */
+        abstract void releaseChunks();
+    }
+
+    private static final class HeapMemoryPool
+            extends MemoryPool<byte[]>
+    {
+        HeapMemoryPool(int numInitialSegments, int segmentSize)
+        {
+            super(numInitialSegments, segmentSize);
+        }
+
+        @Override
+        byte[] createChunk()
+        {
+            return new byte[chunkSize];
+        }
+
+        @Override
+        MemorySegment wrapChunk(byte[] memory, Object owner)
+        {
+            return new MemorySegment(memory, owner);
+        }
+
+        @Override
+        void releaseChunks()
+        {
+        }
+    }
+
+    private static final class OffHeapMemoryPool
+            extends MemoryPool<ByteBuffer>
+    {
+        /** The addresses of all chunks ever created, so that they can be released on clear. */
+        private final List<Long> allocatedAddresses;
+
+        OffHeapMemoryPool(int numInitialSegments, int segmentSize)
+        {
+            super(numInitialSegments, segmentSize);
+            this.allocatedAddresses = new ArrayList<>();
+        }
+
+        @Override
+        ByteBuffer createChunk()
+        {
+            long address = MemoryUtils.allocateUnsafe(chunkSize);
+            allocatedAddresses.add(address);
+            return MemoryUtils.wrapUnsafeMemoryWithByteBuffer(address, chunkSize);
+        }
+
+        @Override
+        MemorySegment wrapChunk(ByteBuffer memory, Object owner)
+        {
+            // the pool owns the memory, freeing the segment must not release it
+            return new MemorySegment(memory, null, owner);
+        }
+
+        @Override
+        void releaseChunks()
+        {
+            for (long address : allocatedAddresses) {
+                MemoryUtils.releaseUnsafe(address);
+            }
+            allocatedAddresses.clear();
+        }
+    }
+}
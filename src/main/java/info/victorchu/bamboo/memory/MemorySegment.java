@@ -1,8 +1,10 @@
 package info.victorchu.bamboo.memory;
 
+import info.victorchu.bamboo.utils.HashUtils;
 import info.victorchu.bamboo.utils.Preconditions;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -28,6 +30,24 @@ public class MemorySegment
     @SuppressWarnings("restriction")
     private static final long BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
 
+    @SuppressWarnings("restriction")
+    private static final long SHORT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(short[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long CHAR_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(char[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long INT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(int[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long LONG_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(long[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long FLOAT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(float[].class);
+
+    @SuppressWarnings("restriction")
+    private static final long DOUBLE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(double[].class);
+
     /**
      * Constant that flags the byte order. Because this is a boolean constant, the JIT compiler can
      * use this well to aggressively eliminate the non-applicable code paths.
@@ -39,10 +59,22 @@ public class MemorySegment
 
     /**
      * The heap byte array object relative to which we access the memory.
+     *
+     * <p>Is non-<tt>null</tt> if the memory is on the heap, and is <tt>null</tt>, if the memory is
+     * off the heap. If we have this buffer, we must never void this reference, or the memory
+     * segment will point to undefined addresses outside the heap and may in out-of-order execution
+     * cases cause segmentation faults.
      */
-    @Nonnull
+    @Nullable
     private final byte[] heapMemory;
 
+    /**
+     * The direct byte buffer that wraps the off-heap memory. This memory segment holds a reference
+     * to that buffer, so as long as this memory segment lives, the memory will not be released.
+     */
+    @Nullable
+    private ByteBuffer offHeapBuffer;
+
     /**
      * The address to the data, relative to the heap memory byte array. If the heap memory byte
      * array is <tt>null</tt>, this becomes an absolute memory address outside the heap.
@@ -55,11 +87,29 @@ public class MemorySegment
      */
     private final long addressLimit;
 
+    /**
+     * The limit the writing accessors check against instead of <tt>addressLimit</tt>. For a
+     * read-only segment it is the start address, so that every write fails the bounds check of the
+     * accessor instead of crashing the JVM, at no cost for the other segments.
+     */
+    private final long writeAddressLimit;
+
+    /** Whether the segment is backed by a read-only buffer, such as a file mapped read-only. */
+    private final boolean readOnly;
+
     /** The size in bytes of the memory segment. */
     private final int size;
 
     private final AtomicBoolean isFreedAtomic;
 
+    /** Action to release the off-heap memory once this segment is freed, may be <tt>null</tt>. */
+    @Nullable
+    private Runnable cleaner;
+
+    /** Optional owner of the memory segment. */
+    @Nullable
+    private final Object owner;
+
     /**
      * Creates a new memory segment that represents the memory of the byte array.
      *
@@ -71,11 +121,69 @@ public class MemorySegment
      * @param buffer The byte array whose memory is represented by this memory segment.
      */
     MemorySegment(@Nonnull byte[] buffer) {
+        this(buffer, null);
+    }
+
+    /**
+     * Creates a new memory segment that represents the memory of the byte array.
+     *
+     * <p>Since the byte array is backed by on-heap memory, this memory segment holds its data on
+     * heap. The buffer must be at least of size 8 bytes.
+     *
+     * <p>The memory segment references the given owner.
+     *
+     * @param buffer The byte array whose memory is represented by this memory segment.
+     * @param owner The owner references by this memory segment.
+     */
+    MemorySegment(@Nonnull byte[] buffer, @Nullable Object owner) {
         this.heapMemory = buffer;
         this.size = buffer.length;
         this.address = BYTE_ARRAY_BASE_OFFSET;
         this.addressLimit = this.address + this.size;
+        this.writeAddressLimit = this.addressLimit;
+        this.readOnly = false;
         this.isFreedAtomic = new AtomicBoolean(false);
+        this.cleaner = null;
+        this.owner = owner;
+    }
+
+    /**
+     * Creates a new memory segment that represents the memory backing the given direct byte
+     * buffer. Note that the given ByteBuffer must be direct {@link
+     * java.nio.ByteBuffer#allocateDirect(int)}, otherwise this method with throw an
+     * IllegalArgumentException.
+     *
+     * <p>The memory segment references the given owner.
+     *
+     * @param buffer The byte buffer whose memory is represented by this memory segment.
+     * @param cleaner The action to run once this segment is freed, to release the memory, may be
+     *     <tt>null</tt> if the memory is released by other means (e.g. garbage collection).
+     * @throws IllegalArgumentException Thrown, if the given ByteBuffer is not direct.
+     */
+    MemorySegment(@Nonnull ByteBuffer buffer, @Nullable Runnable cleaner) {
+        this(buffer, cleaner, null);
+    }
+
+    /**
+     * Creates a new memory segment that represents the memory backing the given direct byte
+     * buffer, referencing the given owner.
+     *
+     * @param buffer The byte buffer whose memory is represented by this memory segment.
+     * @param cleaner The action to run once this segment is freed, may be <tt>null</tt>.
+     * @param owner The owner references by this memory segment.
+     * @throws IllegalArgumentException Thrown, if the given ByteBuffer is not direct.
+     */
+    MemorySegment(@Nonnull ByteBuffer buffer, @Nullable Runnable cleaner, @Nullable Object owner) {
+        this.heapMemory = null;
+        this.offHeapBuffer = buffer;
+        this.size = buffer.capacity();
+        this.address = getByteBufferAddress(buffer);
+        this.addressLimit = this.address + this.size;
+        this.readOnly = buffer.isReadOnly();
+        this.writeAddressLimit = this.readOnly ? this.address : this.addressLimit;
+        this.isFreedAtomic = new AtomicBoolean(false);
+        this.cleaner = cleaner;
+        this.owner = owner;
     }
 
     // ------------------------------------------------------------------------
@@ -103,15 +211,54 @@ public class MemorySegment
     /**
      * Frees this memory segment.
      *
+     * <p>After this operation has been called, no further operations are possible on the memory
+     * segment and will fail. For off-heap segments that own their memory, the native memory is
+     * released immediately.
      */
     public void free() {
         if (!isFreedAtomic.getAndSet(true)) {
             // this ensures we can place no more data and trigger
             // the checks for the freed segment
             address = addressLimit + 1;
+            // the buffer may be referenced by nobody else now, so the memory can be collected
+            offHeapBuffer = null;
+            if (cleaner != null) {
+                cleaner.run();
+                cleaner = null;
+            }
         }
     }
 
+    /**
+     * Gets the owner of this memory segment. Returns null, if the owner was not set.
+     *
+     * @return The owner of the memory segment, or null, if it does not have an owner.
+     */
+    @Nullable
+    public Object getOwner() {
+        return owner;
+    }
+
+    /**
+     * Checks whether this memory segment is backed by off-heap memory.
+     *
+     * @return <tt>true</tt>, if the memory segment is backed by off-heap memory, <tt>false</tt> if
+     *     it is backed by heap memory.
+     */
+    public boolean isOffHeap() {
+        return heapMemory == null;
+    }
+
+    /**
+     * Checks whether this memory segment is backed by a read-only buffer, such as a file mapped
+     * read-only. Writing to a read-only segment throws a {@link ReadOnlyBufferException}.
+     *
+     * @return <tt>true</tt>, if the memory segment must not be written to.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
     /**
      * Returns the byte array of on-heap memory segments.
      *
@@ -119,7 +266,39 @@ public class MemorySegment
      * @throws IllegalStateException if the memory segment does not represent on-heap memory
      */
     public byte[] getArray() {
-        return heapMemory;
+        if (heapMemory != null) {
+            return heapMemory;
+        } else {
+            throw new IllegalStateException("Memory segment does not represent heap memory");
+        }
+    }
+
+    /**
+     * Returns the off-heap buffer of memory segments.
+     *
+     * @return underlying off-heap buffer
+     * @throws IllegalStateException if the memory segment does not represent off-heap buffer
+     */
+    public ByteBuffer getOffHeapBuffer() {
+        if (offHeapBuffer != null) {
+            return offHeapBuffer;
+        } else {
+            throw new IllegalStateException("Memory segment does not represent off-heap buffer");
+        }
+    }
+
+    /**
+     * Returns the memory address of off-heap memory segments.
+     *
+     * @return absolute memory address outside the heap
+     * @throws IllegalStateException if the memory segment does not represent off-heap memory
+     */
+    public long getAddress() {
+        if (heapMemory == null) {
+            return address;
+        } else {
+            throw new IllegalStateException("Memory segment does not represent off heap memory");
+        }
     }
 
     public ByteBuffer wrap(int offset, int length) {
@@ -128,7 +307,18 @@ public class MemorySegment
 
     private ByteBuffer wrapInternal(int offset, int length) {
         if (address <= addressLimit) {
-            return ByteBuffer.wrap(heapMemory, offset, length);
+            if (heapMemory != null) {
+                return ByteBuffer.wrap(heapMemory, offset, length);
+            } else {
+                try {
+                    ByteBuffer wrapper = offHeapBuffer.duplicate();
+                    wrapper.limit(offset + length);
+                    wrapper.position(offset);
+                    return wrapper;
+                } catch (IllegalArgumentException e) {
+                    throw new IndexOutOfBoundsException();
+                }
+            }
         } else {
             throw new IllegalStateException("segment has been freed");
         }
@@ -162,10 +352,12 @@ public class MemorySegment
     }
     public void put(int index, byte b) {
         final long pos = address + index;
-        if (index >= 0 && pos < addressLimit) {
+        if (index >= 0 && pos < writeAddressLimit) {
             UNSAFE.putByte(heapMemory, pos, b);
         } else if (address > addressLimit) {
             throw new IllegalStateException("segment has been freed");
+        } else if (readOnly) {
+            throw new ReadOnlyBufferException();
         } else {
             // index is in fact invalid
             throw new IndexOutOfBoundsException();
@@ -204,11 +396,13 @@ public class MemorySegment
 
         final long pos = address + index;
 
-        if (index >= 0 && pos <= addressLimit - length) {
+        if (index >= 0 && pos <= writeAddressLimit - length) {
             final long arrayAddress = BYTE_ARRAY_BASE_OFFSET + offset;
             UNSAFE.copyMemory(src, arrayAddress, heapMemory, pos, length);
         } else if (address > addressLimit) {
             throw new IllegalStateException("segment has been freed");
+        } else if (readOnly) {
+            throw new ReadOnlyBufferException();
         } else {
             // index is in fact invalid
             throw new IndexOutOfBoundsException();
@@ -249,10 +443,12 @@ public class MemorySegment
     @SuppressWarnings("restriction")
     public void putChar(int index, char value) {
         final long pos = address + index;
-        if (index >= 0 && pos <= addressLimit - 2) {
+        if (index >= 0 && pos <= writeAddressLimit - 2) {
             UNSAFE.putChar(heapMemory, pos, value);
         } else if (address > addressLimit) {
             throw new IllegalStateException("segment has been freed");
+        } else if (readOnly) {
+            throw new ReadOnlyBufferException();
         } else {
             // index is in fact invalid
             throw new IndexOutOfBoundsException();
@@ -300,10 +496,12 @@ public class MemorySegment
     }
     public void putShort(int index, short value) {
         final long pos = address + index;
-        if (index >= 0 && pos <= addressLimit - 2) {
+        if (index >= 0 && pos <= writeAddressLimit - 2) {
             UNSAFE.putShort(heapMemory, pos, value);
         } else if (address > addressLimit) {
             throw new IllegalStateException("segment has been freed");
+        } else if (readOnly) {
+            throw new ReadOnlyBufferException();
         } else {
             // index is in fact invalid
             throw new IndexOutOfBoundsException();
@@ -351,10 +549,12 @@ public class MemorySegment
 
     public void putInt(int index, int value) {
         final long pos = address + index;
-        if (index >= 0 && pos <= addressLimit - 4) {
+        if (index >= 0 && pos <= writeAddressLimit - 4) {
             UNSAFE.putInt(heapMemory, pos, value);
         } else if (address > addressLimit) {
             throw new IllegalStateException("segment has been freed");
+        } else if (readOnly) {
+            throw new ReadOnlyBufferException();
         } else {
             // index is in fact invalid
             throw new IndexOutOfBoundsException();
@@ -401,10 +601,12 @@ public class MemorySegment
     }
     public void putLong(int index, long value) {
         final long pos = address + index;
-        if (index >= 0 && pos <= addressLimit - 8) {
+        if (index >= 0 && pos <= writeAddressLimit - 8) {
             UNSAFE.putLong(heapMemory, pos, value);
         } else if (address > addressLimit) {
             throw new IllegalStateException("segment has been freed");
+        } else if (readOnly) {
+            throw new ReadOnlyBufferException();
         } else {
             // index is in fact invalid
             throw new IndexOutOfBoundsException();
@@ -501,6 +703,9 @@ public class MemorySegment
      *     End-Of-File.
      */
     public void put(DataInput in, int offset, int length) throws IOException {
+        if (readOnly) {
+            throw new ReadOnlyBufferException();
+        }
         if (address <= addressLimit) {
             if (heapMemory != null) {
                 in.readFully(heapMemory, offset, length);
@@ -614,11 +819,13 @@ public class MemorySegment
             final long sourcePointer = getByteBufferAddress(source) + sourceOffset;
             final long targetPointer = address + offset;
 
-            if (targetPointer <= addressLimit - numBytes) {
+            if (targetPointer <= writeAddressLimit - numBytes) {
                 UNSAFE.copyMemory(null, sourcePointer, heapMemory, targetPointer, numBytes);
                 source.position(sourceOffset + numBytes);
             } else if (address > addressLimit) {
                 throw new IllegalStateException("segment has been freed");
+            } else if (readOnly) {
+                throw new ReadOnlyBufferException();
             } else {
                 throw new IndexOutOfBoundsException();
             }
@@ -659,12 +866,14 @@ public class MemorySegment
 
         if ((numBytes | offset | targetOffset) >= 0
                 && thisPointer <= this.addressLimit - numBytes
-                && otherPointer <= target.addressLimit - numBytes) {
+                && otherPointer <= target.writeAddressLimit - numBytes) {
             UNSAFE.copyMemory(thisHeapRef, thisPointer, otherHeapRef, otherPointer, numBytes);
         } else if (this.address > this.addressLimit) {
             throw new IllegalStateException("this memory segment has been freed.");
         } else if (target.address > target.addressLimit) {
             throw new IllegalStateException("target memory segment has been freed.");
+        } else if (target.readOnly) {
+            throw new ReadOnlyBufferException();
         } else {
             throw new IndexOutOfBoundsException(
                     String.format(
@@ -707,6 +916,9 @@ public class MemorySegment
      *     (starting from offset).
      */
     public void copyFromUnsafe(int offset, Object source, int sourcePointer, int numBytes) {
+        if (readOnly) {
+            throw new ReadOnlyBufferException();
+        }
         final long thisPointer = this.address + offset;
         if (thisPointer + numBytes > addressLimit) {
             throw new IndexOutOfBoundsException(
@@ -716,6 +928,249 @@ public class MemorySegment
         UNSAFE.copyMemory(source, sourcePointer, this.heapMemory, thisPointer, numBytes);
     }
 
+    // -------------------------------------------------------------------------
+    //                     Bulk Primitive Array Methods
+    // -------------------------------------------------------------------------
+
+    // The following methods copy a range of a primitive array from or to this segment, starting
+    // at the given byte index of the segment. The offset and length are counted in elements of
+    // the array. Every method checks its bounds once for the whole range. The methods without a
+    // suffix use the native byte order and copy the memory as is, the LittleEndian and BigEndian
+    // variants additionally reverse the bytes of every value if the native byte order differs.
+
+    public void getShorts(int index, short[] dst, int offset, int length) {
+        copyToArray(index, dst, SHORT_ARRAY_BASE_OFFSET, dst.length, offset, length, 1, false);
+    }
+
+    public void putShorts(int index, short[] src, int offset, int length) {
+        copyFromArray(index, src, SHORT_ARRAY_BASE_OFFSET, src.length, offset, length, 1, false);
+    }
+
+    public void getShortsLittleEndian(int index, short[] dst, int offset, int length) {
+        copyToArray(index, dst, SHORT_ARRAY_BASE_OFFSET, dst.length, offset, length, 1, !LITTLE_ENDIAN);
+    }
+
+    public void putShortsLittleEndian(int index, short[] src, int offset, int length) {
+        copyFromArray(index, src, SHORT_ARRAY_BASE_OFFSET, src.length, offset, length, 1, !LITTLE_ENDIAN);
+    }
+
+    public void getShortsBigEndian(int index, short[] dst, int offset, int length) {
+        copyToArray(index, dst, SHORT_ARRAY_BASE_OFFSET, dst.length, offset, length, 1, LITTLE_ENDIAN);
+    }
+
+    public void putShortsBigEndian(int index, short[] src, int offset, int length) {
+        copyFromArray(index, src, SHORT_ARRAY_BASE_OFFSET, src.length, offset, length, 1, LITTLE_ENDIAN);
+    }
+
+    public void getChars(int index, char[] dst, int offset, int length) {
+        copyToArray(index, dst, CHAR_ARRAY_BASE_OFFSET, dst.length, offset, length, 1, false);
+    }
+
+    public void putChars(int index, char[] src, int offset, int length) {
+        copyFromArray(index, src, CHAR_ARRAY_BASE_OFFSET, src.length, offset, length, 1, false);
+    }
+
+    public void getCharsLittleEndian(int index, char[] dst, int offset, int length) {
+        copyToArray(index, dst, CHAR_ARRAY_BASE_OFFSET, dst.length, offset, length, 1, !LITTLE_ENDIAN);
+    }
+
+    public void putCharsLittleEndian(int index, char[] src, int offset, int length) {
+        copyFromArray(index, src, CHAR_ARRAY_BASE_OFFSET, src.length, offset, length, 1, !LITTLE_ENDIAN);
+    }
+
+    public void getCharsBigEndian(int index, char[] dst, int offset, int length) {
+        copyToArray(index, dst, CHAR_ARRAY_BASE_OFFSET, dst.length, offset, length, 1, LITTLE_ENDIAN);
+    }
+
+    public void putCharsBigEndian(int index, char[] src, int offset, int length) {
+        copyFromArray(index, src, CHAR_ARRAY_BASE_OFFSET, src.length, offset, length, 1, LITTLE_ENDIAN);
+    }
+
+    public void getInts(int index, int[] dst, int offset, int length) {
+        copyToArray(index, dst, INT_ARRAY_BASE_OFFSET, dst.length, offset, length, 2, false);
+    }
+
+    public void putInts(int index, int[] src, int offset, int length) {
+        copyFromArray(index, src, INT_ARRAY_BASE_OFFSET, src.length, offset, length, 2, false);
+    }
+
+    public void getIntsLittleEndian(int index, int[] dst, int offset, int length) {
+        copyToArray(index, dst, INT_ARRAY_BASE_OFFSET, dst.length, offset, length, 2, !LITTLE_ENDIAN);
+    }
+
+    public void putIntsLittleEndian(int index, int[] src, int offset, int length) {
+        copyFromArray(index, src, INT_ARRAY_BASE_OFFSET, src.length, offset, length, 2, !LITTLE_ENDIAN);
+    }
+
+    public void getIntsBigEndian(int index, int[] dst, int offset, int length) {
+        copyToArray(index, dst, INT_ARRAY_BASE_OFFSET, dst.length, offset, length, 2, LITTLE_ENDIAN);
+    }
+
+    public void putIntsBigEndian(int index, int[] src, int offset, int length) {
+        copyFromArray(index, src, INT_ARRAY_BASE_OFFSET, src.length, offset, length, 2, LITTLE_ENDIAN);
+    }
+
+    public void getLongs(int index, long[] dst, int offset, int length) {
+        copyToArray(index, dst, LONG_ARRAY_BASE_OFFSET, dst.length, offset, length, 3, false);
+    }
+
+    public void putLongs(int index, long[] src, int offset, int length) {
+        copyFromArray(index, src, LONG_ARRAY_BASE_OFFSET, src.length, offset, length, 3, false);
+    }
+
+    public void getLongsLittleEndian(int index, long[] dst, int offset, int length) {
+        copyToArray(index, dst, LONG_ARRAY_BASE_OFFSET, dst.length, offset, length, 3, !LITTLE_ENDIAN);
+    }
+
+    public void putLongsLittleEndian(int index, long[] src, int offset, int length) {
+        copyFromArray(index, src, LONG_ARRAY_BASE_OFFSET, src.length, offset, length, 3, !LITTLE_ENDIAN);
+    }
+
+    public void getLongsBigEndian(int index, long[] dst, int offset, int length) {
+        copyToArray(index, dst, LONG_ARRAY_BASE_OFFSET, dst.length, offset, length, 3, LITTLE_ENDIAN);
+    }
+
+    public void putLongsBigEndian(int index, long[] src, int offset, int length) {
+        copyFromArray(index, src, LONG_ARRAY_BASE_OFFSET, src.length, offset, length, 3, LITTLE_ENDIAN);
+    }
+
+    public void getFloats(int index, float[] dst, int offset, int length) {
+        copyToArray(index, dst, FLOAT_ARRAY_BASE_OFFSET, dst.length, offset, length, 2, false);
+    }
+
+    public void putFloats(int index, float[] src, int offset, int length) {
+        copyFromArray(index, src, FLOAT_ARRAY_BASE_OFFSET, src.length, offset, length, 2, false);
+    }
+
+    public void getFloatsLittleEndian(int index, float[] dst, int offset, int length) {
+        copyToArray(index, dst, FLOAT_ARRAY_BASE_OFFSET, dst.length, offset, length, 2, !LITTLE_ENDIAN);
+    }
+
+    public void putFloatsLittleEndian(int index, float[] src, int offset, int length) {
+        copyFromArray(index, src, FLOAT_ARRAY_BASE_OFFSET, src.length, offset, length, 2, !LITTLE_ENDIAN);
+    }
+
+    public void getFloatsBigEndian(int index, float[] dst, int offset, int length) {
+        copyToArray(index, dst, FLOAT_ARRAY_BASE_OFFSET, dst.length, offset, length, 2, LITTLE_ENDIAN);
+    }
+
+    public void putFloatsBigEndian(int index, float[] src, int offset, int length) {
+        copyFromArray(index, src, FLOAT_ARRAY_BASE_OFFSET, src.length, offset, length, 2, LITTLE_ENDIAN);
+    }
+
+    public void getDoubles(int index, double[] dst, int offset, int length) {
+        copyToArray(index, dst, DOUBLE_ARRAY_BASE_OFFSET, dst.length, offset, length, 3, false);
+    }
+
+    public void putDoubles(int index, double[] src, int offset, int length) {
+        copyFromArray(index, src, DOUBLE_ARRAY_BASE_OFFSET, src.length, offset, length, 3, false);
+    }
+
+    public void getDoublesLittleEndian(int index, double[] dst, int offset, int length) {
+        copyToArray(index, dst, DOUBLE_ARRAY_BASE_OFFSET, dst.length, offset, length, 3, !LITTLE_ENDIAN);
+    }
+
+    public void putDoublesLittleEndian(int index, double[] src, int offset, int length) {
+        copyFromArray(index, src, DOUBLE_ARRAY_BASE_OFFSET, src.length, offset, length, 3, !LITTLE_ENDIAN);
+    }
+
+    public void getDoublesBigEndian(int index, double[] dst, int offset, int length) {
+        copyToArray(index, dst, DOUBLE_ARRAY_BASE_OFFSET, dst.length, offset, length, 3, LITTLE_ENDIAN);
+    }
+
+    public void putDoublesBigEndian(int index, double[] src, int offset, int length) {
+        copyFromArray(index, src, DOUBLE_ARRAY_BASE_OFFSET, src.length, offset, length, 3, LITTLE_ENDIAN);
+    }
+
+    private void copyToArray(
+            int index, Object dst, long arrayBaseOffset, int arrayLength, int offset, int length, int shift, boolean swapBytes) {
+        if ((offset | length | (offset + length) | (arrayLength - (offset + length))) < 0) {
+            throw new IndexOutOfBoundsException(
+                    String.format("offset: %d, length: %d, array length: %d", offset, length, arrayLength));
+        }
+
+        final long numBytes = ((long) length) << shift;
+        final long pos = address + index;
+        if (index >= 0 && pos <= addressLimit - numBytes) {
+            final long arrayAddress = arrayBaseOffset + (((long) offset) << shift);
+            MemoryUtils.copyPrimitives(heapMemory, pos, dst, arrayAddress, numBytes, 1 << shift, swapBytes);
+        } else if (address > addressLimit) {
+            throw new IllegalStateException("segment has been freed");
+        } else {
+            throw new IndexOutOfBoundsException(
+                    String.format("index: %d, bytes: %d, size: %d", index, numBytes, size));
+        }
+    }
+
+    private void copyFromArray(
+            int index, Object src, long arrayBaseOffset, int arrayLength, int offset, int length, int shift, boolean swapBytes) {
+        if ((offset | length | (offset + length) | (arrayLength - (offset + length))) < 0) {
+            throw new IndexOutOfBoundsException(
+                    String.format("offset: %d, length: %d, array length: %d", offset, length, arrayLength));
+        }
+
+        final long numBytes = ((long) length) << shift;
+        final long pos = address + index;
+        if (index >= 0 && pos <= writeAddressLimit - numBytes) {
+            final long arrayAddress = arrayBaseOffset + (((long) offset) << shift);
+            MemoryUtils.copyPrimitives(src, arrayAddress, heapMemory, pos, numBytes, 1 << shift, swapBytes);
+        } else if (address > addressLimit) {
+            throw new IllegalStateException("segment has been freed");
+        } else if (readOnly) {
+            throw new ReadOnlyBufferException();
+        } else {
+            throw new IndexOutOfBoundsException(
+                    String.format("index: %d, bytes: %d, size: %d", index, numBytes, size));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    //                         Checksums & Hashing
+    // -------------------------------------------------------------------------
+
+    /**
+     * Computes a checksum of a range of this segment, reading the memory in place. The CRC
+     * checksums are widened to an unsigned long.
+     *
+     * @param offset The offset of the first byte.
+     * @param length The number of bytes.
+     * @param algorithm The checksum algorithm.
+     * @return The checksum of the bytes.
+     * @throws IndexOutOfBoundsException Thrown, if the range exceeds the segment.
+     * @throws IllegalStateException Thrown, if the segment has been freed.
+     */
+    public long checksum(int offset, int length, ChecksumAlgorithm algorithm) {
+        if (address > addressLimit) {
+            throw new IllegalStateException("segment has been freed");
+        }
+        return algorithm.checksum(this, offset, length);
+    }
+
+    /**
+     * Computes a 32 bit hash code of a range of this segment, reading the memory in place. The
+     * hash code is the 64 bit xxHash of the bytes, folded in half, so all of its bits depend on all
+     * bytes and any of them may select a hash table bucket or a partition. It equals {@link
+     * info.victorchu.bamboo.utils.ByteUtils#hash(byte[], int, int)} of the same bytes.
+     *
+     * @param offset The offset of the first byte.
+     * @param length The number of bytes.
+     * @return The hash code of the bytes.
+     * @throws IndexOutOfBoundsException Thrown, if the range exceeds the segment.
+     * @throws IllegalStateException Thrown, if the segment has been freed.
+     */
+    public int hash(int offset, int length) {
+        final long pos = address + offset;
+        if (offset >= 0 && length >= 0 && pos <= addressLimit - length) {
+            long hash = HashUtils.xxHash64Unsafe(heapMemory, pos, length, 0);
+            return (int) (hash ^ (hash >>> 32));
+        } else if (address > addressLimit) {
+            throw new IllegalStateException("segment has been freed");
+        } else {
+            throw new IndexOutOfBoundsException(
+                    String.format("offset: %d, length: %d, size: %d", offset, length, size));
+        }
+    }
+
     // -------------------------------------------------------------------------
     //                      Comparisons & Swapping
     // -------------------------------------------------------------------------
@@ -787,7 +1242,7 @@ public class MemorySegment
             final long thisPos = this.address + offset1;
             final long otherPos = seg2.address + offset2;
 
-            if (thisPos <= this.addressLimit - len && otherPos <= seg2.addressLimit - len) {
+            if (thisPos <= this.writeAddressLimit - len && otherPos <= seg2.writeAddressLimit - len) {
                 // this -> temp buffer
                 UNSAFE.copyMemory(
                         this.heapMemory, thisPos, tempBuffer, BYTE_ARRAY_BASE_OFFSET, len);
@@ -803,6 +1258,8 @@ public class MemorySegment
                 throw new IllegalStateException("this memory segment has been freed.");
             } else if (seg2.address > seg2.addressLimit) {
                 throw new IllegalStateException("other memory segment has been freed.");
+            } else if (this.readOnly || seg2.readOnly) {
+                throw new ReadOnlyBufferException();
             }
         }
 
@@ -0,0 +1,15 @@
+package info.victorchu.bamboo.memory;
+
+import javax.annotation.Nullable;
+
+/** Interface describing entities that can provide memory segments. */
+public interface MemorySegmentSource
+{
+    /**
+     * Gets the next memory segment. If no more segments are available, it returns null.
+     *
+     * @return The next memory segment, or null, if none is available.
+     */
+    @Nullable
+    MemorySegment nextSegment();
+}
@@ -1,9 +1,24 @@
 package info.victorchu.bamboo.memory;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
 import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
 
 public class MemorySegments
 {
+    private static final Runnable NO_OP = () -> {};
+
+    /**
+     * The default size of the segments a large file is mapped with. It is a power of two, so that
+     * the segments can be read as one stream with a {@link RandomAccessInputView}.
+     */
+    public static final int DEFAULT_MAP_SEGMENT_SIZE = 1 << 30;
+
     /**
      * Creates a new memory segment that targets the given heap memory region.
      *
@@ -44,4 +59,129 @@ public class MemorySegments
     public static MemorySegment allocate(int size) {
         return new MemorySegment(new byte[size]);
     }
+
+    /**
+     * Allocates some native memory and creates a new memory segment that represents that memory.
+     *
+     * <p>The memory is not managed by the garbage collector, it is released as soon as the
+     * segment is {@link MemorySegment#free() freed}. Segments that are never freed leak memory.
+     *
+     * @param size The size of the memory segment to allocate.
+     * @return A new memory segment, backed by unpooled off-heap memory.
+     */
+    public static MemorySegment allocateOffHeap(int size) {
+        return allocateUnsafe(size, NO_OP);
+    }
+
+    /**
+     * Allocates an off-heap unsafe memory and creates a new memory segment to represent that
+     * memory.
+     *
+     * <p>The memory is released as soon as the segment is {@link MemorySegment#free() freed}, and
+     * the given custom cleanup action is run right after that, e.g. to return the memory to some
+     * budget.
+     *
+     * @param size The size of the off-heap unsafe memory segment to allocate.
+     * @param customCleanupAction A custom action to run after the memory has been released.
+     * @return A new memory segment, backed by off-heap unsafe memory.
+     */
+    public static MemorySegment allocateUnsafe(int size, Runnable customCleanupAction) {
+        checkArgument(size >= 0, "size must not be negative");
+        long address = MemoryUtils.allocateUnsafe(size);
+        ByteBuffer offHeapBuffer = MemoryUtils.wrapUnsafeMemoryWithByteBuffer(address, size);
+        Runnable cleaner = MemoryUtils.createMemoryCleaner(address, customCleanupAction);
+        return new MemorySegment(offHeapBuffer, cleaner);
+    }
+
+    /**
+     * Creates a memory segment that wraps the off-heap memory backing the given ByteBuffer. Note
+     * that the ByteBuffer needs to be a <i>direct ByteBuffer</i>.
+     *
+     * <p>The memory stays owned by the buffer: freeing the segment does not release it, the
+     * memory is released once the buffer is garbage collected.
+     *
+     * @param memory The byte buffer with the off-heap memory to be represented by the memory
+     *     segment.
+     * @return A new memory segment representing the given off-heap memory.
+     * @throws IllegalArgumentException if the buffer is not direct
+     */
+    public static MemorySegment wrapDirect(ByteBuffer memory) {
+        checkArgument(memory.isDirect(), "Can't wrap a non-direct ByteBuffer.");
+        return new MemorySegment(memory, null);
+    }
+
+    /**
+     * Maps a region of the given file into memory and creates a memory segment over the mapped
+     * memory. All accessors of the segment read the file contents without copying them onto the
+     * heap; the operating system pages them in on first access.
+     *
+     * <p>The region is unmapped as soon as the segment is {@link MemorySegment#free() freed}, which
+     * releases the virtual memory right away instead of at the next garbage collection. The
+     * mapping stays valid after the channel is closed.
+     *
+     * <p>A segment mapped with {@link FileChannel.MapMode#READ_ONLY} is {@link
+     * MemorySegment#isReadOnly() read-only}: its writing accessors throw a {@link
+     * java.nio.ReadOnlyBufferException}.
+     *
+     * @param channel The channel of the file to map.
+     * @param position The position in the file at which the mapped region starts.
+     * @param length The length of the mapped region, at most {@link Integer#MAX_VALUE} bytes.
+     * @param mode The mapping mode.
+     * @return A new memory segment over the mapped region.
+     * @throws IOException Thrown, if the file could not be mapped.
+     */
+    public static MemorySegment map(FileChannel channel, long position, long length, FileChannel.MapMode mode)
+            throws IOException {
+        checkArgument(position >= 0, "position must not be negative");
+        checkArgument(length > 0 && length <= Integer.MAX_VALUE, "length must be in (0, Integer.MAX_VALUE]: %s", length);
+        MappedByteBuffer buffer = channel.map(mode, position, length);
+        return new MemorySegment(buffer, () -> MemoryUtils.unmap(buffer));
+    }
+
+    /**
+     * Maps a region of the given file of any size into memory, as a sequence of memory segments of
+     * {@link #DEFAULT_MAP_SEGMENT_SIZE} bytes each. Only the last segment may be shorter.
+     *
+     * @see #mapSegments(FileChannel, long, long, FileChannel.MapMode, int)
+     */
+    public static List<MemorySegment> mapSegments(FileChannel channel, long position, long length, FileChannel.MapMode mode)
+            throws IOException {
+        return mapSegments(channel, position, length, mode, DEFAULT_MAP_SEGMENT_SIZE);
+    }
+
+    /**
+     * Maps a region of the given file of any size into memory, as a sequence of memory segments of
+     * the given size each. Only the last segment may be shorter. The segments are unmapped one by
+     * one as they are freed, see {@link #map(FileChannel, long, long, FileChannel.MapMode)}.
+     *
+     * <p>If the segment size is a power of two, the segments can be read as one contiguous stream
+     * through a {@link RandomAccessInputView}.
+     *
+     * @param channel The channel of the file to map.
+     * @param position The position in the file at which the mapped region starts.
+     * @param length The length of the mapped region.
+     * @param mode The mapping mode.
+     * @param segmentSize The size of every mapped segment but the last one.
+     * @return The memory segments over the mapped region, in file order.
+     * @throws IOException Thrown, if the file could not be mapped. Segments mapped before the
+     *     failure are unmapped again.
+     */
+    public static List<MemorySegment> mapSegments(
+            FileChannel channel, long position, long length, FileChannel.MapMode mode, int segmentSize)
+            throws IOException {
+        checkArgument(length > 0, "length must be positive");
+        checkArgument(segmentSize > 0, "segmentSize must be positive");
+        List<MemorySegment> segments = new ArrayList<>((int) ((length - 1) / segmentSize + 1));
+        try {
+            for (long offset = 0; offset < length; offset += segmentSize) {
+                segments.add(map(channel, position + offset, Math.min(segmentSize, length - offset), mode));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (MemorySegment segment : segments) {
+                segment.free();
+            }
+            throw e;
+        }
+        return segments;
+    }
 }
@@ -1,17 +1,19 @@
 package info.victorchu.bamboo.memory;
 
 import info.victorchu.bamboo.utils.Preconditions;
+import info.victorchu.bamboo.utils.UnsafeUtils;
 
-import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 
 public class MemoryUtils
 {
     /** The "unsafe", which can be used to perform native memory accesses. */
     @SuppressWarnings({"restriction", "UseOfSunClasses"})
-    public static final sun.misc.Unsafe UNSAFE = getUnsafe();
+    public static final sun.misc.Unsafe UNSAFE = UnsafeUtils.UNSAFE;
 
     /** The native byte order of the platform on which the system currently runs. */
     public static final ByteOrder NATIVE_BYTE_ORDER = ByteOrder.nativeOrder();
@@ -23,27 +25,8 @@ public class MemoryUtils
     private static final Class<?> DIRECT_BYTE_BUFFER_CLASS =
             getClassByName("java.nio.DirectByteBuffer");
 
-    @SuppressWarnings("restriction")
-    private static sun.misc.Unsafe getUnsafe() {
-        try {
-            Field unsafeField = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
-            unsafeField.setAccessible(true);
-            return (sun.misc.Unsafe) unsafeField.get(null);
-        } catch (SecurityException e) {
-            throw new Error(
-                    "Could not access the sun.misc.Unsafe handle, permission denied by security manager.",
-                    e);
-        } catch (NoSuchFieldException e) {
-            throw new Error("The static handle field in sun.misc.Unsafe was not found.", e);
-        } catch (IllegalArgumentException e) {
-            throw new Error("Bug: Illegal argument reflection access for static field.", e);
-        } catch (IllegalAccessException e) {
-            throw new Error("Access to sun.misc.Unsafe is forbidden by the runtime.", e);
-        } catch (Throwable t) {
-            throw new Error(
-                    "Unclassified error while trying to access the sun.misc.Unsafe handle.", t);
-        }
-    }
+    /** {@code Unsafe#invokeCleaner(ByteBuffer)}, which only exists since Java 9. */
+    private static final Method INVOKE_CLEANER_METHOD = getInvokeCleanerMethod();
 
     private static long getClassFieldOffset(
             @SuppressWarnings("SameParameterValue") Class<?> cl, String fieldName) {
@@ -106,4 +89,130 @@ public class MemoryUtils
 
         return offHeapAddress;
     }
+
+    /**
+     * Allocates unsafe native memory.
+     *
+     * @param size size of the unsafe memory to allocate.
+     * @return address of the allocated unsafe memory
+     */
+    static long allocateUnsafe(long size) {
+        return UNSAFE.allocateMemory(Math.max(1L, size));
+    }
+
+    /**
+     * Creates a cleaner to release the unsafe memory.
+     *
+     * @param address address of the unsafe memory to release
+     * @param customCleanup The custom action to run after the memory has been released
+     * @return action to run to release the unsafe memory
+     */
+    static Runnable createMemoryCleaner(long address, Runnable customCleanup) {
+        return () -> {
+            releaseUnsafe(address);
+            customCleanup.run();
+        };
+    }
+
+    static void releaseUnsafe(long address) {
+        UNSAFE.freeMemory(address);
+    }
+
+    private static Method getInvokeCleanerMethod() {
+        try {
+            return UNSAFE.getClass().getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Unmaps the memory of the given mapped buffer right away, instead of waiting for the buffer to
+     * be garbage collected. The buffer and all its views must not be accessed afterwards, that
+     * would crash the JVM.
+     *
+     * @param buffer The buffer returned by {@link java.nio.channels.FileChannel#map}.
+     */
+    static void unmap(MappedByteBuffer buffer) {
+        try {
+            if (INVOKE_CLEANER_METHOD != null) {
+                INVOKE_CLEANER_METHOD.invoke(UNSAFE, buffer);
+            } else {
+                // Java 8: ((sun.nio.ch.DirectBuffer) buffer).cleaner().clean()
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Throwable t) {
+            throw new Error("Failed to unmap memory-mapped file buffer", t);
+        }
+    }
+
+    /**
+     * Wraps the unsafe native memory with a {@link ByteBuffer}.
+     *
+     * @param address address of the unsafe memory to wrap
+     * @param size size of the unsafe memory to wrap
+     * @return a {@link ByteBuffer} which is a view of the given unsafe memory
+     */
+    static ByteBuffer wrapUnsafeMemoryWithByteBuffer(long address, int size) {
+        //noinspection OverlyBroadCatchBlock
+        try {
+            ByteBuffer buffer = (ByteBuffer) UNSAFE.allocateInstance(DIRECT_BYTE_BUFFER_CLASS);
+            UNSAFE.putLong(buffer, BUFFER_ADDRESS_FIELD_OFFSET, address);
+            UNSAFE.putInt(buffer, BUFFER_CAPACITY_FIELD_OFFSET, size);
+            buffer.clear();
+            // the constructor was skipped, so the byte order fields are not initialized yet
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return buffer;
+        } catch (Throwable t) {
+            throw new Error("Failed to wrap unsafe off-heap memory with ByteBuffer", t);
+        }
+    }
+
+    /**
+     * Copies a range of primitive values between two memory regions, addressed like {@link
+     * sun.misc.Unsafe#copyMemory(Object, long, Object, long, long)}. Without byte swapping this is
+     * a single memory copy; with byte swapping every value of the given size is reversed on the
+     * way, which the JIT compiles to one swap instruction per value. The regions must not overlap
+     * and are not checked.
+     *
+     * @param src The base object of the source, or null for off-heap memory.
+     * @param srcOffset The offset or address of the source.
+     * @param dst The base object of the target, or null for off-heap memory.
+     * @param dstOffset The offset or address of the target.
+     * @param numBytes The number of bytes to copy, a multiple of the value size.
+     * @param valueSize The size of the values in bytes, one of 1, 2, 4 or 8.
+     * @param swapBytes Whether to reverse the bytes of every value.
+     */
+    @SuppressWarnings("restriction")
+    static void copyPrimitives(
+            Object src, long srcOffset, Object dst, long dstOffset, long numBytes, int valueSize, boolean swapBytes) {
+        if (!swapBytes || valueSize == 1) {
+            UNSAFE.copyMemory(src, srcOffset, dst, dstOffset, numBytes);
+            return;
+        }
+        switch (valueSize) {
+            case 2:
+                for (long i = 0; i < numBytes; i += 2) {
+                    UNSAFE.putShort(dst, dstOffset + i, Short.reverseBytes(UNSAFE.getShort(src, srcOffset + i)));
+                }
+                break;
+            case 4:
+                for (long i = 0; i < numBytes; i += 4) {
+                    UNSAFE.putInt(dst, dstOffset + i, Integer.reverseBytes(UNSAFE.getInt(src, srcOffset + i)));
+                }
+                break;
+            case 8:
+                for (long i = 0; i < numBytes; i += 8) {
+                    UNSAFE.putLong(dst, dstOffset + i, Long.reverseBytes(UNSAFE.getLong(src, srcOffset + i)));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported value size: " + valueSize);
+        }
+    }
 }
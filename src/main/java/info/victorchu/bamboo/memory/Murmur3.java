@@ -0,0 +1,37 @@
+package info.victorchu.bamboo.memory;
+
+import info.victorchu.bamboo.utils.ByteUtils;
+import info.victorchu.bamboo.utils.HashUtils;
+
+/**
+ * The 128 bit x64 variant of MurmurHash3, reduced to its first 64 bits, over a range of a segment.
+ * It equals {@link ByteUtils#murmur3Hash64(byte[], int, int, int)} of the same bytes.
+ */
+public final class Murmur3
+{
+    private Murmur3() {}
+
+    /**
+     * Hashes a range of a segment.
+     *
+     * @param segment The segment holding the bytes.
+     * @param offset The offset of the first byte.
+     * @param length The number of bytes.
+     * @param seed The seed of the hash.
+     * @return The first 64 bits of the hash of the bytes.
+     */
+    public static long hash64(MemorySegment segment, int offset, int length, int seed)
+    {
+        if (segment.isFreed()) {
+            throw new IllegalStateException("segment has been freed");
+        }
+        if ((offset | length | (segment.size() - offset - length)) < 0) {
+            throw new IndexOutOfBoundsException(
+                    String.format("offset: %s, length: %s, segment size: %s", offset, length, segment.size()));
+        }
+        if (segment.isOffHeap()) {
+            return HashUtils.murmur3Hash64Unsafe(null, segment.getAddress() + offset, length, seed);
+        }
+        return ByteUtils.murmur3Hash64(segment.getArray(), offset, length, seed);
+    }
+}
@@ -0,0 +1,91 @@
+package info.victorchu.bamboo.memory;
+
+import info.victorchu.bamboo.utils.MathUtils;
+
+import java.io.EOFException;
+import java.util.List;
+
+/**
+ * An input view over a list of equally sized memory segments, that can be positioned at any
+ * logical offset. The last segment may be filled only up to a given limit.
+ */
+public class RandomAccessInputView
+        extends AbstractPagedInputView
+{
+    private final List<MemorySegment> segments;
+
+    private int currentSegmentIndex;
+
+    private final int segmentSizeBits;
+
+    private final int segmentSizeMask;
+
+    private final int segmentSize;
+
+    private final int limitInLastSegment;
+
+    public RandomAccessInputView(List<MemorySegment> segments, int segmentSize)
+    {
+        this(segments, segmentSize, segmentSize);
+    }
+
+    public RandomAccessInputView(List<MemorySegment> segments, int segmentSize, int limitInLastSegment)
+    {
+        super(segments.get(0), segments.size() > 1 ? segmentSize : limitInLastSegment, 0);
+        this.segments = segments;
+        this.currentSegmentIndex = 0;
+        this.segmentSize = segmentSize;
+        this.segmentSizeBits = MathUtils.log2strict(segmentSize);
+        this.segmentSizeMask = segmentSize - 1;
+        this.limitInLastSegment = limitInLastSegment;
+    }
+
+    /**
+     * Sets the read pointer to the given logical position.
+     *
+     * @param position The new read position, counted over all pages.
+     */
+    public void setReadPosition(long position)
+    {
+        final int bufferNum = (int) (position >>> this.segmentSizeBits);
+        final int offset = (int) (position & this.segmentSizeMask);
+
+        this.currentSegmentIndex = bufferNum;
+        seekInput(
+                this.segments.get(bufferNum),
+                offset,
+                bufferNum < this.segments.size() - 1 ? this.segmentSize : this.limitInLastSegment);
+    }
+
+    /**
+     * Gets the current logical read position.
+     *
+     * @return The read position, counted over all pages.
+     */
+    public long getReadPosition()
+    {
+        return (((long) currentSegmentIndex) << segmentSizeBits) + getCurrentPositionInSegment();
+    }
+
+    @Override
+    protected MemorySegment nextSegment(MemorySegment current)
+            throws EOFException
+    {
+        if (++this.currentSegmentIndex < this.segments.size()) {
+            return this.segments.get(this.currentSegmentIndex);
+        }
+        else {
+            // stay on the last segment, so the EOF is reproducible
+            this.currentSegmentIndex--;
+            throw new EOFException();
+        }
+    }
+
+    @Override
+    protected int getLimitForSegment(MemorySegment segment)
+    {
+        return this.currentSegmentIndex == this.segments.size() - 1
+                ? this.limitInLastSegment
+                : this.segmentSize;
+    }
+}
@@ -0,0 +1,56 @@
+package info.victorchu.bamboo.memory;
+
+import info.victorchu.bamboo.utils.MathUtils;
+
+import java.io.EOFException;
+
+/**
+ * An output view over a fixed array of equally sized memory segments, whose write position can be
+ * set to any logical offset.
+ */
+public class RandomAccessOutputView
+        extends AbstractPagedOutputView
+{
+    private final MemorySegment[] segments;
+
+    private int currentSegmentIndex;
+
+    private final int segmentSizeBits;
+
+    private final int segmentSizeMask;
+
+    public RandomAccessOutputView(MemorySegment[] segments, int segmentSize)
+    {
+        super(segments[0], segmentSize, 0);
+        this.segments = segments;
+        this.segmentSizeBits = MathUtils.log2strict(segmentSize);
+        this.segmentSizeMask = segmentSize - 1;
+    }
+
+    @Override
+    protected MemorySegment nextSegment(MemorySegment current, int positionInCurrent)
+            throws EOFException
+    {
+        if (++this.currentSegmentIndex < this.segments.length) {
+            return this.segments[this.currentSegmentIndex];
+        }
+        else {
+            this.currentSegmentIndex--;
+            throw new EOFException();
+        }
+    }
+
+    /**
+     * Sets the write pointer to the given logical position.
+     *
+     * @param position The new write position, counted over all pages.
+     */
+    public void setWritePosition(long position)
+    {
+        final int bufferNum = (int) (position >>> this.segmentSizeBits);
+        final int offset = (int) (position & this.segmentSizeMask);
+
+        this.currentSegmentIndex = bufferNum;
+        seekOutput(this.segments[bufferNum], offset);
+    }
+}
@@ -0,0 +1,22 @@
+package info.victorchu.bamboo.memory;
+
+import java.util.zip.Checksum;
+
+/**
+ * A {@link Checksum} that is also updated directly from the memory of a segment, without copying
+ * the bytes into an array first.
+ *
+ * @see ChecksumAlgorithm
+ */
+public interface SegmentChecksum
+        extends Checksum
+{
+    /**
+     * Updates the checksum with a range of bytes of a segment.
+     *
+     * @param segment The segment holding the bytes.
+     * @param offset The offset of the first byte.
+     * @param length The number of bytes.
+     */
+    void update(MemorySegment segment, int offset, int length);
+}
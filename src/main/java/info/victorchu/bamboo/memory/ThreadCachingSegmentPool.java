@@ -0,0 +1,390 @@
+package info.victorchu.bamboo.memory;
+
+import javax.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+import static info.victorchu.bamboo.utils.Preconditions.checkState;
+
+/**
+ * A pool of equally sized {@link MemorySegment memory segments} for many concurrently allocating
+ * threads, modelled after the thread caches of jemalloc.
+ *
+ * <p>Every thread owns a small magazine of free segments, which serves requests and takes back
+ * recycled segments without any synchronization. Only when its magazine runs empty or overflows,
+ * a thread moves half a magazine worth of segments from or to a shared lock-free stack. A segment
+ * is always recycled into the magazine of the thread that recycles it.
+ *
+ * <p>Segments are created lazily, up to the maximum number of segments of the pool. Note that
+ * segments cached in the magazine of one thread are not visible to other threads, so an
+ * allocation may fail while other threads still cache up to one magazine of segments each.
+ * Threads that stop allocating should hand their cached segments back via {@link
+ * #releaseThreadCache()}.
+ *
+ * <p>Unlike the {@link MemoryManager}, the pool hands out the recycled segment objects themselves,
+ * so a segment must not be accessed any more once it has been recycled. With assertions enabled,
+ * the pool tracks its free segments and fails on a segment that is recycled twice.
+ */
+public class ThreadCachingSegmentPool
+        implements AutoCloseable
+{
+    /** The default number of segments each thread caches locally. */
+    public static final int DEFAULT_MAGAZINE_SIZE = 32;
+
+    private final int segmentSize;
+
+    private final int maxNumSegments;
+
+    private final boolean offHeap;
+
+    private final int magazineSize;
+
+    /** The top of the shared lock-free stack of free segments. */
+    private final AtomicReference<Node> sharedTop = new AtomicReference<>();
+
+    /** The number of segments created so far, never exceeds {@link #maxNumSegments}. */
+    private final AtomicInteger numCreatedSegments = new AtomicInteger();
+
+    /** All segments created by this pool, to free them on close. */
+    private final ConcurrentLinkedQueue<MemorySegment> allSegments = new ConcurrentLinkedQueue<>();
+
+    private final ThreadLocal<Magazine> magazines;
+
+    /** The free segments, only tracked with assertions enabled, to detect double recycling. */
+    private final Set<MemorySegment> freeSegments = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean closed;
+
+    public ThreadCachingSegmentPool(int segmentSize, int maxNumSegments, boolean offHeap)
+    {
+        this(segmentSize, maxNumSegments, offHeap, DEFAULT_MAGAZINE_SIZE);
+    }
+
+    /**
+     * Creates a new pool.
+     *
+     * @param segmentSize The size of the segments handed out by the pool.
+     * @param maxNumSegments The maximum number of segments the pool creates.
+     * @param offHeap True, if the segments are backed by native memory, false for heap memory.
+     * @param magazineSize The maximum number of free segments cached per thread.
+     */
+    public ThreadCachingSegmentPool(int segmentSize, int maxNumSegments, boolean offHeap, int magazineSize)
+    {
+        checkArgument(segmentSize > 0, "The segment size must be positive.");
+        checkArgument(maxNumSegments > 0, "The maximum number of segments must be positive.");
+        checkArgument(magazineSize >= 2, "The magazine size must be at least 2.");
+        this.segmentSize = segmentSize;
+        this.maxNumSegments = maxNumSegments;
+        this.offHeap = offHeap;
+        this.magazineSize = magazineSize;
+        this.magazines = ThreadLocal.withInitial(() -> new Magazine(magazineSize));
+    }
+
+    // ------------------------------------------------------------------------
+    //  Requesting and recycling
+    // ------------------------------------------------------------------------
+
+    /**
+     * Requests a free segment from the pool.
+     *
+     * @return A free segment.
+     * @throws MemoryAllocationException Thrown, if the pool has no free segments, and can not
+     *     create any more.
+     */
+    public MemorySegment requestSegment()
+            throws MemoryAllocationException
+    {
+        checkState(!closed, "Segment pool has been closed.");
+
+        final Magazine magazine = magazines.get();
+        MemorySegment segment = magazine.pop();
+        if (segment != null) {
+            assert markInUse(segment);
+            return segment;
+        }
+
+        // the local magazine is empty, refill half of it from the shared stack
+        segment = refillFromShared(magazine);
+        if (segment != null) {
+            assert markInUse(segment);
+            return segment;
+        }
+
+        segment = createSegment();
+        if (segment != null) {
+            return segment;
+        }
+
+        throw new MemoryAllocationException(String.format(
+                "Could not allocate a segment. All %d segments are in use or cached by other threads.",
+                maxNumSegments));
+    }
+
+    /**
+     * Requests the given number of free segments from the pool. If not all of the segments can be
+     * obtained, the ones obtained so far are recycled again.
+     *
+     * @param target The collection to add the segments to.
+     * @param numSegments The number of segments to request.
+     * @throws MemoryAllocationException Thrown, if the pool can not provide enough segments.
+     */
+    public void requestSegments(Collection<MemorySegment> target, int numSegments)
+            throws MemoryAllocationException
+    {
+        checkNotNull(target, "The target collection must not be null.");
+        checkArgument(numSegments >= 0, "The number of segments must not be negative: %s", numSegments);
+        MemorySegment[] segments = new MemorySegment[numSegments];
+        int obtained = 0;
+        try {
+            for (; obtained < numSegments; obtained++) {
+                segments[obtained] = requestSegment();
+            }
+        }
+        catch (MemoryAllocationException e) {
+            for (int i = 0; i < obtained; i++) {
+                recycle(segments[i]);
+            }
+            throw e;
+        }
+        for (MemorySegment segment : segments) {
+            target.add(segment);
+        }
+    }
+
+    /**
+     * Returns a segment to the pool. The segment goes into the cache of the calling thread, and
+     * must not be accessed any more by the caller. It must not be recycled again before it has
+     * been requested again.
+     *
+     * @param segment The segment to recycle.
+     */
+    public void recycle(MemorySegment segment)
+    {
+        checkNotNull(segment, "The segment must not be null.");
+        checkArgument(segment.size() == segmentSize, "The segment does not belong to this pool.");
+        if (closed) {
+            // the segment has been freed already
+            return;
+        }
+        assert markFree(segment);
+
+        final Magazine magazine = magazines.get();
+        if (magazine.isFull()) {
+            flushToShared(magazine, magazineSize / 2);
+        }
+        magazine.push(segment);
+    }
+
+    /**
+     * Recycles all the given segments, see {@link #recycle(MemorySegment)}.
+     *
+     * @param segments The segments to recycle.
+     */
+    public void recycle(Collection<MemorySegment> segments)
+    {
+        for (MemorySegment segment : segments) {
+            recycle(segment);
+        }
+        segments.clear();
+    }
+
+    /**
+     * Moves all segments cached by the calling thread to the shared stack, so that other threads
+     * can use them.
+     */
+    public void releaseThreadCache()
+    {
+        flushToShared(magazines.get(), magazineSize);
+    }
+
+    /**
+     * Frees all segments created by this pool, including the ones still in use. Any further use
+     * of the pool fails.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        MemorySegment segment;
+        while ((segment = allSegments.poll()) != null) {
+            segment.free();
+        }
+        sharedTop.set(null);
+        magazines.remove();
+        freeSegments.clear();
+    }
+
+    // ------------------------------------------------------------------------
+    //  Properties
+    // ------------------------------------------------------------------------
+
+    public int getSegmentSize()
+    {
+        return segmentSize;
+    }
+
+    public int getMaxNumSegments()
+    {
+        return maxNumSegments;
+    }
+
+    /**
+     * Gets the number of segments the pool has created so far.
+     *
+     * @return The number of created segments.
+     */
+    public int getNumCreatedSegments()
+    {
+        return numCreatedSegments.get();
+    }
+
+    // ------------------------------------------------------------------------
+    //  Internals
+    // ------------------------------------------------------------------------
+
+    @Nullable
+    private MemorySegment createSegment()
+    {
+        int created;
+        do {
+            created = numCreatedSegments.get();
+            if (created >= maxNumSegments) {
+                return null;
+            }
+        }
+        while (!numCreatedSegments.compareAndSet(created, created + 1));
+
+        MemorySegment segment = offHeap
+                ? MemorySegments.allocateOffHeap(segmentSize)
+                : MemorySegments.allocate(segmentSize);
+        allSegments.add(segment);
+        return segment;
+    }
+
+    private boolean markInUse(MemorySegment segment)
+    {
+        return freeSegments.remove(segment);
+    }
+
+    private boolean markFree(MemorySegment segment)
+    {
+        checkState(freeSegments.add(segment), "The segment has been recycled twice.");
+        return true;
+    }
+
+    /**
+     * Pops up to half a magazine of segments from the shared stack. The first popped segment is
+     * returned, the rest goes into the given magazine.
+     */
+    @Nullable
+    private MemorySegment refillFromShared(Magazine magazine)
+    {
+        final int batch = Math.max(1, magazineSize / 2);
+        Node top;
+        Node newTop;
+        int count;
+        do {
+            top = sharedTop.get();
+            if (top == null) {
+                return null;
+            }
+            // nodes are immutable and never pushed twice, so the chain below an unchanged top
+            // is unchanged as well
+            newTop = top;
+            count = 0;
+            while (newTop != null && count < batch) {
+                newTop = newTop.next;
+                count++;
+            }
+        }
+        while (!sharedTop.compareAndSet(top, newTop));
+
+        Node node = top.next;
+        for (int i = 1; i < count; i++) {
+            magazine.push(node.segment);
+            node = node.next;
+        }
+        return top.segment;
+    }
+
+    /** Pushes up to the given number of segments from the magazine onto the shared stack. */
+    private void flushToShared(Magazine magazine, int numSegments)
+    {
+        if (magazine.isEmpty()) {
+            return;
+        }
+        // build the chain locally, then publish it with a single CAS
+        final Node last = new Node(magazine.pop(), null);
+        Node first = last;
+        for (int i = 1; i < numSegments && !magazine.isEmpty(); i++) {
+            first = new Node(magazine.pop(), first);
+        }
+
+        Node top;
+        do {
+            top = sharedTop.get();
+            last.next = top;
+        }
+        while (!sharedTop.compareAndSet(top, first));
+    }
+
+    /** A node of the shared stack. */
+    private static final class Node
+    {
+        private final MemorySegment segment;
+
+        /** Only modified before the node is published by a CAS. */
+        private Node next;
+
+        Node(MemorySegment segment, Node next)
+        {
+            this.segment = segment;
+            this.next = next;
+        }
+    }
+
+    /** The thread local cache of free segments. Only accessed by its owning thread. */
+    private static final class Magazine
+    {
+        private final MemorySegment[] segments;
+        private int count;
+
+        Magazine(int capacity)
+        {
+            this.segments = new MemorySegment[capacity];
+        }
+
+        boolean isEmpty()
+        {
+            return count == 0;
+        }
+
+        boolean isFull()
+        {
+            return count == segments.length;
+        }
+
+        void push(MemorySegment segment)
+        {
+            segments[count++] = segment;
+        }
+
+        @Nullable
+        MemorySegment pop()
+        {
+            if (count == 0) {
+                return null;
+            }
+            MemorySegment segment = segments[--count];
+            segments[count] = null;
+            return segment;
+        }
+    }
+}
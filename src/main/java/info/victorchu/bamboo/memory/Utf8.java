@@ -0,0 +1,238 @@
+package info.victorchu.bamboo.memory;
+
+import java.io.UTFDataFormatException;
+
+/**
+ * Encoding and decoding of strings as UTF-8 and as the modified UTF-8 of {@link
+ * java.io.DataOutput#writeUTF(String)}, directly on byte arrays.
+ *
+ * <p>The UTF-8 encoding is standard UTF-8 for all well-formed strings. Unpaired surrogates, which
+ * have no UTF-8 representation, are encoded as three byte sequences like in modified UTF-8, so
+ * that every string survives a round trip unchanged.
+ *
+ * <p>Both decoders are meant for a caller that first checks the bytes with {@link #isAscii}, which
+ * tests eight bytes at a time, and creates pure ASCII strings without any intermediate array.
+ */
+public final class Utf8
+{
+    @SuppressWarnings("restriction")
+    private static final sun.misc.Unsafe UNSAFE = MemoryUtils.UNSAFE;
+
+    @SuppressWarnings("restriction")
+    private static final long BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /** The maximum number of bytes a single char of a string is encoded into. */
+    public static final int MAX_BYTES_PER_CHAR = 3;
+
+    private Utf8() {}
+
+    /**
+     * Gets the number of bytes of the UTF-8 encoding of the given string.
+     */
+    public static int encodedLength(String string)
+    {
+        int length = string.length();
+        long bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes++;
+                }
+                else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                    // four bytes for the two chars of the pair
+                    bytes += 2;
+                    i++;
+                }
+                else {
+                    bytes += 2;
+                }
+            }
+        }
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Encoded string is too long: " + bytes);
+        }
+        return (int) bytes;
+    }
+
+    /**
+     * Encodes the given string as UTF-8 into the given array. The array must have room for {@link
+     * #MAX_BYTES_PER_CHAR} bytes per char of the string.
+     *
+     * @param string The string to encode.
+     * @param target The array to encode into.
+     * @param offset The offset to start writing at.
+     * @return The offset after the last written byte.
+     */
+    public static int encode(String string, byte[] target, int offset)
+    {
+        int length = string.length();
+        int position = offset;
+        int i = 0;
+
+        // ASCII fast lane
+        for (; i < length; i++) {
+            char c = string.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            target[position++] = (byte) c;
+        }
+
+        for (; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                target[position++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                target[position++] = (byte) (0xC0 | (c >> 6));
+                target[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                target[position++] = (byte) (0xF0 | (codePoint >> 18));
+                target[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                target[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                target[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else {
+                target[position++] = (byte) (0xE0 | (c >> 12));
+                target[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                target[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Checks whether the given range of the array holds only ASCII characters, eight bytes at a
+     * time.
+     */
+    @SuppressWarnings("restriction")
+    public static boolean isAscii(byte[] bytes, int offset, int length)
+    {
+        if ((offset | length | (bytes.length - offset - length)) < 0) {
+            throw new IndexOutOfBoundsException(
+                    String.format("offset: %s, length: %s, array length: %s", offset, length, bytes.length));
+        }
+        long address = BYTE_ARRAY_BASE_OFFSET + offset;
+        long end = address + length;
+        long bits = 0;
+        for (; address <= end - 8; address += 8) {
+            bits |= UNSAFE.getLong(bytes, address);
+        }
+        for (; address < end; address++) {
+            bits |= UNSAFE.getByte(bytes, address);
+        }
+        // the byte order does not matter, every byte is tested
+        return (bits & HIGH_BITS) == 0;
+    }
+
+    /**
+     * Decodes UTF-8 bytes into a string.
+     *
+     * @param bytes The array holding the encoded string.
+     * @param offset The offset of the first byte.
+     * @param length The number of bytes.
+     * @param chars A scratch array of at least {@code length} chars.
+     * @return The decoded string.
+     * @throws UTFDataFormatException Thrown, if the bytes are not valid UTF-8.
+     */
+    public static String decode(byte[] bytes, int offset, int length, char[] chars)
+            throws UTFDataFormatException
+    {
+        int position = offset;
+        int end = offset + length;
+        int count = 0;
+        while (position < end) {
+            int c = bytes[position++];
+            if (c >= 0) {
+                chars[count++] = (char) c;
+            }
+            else if ((c & 0xE0) == 0xC0) {
+                checkAvailable(position, end, 1);
+                chars[count++] = (char) (((c & 0x1F) << 6) | continuation(bytes, position++));
+            }
+            else if ((c & 0xF0) == 0xE0) {
+                checkAvailable(position, end, 2);
+                chars[count++] = (char) (((c & 0x0F) << 12) | (continuation(bytes, position) << 6) | continuation(bytes, position + 1));
+                position += 2;
+            }
+            else if ((c & 0xF8) == 0xF0) {
+                checkAvailable(position, end, 3);
+                int codePoint = ((c & 0x07) << 18)
+                        | (continuation(bytes, position) << 12)
+                        | (continuation(bytes, position + 1) << 6)
+                        | continuation(bytes, position + 2);
+                position += 3;
+                if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT || codePoint > Character.MAX_CODE_POINT) {
+                    throw new UTFDataFormatException("malformed input around byte " + (position - offset));
+                }
+                chars[count++] = Character.highSurrogate(codePoint);
+                chars[count++] = Character.lowSurrogate(codePoint);
+            }
+            else {
+                throw new UTFDataFormatException("malformed input around byte " + (position - 1 - offset));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * Decodes modified UTF-8 bytes, as written by {@link java.io.DataOutput#writeUTF(String)}, into
+     * a string.
+     *
+     * @param bytes The array holding the encoded string, without its length.
+     * @param offset The offset of the first byte.
+     * @param length The number of bytes.
+     * @param chars A scratch array of at least {@code length} chars.
+     * @return The decoded string.
+     * @throws UTFDataFormatException Thrown, if the bytes are not valid modified UTF-8.
+     */
+    public static String decodeModified(byte[] bytes, int offset, int length, char[] chars)
+            throws UTFDataFormatException
+    {
+        int position = offset;
+        int end = offset + length;
+        int count = 0;
+        while (position < end) {
+            int c = bytes[position++];
+            if (c >= 0) {
+                chars[count++] = (char) c;
+            }
+            else if ((c & 0xE0) == 0xC0) {
+                checkAvailable(position, end, 1);
+                chars[count++] = (char) (((c & 0x1F) << 6) | continuation(bytes, position++));
+            }
+            else if ((c & 0xF0) == 0xE0) {
+                checkAvailable(position, end, 2);
+                chars[count++] = (char) (((c & 0x0F) << 12) | (continuation(bytes, position) << 6) | continuation(bytes, position + 1));
+                position += 2;
+            }
+            else {
+                throw new UTFDataFormatException("malformed input around byte " + (position - 1 - offset));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private static void checkAvailable(int position, int end, int needed)
+            throws UTFDataFormatException
+    {
+        if (position > end - needed) {
+            throw new UTFDataFormatException("malformed input: partial character at end");
+        }
+    }
+
+    private static int continuation(byte[] bytes, int position)
+            throws UTFDataFormatException
+    {
+        int b = bytes[position];
+        if ((b & 0xC0) != 0x80) {
+            throw new UTFDataFormatException("malformed input around byte " + position);
+        }
+        return b & 0x3F;
+    }
+}
@@ -0,0 +1,155 @@
+package info.victorchu.bamboo.memory;
+
+import info.victorchu.bamboo.utils.ByteUtils;
+
+import static info.victorchu.bamboo.utils.HashUtils.XXHASH64_STRIPE_LENGTH;
+import static info.victorchu.bamboo.utils.HashUtils.xxHash64Finish;
+import static info.victorchu.bamboo.utils.HashUtils.xxHash64MergeAccumulators;
+import static info.victorchu.bamboo.utils.HashUtils.xxHash64Round;
+import static info.victorchu.bamboo.utils.HashUtils.xxHash64Unsafe;
+
+/**
+ * The 64 bit xxHash, as a streaming {@link SegmentChecksum} and as a one shot hash of a range of a
+ * segment. The one shot hash equals {@link ByteUtils#xxHash64(byte[], int, int, long)} of the same
+ * bytes.
+ */
+public final class XxHash64
+        implements SegmentChecksum
+{
+    @SuppressWarnings("restriction")
+    private static final long BYTE_ARRAY_BASE_OFFSET = MemoryUtils.UNSAFE.arrayBaseOffset(byte[].class);
+
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    private static final int STRIPE_LENGTH = XXHASH64_STRIPE_LENGTH;
+
+    private final long seed;
+
+    /** The buffer for a partial stripe between updates. */
+    private final MemorySegment buffer = MemorySegments.allocate(STRIPE_LENGTH);
+
+    private int bufferSize;
+
+    private long totalLength;
+
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+
+    /**
+     * Creates a new streaming hash with the given seed.
+     */
+    public XxHash64(long seed)
+    {
+        this.seed = seed;
+        reset();
+    }
+
+    /**
+     * Hashes a range of a segment.
+     *
+     * @param segment The segment holding the bytes.
+     * @param offset The offset of the first byte.
+     * @param length The number of bytes.
+     * @param seed The seed of the hash.
+     * @return The hash of the bytes.
+     */
+    public static long hash(MemorySegment segment, int offset, int length, long seed)
+    {
+        checkRange(segment, offset, length);
+        if (segment.isOffHeap()) {
+            return xxHash64Unsafe(null, segment.getAddress() + offset, length, seed);
+        }
+        return ByteUtils.xxHash64(segment.getArray(), offset, length, seed);
+    }
+
+    @Override
+    public void update(MemorySegment segment, int offset, int length)
+    {
+        checkRange(segment, offset, length);
+        totalLength += length;
+        int end = offset + length;
+
+        if (bufferSize > 0) {
+            int count = Math.min(STRIPE_LENGTH - bufferSize, length);
+            segment.copyTo(offset, buffer, bufferSize, count);
+            bufferSize += count;
+            offset += count;
+            if (bufferSize < STRIPE_LENGTH) {
+                return;
+            }
+            consumeStripe(buffer, 0);
+            bufferSize = 0;
+        }
+
+        for (; offset <= end - STRIPE_LENGTH; offset += STRIPE_LENGTH) {
+            consumeStripe(segment, offset);
+        }
+
+        if (offset < end) {
+            segment.copyTo(offset, buffer, 0, end - offset);
+            bufferSize = end - offset;
+        }
+    }
+
+    private void consumeStripe(MemorySegment segment, int offset)
+    {
+        v1 = xxHash64Round(v1, segment.getLongLittleEndian(offset));
+        v2 = xxHash64Round(v2, segment.getLongLittleEndian(offset + 8));
+        v3 = xxHash64Round(v3, segment.getLongLittleEndian(offset + 16));
+        v4 = xxHash64Round(v4, segment.getLongLittleEndian(offset + 24));
+    }
+
+    @Override
+    public void update(int b)
+    {
+        buffer.put(bufferSize++, (byte) b);
+        totalLength++;
+        if (bufferSize == STRIPE_LENGTH) {
+            consumeStripe(buffer, 0);
+            bufferSize = 0;
+        }
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len)
+    {
+        if ((off | len | (b.length - off - len)) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        update(MemorySegments.wrap(b), off, len);
+    }
+
+    @Override
+    public long getValue()
+    {
+        long hash = totalLength >= STRIPE_LENGTH ? xxHash64MergeAccumulators(v1, v2, v3, v4) : seed + PRIME64_5;
+        hash += totalLength;
+        return xxHash64Finish(hash, buffer.getArray(), BYTE_ARRAY_BASE_OFFSET, BYTE_ARRAY_BASE_OFFSET + bufferSize);
+    }
+
+    @Override
+    public void reset()
+    {
+        v1 = seed + PRIME64_1 + PRIME64_2;
+        v2 = seed + PRIME64_2;
+        v3 = seed;
+        v4 = seed - PRIME64_1;
+        bufferSize = 0;
+        totalLength = 0;
+    }
+
+    private static void checkRange(MemorySegment segment, int offset, int length)
+    {
+        if (segment.isFreed()) {
+            throw new IllegalStateException("segment has been freed");
+        }
+        if ((offset | length | (segment.size() - offset - length)) < 0) {
+            throw new IndexOutOfBoundsException(
+                    String.format("offset: %s, length: %s, segment size: %s", offset, length, segment.size()));
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package info.victorchu.bamboo.queue;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemoryUtils;
+import info.victorchu.bamboo.utils.MathUtils;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * The base of the bounded queues that hand variable length records from producer threads to a
+ * single consumer thread through a ring of bytes in a memory segment. The producers differ in how
+ * they claim space in the ring, the consumer is the same for all queues.
+ *
+ * <p>The segment holds the ring, whose capacity is a power of two, followed by a trailer with the
+ * counters of the queue:
+ *
+ * <pre>
+ * [ring: records ...][pad][tail][pad][cached head][pad][head][pad]
+ * </pre>
+ *
+ * <p>Every counter lives on its own pair of cache lines, so the producers writing the tail and the
+ * consumer writing the head do not invalidate each other's cache lines. The counters are byte
+ * positions that only grow, the position in the ring is the counter modulo the capacity.
+ *
+ * <p>A record is stored as a frame of an eight byte header, {@code [int length][int type]}, and
+ * the record bytes, padded to a multiple of eight bytes. A producer claims a frame by advancing the
+ * tail and writes the negative length into its header, then copies the record, and publishes the
+ * frame with an ordered write of the positive length. The consumer stops at the first header whose
+ * length is not positive, so it never sees a partially written record. A record that does not fit
+ * between the tail and the end of the ring is preceded by a padding frame up to the end of the
+ * ring. The consumer sets the bytes of the frames it consumed back to zero before it advances the
+ * head, so the ring is zeroed wherever the producers claim new frames.
+ */
+abstract class AbstractRingQueue
+{
+    @SuppressWarnings("restriction")
+    static final sun.misc.Unsafe UNSAFE = MemoryUtils.UNSAFE;
+
+    @SuppressWarnings("restriction")
+    private static final long BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+
+    /** The length of the header in front of each record. */
+    public static final int HEADER_LENGTH = 8;
+
+    /** The alignment of the frames in the ring. */
+    public static final int ALIGNMENT = 8;
+
+    /** Two cache lines, since processors prefetch cache lines in adjacent pairs. */
+    private static final int PAD = 128;
+
+    private static final int TAIL_OFFSET = PAD;
+
+    private static final int HEAD_CACHE_OFFSET = 3 * PAD;
+
+    private static final int HEAD_OFFSET = 5 * PAD;
+
+    /** The length of the trailer behind the ring. */
+    public static final int TRAILER_LENGTH = 6 * PAD;
+
+    static final int RECORD_TYPE = 1;
+
+    static final int PADDING_TYPE = 2;
+
+    final MemorySegment segment;
+
+    /** The array of a heap segment, or null for an off-heap segment. */
+    final Object base;
+
+    /** The address of the ring, relative to the base. */
+    final long address;
+
+    final int capacity;
+
+    final int mask;
+
+    private final int maxRecordLength;
+
+    final long tailAddress;
+
+    final long headCacheAddress;
+
+    final long headAddress;
+
+    /**
+     * Creates a queue over the given segment, and clears the segment.
+     */
+    AbstractRingQueue(MemorySegment segment)
+    {
+        this.segment = checkNotNull(segment, "segment is null");
+        checkArgument(!segment.isFreed(), "The segment has been freed.");
+        this.capacity = segment.size() - TRAILER_LENGTH;
+        checkArgument(capacity >= 64 && MathUtils.isPowerOf2(capacity),
+                "The segment must hold a ring of a power of two of at least 64 bytes plus the trailer of %s bytes.", TRAILER_LENGTH);
+        this.mask = capacity - 1;
+        this.maxRecordLength = capacity / 8 - HEADER_LENGTH;
+
+        this.base = segment.isOffHeap() ? null : segment.getArray();
+        this.address = segment.isOffHeap() ? segment.getAddress() : BYTE_ARRAY_BASE_OFFSET;
+        this.tailAddress = address + capacity + TAIL_OFFSET;
+        this.headCacheAddress = address + capacity + HEAD_CACHE_OFFSET;
+        this.headAddress = address + capacity + HEAD_OFFSET;
+
+        UNSAFE.setMemory(base, address, segment.size(), (byte) 0);
+    }
+
+    /**
+     * Gets the size of the segment for a ring of the given capacity.
+     *
+     * @param capacity The capacity of the ring in bytes, a power of two.
+     * @return The size of the segment in bytes.
+     */
+    public static int sizeFor(int capacity)
+    {
+        checkArgument(capacity >= 64 && MathUtils.isPowerOf2(capacity), "The capacity must be a power of two of at least 64 bytes.");
+        return capacity + TRAILER_LENGTH;
+    }
+
+    static int align(int length)
+    {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    // ------------------------------------------------------------------------
+    //  Producer side
+    // ------------------------------------------------------------------------
+
+    /**
+     * Claims the space for a record of the given length. The record is written into the segment
+     * of the queue, see {@link #getSegment()}, at the returned offset, and then either published
+     * with {@link #commit(int)} or discarded with {@link #abort(int)}. The consumer waits for a
+     * claimed record, so every claim must be followed by one of the two promptly.
+     *
+     * @param length The length of the record, at most {@link #getMaxRecordLength()}.
+     * @return The offset of the record in the segment, or -1, if the ring is full.
+     */
+    public abstract int tryClaim(int length);
+
+    /**
+     * Writes the header of a frame claimed at the given position, which the consumer does not
+     * read until it is committed.
+     */
+    final void writeClaimHeader(int index, int recordLength)
+    {
+        UNSAFE.putInt(base, address + index + 4, RECORD_TYPE);
+        UNSAFE.putOrderedInt(base, address + index, -recordLength);
+    }
+
+    /** Publishes a padding frame of the given length. */
+    final void writePadding(int index, int length)
+    {
+        UNSAFE.putInt(base, address + index + 4, PADDING_TYPE);
+        UNSAFE.putOrderedInt(base, address + index, length);
+    }
+
+    final void checkRecordLength(int length)
+    {
+        checkArgument(length >= 0 && length <= maxRecordLength, "The record length %s is not between 0 and %s.", length, maxRecordLength);
+    }
+
+    /**
+     * Publishes a claimed record to the consumer.
+     *
+     * @param offset The offset returned by {@link #tryClaim(int)}.
+     */
+    public void commit(int offset)
+    {
+        long headerAddress = address + offset - HEADER_LENGTH;
+        int recordLength = UNSAFE.getInt(base, headerAddress);
+        checkArgument(recordLength < 0, "The record at offset %s is not claimed.", offset);
+        UNSAFE.putOrderedInt(base, headerAddress, -recordLength);
+    }
+
+    /**
+     * Discards a claimed record, the consumer skips it.
+     *
+     * @param offset The offset returned by {@link #tryClaim(int)}.
+     */
+    public void abort(int offset)
+    {
+        UNSAFE.putInt(base, address + offset - HEADER_LENGTH + 4, PADDING_TYPE);
+        commit(offset);
+    }
+
+    /**
+     * Appends a copy of a record to the queue.
+     *
+     * @param source The segment holding the record.
+     * @param offset The offset of the record.
+     * @param length The length of the record, at most {@link #getMaxRecordLength()}.
+     * @return True, if the record was appended, false, if the ring is full.
+     */
+    public boolean offer(MemorySegment source, int offset, int length)
+    {
+        int index = tryClaim(length);
+        if (index < 0) {
+            return false;
+        }
+        try {
+            source.copyTo(offset, segment, index, length);
+        }
+        catch (RuntimeException e) {
+            abort(index);
+            throw e;
+        }
+        commit(index);
+        return true;
+    }
+
+    /**
+     * Appends a copy of a record to the queue.
+     *
+     * @param source The array holding the record.
+     * @param offset The offset of the record.
+     * @param length The length of the record, at most {@link #getMaxRecordLength()}.
+     * @return True, if the record was appended, false, if the ring is full.
+     */
+    public boolean offer(byte[] source, int offset, int length)
+    {
+        int index = tryClaim(length);
+        if (index < 0) {
+            return false;
+        }
+        try {
+            segment.put(index, source, offset, length);
+        }
+        catch (RuntimeException e) {
+            abort(index);
+            throw e;
+        }
+        commit(index);
+        return true;
+    }
+
+    // ------------------------------------------------------------------------
+    //  Consumer side
+    // ------------------------------------------------------------------------
+
+    /**
+     * Hands all published records to the given handler, in the order they were claimed. Must only
+     * be called by the consumer thread.
+     *
+     * @param handler The handler of the records.
+     * @return The number of records handled.
+     */
+    public int poll(RecordHandler handler)
+    {
+        return poll(handler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Hands up to the given number of published records to the given handler, in the order they
+     * were claimed. Must only be called by the consumer thread. A record whose handler throws an
+     * exception counts as consumed.
+     *
+     * @param handler The handler of the records.
+     * @param limit The maximum number of records to handle.
+     * @return The number of records handled.
+     */
+    public int poll(RecordHandler handler, int limit)
+    {
+        int count = 0;
+        // a second pass continues at the start of the ring, after a record or padding at the end
+        for (int pass = 0; pass < 2 && count < limit; pass++) {
+            long head = UNSAFE.getLong(base, headAddress);
+            int index = (int) head & mask;
+            int contiguous = capacity - index;
+            int bytesRead = 0;
+            try {
+                while (bytesRead < contiguous && count < limit) {
+                    long headerAddress = address + index + bytesRead;
+                    int recordLength = UNSAFE.getIntVolatile(base, headerAddress);
+                    if (recordLength <= 0) {
+                        break;
+                    }
+                    bytesRead += align(recordLength);
+                    if (UNSAFE.getInt(base, headerAddress + 4) == RECORD_TYPE) {
+                        count++;
+                        handler.onRecord(segment, (int) (headerAddress - address) + HEADER_LENGTH, recordLength - HEADER_LENGTH);
+                    }
+                }
+            }
+            finally {
+                if (bytesRead > 0) {
+                    UNSAFE.setMemory(base, address + index, bytesRead, (byte) 0);
+                    UNSAFE.putOrderedLong(base, headAddress, head + bytesRead);
+                }
+            }
+            if (bytesRead < contiguous) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    // ------------------------------------------------------------------------
+    //  Properties
+    // ------------------------------------------------------------------------
+
+    /** Gets the segment holding the ring, to write claimed records into. */
+    public MemorySegment getSegment()
+    {
+        return segment;
+    }
+
+    /** Gets the capacity of the ring in bytes. */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /** Gets the maximum length of a record, an eighth of the ring minus the header. */
+    public int getMaxRecordLength()
+    {
+        return maxRecordLength;
+    }
+
+    /**
+     * Gets the number of bytes of the claimed and not yet consumed frames. The value is a snapshot
+     * that may be outdated as soon as it is returned.
+     */
+    public int getUsedBytes()
+    {
+        long head = UNSAFE.getLongVolatile(base, headAddress);
+        long tail = UNSAFE.getLongVolatile(base, tailAddress);
+        return (int) Math.max(0, Math.min(capacity, tail - head));
+    }
+
+    public boolean isEmpty()
+    {
+        return getUsedBytes() == 0;
+    }
+}
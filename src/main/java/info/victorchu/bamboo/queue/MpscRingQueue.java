@@ -0,0 +1,65 @@
+package info.victorchu.bamboo.queue;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+
+/**
+ * A bounded queue of variable length records from many producer threads to a single consumer
+ * thread, through a ring of bytes in a memory segment. See {@link AbstractRingQueue} for the
+ * layout of the segment.
+ *
+ * <p>Producers claim their frames by advancing the tail with a compare-and-swap, and then write
+ * and publish their records concurrently. The consumer sees the records in the order of their
+ * claims, so a producer that is slow to commit its record delays the records claimed after it.
+ */
+public final class MpscRingQueue
+        extends AbstractRingQueue
+{
+    /**
+     * Creates an empty queue over the given segment. The segment is cleared, and must not be used
+     * otherwise or freed while the queue is used.
+     *
+     * @param segment The segment of {@link #sizeFor(int)} bytes.
+     */
+    public MpscRingQueue(MemorySegment segment)
+    {
+        super(segment);
+    }
+
+    /**
+     * Claims the space for a record, see {@link AbstractRingQueue#tryClaim(int)}. May be called by
+     * any number of threads concurrently.
+     */
+    @Override
+    public int tryClaim(int length)
+    {
+        checkRecordLength(length);
+        int recordLength = length + HEADER_LENGTH;
+        int required = align(recordLength);
+
+        long head = UNSAFE.getLongVolatile(base, headCacheAddress);
+        long tail;
+        int index;
+        int padding;
+        do {
+            tail = UNSAFE.getLongVolatile(base, tailAddress);
+            index = (int) tail & mask;
+            padding = required > capacity - index ? capacity - index : 0;
+
+            if (required + padding > capacity - (tail - head)) {
+                head = UNSAFE.getLongVolatile(base, headAddress);
+                if (required + padding > capacity - (tail - head)) {
+                    return -1;
+                }
+                UNSAFE.putOrderedLong(base, headCacheAddress, head);
+            }
+        }
+        while (!UNSAFE.compareAndSwapLong(base, tailAddress, tail, tail + padding + required));
+
+        if (padding > 0) {
+            writePadding(index, padding);
+            index = 0;
+        }
+        writeClaimHeader(index, recordLength);
+        return index + HEADER_LENGTH;
+    }
+}
@@ -0,0 +1,18 @@
+package info.victorchu.bamboo.queue;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+
+/** Receives the records polled from a ring queue. */
+@FunctionalInterface
+public interface RecordHandler
+{
+    /**
+     * Handles a record. The bytes of the record are only valid during the call, the ring reuses
+     * them right afterwards.
+     *
+     * @param segment The memory segment of the ring.
+     * @param offset The offset of the record in the segment.
+     * @param length The length of the record.
+     */
+    void onRecord(MemorySegment segment, int offset, int length);
+}
@@ -0,0 +1,60 @@
+package info.victorchu.bamboo.queue;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+
+/**
+ * A bounded queue of variable length records from a single producer thread to a single consumer
+ * thread, through a ring of bytes in a memory segment. See {@link AbstractRingQueue} for the
+ * layout of the segment.
+ *
+ * <p>Since only one thread advances the tail, claiming a record needs no atomic instruction: the
+ * producer publishes the new tail with an ordered write, and reads the head of the consumer only
+ * when its cached copy of the head suggests the ring is full.
+ */
+public final class SpscRingQueue
+        extends AbstractRingQueue
+{
+    /**
+     * Creates an empty queue over the given segment. The segment is cleared, and must not be used
+     * otherwise or freed while the queue is used.
+     *
+     * @param segment The segment of {@link #sizeFor(int)} bytes.
+     */
+    public SpscRingQueue(MemorySegment segment)
+    {
+        super(segment);
+    }
+
+    /**
+     * Claims the space for a record, see {@link AbstractRingQueue#tryClaim(int)}. Must only be
+     * called by the producer thread.
+     */
+    @Override
+    public int tryClaim(int length)
+    {
+        checkRecordLength(length);
+        int recordLength = length + HEADER_LENGTH;
+        int required = align(recordLength);
+
+        long tail = UNSAFE.getLong(base, tailAddress);
+        int index = (int) tail & mask;
+        int padding = required > capacity - index ? capacity - index : 0;
+
+        long head = UNSAFE.getLong(base, headCacheAddress);
+        if (required + padding > capacity - (tail - head)) {
+            head = UNSAFE.getLongVolatile(base, headAddress);
+            if (required + padding > capacity - (tail - head)) {
+                return -1;
+            }
+            UNSAFE.putLong(base, headCacheAddress, head);
+        }
+
+        if (padding > 0) {
+            writePadding(index, padding);
+            index = 0;
+        }
+        writeClaimHeader(index, recordLength);
+        UNSAFE.putOrderedLong(base, tailAddress, tail + padding + required);
+        return index + HEADER_LENGTH;
+    }
+}
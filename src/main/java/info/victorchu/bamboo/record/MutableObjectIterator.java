@@ -0,0 +1,46 @@
+package info.victorchu.bamboo.record;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+
+/**
+ * A simple iterator interface. The key differences to the {@link java.util.Iterator} are
+ *
+ * <ul>
+ *   <li>It has two distinct calls to get the next element, one of which lets the iterator
+ *       de-serialize into a reused record instance.
+ *   <li>It does not have a separate hasNext() method, but returns <tt>null</tt> once exhausted.
+ *   <li>Its methods may throw {@link IOException}, as records are typically read from memory
+ *       segments or files.
+ * </ul>
+ *
+ * @param <E> The element type of the collection iterated over.
+ */
+public interface MutableObjectIterator<E>
+{
+    /**
+     * Gets the next element from the collection. The contents of that next element is put into
+     * the given reuse object, if the type is mutable.
+     *
+     * @param reuse The target object into which to place next element if E is mutable.
+     * @return The filled object or <code>null</code> if the iterator is exhausted.
+     * @throws IOException Thrown, if a problem occurred in the underlying I/O layer or in the
+     *     serialization / deserialization logic
+     */
+    @Nullable
+    E next(E reuse)
+            throws IOException;
+
+    /**
+     * Gets the next element from the collection. The iterator implementation must obtain a new
+     * instance.
+     *
+     * @return The object or <code>null</code> if the iterator is exhausted.
+     * @throws IOException Thrown, if a problem occurred in the underlying I/O layer or in the
+     *     serialization / deserialization logic
+     */
+    @Nullable
+    E next()
+            throws IOException;
+}
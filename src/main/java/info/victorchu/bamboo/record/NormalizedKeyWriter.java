@@ -0,0 +1,286 @@
+package info.victorchu.bamboo.record;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * Writes the fields of a key as a normalized key into a range of a memory segment, so that the
+ * unsigned byte-wise order of the written bytes, as computed by {@link MemorySegment#compare(
+ * MemorySegment, int, int, int)}, is the natural order of the fields. It is meant to implement
+ * {@link RecordComparator#putNormalizedKey(Object, MemorySegment, int, int)}:
+ *
+ * <pre>{@code
+ * public void putNormalizedKey(Order record, MemorySegment target, int offset, int numBytes)
+ * {
+ *     writer.reset(target, offset, numBytes);
+ *     writer.writeInt(record.getCustomerId());
+ *     writer.setDescending(true);
+ *     writer.writeDouble(record.getPrice());
+ *     writer.finish();
+ * }
+ * }</pre>
+ *
+ * <p>Each field is encoded so that the encoding of no value is a prefix of the encoding of another
+ * value. Therefore the fields of a composite key can be written one after the other, and the key
+ * orders by the first field, then by the second one, and so on:
+ *
+ * <ul>
+ *   <li>Integral numbers are written big-endian with the sign bit flipped.
+ *   <li>Floating point numbers are written like their bits as integral numbers, with all bits
+ *       flipped for negative numbers and only the sign bit flipped for the others. They order like
+ *       {@link Double#compare(double, double)}: {@code -0.0} before {@code 0.0}, and {@code NaN}
+ *       after the positive infinity.
+ *   <li>Strings are written char by char in the variable length encoding of UTF-8, where a
+ *       supplementary character is written as its two surrogates. They order like {@link
+ *       String#compareTo(String)}.
+ *   <li>Strings and byte arrays are terminated by two zero bytes, and a zero byte inside the value
+ *       is written as a zero byte followed by {@code 0xFF}.
+ * </ul>
+ *
+ * <p>The writer stops writing once the range is full, in which case the key is a prefix of the full
+ * key only. {@link #finish()} pads the rest of a shorter key with zeros.
+ *
+ * <p>A writer is reused for all keys and is not thread safe.
+ */
+public final class NormalizedKeyWriter
+{
+    /** The number of bytes that terminate a string or a byte array. */
+    public static final int TERMINATOR_LENGTH = 2;
+
+    private static final byte ESCAPE = (byte) 0xFF;
+
+    private MemorySegment target;
+
+    private int position;
+
+    private int limit;
+
+    private boolean descending;
+
+    private boolean truncated;
+
+    /**
+     * Starts a new key in the given range. The following fields are written in ascending order.
+     *
+     * @param target The memory segment to write the key into.
+     * @param offset The offset in the memory segment where the key starts.
+     * @param numBytes The number of bytes of the key.
+     * @return This writer.
+     */
+    public NormalizedKeyWriter reset(MemorySegment target, int offset, int numBytes)
+    {
+        checkNotNull(target, "target is null");
+        checkArgument(offset >= 0 && numBytes >= 0 && offset <= target.size() - numBytes, "The key range is out of the bounds of the segment.");
+        this.target = target;
+        this.position = offset;
+        this.limit = offset + numBytes;
+        this.descending = false;
+        this.truncated = false;
+        return this;
+    }
+
+    /**
+     * Sets the order of the fields written next. A descending field is written with all its bits
+     * flipped.
+     *
+     * @param descending True, if the following fields order descending, false, if they order
+     *     ascending.
+     */
+    public void setDescending(boolean descending)
+    {
+        this.descending = descending;
+    }
+
+    /**
+     * Writes the null flag of a nullable field, which orders nulls before all values. The value
+     * follows only if the field is not null. The flag is not flipped in a descending field, so
+     * nulls come first in both orders.
+     *
+     * @param isNull True, if the field is null.
+     * @return True, if the field is not null and its value must be written next.
+     */
+    public boolean writeNullFlag(boolean isNull)
+    {
+        int flag = isNull ? 0 : 1;
+        // writeRawByte flips the bits of a descending field, which undoes this flip
+        writeRawByte(this.descending ? ~flag : flag);
+        return !isNull;
+    }
+
+    /**
+     * Writes a boolean in one byte, {@code false} before {@code true}.
+     */
+    public void writeBoolean(boolean value)
+    {
+        writeRawByte(value ? 1 : 0);
+    }
+
+    /**
+     * Writes a signed byte in one byte.
+     */
+    public void writeByte(byte value)
+    {
+        writeRawByte(value ^ Byte.MIN_VALUE);
+    }
+
+    /**
+     * Writes a signed short in two bytes.
+     */
+    public void writeShort(short value)
+    {
+        writeBits((value ^ Short.MIN_VALUE) & 0xFFFFL, 2);
+    }
+
+    /**
+     * Writes an unsigned char in two bytes.
+     */
+    public void writeChar(char value)
+    {
+        writeBits(value, 2);
+    }
+
+    /**
+     * Writes a signed int in four bytes.
+     */
+    public void writeInt(int value)
+    {
+        int bits = value ^ Integer.MIN_VALUE;
+        if (this.position <= this.limit - 4) {
+            this.target.putIntBigEndian(this.position, this.descending ? ~bits : bits);
+            this.position += 4;
+        }
+        else {
+            writeBits(bits & 0xFFFFFFFFL, 4);
+        }
+    }
+
+    /**
+     * Writes a signed long in eight bytes.
+     */
+    public void writeLong(long value)
+    {
+        long bits = value ^ Long.MIN_VALUE;
+        if (this.position <= this.limit - 8) {
+            this.target.putLongBigEndian(this.position, this.descending ? ~bits : bits);
+            this.position += 8;
+        }
+        else {
+            writeBits(bits, 8);
+        }
+    }
+
+    /**
+     * Writes a float in four bytes. All NaN values are written alike.
+     */
+    public void writeFloat(float value)
+    {
+        int bits = Float.floatToIntBits(value);
+        // the sign bit is flipped once more by writeInt
+        writeInt(bits < 0 ? ~bits ^ Integer.MIN_VALUE : bits);
+    }
+
+    /**
+     * Writes a double in eight bytes. All NaN values are written alike.
+     */
+    public void writeDouble(double value)
+    {
+        long bits = Double.doubleToLongBits(value);
+        writeLong(bits < 0 ? ~bits ^ Long.MIN_VALUE : bits);
+    }
+
+    /**
+     * Writes a string, followed by the terminator.
+     *
+     * @param value The string to write.
+     */
+    public void writeString(String value)
+    {
+        int length = value.length();
+        for (int i = 0; i < length && this.position < this.limit; i++) {
+            char c = value.charAt(i);
+            if (c == 0) {
+                writeRawByte(0);
+                writeRawByte(ESCAPE);
+            }
+            else if (c < 0x80) {
+                writeRawByte(c);
+            }
+            else if (c < 0x800) {
+                writeRawByte(0xC0 | (c >> 6));
+                writeRawByte(0x80 | (c & 0x3F));
+            }
+            else {
+                writeRawByte(0xE0 | (c >> 12));
+                writeRawByte(0x80 | ((c >> 6) & 0x3F));
+                writeRawByte(0x80 | (c & 0x3F));
+            }
+        }
+        writeTerminator();
+    }
+
+    /**
+     * Writes a range of a byte array, compared as unsigned bytes, followed by the terminator.
+     *
+     * @param value The array holding the bytes.
+     * @param offset The offset of the first byte to write.
+     * @param length The number of bytes to write.
+     */
+    public void writeBytes(byte[] value, int offset, int length)
+    {
+        for (int i = offset; i < offset + length && this.position < this.limit; i++) {
+            writeRawByte(value[i]);
+            if (value[i] == 0) {
+                writeRawByte(ESCAPE);
+            }
+        }
+        writeTerminator();
+    }
+
+    private void writeTerminator()
+    {
+        writeRawByte(0);
+        writeRawByte(0);
+    }
+
+    /**
+     * Writes the lowest bytes of the given bits, the most significant first, as far as they fit.
+     */
+    private void writeBits(long bits, int numBytes)
+    {
+        for (int shift = (numBytes - 1) << 3; shift >= 0; shift -= 8) {
+            writeRawByte((int) (bits >>> shift));
+        }
+    }
+
+    private void writeRawByte(int b)
+    {
+        if (this.position < this.limit) {
+            this.target.put(this.position++, (byte) (this.descending ? ~b : b));
+        }
+        else {
+            this.truncated = true;
+        }
+    }
+
+    /**
+     * Pads the rest of the key with zeros. Must be called after the last field.
+     */
+    public void finish()
+    {
+        while (this.position < this.limit) {
+            this.target.put(this.position++, (byte) 0);
+        }
+    }
+
+    /**
+     * Checks whether a part of the key did not fit into the range since the last reset.
+     *
+     * @return True, if the written bytes are a prefix of the full key only.
+     */
+    public boolean isTruncated()
+    {
+        return this.truncated;
+    }
+}
@@ -0,0 +1,76 @@
+package info.victorchu.bamboo.record;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+
+/**
+ * Compares records of a type, and optionally describes the order of the records through
+ * <i>normalized keys</i>: byte strings that compare like the records when compared byte-wise as
+ * unsigned values, for example with {@link MemorySegment#compare(MemorySegment, int, int, int)}.
+ *
+ * <p>A normalized key may be a prefix of the full key only, in which case records with equal
+ * normalized keys need to be compared with {@link #compare(Object, Object)}. A {@link
+ * NormalizedKeyWriter} writes the normalized keys of the common field types.
+ *
+ * @param <T> The type of the records.
+ */
+public interface RecordComparator<T>
+{
+    /**
+     * Compares two records.
+     *
+     * @param first The first record.
+     * @param second The second record.
+     * @return A negative integer, zero, or a positive integer as the first record is less than,
+     *     equal to, or greater than the second.
+     */
+    int compare(T first, T second);
+
+    /**
+     * Checks whether the records support normalized keys.
+     *
+     * @return True, if the comparator supports normalized keys, false otherwise.
+     */
+    boolean supportsNormalizedKey();
+
+    /**
+     * Gets the number of bytes that the normalized key would maximally take. A value of {@link
+     * Integer#MAX_VALUE} is interpreted as infinite.
+     *
+     * @return The number of bytes that the normalized key would maximally take.
+     */
+    int getNormalizeKeyLen();
+
+    /**
+     * Checks, whether the given number of bytes for a normalized key is only a prefix to determine the
+     * order of elements of the data type for which this comparator provides the comparison
+     * methods.
+     *
+     * @param keyBytes The number of bytes of the normalized key.
+     * @return True, if the given number of bytes is only a prefix, false otherwise.
+     */
+    boolean isNormalizedKeyPrefixOnly(int keyBytes);
+
+    /**
+     * Writes a normalized key for the given record into the target memory segment. If the
+     * normalized key is shorter than the given number of bytes, the remaining bytes must be
+     * padded with zeros. If it is longer, it must be cut off.
+     *
+     * @param record The record for which to create the normalized key.
+     * @param target The memory segment to put the normalized key bytes into.
+     * @param offset The offset in the memory segment where the normalized key starts.
+     * @param numBytes The number of bytes to put.
+     */
+    void putNormalizedKey(T record, MemorySegment target, int offset, int numBytes);
+
+    /**
+     * Flag whether normalized key comparisons should be inverted, i.e. whether the records are
+     * sorted descending.
+     *
+     * @return True, if all normalized key comparisons should invert the sign of the comparison
+     *     result, false if the normalized key should be used as is.
+     */
+    default boolean invertNormalizedKey()
+    {
+        return false;
+    }
+}
@@ -0,0 +1,52 @@
+package info.victorchu.bamboo.record;
+
+import info.victorchu.bamboo.memory.DataInputView;
+import info.victorchu.bamboo.memory.DataOutputView;
+
+import java.io.IOException;
+
+/**
+ * Serializes records of a type to and from {@link DataOutputView data views}, so that components
+ * can hold records in binary form inside memory segments instead of as objects.
+ *
+ * @param <T> The type of the records.
+ */
+public interface RecordSerializer<T>
+{
+    /**
+     * Serializes the given record to the given target output view.
+     *
+     * @param record The record to serialize.
+     * @param target The output view to write the serialized data to.
+     * @throws IOException Thrown, if the serialization encountered an I/O related error.
+     *     Typically raised by the output view, which may have an underlying I/O channel to which
+     *     it delegates.
+     */
+    void serialize(T record, DataOutputView target)
+            throws IOException;
+
+    /**
+     * De-serializes a record from the given source input view.
+     *
+     * @param source The input view from which to read the data.
+     * @return The deserialized record.
+     * @throws IOException Thrown, if the de-serialization encountered an I/O related error.
+     */
+    T deserialize(DataInputView source)
+            throws IOException;
+
+    /**
+     * De-serializes a record from the given source input view into the given reuse record
+     * instance if mutable. Serializers of immutable types ignore the reuse instance.
+     *
+     * @param reuse The record instance into which to de-serialize the data.
+     * @param source The input view from which to read the data.
+     * @return The deserialized record.
+     * @throws IOException Thrown, if the de-serialization encountered an I/O related error.
+     */
+    default T deserialize(T reuse, DataInputView source)
+            throws IOException
+    {
+        return deserialize(source);
+    }
+}
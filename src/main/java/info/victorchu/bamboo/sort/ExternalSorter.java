@@ -0,0 +1,406 @@
+package info.victorchu.bamboo.sort;
+
+import info.victorchu.bamboo.memory.ChecksumAlgorithm;
+import info.victorchu.bamboo.memory.FileChannelInputView;
+import info.victorchu.bamboo.memory.FileChannelOutputView;
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.record.MutableObjectIterator;
+import info.victorchu.bamboo.record.RecordComparator;
+import info.victorchu.bamboo.record.RecordSerializer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+import static info.victorchu.bamboo.utils.Preconditions.checkState;
+
+/**
+ * A sorter for inputs that may be larger than its memory.
+ *
+ * <p>The records are collected in a {@link NormalizedKeySorter}. Whenever it is full, its content
+ * is sorted and spilled page by page as a sorted run to a temporary file. When all records are
+ * added, the runs are merged with a {@link LoserTreeMergeIterator}. Every run is read through a
+ * {@link FileChannelInputView} with a fixed number of read-ahead pages, so the merge uses exactly
+ * the memory of the sorter: if there are more runs than the memory can read at once, groups of
+ * runs are merged into longer runs first, until the remaining runs can be merged in one pass.
+ * Every group is a range of adjacent runs, and the merged run takes the place of the group, so the
+ * runs stay in the order of the input and records with equal keys from different runs are
+ * returned in the order they were added.
+ *
+ * <p>Every page of a run is written with a {@link ChecksumAlgorithm#CRC32C} checksum, which is
+ * verified when the page is read back, before any record of the page is deserialized.
+ *
+ * <p>If the records all fit into memory, nothing is spilled and the records are returned directly
+ * from the sorted buffer.
+ *
+ * @param <T> The type of the sorted records.
+ */
+public final class ExternalSorter<T>
+        implements Closeable
+{
+    /** The default number of pages each run is read ahead with during the merge. */
+    public static final int DEFAULT_READ_AHEAD_PAGES = 2;
+
+    private static final String FILE_PREFIX = "bamboo-sort-";
+
+    private static final String FILE_SUFFIX = ".run";
+
+    private static final ChecksumAlgorithm CHECKSUM = ChecksumAlgorithm.CRC32C;
+
+    private final RecordSerializer<T> serializer;
+
+    private final RecordComparator<T> comparator;
+
+    private final List<MemorySegment> memory;
+
+    private final File tempDirectory;
+
+    private final int readAheadPages;
+
+    private final MemorySegment writeBuffer;
+
+    private final NormalizedKeySorter<T> sortBuffer;
+
+    private final IndexedSorter sortAlgorithm = new QuickSort();
+
+    /** The spilled runs in the order of the input. */
+    private final List<SpilledRun> runs = new ArrayList<>();
+
+    private final List<FileChannelInputView> openReaders = new ArrayList<>();
+
+    private int numSpilledRuns;
+
+    private boolean finished;
+
+    private boolean closed;
+
+    public ExternalSorter(
+            RecordSerializer<T> serializer,
+            RecordComparator<T> comparator,
+            List<MemorySegment> memory,
+            File tempDirectory)
+    {
+        this(serializer, comparator, memory, tempDirectory, DEFAULT_READ_AHEAD_PAGES);
+    }
+
+    /**
+     * Creates a new external sorter.
+     *
+     * @param serializer The serializer for the records.
+     * @param comparator The comparator defining the order of the records.
+     * @param memory The memory segments for sorting and merging, all of the same size.
+     * @param tempDirectory The directory to spill the sorted runs to.
+     * @param readAheadPages The number of pages every run is read ahead with during the merge.
+     */
+    public ExternalSorter(
+            RecordSerializer<T> serializer,
+            RecordComparator<T> comparator,
+            List<MemorySegment> memory,
+            File tempDirectory,
+            int readAheadPages)
+    {
+        this.serializer = checkNotNull(serializer, "serializer is null");
+        this.comparator = checkNotNull(comparator, "comparator is null");
+        this.memory = new ArrayList<>(checkNotNull(memory, "memory is null"));
+        this.tempDirectory = checkNotNull(tempDirectory, "tempDirectory is null");
+        checkArgument(readAheadPages > 0, "readAheadPages must be positive");
+        // an intermediate merge needs two inputs and the page of its output
+        checkArgument(memory.size() >= 2 * readAheadPages + 1,
+                "the sorter requires at least %s memory segments for %s read-ahead pages", 2 * readAheadPages + 1, readAheadPages);
+        this.readAheadPages = readAheadPages;
+
+        List<MemorySegment> sortMemory = new ArrayList<>(this.memory);
+        this.writeBuffer = sortMemory.remove(sortMemory.size() - 1);
+        this.sortBuffer = new NormalizedKeySorter<>(serializer, comparator, sortMemory);
+    }
+
+    /**
+     * Adds a record to the sorter, spilling the collected records to disk if the memory is full.
+     *
+     * @param record The record to add.
+     * @throws IOException Thrown, if the collected records could not be spilled, or if the record
+     *     does not fit into the memory of the sorter.
+     */
+    public void add(T record)
+            throws IOException
+    {
+        checkState(!finished, "sorter has been finished");
+        if (sortBuffer.write(record)) {
+            return;
+        }
+        if (sortBuffer.isEmpty()) {
+            throw new IOException("record is larger than the memory of the sorter");
+        }
+
+        spill();
+        sortBuffer.reset();
+        if (!sortBuffer.write(record)) {
+            throw new IOException("record is larger than the memory of the sorter");
+        }
+    }
+
+    /**
+     * Finishes adding records and returns an iterator over all added records in sorted order.
+     * The iterator is valid until the sorter is closed.
+     *
+     * @return An iterator returning the records in sorted order.
+     * @throws IOException Thrown, if the runs could not be spilled or merged.
+     */
+    public MutableObjectIterator<T> finish()
+            throws IOException
+    {
+        checkState(!finished, "sorter has been finished");
+        finished = true;
+
+        if (runs.isEmpty()) {
+            sortAlgorithm.sort(sortBuffer);
+            return sortBuffer.getIterator();
+        }
+
+        if (!sortBuffer.isEmpty()) {
+            spill();
+        }
+        sortBuffer.dispose();
+
+        // the final merge does not need an output page
+        int maxFanIn = (memory.size() - 1) / readAheadPages;
+        int finalFanIn = memory.size() / readAheadPages;
+        int firstRun = 0;
+        while (runs.size() > finalFanIn) {
+            // merge just enough runs to leave exactly the final fan-in, which keeps the bytes
+            // written by the intermediate merges low
+            int numRuns = Math.min(maxFanIn, runs.size() - finalFanIn + 1);
+            if (firstRun + numRuns > runs.size()) {
+                // start over with the runs merged in this pass
+                firstRun = 0;
+            }
+            mergeIntoNewRun(firstRun, numRuns);
+            firstRun++;
+        }
+        return openMerge(0, runs.size(), new ArrayList<>(memory));
+    }
+
+    /**
+     * Gets the number of sorted runs spilled to disk so far, including the runs written by
+     * intermediate merges.
+     */
+    public int getNumSpilledRuns()
+    {
+        return numSpilledRuns;
+    }
+
+    private void spill()
+            throws IOException
+    {
+        sortAlgorithm.sort(sortBuffer);
+        SpilledRun run = createRun(runs.size(), sortBuffer.size());
+        try (FileChannelOutputView output = new FileChannelOutputView(openForWrite(run.file), writeBuffer, CHECKSUM)) {
+            sortBuffer.writeToOutput(output);
+        }
+    }
+
+    /**
+     * Merges the given range of runs into a new run, which takes the place of the range.
+     */
+    private void mergeIntoNewRun(int firstRun, int numRuns)
+            throws IOException
+    {
+        List<MemorySegment> readMemory = new ArrayList<>(memory);
+        MemorySegment outputBuffer = readMemory.remove(readMemory.size() - 1);
+
+        long numRecords = 0;
+        for (SpilledRun run : runs.subList(firstRun, firstRun + numRuns)) {
+            numRecords += run.numRecords;
+        }
+
+        MutableObjectIterator<T> iterator = openMerge(firstRun, numRuns, readMemory);
+        SpilledRun target = createRun(firstRun, numRecords);
+        try (FileChannelOutputView output = new FileChannelOutputView(openForWrite(target.file), outputBuffer, CHECKSUM)) {
+            T record;
+            while ((record = iterator.next()) != null) {
+                serializer.serialize(record, output);
+            }
+        }
+        finally {
+            // closing the readers deletes the merged runs
+            closeReaders();
+        }
+    }
+
+    /**
+     * Opens the given range of runs and merges them. Once all runs are open, they are removed from
+     * the list of runs, and their files are deleted when the readers are closed. If a run cannot be
+     * opened, the runs opened before are closed again.
+     */
+    private MutableObjectIterator<T> openMerge(int firstRun, int numRuns, List<MemorySegment> readMemory)
+            throws IOException
+    {
+        List<SpilledRun> merged = runs.subList(firstRun, firstRun + numRuns);
+        List<FileChannelInputView> views = new ArrayList<>(numRuns);
+        List<RunIterator> inputs = new ArrayList<>(numRuns);
+        try {
+            for (int i = 0; i < numRuns; i++) {
+                SpilledRun run = merged.get(i);
+                int from = i * readAheadPages;
+                FileChannel channel = FileChannel.open(run.file.toPath(), StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+                FileChannelInputView view;
+                try {
+                    view = new FileChannelInputView(channel, readMemory.subList(from, from + readAheadPages), CHECKSUM);
+                }
+                catch (IOException | RuntimeException e) {
+                    closeQuietly(channel, e);
+                    throw e;
+                }
+                views.add(view);
+                inputs.add(new RunIterator(view, run.numRecords));
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            for (FileChannelInputView view : views) {
+                closeQuietly(view, e);
+            }
+            throw e;
+        }
+        openReaders.addAll(views);
+        merged.clear();
+        return new LoserTreeMergeIterator<>(inputs, comparator);
+    }
+
+    private static void closeQuietly(Closeable closeable, Throwable failure)
+    {
+        try {
+            closeable.close();
+        }
+        catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private SpilledRun createRun(int index, long numRecords)
+            throws IOException
+    {
+        // the run is listed right away, so that its file is deleted on close even if writing fails
+        SpilledRun run = new SpilledRun(File.createTempFile(FILE_PREFIX, FILE_SUFFIX, tempDirectory), numRecords);
+        runs.add(index, run);
+        numSpilledRuns++;
+        return run;
+    }
+
+    private static FileChannel openForWrite(File file)
+            throws IOException
+    {
+        return FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void delete(File file)
+            throws IOException
+    {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private void closeReaders()
+            throws IOException
+    {
+        IOException exception = null;
+        for (FileChannelInputView reader : openReaders) {
+            try {
+                reader.close();
+            }
+            catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+                else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        openReaders.clear();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Closes all open runs and deletes all spilled files. The memory segments are not released
+     * and may be reused by the caller afterwards.
+     *
+     * @throws IOException Thrown, if a file could not be closed or deleted.
+     */
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            closeReaders();
+        }
+        finally {
+            for (SpilledRun run : runs) {
+                delete(run.file);
+            }
+            runs.clear();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static final class SpilledRun
+    {
+        private final File file;
+
+        private final long numRecords;
+
+        private SpilledRun(File file, long numRecords)
+        {
+            this.file = file;
+            this.numRecords = numRecords;
+        }
+    }
+
+    private final class RunIterator
+            implements MutableObjectIterator<T>
+    {
+        private final FileChannelInputView view;
+
+        private long remaining;
+
+        private RunIterator(FileChannelInputView view, long numRecords)
+        {
+            this.view = view;
+            this.remaining = numRecords;
+        }
+
+        @Override
+        public T next(T reuse)
+                throws IOException
+        {
+            if (remaining == 0) {
+                return null;
+            }
+            remaining--;
+            return serializer.deserialize(reuse, view);
+        }
+
+        @Override
+        public T next()
+                throws IOException
+        {
+            if (remaining == 0) {
+                return null;
+            }
+            remaining--;
+            return serializer.deserialize(view);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package info.victorchu.bamboo.sort;
+
+/** An in-place sorting algorithm over an {@link IndexedSortable}. */
+public interface IndexedSorter
+{
+    /**
+     * Sorts all entries of the given sortable.
+     *
+     * @param s The sortable to sort.
+     */
+    void sort(IndexedSortable s);
+
+    /**
+     * Sorts the entries of the given sortable in the range {@code [l, r)}.
+     *
+     * @param s The sortable to sort.
+     * @param l The logical index of the first entry to sort, inclusive.
+     * @param r The logical index of the last entry to sort, exclusive.
+     */
+    void sort(IndexedSortable s, int l, int r);
+}
@@ -0,0 +1,132 @@
+package info.victorchu.bamboo.sort;
+
+import info.victorchu.bamboo.record.MutableObjectIterator;
+import info.victorchu.bamboo.record.RecordComparator;
+
+import java.io.IOException;
+import java.util.List;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * An iterator that merges k sorted inputs into one sorted sequence, using a tree of losers.
+ *
+ * <p>Every inner node of the tree holds the input that lost the match at that node, the root
+ * additionally holds the overall winner. After the winner's record is returned, only the path from
+ * the winner's leaf to the root is replayed, so every record costs at most {@code ceil(log2(k))}
+ * comparisons, against roughly twice that for a binary heap, which compares with both children
+ * on the way down.
+ *
+ * <p>Records with equal keys are returned in the order of their inputs, which makes the merge
+ * stable if the inputs are ordered by their creation.
+ *
+ * @param <T> The type of the merged records.
+ */
+public final class LoserTreeMergeIterator<T>
+        implements MutableObjectIterator<T>
+{
+    private final List<? extends MutableObjectIterator<T>> inputs;
+
+    private final RecordComparator<T> comparator;
+
+    /** The current head record of every input, {@code null} once the input is exhausted. */
+    private final Object[] heads;
+
+    /** The losers of the inner nodes 1 .. k-1, and the winner at position 0. */
+    private final int[] tree;
+
+    private final int k;
+
+    /**
+     * Creates a new merge iterator and reads the first record of every input.
+     *
+     * @param inputs The sorted inputs.
+     * @param comparator The comparator defining the sort order of the inputs.
+     * @throws IOException Thrown, if the first record of an input could not be read.
+     */
+    public LoserTreeMergeIterator(List<? extends MutableObjectIterator<T>> inputs, RecordComparator<T> comparator)
+            throws IOException
+    {
+        this.inputs = checkNotNull(inputs, "inputs is null");
+        this.comparator = checkNotNull(comparator, "comparator is null");
+        checkArgument(!inputs.isEmpty(), "at least one input is required");
+
+        this.k = inputs.size();
+        this.heads = new Object[k];
+        this.tree = new int[k];
+        for (int i = 0; i < k; i++) {
+            this.heads[i] = inputs.get(i).next();
+        }
+        this.tree[0] = build(1);
+    }
+
+    /**
+     * Plays the matches of the subtree below the given node, records the losers and returns the
+     * winner. The leaves are the virtual nodes k .. 2k-1.
+     */
+    private int build(int node)
+    {
+        if (node >= k) {
+            return node - k;
+        }
+        int left = build(node << 1);
+        int right = build((node << 1) + 1);
+        if (beats(left, right)) {
+            tree[node] = right;
+            return left;
+        }
+        else {
+            tree[node] = left;
+            return right;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean beats(int first, int second)
+    {
+        Object a = heads[first];
+        Object b = heads[second];
+        if (a == null) {
+            return false;
+        }
+        if (b == null) {
+            return true;
+        }
+        int cmp = comparator.compare((T) a, (T) b);
+        return cmp < 0 || (cmp == 0 && first < second);
+    }
+
+    @Override
+    public T next(T reuse)
+            throws IOException
+    {
+        // the heads are held across calls, so the reuse object cannot be filled safely
+        return next();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next()
+            throws IOException
+    {
+        int winner = tree[0];
+        T result = (T) heads[winner];
+        if (result == null) {
+            return null;
+        }
+
+        heads[winner] = inputs.get(winner).next();
+
+        // replay the matches on the path from the winner's leaf to the root
+        for (int node = (winner + k) >> 1; node > 0; node >>= 1) {
+            int loser = tree[node];
+            if (beats(loser, winner)) {
+                tree[node] = winner;
+                winner = loser;
+            }
+        }
+        tree[0] = winner;
+        return result;
+    }
+}
@@ -0,0 +1,532 @@
+package info.victorchu.bamboo.sort;
+
+import info.victorchu.bamboo.memory.DataOutputView;
+import info.victorchu.bamboo.memory.ListMemorySegmentSource;
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.RandomAccessInputView;
+import info.victorchu.bamboo.memory.SimpleCollectingOutputView;
+import info.victorchu.bamboo.record.MutableObjectIterator;
+import info.victorchu.bamboo.record.RecordComparator;
+import info.victorchu.bamboo.record.RecordSerializer;
+
+import javax.annotation.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * An in-memory sorter for records in binary form.
+ *
+ * <p>The records are serialized into record segments, back to back. For every record, the sorter
+ * additionally writes an index entry into separate sort index segments: the pointer (logical
+ * offset) of the record, followed by a fixed length normalized key prefix of the record. Sorting
+ * only compares and swaps the small index entries, mostly by comparing the normalized keys
+ * byte-wise. The records themselves are only deserialized to compare them, if the normalized keys
+ * are equal and do not fully determine the order. They are deserialized into two reused
+ * instances, so records of a mutable type are not allocated per comparison; serializers of
+ * immutable types, which ignore the reuse instance, still create a record for each side.
+ *
+ * <p>The record segments and the index segments are all drawn from the same list of memory
+ * segments handed to the sorter. Once that is exhausted, {@link #write(Object)} returns false and
+ * the caller has to sort and empty the sorter.
+ *
+ * @param <T> The type of the sorted records.
+ */
+public final class NormalizedKeySorter<T>
+        implements IndexedSortable
+{
+    private static final int OFFSET_LEN = 8;
+
+    /** The default maximal length of the normalized key prefix in each index entry. */
+    public static final int DEFAULT_MAX_NORMALIZED_KEY_LEN = 16;
+
+    private static final int MIN_REQUIRED_BUFFERS = 3;
+
+    // ------------------------------------------------------------------------
+    //                               Members
+    // ------------------------------------------------------------------------
+
+    private final byte[] swapBuffer;
+
+    private final RecordSerializer<T> serializer;
+
+    private final RecordComparator<T> comparator;
+
+    private final SimpleCollectingOutputView recordCollector;
+
+    private final RandomAccessInputView recordBuffer;
+
+    private final RandomAccessInputView recordBufferForComparison;
+
+    private MemorySegment currentSortIndexSegment;
+
+    private final ArrayList<MemorySegment> freeMemory;
+
+    private final ArrayList<MemorySegment> sortIndex;
+
+    private final ArrayList<MemorySegment> recordBufferSegments;
+
+    private long currentDataBufferOffset;
+
+    private long sortIndexBytes;
+
+    private int currentSortIndexOffset;
+
+    private int numRecords;
+
+    private final int numKeyBytes;
+
+    private final int indexEntrySize;
+
+    private final int indexEntriesPerSegment;
+
+    private final int lastIndexEntryOffset;
+
+    private final int segmentSize;
+
+    private final int totalNumBuffers;
+
+    private final boolean normalizedKeyFullyDetermines;
+
+    private final boolean useNormKeyUninverted;
+
+    /** The instances the two records of a comparison are deserialized into, created lazily. */
+    @Nullable
+    private T comparisonRecord1;
+
+    @Nullable
+    private T comparisonRecord2;
+
+    // -------------------------------------------------------------------------
+    // Constructors / Destructors
+    // -------------------------------------------------------------------------
+
+    public NormalizedKeySorter(RecordSerializer<T> serializer, RecordComparator<T> comparator, List<MemorySegment> memory)
+    {
+        this(serializer, comparator, memory, DEFAULT_MAX_NORMALIZED_KEY_LEN);
+    }
+
+    /**
+     * Creates a new sorter.
+     *
+     * @param serializer The serializer for the records.
+     * @param comparator The comparator defining the order of the records.
+     * @param memory The memory segments for the records and the sort index, all of the same size.
+     * @param maxNormalizedKeyBytes The maximal length of the normalized key prefix per record.
+     */
+    public NormalizedKeySorter(
+            RecordSerializer<T> serializer,
+            RecordComparator<T> comparator,
+            List<MemorySegment> memory,
+            int maxNormalizedKeyBytes)
+    {
+        this.serializer = checkNotNull(serializer, "serializer is null");
+        this.comparator = checkNotNull(comparator, "comparator is null");
+        checkNotNull(memory, "memory is null");
+        checkArgument(maxNormalizedKeyBytes >= 0, "Maximal number of normalized key bytes must not be negative.");
+
+        // check the size of the first buffer and record it. all further buffers must have the same
+        // size. the size must also be a power of 2
+        this.totalNumBuffers = memory.size();
+        checkArgument(totalNumBuffers >= MIN_REQUIRED_BUFFERS, "Normalized-Key sorter requires at least %s memory buffers.", MIN_REQUIRED_BUFFERS);
+        this.segmentSize = memory.get(0).size();
+        for (MemorySegment segment : memory) {
+            checkArgument(segment.size() == segmentSize, "All memory segments must have the same size.");
+        }
+        this.freeMemory = new ArrayList<>(memory);
+
+        // create the buffer collections
+        this.sortIndex = new ArrayList<>(16);
+        this.recordBufferSegments = new ArrayList<>(16);
+
+        // the views over the records, the collector must come first, as it grabs the first segment
+        this.recordCollector = new SimpleCollectingOutputView(this.recordBufferSegments, new ListMemorySegmentSource(this.freeMemory), this.segmentSize);
+        this.recordBuffer = new RandomAccessInputView(this.recordBufferSegments, this.segmentSize);
+        this.recordBufferForComparison = new RandomAccessInputView(this.recordBufferSegments, this.segmentSize);
+
+        // set up normalized key characteristics
+        if (this.comparator.supportsNormalizedKey()) {
+            this.numKeyBytes = Math.min(this.comparator.getNormalizeKeyLen(), maxNormalizedKeyBytes);
+            this.normalizedKeyFullyDetermines = !this.comparator.isNormalizedKeyPrefixOnly(this.numKeyBytes);
+        }
+        else {
+            this.numKeyBytes = 0;
+            this.normalizedKeyFullyDetermines = false;
+        }
+        this.useNormKeyUninverted = !this.comparator.invertNormalizedKey();
+
+        // compute the index entry size and limits
+        this.indexEntrySize = this.numKeyBytes + OFFSET_LEN;
+        this.indexEntriesPerSegment = this.segmentSize / this.indexEntrySize;
+        this.lastIndexEntryOffset = (this.indexEntriesPerSegment - 1) * this.indexEntrySize;
+        this.swapBuffer = new byte[this.indexEntrySize];
+
+        // set to initial state
+        this.currentSortIndexSegment = nextMemorySegment();
+        this.sortIndex.add(this.currentSortIndexSegment);
+    }
+
+    // -------------------------------------------------------------------------
+    // Memory Segment
+    // -------------------------------------------------------------------------
+
+    /**
+     * Resets the sort buffer back to the state where it is empty. All contained data is discarded.
+     */
+    public void reset()
+    {
+        // reset all offsets
+        this.numRecords = 0;
+        this.currentSortIndexOffset = 0;
+        this.currentDataBufferOffset = 0;
+        this.sortIndexBytes = 0;
+
+        // return all memory
+        this.freeMemory.addAll(this.sortIndex);
+        this.freeMemory.addAll(this.recordBufferSegments);
+        this.sortIndex.clear();
+        this.recordBufferSegments.clear();
+
+        // grab first buffers
+        this.currentSortIndexSegment = nextMemorySegment();
+        this.sortIndex.add(this.currentSortIndexSegment);
+        this.recordCollector.reset();
+    }
+
+    /**
+     * Checks whether the buffer is empty.
+     *
+     * @return True, if no record is contained, false otherwise.
+     */
+    public boolean isEmpty()
+    {
+        return this.numRecords == 0;
+    }
+
+    /**
+     * Collects all memory segments from this sorter.
+     *
+     * @return All memory segments from this sorter.
+     */
+    public List<MemorySegment> dispose()
+    {
+        this.freeMemory.addAll(this.sortIndex);
+        this.freeMemory.addAll(this.recordBufferSegments);
+
+        this.recordBufferSegments.clear();
+        this.sortIndex.clear();
+
+        return this.freeMemory;
+    }
+
+    /**
+     * Gets the total capacity of this sorter, in bytes.
+     *
+     * @return The sorter's total capacity.
+     */
+    public long getCapacity()
+    {
+        return ((long) this.totalNumBuffers) * this.segmentSize;
+    }
+
+    /**
+     * Gets the number of bytes currently occupied in this sorter, records and sort index.
+     *
+     * @return The number of bytes occupied.
+     */
+    public long getOccupancy()
+    {
+        return this.currentDataBufferOffset + this.sortIndexBytes;
+    }
+
+    // -------------------------------------------------------------------------
+    // Retrieving and Writing
+    // -------------------------------------------------------------------------
+
+    /**
+     * Gets the record at the given logical position.
+     *
+     * @param logicalPosition The logical position of the record.
+     * @return The record.
+     * @throws IOException Thrown, if an exception occurred during deserialization.
+     */
+    public T getRecord(int logicalPosition)
+            throws IOException
+    {
+        return getRecordFromBuffer(readPointer(logicalPosition));
+    }
+
+    /**
+     * Gets the record at the given logical position, deserialized into the reuse instance.
+     *
+     * @param reuse The reuse object to deserialize the record into.
+     * @param logicalPosition The logical position of the record.
+     * @return The record.
+     * @throws IOException Thrown, if an exception occurred during deserialization.
+     */
+    public T getRecord(T reuse, int logicalPosition)
+            throws IOException
+    {
+        return getRecordFromBuffer(reuse, readPointer(logicalPosition));
+    }
+
+    /**
+     * Writes a given record to this sort buffer. The written record will be appended and take the
+     * last logical position.
+     *
+     * @param record The record to be written.
+     * @return True, if the record was successfully written, false, if the sort buffer was full.
+     * @throws IOException Thrown, if an error occurred while serializing the record into the
+     *     buffers.
+     */
+    public boolean write(T record)
+            throws IOException
+    {
+        // check whether we need a new memory segment for the sort index
+        if (this.currentSortIndexOffset > this.lastIndexEntryOffset) {
+            if (memoryAvailable()) {
+                this.currentSortIndexSegment = nextMemorySegment();
+                this.sortIndex.add(this.currentSortIndexSegment);
+                this.currentSortIndexOffset = 0;
+                this.sortIndexBytes += this.segmentSize;
+            }
+            else {
+                return false;
+            }
+        }
+
+        // serialize the record into the data buffers
+        try {
+            this.serializer.serialize(record, this.recordCollector);
+        }
+        catch (EOFException e) {
+            // the partially written record is not indexed and will be overwritten after a reset
+            return false;
+        }
+
+        final long newOffset = this.recordCollector.getCurrentOffset();
+
+        // add the pointer and the normalized key
+        this.currentSortIndexSegment.putLong(this.currentSortIndexOffset, this.currentDataBufferOffset);
+        if (this.numKeyBytes != 0) {
+            this.comparator.putNormalizedKey(record, this.currentSortIndexSegment, this.currentSortIndexOffset + OFFSET_LEN, this.numKeyBytes);
+        }
+
+        this.currentSortIndexOffset += this.indexEntrySize;
+        this.currentDataBufferOffset = newOffset;
+        this.numRecords++;
+        return true;
+    }
+
+    // ------------------------------------------------------------------------
+    //                           Access Utilities
+    // ------------------------------------------------------------------------
+
+    private long readPointer(int logicalPosition)
+    {
+        if (logicalPosition < 0 || logicalPosition >= this.numRecords) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        final int bufferNum = logicalPosition / this.indexEntriesPerSegment;
+        final int segmentOffset = logicalPosition % this.indexEntriesPerSegment;
+        return this.sortIndex.get(bufferNum).getLong(segmentOffset * this.indexEntrySize);
+    }
+
+    private T getRecordFromBuffer(long pointer)
+            throws IOException
+    {
+        this.recordBuffer.setReadPosition(pointer);
+        return this.serializer.deserialize(this.recordBuffer);
+    }
+
+    private T getRecordFromBuffer(T reuse, long pointer)
+            throws IOException
+    {
+        this.recordBuffer.setReadPosition(pointer);
+        return this.serializer.deserialize(reuse, this.recordBuffer);
+    }
+
+    private T deserializeForComparison(@Nullable T reuse, RandomAccessInputView source)
+            throws IOException
+    {
+        return reuse == null ? this.serializer.deserialize(source) : this.serializer.deserialize(reuse, source);
+    }
+
+    private int compareRecords(long pointer1, long pointer2)
+    {
+        this.recordBuffer.setReadPosition(pointer1);
+        this.recordBufferForComparison.setReadPosition(pointer2);
+
+        try {
+            this.comparisonRecord1 = deserializeForComparison(this.comparisonRecord1, this.recordBuffer);
+            this.comparisonRecord2 = deserializeForComparison(this.comparisonRecord2, this.recordBufferForComparison);
+            return this.comparator.compare(this.comparisonRecord1, this.comparisonRecord2);
+        }
+        catch (IOException ioex) {
+            throw new RuntimeException("Error comparing two records.", ioex);
+        }
+    }
+
+    private boolean memoryAvailable()
+    {
+        return !this.freeMemory.isEmpty();
+    }
+
+    private MemorySegment nextMemorySegment()
+    {
+        return this.freeMemory.remove(this.freeMemory.size() - 1);
+    }
+
+    // -------------------------------------------------------------------------
+    // Indexed Sorting
+    // -------------------------------------------------------------------------
+
+    @Override
+    public int compare(int i, int j)
+    {
+        final int segmentNumberI = i / this.indexEntriesPerSegment;
+        final int segmentOffsetI = (i % this.indexEntriesPerSegment) * this.indexEntrySize;
+
+        final int segmentNumberJ = j / this.indexEntriesPerSegment;
+        final int segmentOffsetJ = (j % this.indexEntriesPerSegment) * this.indexEntrySize;
+
+        return compare(segmentNumberI, segmentOffsetI, segmentNumberJ, segmentOffsetJ);
+    }
+
+    @Override
+    public int compare(int segmentNumberI, int segmentOffsetI, int segmentNumberJ, int segmentOffsetJ)
+    {
+        final MemorySegment segI = this.sortIndex.get(segmentNumberI);
+        final MemorySegment segJ = this.sortIndex.get(segmentNumberJ);
+
+        int val = segI.compare(segJ, segmentOffsetI + OFFSET_LEN, segmentOffsetJ + OFFSET_LEN, this.numKeyBytes);
+
+        if (val != 0 || this.normalizedKeyFullyDetermines) {
+            return this.useNormKeyUninverted ? val : -val;
+        }
+
+        final long pointerI = segI.getLong(segmentOffsetI);
+        final long pointerJ = segJ.getLong(segmentOffsetJ);
+
+        return compareRecords(pointerI, pointerJ);
+    }
+
+    @Override
+    public void swap(int i, int j)
+    {
+        final int segmentNumberI = i / this.indexEntriesPerSegment;
+        final int segmentOffsetI = (i % this.indexEntriesPerSegment) * this.indexEntrySize;
+
+        final int segmentNumberJ = j / this.indexEntriesPerSegment;
+        final int segmentOffsetJ = (j % this.indexEntriesPerSegment) * this.indexEntrySize;
+
+        swap(segmentNumberI, segmentOffsetI, segmentNumberJ, segmentOffsetJ);
+    }
+
+    @Override
+    public void swap(int segmentNumberI, int segmentOffsetI, int segmentNumberJ, int segmentOffsetJ)
+    {
+        final MemorySegment segI = this.sortIndex.get(segmentNumberI);
+        final MemorySegment segJ = this.sortIndex.get(segmentNumberJ);
+
+        segI.swapBytes(this.swapBuffer, segJ, segmentOffsetI, segmentOffsetJ, this.indexEntrySize);
+    }
+
+    @Override
+    public int size()
+    {
+        return this.numRecords;
+    }
+
+    @Override
+    public int recordSize()
+    {
+        return indexEntrySize;
+    }
+
+    @Override
+    public int recordsPerSegment()
+    {
+        return indexEntriesPerSegment;
+    }
+
+    // -------------------------------------------------------------------------
+
+    /**
+     * Writes the records in this buffer in their logical order to the given output.
+     *
+     * @param output The output view to write the records to.
+     * @throws IOException Thrown, if an I/O exception occurred writing to the output view.
+     */
+    public void writeToOutput(DataOutputView output)
+            throws IOException
+    {
+        MutableObjectIterator<T> iterator = getIterator();
+        T record = null;
+        while ((record = iterator.next(record)) != null) {
+            this.serializer.serialize(record, output);
+        }
+    }
+
+    /**
+     * Gets an iterator over all records in this buffer in their logical order.
+     *
+     * @return An iterator returning the records in their logical order.
+     */
+    public MutableObjectIterator<T> getIterator()
+    {
+        return new MutableObjectIterator<T>()
+        {
+            private final int size = size();
+            private int current;
+
+            private int currentSegment;
+            private int currentOffset;
+
+            private MemorySegment currentIndexSegment = sortIndex.get(0);
+
+            @Override
+            public T next(T target)
+                    throws IOException
+            {
+                if (this.current < this.size) {
+                    return getRecordFromBuffer(target, nextPointer());
+                }
+                else {
+                    return null;
+                }
+            }
+
+            @Override
+            public T next()
+                    throws IOException
+            {
+                if (this.current < this.size) {
+                    return getRecordFromBuffer(nextPointer());
+                }
+                else {
+                    return null;
+                }
+            }
+
+            private long nextPointer()
+            {
+                this.current++;
+                if (this.currentOffset > lastIndexEntryOffset) {
+                    this.currentOffset = 0;
+                    this.currentIndexSegment = sortIndex.get(++this.currentSegment);
+                }
+
+                long pointer = this.currentIndexSegment.getLong(this.currentOffset);
+                this.currentOffset += indexEntrySize;
+                return pointer;
+            }
+        };
+    }
+}
@@ -8,6 +8,14 @@ public class ByteUtils
 {
     private static final char[] HEX_ARRAY = "0123456789ABCDEF".toCharArray();
 
+    @SuppressWarnings("restriction")
+    private static final sun.misc.Unsafe UNSAFE = UnsafeUtils.UNSAFE;
+
+    @SuppressWarnings("restriction")
+    private static final long BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
     public static byte[] intToBytes(int value)
     {
         return ByteBuffer.allocate(4).order(ByteOrder.nativeOrder()).putInt(value).array();
@@ -83,20 +91,21 @@ public class ByteUtils
         }
     }
 
+    /**
+     * Compares two ranges of arrays lexicographically, treating the bytes as unsigned.
+     *
+     * @return The difference of the first mismatching bytes, or the difference of the lengths if
+     *     one range is a prefix of the other.
+     */
     public static int compareUnsigned(byte[] a, int aFromIndex, int aToIndex, byte[] b, int bFromIndex, int bToIndex)
     {
         Preconditions.checkFromToIndex(aFromIndex, aToIndex, a.length);
         Preconditions.checkFromToIndex(bFromIndex, bToIndex, b.length);
         int aLen = aToIndex - aFromIndex;
         int bLen = bToIndex - bFromIndex;
-        int len = Math.min(aLen, bLen);
-        for (int i = 0; i < len; i++) {
-            int aByte = unsignedByteToInt(a[i + aFromIndex]);
-            int bByte = unsignedByteToInt(b[i + bFromIndex]);
-            int diff = aByte - bByte;
-            if (diff != 0) {
-                return diff;
-            }
+        int i = mismatchUnchecked(a, aFromIndex, b, bFromIndex, Math.min(aLen, bLen));
+        if (i >= 0) {
+            return unsignedByteToInt(a[aFromIndex + i]) - unsignedByteToInt(b[bFromIndex + i]);
         }
         // One is a prefix of the other, or, they are equal:
         return aLen - bLen;
@@ -112,12 +121,80 @@ public class ByteUtils
         if (aLen != bLen) {
             return false;
         }
-        for (int i = 0; i < aLen; i++) {
-            if (a[i + aFromIndex] != b[i + bFromIndex]) {
-                return false;
+        return mismatchUnchecked(a, aFromIndex, b, bFromIndex, aLen) < 0;
+    }
+
+    /**
+     * Finds the first index at which two ranges of arrays differ, like {@code
+     * java.util.Arrays#mismatch} of Java 9.
+     *
+     * @return The index of the first mismatch relative to the start of the ranges, the length of
+     *     the shorter range if it is a prefix of the longer one, or -1 if the ranges are equal.
+     */
+    public static int mismatch(byte[] a, int aFromIndex, int aToIndex, byte[] b, int bFromIndex, int bToIndex)
+    {
+        Preconditions.checkFromToIndex(aFromIndex, aToIndex, a.length);
+        Preconditions.checkFromToIndex(bFromIndex, bToIndex, b.length);
+        int aLen = aToIndex - aFromIndex;
+        int bLen = bToIndex - bFromIndex;
+        int length = Math.min(aLen, bLen);
+        int i = mismatchUnchecked(a, aFromIndex, b, bFromIndex, length);
+        return i < 0 && aLen != bLen ? length : i;
+    }
+
+    /**
+     * Finds the first mismatch of two ranges of the same length, comparing a long word at a time.
+     * The byte order of the words does not matter for equality, and the position of the lowest
+     * differing bit in memory order points to the first mismatching byte.
+     */
+    @SuppressWarnings("restriction")
+    private static int mismatchUnchecked(byte[] a, int aOffset, byte[] b, int bOffset, int length)
+    {
+        long aAddress = BYTE_ARRAY_BASE_OFFSET + aOffset;
+        long bAddress = BYTE_ARRAY_BASE_OFFSET + bOffset;
+        int i = 0;
+        for (; i <= length - 8; i += 8) {
+            long diff = UNSAFE.getLong(a, aAddress + i) ^ UNSAFE.getLong(b, bAddress + i);
+            if (diff != 0) {
+                return i + ((LITTLE_ENDIAN ? Long.numberOfTrailingZeros(diff) : Long.numberOfLeadingZeros(diff)) >>> 3);
+            }
+        }
+        for (; i < length; i++) {
+            if (a[aOffset + i] != b[bOffset + i]) {
+                return i;
             }
         }
-        return true;
+        return -1;
     }
 
+    /**
+     * Computes a 32 bit hash code of a range of an array, suitable for selecting hash table
+     * buckets and partitions. It equals {@link
+     * info.victorchu.bamboo.memory.MemorySegment#hash(int, int)} of the same bytes, so binary keys
+     * hash alike on the heap and in segments.
+     */
+    public static int hash(byte[] bytes, int offset, int length)
+    {
+        long hash = xxHash64(bytes, offset, length, 0);
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Computes the 64 bit xxHash of a range of an array, reading eight bytes at a time.
+     */
+    public static long xxHash64(byte[] bytes, int offset, int length, long seed)
+    {
+        Preconditions.checkFromIndexSize(offset, length, bytes.length);
+        return HashUtils.xxHash64Unsafe(bytes, BYTE_ARRAY_BASE_OFFSET + offset, length, seed);
+    }
+
+    /**
+     * Computes the first 64 bits of the 128 bit x64 MurmurHash3 of a range of an array, reading
+     * sixteen bytes at a time.
+     */
+    public static long murmur3Hash64(byte[] bytes, int offset, int length, int seed)
+    {
+        Preconditions.checkFromIndexSize(offset, length, bytes.length);
+        return HashUtils.murmur3Hash64Unsafe(bytes, BYTE_ARRAY_BASE_OFFSET + offset, length, seed);
+    }
 }
@@ -0,0 +1,216 @@
+package info.victorchu.bamboo.utils;
+
+import java.nio.ByteOrder;
+
+/**
+ * The cores of the 64 bit xxHash and of the 128 bit x64 MurmurHash3, reduced to its first 64 bits,
+ * over raw memory. They read the input in little endian longs and are identical to the reference
+ * implementations on every platform. The address of the input is relative to the given object, or
+ * absolute if the object is null, see {@code sun.misc.Unsafe#getLong(Object, long)}; no bounds are
+ * checked.
+ */
+public final class HashUtils
+{
+    @SuppressWarnings("restriction")
+    private static final sun.misc.Unsafe UNSAFE = UnsafeUtils.UNSAFE;
+
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    /** The number of bytes xxHash consumes at a time, into four accumulators. */
+    public static final int XXHASH64_STRIPE_LENGTH = 32;
+
+    private static final long C1 = 0x87C37B91114253D5L;
+    private static final long C2 = 0x4CF5AD432745937FL;
+
+    private HashUtils() {}
+
+    /**
+     * Computes the 64 bit xxHash of the given number of bytes at an address.
+     *
+     * @param base The object holding the bytes, or null for off-heap memory.
+     * @param address The address of the first byte.
+     * @param length The number of bytes.
+     * @param seed The seed of the hash.
+     * @return The hash of the bytes.
+     */
+    public static long xxHash64Unsafe(Object base, long address, int length, long seed)
+    {
+        long end = address + length;
+        long hash;
+        if (length >= XXHASH64_STRIPE_LENGTH) {
+            long v1 = seed + PRIME64_1 + PRIME64_2;
+            long v2 = seed + PRIME64_2;
+            long v3 = seed;
+            long v4 = seed - PRIME64_1;
+            for (; address <= end - XXHASH64_STRIPE_LENGTH; address += XXHASH64_STRIPE_LENGTH) {
+                v1 = xxHash64Round(v1, getLongLittleEndian(base, address));
+                v2 = xxHash64Round(v2, getLongLittleEndian(base, address + 8));
+                v3 = xxHash64Round(v3, getLongLittleEndian(base, address + 16));
+                v4 = xxHash64Round(v4, getLongLittleEndian(base, address + 24));
+            }
+            hash = xxHash64MergeAccumulators(v1, v2, v3, v4);
+        }
+        else {
+            hash = seed + PRIME64_5;
+        }
+        hash += length;
+        return xxHash64Finish(hash, base, address, end);
+    }
+
+    /**
+     * Mixes eight bytes of input into one of the four xxHash accumulators.
+     */
+    public static long xxHash64Round(long accumulator, long input)
+    {
+        accumulator += input * PRIME64_2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME64_1;
+    }
+
+    /**
+     * Merges the four xxHash accumulators into the hash, once all full stripes are consumed.
+     */
+    public static long xxHash64MergeAccumulators(long v1, long v2, long v3, long v4)
+    {
+        long hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+        hash = mergeAccumulator(hash, v1);
+        hash = mergeAccumulator(hash, v2);
+        hash = mergeAccumulator(hash, v3);
+        return mergeAccumulator(hash, v4);
+    }
+
+    private static long mergeAccumulator(long hash, long accumulator)
+    {
+        hash ^= xxHash64Round(0, accumulator);
+        return hash * PRIME64_1 + PRIME64_4;
+    }
+
+    /**
+     * Mixes the last bytes of the input, less than a stripe, into the xxHash and avalanches it.
+     *
+     * @param hash The hash of the full stripes, plus the total length of the input.
+     * @param base The object holding the bytes, or null for off-heap memory.
+     * @param address The address of the first remaining byte.
+     * @param end The address after the last remaining byte.
+     * @return The final hash.
+     */
+    @SuppressWarnings("restriction")
+    public static long xxHash64Finish(long hash, Object base, long address, long end)
+    {
+        for (; address <= end - 8; address += 8) {
+            hash ^= xxHash64Round(0, getLongLittleEndian(base, address));
+            hash = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+        }
+        if (address <= end - 4) {
+            int value = UNSAFE.getInt(base, address);
+            hash ^= ((LITTLE_ENDIAN ? value : Integer.reverseBytes(value)) & 0xFFFFFFFFL) * PRIME64_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3;
+            address += 4;
+        }
+        for (; address < end; address++) {
+            hash ^= (UNSAFE.getByte(base, address) & 0xFF) * PRIME64_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME64_1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME64_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME64_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    /**
+     * Computes the first 64 bits of the 128 bit x64 MurmurHash3 of the given number of bytes at an
+     * address.
+     *
+     * @param base The object holding the bytes, or null for off-heap memory.
+     * @param address The address of the first byte.
+     * @param length The number of bytes.
+     * @param seed The seed of the hash.
+     * @return The first 64 bits of the hash of the bytes.
+     */
+    @SuppressWarnings("restriction")
+    public static long murmur3Hash64Unsafe(Object base, long address, int length, int seed)
+    {
+        long h1 = seed & 0xFFFFFFFFL;
+        long h2 = h1;
+        long end = address + length;
+
+        for (; address <= end - 16; address += 16) {
+            h1 ^= mixK1(getLongLittleEndian(base, address));
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52DCE729;
+
+            h2 ^= mixK2(getLongLittleEndian(base, address + 8));
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495AB5;
+        }
+
+        int tail = (int) (end - address);
+        if (tail > 0) {
+            long k1 = 0;
+            long k2 = 0;
+            for (int i = 0; i < tail; i++) {
+                long b = UNSAFE.getByte(base, address + i) & 0xFFL;
+                if (i < 8) {
+                    k1 |= b << (i << 3);
+                }
+                else {
+                    k2 |= b << ((i - 8) << 3);
+                }
+            }
+            if (tail > 8) {
+                h2 ^= mixK2(k2);
+            }
+            h1 ^= mixK1(k1);
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        return h1 + h2;
+    }
+
+    @SuppressWarnings("restriction")
+    private static long getLongLittleEndian(Object base, long address)
+    {
+        long value = UNSAFE.getLong(base, address);
+        return LITTLE_ENDIAN ? value : Long.reverseBytes(value);
+    }
+
+    private static long mixK1(long k1)
+    {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2)
+    {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix64(long k)
+    {
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
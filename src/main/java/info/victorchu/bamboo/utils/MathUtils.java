@@ -0,0 +1,72 @@
+package info.victorchu.bamboo.utils;
+
+public final class MathUtils
+{
+    private MathUtils() {}
+
+    /**
+     * Computes the logarithm of the given value to the base of 2, rounded down. It corresponds to
+     * the position of the highest non-zero bit. The position is counted, starting with 0 from the
+     * least significant bit to the most significant bit. For example, <code>log2floor(16) = 4
+     * </code>, and <code>log2floor(10) = 3</code>.
+     *
+     * @param value The value to compute the logarithm for.
+     * @return The logarithm (rounded down) to the base of 2.
+     * @throws ArithmeticException Thrown, if the given value is zero.
+     */
+    public static int log2floor(int value)
+            throws ArithmeticException
+    {
+        if (value == 0) {
+            throw new ArithmeticException("Logarithm of zero is undefined.");
+        }
+        return 31 - Integer.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Computes the logarithm of the given value to the base of 2. This method throws an error, if
+     * the given argument is not a power of 2.
+     *
+     * @param value The value to compute the logarithm for.
+     * @return The logarithm to the base of 2.
+     * @throws ArithmeticException Thrown, if the given value is zero.
+     * @throws IllegalArgumentException Thrown, if the given value is not a power of two.
+     */
+    public static int log2strict(int value)
+            throws ArithmeticException, IllegalArgumentException
+    {
+        if (value == 0) {
+            throw new ArithmeticException("Logarithm of zero is undefined.");
+        }
+        if ((value & (value - 1)) != 0) {
+            throw new IllegalArgumentException("The given value " + value + " is not a power of two.");
+        }
+        return 31 - Integer.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Checks whether the given value is a power of two.
+     *
+     * @param value The value to check.
+     * @return True, if the value is a power of two, false otherwise.
+     */
+    public static boolean isPowerOf2(long value)
+    {
+        return (value & (value - 1)) == 0;
+    }
+
+    /**
+     * Rounds the given value up to the next power of two, e.g. <code>roundUpToPowerOfTwo(3) = 4
+     * </code>. Powers of two are returned unchanged, values smaller than one yield one.
+     *
+     * @param value The value to round up.
+     * @return The smallest power of two that is equal to or larger than the value.
+     */
+    public static int roundUpToPowerOfTwo(int value)
+    {
+        if (value <= 1) {
+            return 1;
+        }
+        return Integer.highestOneBit(value - 1) << 1;
+    }
+}
@@ -0,0 +1,38 @@
+package info.victorchu.bamboo.utils;
+
+import java.lang.reflect.Field;
+
+/**
+ * Access to {@code sun.misc.Unsafe}, for the utilities that read memory a word at a time. It lives
+ * here rather than in the memory package, which builds on the utilities.
+ */
+public final class UnsafeUtils
+{
+    /** The "unsafe", which can be used to perform native memory accesses. */
+    @SuppressWarnings({"restriction", "UseOfSunClasses"})
+    public static final sun.misc.Unsafe UNSAFE = getUnsafe();
+
+    private UnsafeUtils() {}
+
+    @SuppressWarnings("restriction")
+    private static sun.misc.Unsafe getUnsafe() {
+        try {
+            Field unsafeField = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            return (sun.misc.Unsafe) unsafeField.get(null);
+        } catch (SecurityException e) {
+            throw new Error(
+                    "Could not access the sun.misc.Unsafe handle, permission denied by security manager.",
+                    e);
+        } catch (NoSuchFieldException e) {
+            throw new Error("The static handle field in sun.misc.Unsafe was not found.", e);
+        } catch (IllegalArgumentException e) {
+            throw new Error("Bug: Illegal argument reflection access for static field.", e);
+        } catch (IllegalAccessException e) {
+            throw new Error("Access to sun.misc.Unsafe is forbidden by the runtime.", e);
+        } catch (Throwable t) {
+            throw new Error(
+                    "Unclassified error while trying to access the sun.misc.Unsafe handle.", t);
+        }
+    }
+}
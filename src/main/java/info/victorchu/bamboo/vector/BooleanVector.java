@@ -0,0 +1,35 @@
+package info.victorchu.bamboo.vector;
+
+import info.victorchu.bamboo.memory.DataInputView;
+
+import java.io.IOException;
+
+/**
+ * A column of boolean values, one byte per value.
+ */
+public final class BooleanVector
+        extends FixedWidthVector
+{
+    BooleanVector(int capacity, boolean offHeap)
+    {
+        super(ColumnType.BOOLEAN, capacity, offHeap);
+    }
+
+    public boolean getBoolean(int position)
+    {
+        return values.getBoolean(position);
+    }
+
+    public void setBoolean(int position, boolean value)
+    {
+        values.putBoolean(position, value);
+        setNotNull(position);
+    }
+
+    @Override
+    void readValue(int position, DataInputView in)
+            throws IOException
+    {
+        setBoolean(position, in.readBoolean());
+    }
+}
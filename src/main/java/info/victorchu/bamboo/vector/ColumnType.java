@@ -0,0 +1,40 @@
+package info.victorchu.bamboo.vector;
+
+/**
+ * The types of the columns of a {@link VectorBatch}.
+ */
+public enum ColumnType
+{
+    /** One byte per value, zero or one. */
+    BOOLEAN(1),
+    INT(4),
+    LONG(8),
+    DOUBLE(8),
+    /** Byte strings of any length, stored as offsets into a data segment. */
+    VARBINARY(-1);
+
+    private final int fixedWidth;
+
+    ColumnType(int fixedWidth)
+    {
+        this.fixedWidth = fixedWidth;
+    }
+
+    public boolean isFixedWidth()
+    {
+        return fixedWidth > 0;
+    }
+
+    /**
+     * Gets the number of bytes of a value of a fixed width type.
+     *
+     * @throws UnsupportedOperationException Thrown for a variable width type.
+     */
+    public int getFixedWidth()
+    {
+        if (fixedWidth < 0) {
+            throw new UnsupportedOperationException(this + " is not a fixed width type");
+        }
+        return fixedWidth;
+    }
+}
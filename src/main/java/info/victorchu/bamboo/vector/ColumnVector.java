@@ -0,0 +1,139 @@
+package info.victorchu.bamboo.vector;
+
+import info.victorchu.bamboo.memory.DataInputView;
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemorySegments;
+
+import java.io.IOException;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkElementIndex;
+
+/**
+ * A column of a {@link VectorBatch}: the values of one field for up to a fixed number of
+ * positions, held in memory segments that are allocated once and reused for every batch.
+ *
+ * <p>Null values are marked in a bitmap of one bit per position, stored as longs in native byte
+ * order, so bit {@code position & 63} of the long at byte {@code (position >>> 6) * 8} is set for a
+ * null value. The value slot of a null position holds no meaningful value. A column that never had
+ * a null value set skips the bitmap on reads, see {@link #mayHaveNull()}.
+ *
+ * <p>The accessors never allocate. A column is not thread safe.
+ */
+public abstract class ColumnVector
+{
+    private final ColumnType type;
+
+    final int capacity;
+
+    final boolean offHeap;
+
+    private final MemorySegment nulls;
+
+    private boolean mayHaveNull;
+
+    ColumnVector(ColumnType type, int capacity, boolean offHeap)
+    {
+        checkArgument(capacity > 0 && capacity <= VectorBatch.MAX_CAPACITY, "The capacity must be between 1 and %s.", VectorBatch.MAX_CAPACITY);
+        this.type = type;
+        this.capacity = capacity;
+        this.offHeap = offHeap;
+        this.nulls = allocate(((capacity + 63) >>> 6) << 3, offHeap);
+        clearNulls();
+    }
+
+    static MemorySegment allocate(int size, boolean offHeap)
+    {
+        return offHeap ? MemorySegments.allocateOffHeap(size) : MemorySegments.allocate(size);
+    }
+
+    public ColumnType getType()
+    {
+        return type;
+    }
+
+    /** Gets the number of positions the column can hold. */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    // ------------------------------------------------------------------------
+    //  Nulls
+    // ------------------------------------------------------------------------
+
+    /**
+     * Checks whether any position was set to null since the column was last reset. If not, no
+     * value of the column is null and the bitmap need not be read.
+     */
+    public boolean mayHaveNull()
+    {
+        return mayHaveNull;
+    }
+
+    public boolean isNull(int position)
+    {
+        checkElementIndex(position, capacity);
+        return mayHaveNull && (nulls.getLong((position >>> 6) << 3) & (1L << position)) != 0;
+    }
+
+    /** Marks the value at the given position as null. */
+    public void setNull(int position)
+    {
+        checkElementIndex(position, capacity);
+        int index = (position >>> 6) << 3;
+        nulls.putLong(index, nulls.getLong(index) | (1L << position));
+        mayHaveNull = true;
+    }
+
+    /** Clears the null bit of a position a value is set at. */
+    final void setNotNull(int position)
+    {
+        if (mayHaveNull) {
+            int index = (position >>> 6) << 3;
+            nulls.putLong(index, nulls.getLong(index) & ~(1L << position));
+        }
+    }
+
+    /**
+     * Gets the segment of the null bitmap, for kernels that process 64 positions at a time. Its
+     * bits are only valid if {@link #mayHaveNull()} is true.
+     */
+    public MemorySegment getNullBitmap()
+    {
+        return nulls;
+    }
+
+    private void clearNulls()
+    {
+        for (int i = 0; i < nulls.size(); i += 8) {
+            nulls.putLong(i, 0L);
+        }
+        mayHaveNull = false;
+    }
+
+    // ------------------------------------------------------------------------
+    //  Building
+    // ------------------------------------------------------------------------
+
+    /**
+     * Reads a non-null value in the format of {@link DataInputView} and sets it at the given
+     * position.
+     */
+    abstract void readValue(int position, DataInputView in)
+            throws IOException;
+
+    /** Clears all values, so the column is reused for the next batch. */
+    void reset()
+    {
+        if (mayHaveNull) {
+            clearNulls();
+        }
+    }
+
+    /** Releases the memory of the column. */
+    void free()
+    {
+        nulls.free();
+    }
+}
@@ -0,0 +1,35 @@
+package info.victorchu.bamboo.vector;
+
+import info.victorchu.bamboo.memory.DataInputView;
+
+import java.io.IOException;
+
+/**
+ * A column of double values.
+ */
+public final class DoubleVector
+        extends FixedWidthVector
+{
+    DoubleVector(int capacity, boolean offHeap)
+    {
+        super(ColumnType.DOUBLE, capacity, offHeap);
+    }
+
+    public double getDouble(int position)
+    {
+        return values.getDouble(position << 3);
+    }
+
+    public void setDouble(int position, double value)
+    {
+        values.putDouble(position << 3, value);
+        setNotNull(position);
+    }
+
+    @Override
+    void readValue(int position, DataInputView in)
+            throws IOException
+    {
+        setDouble(position, in.readDouble());
+    }
+}
@@ -0,0 +1,35 @@
+package info.victorchu.bamboo.vector;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+
+/**
+ * A column of fixed width values, packed one after the other in a single memory segment in native
+ * byte order, so the value at a position lives at {@code position * width}.
+ */
+public abstract class FixedWidthVector
+        extends ColumnVector
+{
+    final MemorySegment values;
+
+    FixedWidthVector(ColumnType type, int capacity, boolean offHeap)
+    {
+        super(type, capacity, offHeap);
+        this.values = allocate(capacity * type.getFixedWidth(), offHeap);
+    }
+
+    /**
+     * Gets the segment of the packed values, for kernels that loop over the values of a batch
+     * without a call per position.
+     */
+    public MemorySegment getValues()
+    {
+        return values;
+    }
+
+    @Override
+    void free()
+    {
+        super.free();
+        values.free();
+    }
+}
@@ -0,0 +1,35 @@
+package info.victorchu.bamboo.vector;
+
+import info.victorchu.bamboo.memory.DataInputView;
+
+import java.io.IOException;
+
+/**
+ * A column of int values.
+ */
+public final class IntVector
+        extends FixedWidthVector
+{
+    IntVector(int capacity, boolean offHeap)
+    {
+        super(ColumnType.INT, capacity, offHeap);
+    }
+
+    public int getInt(int position)
+    {
+        return values.getInt(position << 2);
+    }
+
+    public void setInt(int position, int value)
+    {
+        values.putInt(position << 2, value);
+        setNotNull(position);
+    }
+
+    @Override
+    void readValue(int position, DataInputView in)
+            throws IOException
+    {
+        setInt(position, in.readInt());
+    }
+}
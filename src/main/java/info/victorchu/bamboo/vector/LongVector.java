@@ -0,0 +1,35 @@
+package info.victorchu.bamboo.vector;
+
+import info.victorchu.bamboo.memory.DataInputView;
+
+import java.io.IOException;
+
+/**
+ * A column of long values.
+ */
+public final class LongVector
+        extends FixedWidthVector
+{
+    LongVector(int capacity, boolean offHeap)
+    {
+        super(ColumnType.LONG, capacity, offHeap);
+    }
+
+    public long getLong(int position)
+    {
+        return values.getLong(position << 3);
+    }
+
+    public void setLong(int position, long value)
+    {
+        values.putLong(position << 3, value);
+        setNotNull(position);
+    }
+
+    @Override
+    void readValue(int position, DataInputView in)
+            throws IOException
+    {
+        setLong(position, in.readLong());
+    }
+}
@@ -0,0 +1,186 @@
+package info.victorchu.bamboo.vector;
+
+import info.victorchu.bamboo.memory.DataInputView;
+import info.victorchu.bamboo.memory.MemorySegment;
+
+import java.io.IOException;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkElementIndex;
+import static info.victorchu.bamboo.utils.Preconditions.checkState;
+
+/**
+ * A column of byte strings. The bytes of all values are appended to one data segment, and an
+ * offsets segment holds {@code capacity + 1} ints, where the value at a position spans from the
+ * offset at the position to the offset at the next position. A null value is empty.
+ *
+ * <p>Values are appended, so they are set in the order of their positions. The data segment grows
+ * by doubling when a value does not fit and keeps its size across batches.
+ */
+public final class VarbinaryVector
+        extends ColumnVector
+{
+    /** The initial number of data bytes per position. */
+    static final int INITIAL_BYTES_PER_POSITION = 16;
+
+    private final MemorySegment offsets;
+
+    private MemorySegment data;
+
+    private int positionCount;
+
+    VarbinaryVector(int capacity, boolean offHeap)
+    {
+        super(ColumnType.VARBINARY, capacity, offHeap);
+        this.offsets = allocate((capacity + 1) << 2, offHeap);
+        this.data = allocate(capacity * INITIAL_BYTES_PER_POSITION, offHeap);
+        offsets.putInt(0, 0);
+    }
+
+    // ------------------------------------------------------------------------
+    //  Accessors
+    // ------------------------------------------------------------------------
+
+    /** Gets the offset of the value at the given position in the data segment. */
+    public int getOffset(int position)
+    {
+        checkElementIndex(position, positionCount);
+        return offsets.getInt(position << 2);
+    }
+
+    /** Gets the number of bytes of the value at the given position. */
+    public int getLength(int position)
+    {
+        checkElementIndex(position, positionCount);
+        return offsets.getInt((position + 1) << 2) - offsets.getInt(position << 2);
+    }
+
+    /**
+     * Gets the segment holding the bytes of the values. It may be replaced by a larger one when
+     * values are appended, so it must be fetched again after the column was written.
+     */
+    public MemorySegment getData()
+    {
+        return data;
+    }
+
+    /** Gets the segment of the {@code capacity + 1} offsets of the values. */
+    public MemorySegment getOffsets()
+    {
+        return offsets;
+    }
+
+    /**
+     * Copies the value at the given position into an array.
+     *
+     * @return The number of bytes copied.
+     */
+    public int getBytes(int position, byte[] target, int targetOffset)
+    {
+        int length = getLength(position);
+        data.get(getOffset(position), target, targetOffset, length);
+        return length;
+    }
+
+    /** Checks whether the value at the given position equals the given bytes. */
+    public boolean equalTo(int position, MemorySegment other, int offset, int length)
+    {
+        return getLength(position) == length && data.equalTo(other, getOffset(position), offset, length);
+    }
+
+    /**
+     * Compares the value at the given position with the given bytes, as unsigned bytes.
+     *
+     * @return A negative number, zero or a positive number, if the value is smaller, equal or
+     *     larger.
+     */
+    public int compareTo(int position, MemorySegment other, int offset, int length)
+    {
+        return data.compare(other, getOffset(position), offset, getLength(position), length);
+    }
+
+    /** Gets the hash code of the value at the given position. */
+    public int hash(int position)
+    {
+        return data.hash(getOffset(position), getLength(position));
+    }
+
+    // ------------------------------------------------------------------------
+    //  Appending
+    // ------------------------------------------------------------------------
+
+    /** Appends a copy of the given bytes as the value at the given position. */
+    public void setBytes(int position, MemorySegment source, int offset, int length)
+    {
+        int dataOffset = reserve(position, length);
+        source.copyTo(offset, data, dataOffset, length);
+        commit(position, dataOffset + length);
+    }
+
+    /** Appends a copy of the given bytes as the value at the given position. */
+    public void setBytes(int position, byte[] source, int offset, int length)
+    {
+        int dataOffset = reserve(position, length);
+        data.put(dataOffset, source, offset, length);
+        commit(position, dataOffset + length);
+    }
+
+    /** Appends an empty value at the given position and marks it as null. */
+    @Override
+    public void setNull(int position)
+    {
+        int dataOffset = reserve(position, 0);
+        super.setNull(position);
+        commit(position, dataOffset);
+    }
+
+    /** Reads a length as an int followed by that many bytes, straight into the data segment. */
+    @Override
+    void readValue(int position, DataInputView in)
+            throws IOException
+    {
+        int length = in.readInt();
+        int dataOffset = reserve(position, length);
+        data.put(in, dataOffset, length);
+        commit(position, dataOffset + length);
+    }
+
+    /** Makes room for a value at the given position and returns its offset in the data segment. */
+    private int reserve(int position, int length)
+    {
+        checkState(position == positionCount, "Values must be appended in order, expected position %s, but got %s.", positionCount, position);
+        checkElementIndex(position, capacity);
+        checkArgument(length >= 0, "The length must not be negative.");
+        int dataOffset = offsets.getInt(position << 2);
+        long required = (long) dataOffset + length;
+        if (required > data.size()) {
+            checkArgument(required <= Integer.MAX_VALUE, "The values of a column must fit into a memory segment.");
+            MemorySegment grown = allocate((int) Math.min(Integer.MAX_VALUE, Math.max(required, 2L * data.size())), offHeap);
+            data.copyTo(0, grown, 0, dataOffset);
+            data.free();
+            data = grown;
+        }
+        return dataOffset;
+    }
+
+    private void commit(int position, int endOffset)
+    {
+        offsets.putInt((position + 1) << 2, endOffset);
+        positionCount++;
+    }
+
+    @Override
+    void reset()
+    {
+        super.reset();
+        positionCount = 0;
+    }
+
+    @Override
+    void free()
+    {
+        super.free();
+        offsets.free();
+        data.free();
+    }
+}
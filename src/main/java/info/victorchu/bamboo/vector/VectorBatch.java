@@ -0,0 +1,75 @@
+package info.victorchu.bamboo.vector;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkElementIndex;
+
+/**
+ * A batch of rows stored column by column: each field of the rows is a {@link ColumnVector} whose
+ * values are packed in memory segments. Operators that process a batch run one tight loop per
+ * column over a few thousand values, instead of a call per field per row, which keeps the values
+ * in the caches and lets the JIT compiler unroll and vectorize the loops.
+ *
+ * <p>A batch is a view over the columns of the {@link VectorBatchBuilder} that built it, and is
+ * only valid until the builder is reset for the next batch.
+ */
+public final class VectorBatch
+{
+    /** The number of rows of a batch, small enough for the columns to stay in the caches. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /** The maximum number of rows of a batch, so the offsets of any column fit into an int. */
+    public static final int MAX_CAPACITY = 1 << 24;
+
+    private final ColumnVector[] columns;
+
+    private final int positionCount;
+
+    VectorBatch(ColumnVector[] columns, int positionCount)
+    {
+        checkArgument(positionCount >= 0, "positionCount is negative");
+        this.columns = columns;
+        this.positionCount = positionCount;
+    }
+
+    /** Gets the number of rows. */
+    public int getPositionCount()
+    {
+        return positionCount;
+    }
+
+    public int getColumnCount()
+    {
+        return columns.length;
+    }
+
+    public ColumnVector getColumn(int channel)
+    {
+        checkElementIndex(channel, columns.length);
+        return columns[channel];
+    }
+
+    public BooleanVector getBooleanColumn(int channel)
+    {
+        return (BooleanVector) getColumn(channel);
+    }
+
+    public IntVector getIntColumn(int channel)
+    {
+        return (IntVector) getColumn(channel);
+    }
+
+    public LongVector getLongColumn(int channel)
+    {
+        return (LongVector) getColumn(channel);
+    }
+
+    public DoubleVector getDoubleColumn(int channel)
+    {
+        return (DoubleVector) getColumn(channel);
+    }
+
+    public VarbinaryVector getVarbinaryColumn(int channel)
+    {
+        return (VarbinaryVector) getColumn(channel);
+    }
+}
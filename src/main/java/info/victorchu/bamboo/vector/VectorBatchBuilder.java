@@ -0,0 +1,175 @@
+package info.victorchu.bamboo.vector;
+
+import info.victorchu.bamboo.memory.DataInputView;
+
+import java.io.IOException;
+import java.util.List;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkElementIndex;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+import static info.victorchu.bamboo.utils.Preconditions.checkState;
+
+/**
+ * Builds {@link VectorBatch}es from rows, reusing the memory of its columns for every batch.
+ *
+ * <p>Rows are either read from a {@link DataInputView}, see {@link #appendRow(DataInputView)}, or
+ * written field by field into the columns at {@link #getPositionCount()} and then completed with
+ * {@link #completeRow()}. A full builder is turned into a batch by {@link #build()}, and cleared
+ * for the next batch by {@link #reset()}, which invalidates the batch built before:
+ *
+ * <pre>{@code
+ * while (input.available() > 0) {
+ *     builder.appendRow(input);
+ *     if (builder.isFull()) {
+ *         process(builder.build());
+ *         builder.reset();
+ *     }
+ * }
+ * }</pre>
+ */
+public final class VectorBatchBuilder
+{
+    private final ColumnVector[] columns;
+
+    private final int capacity;
+
+    private int positionCount;
+
+    /**
+     * Creates a builder of batches of {@link VectorBatch#DEFAULT_CAPACITY} rows on the heap.
+     *
+     * @param types The types of the columns.
+     */
+    public VectorBatchBuilder(List<ColumnType> types)
+    {
+        this(types, VectorBatch.DEFAULT_CAPACITY, false);
+    }
+
+    /**
+     * Creates a builder.
+     *
+     * @param types The types of the columns.
+     * @param capacity The maximum number of rows of a batch.
+     * @param offHeap Whether the columns are allocated off the heap. Their memory is released by
+     *     {@link #free()}.
+     */
+    public VectorBatchBuilder(List<ColumnType> types, int capacity, boolean offHeap)
+    {
+        checkNotNull(types, "types is null");
+        checkArgument(capacity > 0 && capacity <= VectorBatch.MAX_CAPACITY, "The capacity must be between 1 and %s.", VectorBatch.MAX_CAPACITY);
+        this.capacity = capacity;
+        this.columns = new ColumnVector[types.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = createColumn(checkNotNull(types.get(i), "type is null"), capacity, offHeap);
+        }
+    }
+
+    private static ColumnVector createColumn(ColumnType type, int capacity, boolean offHeap)
+    {
+        switch (type) {
+            case BOOLEAN:
+                return new BooleanVector(capacity, offHeap);
+            case INT:
+                return new IntVector(capacity, offHeap);
+            case LONG:
+                return new LongVector(capacity, offHeap);
+            case DOUBLE:
+                return new DoubleVector(capacity, offHeap);
+            case VARBINARY:
+                return new VarbinaryVector(capacity, offHeap);
+            default:
+                throw new IllegalArgumentException("Unsupported column type: " + type);
+        }
+    }
+
+    /**
+     * Reads a row and appends it. Each field of the row is a boolean that is true for a non-null
+     * value, followed by the value if it is not null: a boolean, an int, a long or a double as
+     * written by a {@link java.io.DataOutput}, or for a byte string its length as an int and the
+     * bytes. The bytes are read straight into the columns.
+     *
+     * @param in The input to read the row from.
+     * @throws IOException Thrown, if the input could not be read. The builder is left with a
+     *     partially written row, so it should be reset.
+     */
+    public void appendRow(DataInputView in)
+            throws IOException
+    {
+        checkState(positionCount < capacity, "The batch is full.");
+        int position = positionCount;
+        for (ColumnVector column : columns) {
+            if (in.readBoolean()) {
+                column.readValue(position, in);
+            }
+            else {
+                column.setNull(position);
+            }
+        }
+        positionCount++;
+    }
+
+    /**
+     * Completes a row whose fields were set directly in the columns, at the position of
+     * {@link #getPositionCount()}.
+     */
+    public void completeRow()
+    {
+        checkState(positionCount < capacity, "The batch is full.");
+        positionCount++;
+    }
+
+    /** Gets the number of rows appended since the last reset, the position of the next row. */
+    public int getPositionCount()
+    {
+        return positionCount;
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    public boolean isFull()
+    {
+        return positionCount == capacity;
+    }
+
+    public boolean isEmpty()
+    {
+        return positionCount == 0;
+    }
+
+    /** Gets a column, to set the fields of the next row in. */
+    public ColumnVector getColumn(int channel)
+    {
+        checkElementIndex(channel, columns.length);
+        return columns[channel];
+    }
+
+    /**
+     * Gets a batch of the rows appended since the last reset. The batch shares the columns of the
+     * builder and is valid until the next call of {@link #reset()}.
+     */
+    public VectorBatch build()
+    {
+        return new VectorBatch(columns, positionCount);
+    }
+
+    /** Removes all rows, keeping the memory of the columns for the next batch. */
+    public void reset()
+    {
+        for (ColumnVector column : columns) {
+            column.reset();
+        }
+        positionCount = 0;
+    }
+
+    /** Releases the memory of the columns. The builder must not be used afterwards. */
+    public void free()
+    {
+        for (ColumnVector column : columns) {
+            column.free();
+        }
+    }
+}
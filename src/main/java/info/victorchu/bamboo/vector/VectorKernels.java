@@ -0,0 +1,512 @@
+package info.victorchu.bamboo.vector;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemoryUtils;
+
+import static info.victorchu.bamboo.utils.Preconditions.checkArgument;
+import static info.victorchu.bamboo.utils.Preconditions.checkNotNull;
+
+/**
+ * Filters and aggregates over the packed values of the columns of a {@link VectorBatch}, see
+ * {@link FixedWidthVector#getValues()}.
+ *
+ * <p>The kernels are plain counted loops over the unsafe accessors, with the bounds checked once
+ * before the loop, so the JIT compiler unrolls them and keeps the values in registers. A filter
+ * does not branch on its predicate: it writes every position to the output selection and advances
+ * the output by the outcome of the predicate, so its cost does not depend on the selectivity.
+ *
+ * <p>A selection is an array of positions in ascending order together with the number of valid
+ * entries. Every filter comes in two variants, one over the first {@code count} positions and one
+ * over a selection produced before, so filters on several columns are chained. The output
+ * selection may be the input selection. The kernels read the value slots of null positions, which
+ * hold no meaningful value, so a nullable column is filtered with
+ * {@link #filterNotNull(ColumnVector, int, int[])} first.
+ */
+public final class VectorKernels
+{
+    @SuppressWarnings("restriction")
+    private static final sun.misc.Unsafe UNSAFE = MemoryUtils.UNSAFE;
+
+    @SuppressWarnings("restriction")
+    private static final long BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+
+    private VectorKernels()
+    {
+    }
+
+    // ------------------------------------------------------------------------
+    //  Filters on longs
+    // ------------------------------------------------------------------------
+
+    /**
+     * Selects the positions whose value is greater than the given value.
+     *
+     * @param values The packed longs.
+     * @param count The number of positions to filter, starting at zero.
+     * @param value The value to compare with.
+     * @param selectionOut The array of at least {@code count} entries to write the positions to.
+     * @return The number of selected positions.
+     */
+    public static int filterLongGreaterThan(MemorySegment values, int count, long value, int[] selectionOut)
+    {
+        checkDense(values, count, 8, selectionOut);
+        Object base = base(values);
+        long address = address(values);
+        int selected = 0;
+        for (int position = 0; position < count; position++) {
+            selectionOut[selected] = position;
+            selected += UNSAFE.getLong(base, address + ((long) position << 3)) > value ? 1 : 0;
+        }
+        return selected;
+    }
+
+    /**
+     * Selects the positions of a selection whose value is greater than the given value.
+     *
+     * @param values The packed longs.
+     * @param selection The positions to filter.
+     * @param selectedCount The number of positions in the selection.
+     * @param value The value to compare with.
+     * @param selectionOut The array to write the positions to, which may be the selection.
+     * @return The number of selected positions.
+     */
+    public static int filterLongGreaterThan(MemorySegment values, int[] selection, int selectedCount, long value, int[] selectionOut)
+    {
+        int limit = checkSelected(values, selection, selectedCount, 8, selectionOut);
+        Object base = base(values);
+        long address = address(values);
+        int selected = 0;
+        for (int i = 0; i < selectedCount; i++) {
+            int position = checkPosition(selection[i], limit);
+            selectionOut[selected] = position;
+            selected += UNSAFE.getLong(base, address + ((long) position << 3)) > value ? 1 : 0;
+        }
+        return selected;
+    }
+
+    /** Selects the positions whose value is less than the given value. */
+    public static int filterLongLessThan(MemorySegment values, int count, long value, int[] selectionOut)
+    {
+        checkDense(values, count, 8, selectionOut);
+        Object base = base(values);
+        long address = address(values);
+        int selected = 0;
+        for (int position = 0; position < count; position++) {
+            selectionOut[selected] = position;
+            selected += UNSAFE.getLong(base, address + ((long) position << 3)) < value ? 1 : 0;
+        }
+        return selected;
+    }
+
+    /** Selects the positions of a selection whose value is less than the given value. */
+    public static int filterLongLessThan(MemorySegment values, int[] selection, int selectedCount, long value, int[] selectionOut)
+    {
+        int limit = checkSelected(values, selection, selectedCount, 8, selectionOut);
+        Object base = base(values);
+        long address = address(values);
+        int selected = 0;
+        for (int i = 0; i < selectedCount; i++) {
+            int position = checkPosition(selection[i], limit);
+            selectionOut[selected] = position;
+            selected += UNSAFE.getLong(base, address + ((long) position << 3)) < value ? 1 : 0;
+        }
+        return selected;
+    }
+
+    /** Selects the positions whose value equals the given value. */
+    public static int filterLongEqual(MemorySegment values, int count, long value, int[] selectionOut)
+    {
+        checkDense(values, count, 8, selectionOut);
+        Object base = base(values);
+        long address = address(values);
+        int selected = 0;
+        for (int position = 0; position < count; position++) {
+            selectionOut[selected] = position;
+            selected += UNSAFE.getLong(base, address + ((long) position << 3)) == value ? 1 : 0;
+        }
+        return selected;
+    }
+
+    /** Selects the positions of a selection whose value equals the given value. */
+    public static int filterLongEqual(MemorySegment values, int[] selection, int selectedCount, long value, int[] selectionOut)
+    {
+        int limit = checkSelected(values, selection, selectedCount, 8, selectionOut);
+        Object base = base(values);
+        long address = address(values);
+        int selected = 0;
+        for (int i = 0; i < selectedCount; i++) {
+            int position = checkPosition(selection[i], limit);
+            selectionOut[selected] = position;
+            selected += UNSAFE.getLong(base, address + ((long) position << 3)) == value ? 1 : 0;
+        }
+        return selected;
+    }
+
+    /** Selects the positions whose value is between the given bounds, both inclusive. */
+    public static int filterLongBetween(MemorySegment values, int count, long min, long max, int[] selectionOut)
+    {
+        checkDense(values, count, 8, selectionOut);
+        Object base = base(values);
+        long address = address(values);
+        if (min > max) {
+            return 0;
+        }
+        // one unsigned comparison instead of two signed ones
+        long range = max - min;
+        int selected = 0;
+        for (int position = 0; position < count; position++) {
+            selectionOut[selected] = position;
+            long offset = UNSAFE.getLong(base, address + ((long) position << 3)) - min;
+            selected += offset + Long.MIN_VALUE <= range + Long.MIN_VALUE ? 1 : 0;
+        }
+        return selected;
+    }
+
+    /** Selects the positions of a selection whose value is between the given bounds, both inclusive. */
+    public static int filterLongBetween(MemorySegment values, int[] selection, int selectedCount, long min, long max, int[] selectionOut)
+    {
+        int limit = checkSelected(values, selection, selectedCount, 8, selectionOut);
+        Object base = base(values);
+        long address = address(values);
+        if (min > max) {
+            return 0;
+        }
+        long range = max - min;
+        int selected = 0;
+        for (int i = 0; i < selectedCount; i++) {
+            int position = checkPosition(selection[i], limit);
+            selectionOut[selected] = position;
+            long offset = UNSAFE.getLong(base, address + ((long) position << 3)) - min;
+            selected += offset + Long.MIN_VALUE <= range + Long.MIN_VALUE ? 1 : 0;
+        }
+        return selected;
+    }
+
+    // ------------------------------------------------------------------------
+    //  Filters on doubles
+    // ------------------------------------------------------------------------
+
+    /** Selects the positions whose value is greater than the given value. NaN is never selected. */
+    public static int filterDoubleGreaterThan(MemorySegment values, int count, double value, int[] selectionOut)
+    {
+        checkDense(values, count, 8, selectionOut);
+        Object base = base(values);
+        long address = address(values);
+        int selected = 0;
+        for (int position = 0; position < count; position++) {
+            selectionOut[selected] = position;
+            selected += UNSAFE.getDouble(base, address + ((long) position << 3)) > value ? 1 : 0;
+        }
+        return selected;
+    }
+
+    /** Selects the positions of a selection whose value is greater than the given value. */
+    public static int filterDoubleGreaterThan(MemorySegment values, int[] selection, int selectedCount, double value, int[] selectionOut)
+    {
+        int limit = checkSelected(values, selection, selectedCount, 8, selectionOut);
+        Object base = base(values);
+        long address = address(values);
+        int selected = 0;
+        for (int i = 0; i < selectedCount; i++) {
+            int position = checkPosition(selection[i], limit);
+            selectionOut[selected] = position;
+            selected += UNSAFE.getDouble(base, address + ((long) position << 3)) > value ? 1 : 0;
+        }
+        return selected;
+    }
+
+    /** Selects the positions whose value is less than the given value. NaN is never selected. */
+    public static int filterDoubleLessThan(MemorySegment values, int count, double value, int[] selectionOut)
+    {
+        checkDense(values, count, 8, selectionOut);
+        Object base = base(values);
+        long address = address(values);
+        int selected = 0;
+        for (int position = 0; position < count; position++) {
+            selectionOut[selected] = position;
+            selected += UNSAFE.getDouble(base, address + ((long) position << 3)) < value ? 1 : 0;
+        }
+        return selected;
+    }
+
+    /** Selects the positions of a selection whose value is less than the given value. */
+    public static int filterDoubleLessThan(MemorySegment values, int[] selection, int selectedCount, double value, int[] selectionOut)
+    {
+        int limit = checkSelected(values, selection, selectedCount, 8, selectionOut);
+        Object base = base(values);
+        long address = address(values);
+        int selected = 0;
+        for (int i = 0; i < selectedCount; i++) {
+            int position = checkPosition(selection[i], limit);
+            selectionOut[selected] = position;
+            selected += UNSAFE.getDouble(base, address + ((long) position << 3)) < value ? 1 : 0;
+        }
+        return selected;
+    }
+
+    // ------------------------------------------------------------------------
+    //  Nulls
+    // ------------------------------------------------------------------------
+
+    /**
+     * Selects the positions whose value is not null.
+     *
+     * @param column The column.
+     * @param count The number of positions to filter, starting at zero.
+     * @param selectionOut The array of at least {@code count} entries to write the positions to.
+     * @return The number of selected positions.
+     */
+    public static int filterNotNull(ColumnVector column, int count, int[] selectionOut)
+    {
+        checkArgument(count >= 0 && count <= column.getCapacity(), "count exceeds the capacity of the column");
+        checkArgument(selectionOut.length >= count, "The output selection is shorter than count.");
+        if (!column.mayHaveNull()) {
+            for (int position = 0; position < count; position++) {
+                selectionOut[position] = position;
+            }
+            return count;
+        }
+        MemorySegment nulls = column.getNullBitmap();
+        checkArgument(!nulls.isFreed(), "The segment has been freed.");
+        Object base = base(nulls);
+        long address = address(nulls);
+        int selected = 0;
+        for (int position = 0; position < count; position++) {
+            selectionOut[selected] = position;
+            selected += (int) (~UNSAFE.getLong(base, address + ((position >>> 6) << 3)) >>> position) & 1;
+        }
+        return selected;
+    }
+
+    /** Selects the positions of a selection whose value is not null. */
+    public static int filterNotNull(ColumnVector column, int[] selection, int selectedCount, int[] selectionOut)
+    {
+        MemorySegment nulls = column.getNullBitmap();
+        checkSelected(nulls, selection, selectedCount, 1, selectionOut);
+        int limit = column.getCapacity();
+        if (!column.mayHaveNull()) {
+            for (int i = 0; i < selectedCount; i++) {
+                selectionOut[i] = checkPosition(selection[i], limit);
+            }
+            return selectedCount;
+        }
+        Object base = base(nulls);
+        long address = address(nulls);
+        int selected = 0;
+        for (int i = 0; i < selectedCount; i++) {
+            int position = checkPosition(selection[i], limit);
+            selectionOut[selected] = position;
+            selected += (int) (~UNSAFE.getLong(base, address + ((position >>> 6) << 3)) >>> position) & 1;
+        }
+        return selected;
+    }
+
+    /**
+     * Counts the values that are not null among the first {@code count} positions, 64 positions at
+     * a time.
+     */
+    public static int countNonNull(ColumnVector column, int count)
+    {
+        checkArgument(count >= 0 && count <= column.getCapacity(), "count exceeds the capacity of the column");
+        if (!column.mayHaveNull()) {
+            return count;
+        }
+        MemorySegment nulls = column.getNullBitmap();
+        checkArgument(!nulls.isFreed(), "The segment has been freed.");
+        Object base = base(nulls);
+        long address = address(nulls);
+        int fullWords = count >>> 6;
+        int numNulls = 0;
+        for (int word = 0; word < fullWords; word++) {
+            numNulls += Long.bitCount(UNSAFE.getLong(base, address + ((long) word << 3)));
+        }
+        if ((count & 63) != 0) {
+            long lastWord = UNSAFE.getLong(base, address + ((long) fullWords << 3));
+            numNulls += Long.bitCount(lastWord & ((1L << count) - 1));
+        }
+        return count - numNulls;
+    }
+
+    /** Counts the values of a selection that are not null. */
+    public static int countNonNull(ColumnVector column, int[] selection, int selectedCount)
+    {
+        checkNotNull(selection, "selection is null");
+        checkArgument(selectedCount >= 0 && selectedCount <= selection.length, "selectedCount exceeds the selection");
+        int limit = column.getCapacity();
+        if (!column.mayHaveNull()) {
+            return selectedCount;
+        }
+        MemorySegment nulls = column.getNullBitmap();
+        checkArgument(!nulls.isFreed(), "The segment has been freed.");
+        Object base = base(nulls);
+        long address = address(nulls);
+        int nonNull = 0;
+        for (int i = 0; i < selectedCount; i++) {
+            int position = checkPosition(selection[i], limit);
+            nonNull += (int) (~UNSAFE.getLong(base, address + ((position >>> 6) << 3)) >>> position) & 1;
+        }
+        return nonNull;
+    }
+
+    // ------------------------------------------------------------------------
+    //  Aggregates
+    // ------------------------------------------------------------------------
+
+    /** Sums the first {@code count} longs, wrapping around on overflow. */
+    public static long sumLongs(MemorySegment values, int count)
+    {
+        checkDense(values, count, 8, null);
+        Object base = base(values);
+        long address = address(values);
+        long sum = 0;
+        for (int position = 0; position < count; position++) {
+            sum += UNSAFE.getLong(base, address + ((long) position << 3));
+        }
+        return sum;
+    }
+
+    /** Sums the longs of a selection, wrapping around on overflow. */
+    public static long sumLongs(MemorySegment values, int[] selection, int selectedCount)
+    {
+        int limit = checkSelected(values, selection, selectedCount, 8, null);
+        Object base = base(values);
+        long address = address(values);
+        long sum = 0;
+        for (int i = 0; i < selectedCount; i++) {
+            sum += UNSAFE.getLong(base, address + ((long) checkPosition(selection[i], limit) << 3));
+        }
+        return sum;
+    }
+
+    /**
+     * Sums the first {@code count} doubles. The values are added in four interleaved partial sums,
+     * which breaks the dependency between consecutive additions, so the result may differ from a
+     * sum in position order in the last bits.
+     */
+    public static double sumDoubles(MemorySegment values, int count)
+    {
+        checkDense(values, count, 8, null);
+        Object base = base(values);
+        long address = address(values);
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+        int position = 0;
+        for (; position + 4 <= count; position += 4) {
+            long valueAddress = address + ((long) position << 3);
+            sum0 += UNSAFE.getDouble(base, valueAddress);
+            sum1 += UNSAFE.getDouble(base, valueAddress + 8);
+            sum2 += UNSAFE.getDouble(base, valueAddress + 16);
+            sum3 += UNSAFE.getDouble(base, valueAddress + 24);
+        }
+        for (; position < count; position++) {
+            sum0 += UNSAFE.getDouble(base, address + ((long) position << 3));
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /** Sums the doubles of a selection, in the order of the selection. */
+    public static double sumDoubles(MemorySegment values, int[] selection, int selectedCount)
+    {
+        int limit = checkSelected(values, selection, selectedCount, 8, null);
+        Object base = base(values);
+        long address = address(values);
+        double sum = 0;
+        for (int i = 0; i < selectedCount; i++) {
+            sum += UNSAFE.getDouble(base, address + ((long) checkPosition(selection[i], limit) << 3));
+        }
+        return sum;
+    }
+
+    /**
+     * Finds the minimum and the maximum of the first {@code count} longs. For no values, the
+     * minimum is {@link Long#MAX_VALUE} and the maximum {@link Long#MIN_VALUE}, so results of
+     * several batches are combined with {@link Math#min(long, long)} and
+     * {@link Math#max(long, long)}.
+     *
+     * @param values The packed longs.
+     * @param count The number of positions, starting at zero.
+     * @param minMax An array of at least two entries, to write the minimum and the maximum to.
+     */
+    public static void minMaxLong(MemorySegment values, int count, long[] minMax)
+    {
+        checkDense(values, count, 8, null);
+        checkArgument(minMax.length >= 2, "minMax must have two entries");
+        Object base = base(values);
+        long address = address(values);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int position = 0; position < count; position++) {
+            long value = UNSAFE.getLong(base, address + ((long) position << 3));
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        minMax[0] = min;
+        minMax[1] = max;
+    }
+
+    /** Finds the minimum and the maximum of the longs of a selection. */
+    public static void minMaxLong(MemorySegment values, int[] selection, int selectedCount, long[] minMax)
+    {
+        int limit = checkSelected(values, selection, selectedCount, 8, null);
+        checkArgument(minMax.length >= 2, "minMax must have two entries");
+        Object base = base(values);
+        long address = address(values);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < selectedCount; i++) {
+            long value = UNSAFE.getLong(base, address + ((long) checkPosition(selection[i], limit) << 3));
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        minMax[0] = min;
+        minMax[1] = max;
+    }
+
+    // ------------------------------------------------------------------------
+    //  Utilities
+    // ------------------------------------------------------------------------
+
+    private static Object base(MemorySegment segment)
+    {
+        return segment.isOffHeap() ? null : segment.getArray();
+    }
+
+    private static long address(MemorySegment segment)
+    {
+        return segment.isOffHeap() ? segment.getAddress() : BYTE_ARRAY_BASE_OFFSET;
+    }
+
+    /** Checks the arguments of a kernel over the first positions of a segment. */
+    private static void checkDense(MemorySegment values, int count, int width, int[] selectionOut)
+    {
+        checkNotNull(values, "values is null");
+        checkArgument(!values.isFreed(), "The segment has been freed.");
+        checkArgument(count >= 0 && count <= values.size() / width, "count %s exceeds the %s values of the segment", count, values.size() / width);
+        checkArgument(selectionOut == null || selectionOut.length >= count, "The output selection is shorter than count.");
+    }
+
+    /**
+     * Checks the arguments of a kernel over a selection and returns the number of values of the
+     * segment, the bound of the positions.
+     */
+    private static int checkSelected(MemorySegment values, int[] selection, int selectedCount, int width, int[] selectionOut)
+    {
+        checkNotNull(values, "values is null");
+        checkNotNull(selection, "selection is null");
+        checkArgument(!values.isFreed(), "The segment has been freed.");
+        checkArgument(selectedCount >= 0 && selectedCount <= selection.length, "selectedCount exceeds the selection");
+        checkArgument(selectionOut == null || selectionOut.length >= selectedCount, "The output selection is shorter than the selection.");
+        return values.size() / width;
+    }
+
+    /** Checks a position of a selection before it is used as an unsafe offset. */
+    private static int checkPosition(int position, int limit)
+    {
+        if (position < 0 || position >= limit) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + limit);
+        }
+        return position;
+    }
+}
@@ -0,0 +1,28 @@
+package info.victorchu.bamboo.benchmark;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+
+import java.util.Arrays;
+
+/**
+ * Runs the benchmarks of this package. The arguments are the usual JMH command line options, e.g.
+ * {@code MemorySegmentBulk -p length=1024 -prof gc}. Without a benchmark pattern, all benchmarks
+ * of this package are run.
+ *
+ * <p>From Maven: {@code mvn -Pbenchmark test -Dbenchmark="MemorySegmentBulk -p length=1024"}.
+ */
+public final class BenchmarkRunner
+{
+    private BenchmarkRunner() {}
+
+    public static void main(String[] args)
+            throws Exception
+    {
+        if (new CommandLineOptions(args).getIncludes().isEmpty()) {
+            args = Arrays.copyOf(args, args.length + 1);
+            args[args.length - 1] = BenchmarkRunner.class.getPackage().getName() + ".*Benchmark";
+        }
+        Main.main(args);
+    }
+}
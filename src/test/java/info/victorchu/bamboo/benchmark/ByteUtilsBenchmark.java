@@ -0,0 +1,79 @@
+package info.victorchu.bamboo.benchmark;
+
+import info.victorchu.bamboo.utils.ByteUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the comparisons of byte array ranges against a byte by byte loop, on keys that only
+ * differ in their last byte, like the keys of neighboring entries of a sorted table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteUtilsBenchmark
+{
+    @Param({"16", "64", "1024"})
+    public int length;
+
+    private byte[] left;
+
+    private byte[] right;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        left = new byte[length + 1];
+        right = new byte[length + 1];
+        for (int i = 0; i < length; i++) {
+            left[i + 1] = (byte) (i * 31);
+            right[i] = (byte) (i * 31);
+        }
+        right[length - 1]++;
+    }
+
+    @Benchmark
+    public int compareUnsigned()
+    {
+        return ByteUtils.compareUnsigned(left, 1, length + 1, right, 0, length);
+    }
+
+    @Benchmark
+    public int compareUnsignedByteLoop()
+    {
+        for (int i = 0; i < length; i++) {
+            int diff = (left[i + 1] & 0xFF) - (right[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    @Benchmark
+    public boolean equals()
+    {
+        return ByteUtils.equals(left, 1, length + 1, right, 0, length);
+    }
+
+    @Benchmark
+    public int mismatch()
+    {
+        return ByteUtils.mismatch(left, 1, length + 1, right, 0, length);
+    }
+}
@@ -0,0 +1,102 @@
+package info.victorchu.bamboo.benchmark;
+
+import info.victorchu.bamboo.compress.Lz4Compressor;
+import info.victorchu.bamboo.compress.Lz4Decompressor;
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemorySegments;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the LZ4 codec on a page of serialized records and on a page of random bytes, which is
+ * the case the skipping of the compressor is meant for.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark
+{
+    private static final int PAGE_SIZE = 32 * 1024;
+
+    @Param({"heap", "offheap"})
+    public String memory;
+
+    @Param({"records", "random"})
+    public String data;
+
+    private final Lz4Compressor compressor = new Lz4Compressor();
+
+    private MemorySegment page;
+
+    private MemorySegment compressed;
+
+    private MemorySegment restored;
+
+    private int compressedLength;
+
+    @Setup(Level.Trial)
+    public void setup()
+            throws IOException
+    {
+        boolean offHeap = "offheap".equals(memory);
+        int capacity = Lz4Compressor.maxCompressedLength(PAGE_SIZE);
+        page = offHeap ? MemorySegments.allocateOffHeap(PAGE_SIZE) : MemorySegments.allocate(PAGE_SIZE);
+        compressed = offHeap ? MemorySegments.allocateOffHeap(capacity) : MemorySegments.allocate(capacity);
+        restored = offHeap ? MemorySegments.allocateOffHeap(PAGE_SIZE) : MemorySegments.allocate(PAGE_SIZE);
+
+        Random random = new Random(42);
+        if ("records".equals(data)) {
+            // records of an id, a small category and a status string
+            for (int position = 0; position + 24 <= PAGE_SIZE; position += 24) {
+                page.putLongBigEndian(position, 1_000_000 + position / 24);
+                page.putIntBigEndian(position + 8, random.nextInt(16));
+                page.put(position + 12, (random.nextBoolean() ? "status:open" : "status:done").getBytes(), 0, 11);
+            }
+        }
+        else {
+            byte[] bytes = new byte[PAGE_SIZE];
+            random.nextBytes(bytes);
+            page.put(0, bytes, 0, bytes.length);
+        }
+        compressedLength = compressor.compress(page, 0, PAGE_SIZE, compressed, 0, capacity);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        page.free();
+        compressed.free();
+        restored.free();
+    }
+
+    @Benchmark
+    public int compress()
+    {
+        return compressor.compress(page, 0, PAGE_SIZE, compressed, 0, compressed.size());
+    }
+
+    @Benchmark
+    public int decompress()
+            throws IOException
+    {
+        return Lz4Decompressor.decompress(compressed, 0, compressedLength, restored, 0, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,701 @@
+package info.victorchu.bamboo.benchmark;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemorySegments;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the single value accessors of {@link MemorySegment} for every primitive type and byte
+ * order, against the equivalent absolute accessors of {@link ByteBuffer} on the same kind of
+ * memory.
+ *
+ * <p>Every invocation accesses {@value #OPERATIONS} values at a stride of 8 bytes, so all types
+ * touch the same cache lines and the results are reported per single access.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemorySegmentAccessBenchmark
+{
+    static final int OPERATIONS = 512;
+
+    private static final int STRIDE = 8;
+
+    @Param({"heap", "offheap"})
+    public String memory;
+
+    private MemorySegment segment;
+
+    private ByteBuffer bigEndianBuffer;
+
+    private ByteBuffer littleEndianBuffer;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        int size = OPERATIONS * STRIDE;
+        if ("heap".equals(memory)) {
+            segment = MemorySegments.allocate(size);
+            bigEndianBuffer = ByteBuffer.allocate(size);
+        }
+        else {
+            segment = MemorySegments.allocateOffHeap(size);
+            bigEndianBuffer = ByteBuffer.allocateDirect(size);
+        }
+        littleEndianBuffer = bigEndianBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < size; i++) {
+            segment.put(i, (byte) i);
+            bigEndianBuffer.put(i, (byte) i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        segment.free();
+    }
+
+    // ------------------------------------------------------------------------
+    //  short
+    // ------------------------------------------------------------------------
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long segmentGetShort()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getShort(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long segmentGetShortLittleEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getShortLittleEndian(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long segmentGetShortBigEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getShortBigEndian(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long bufferGetShortBigEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += bigEndianBuffer.getShort(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long bufferGetShortLittleEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += littleEndianBuffer.getShort(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutShort()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putShort(i, (short) i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutShortLittleEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putShortLittleEndian(i, (short) i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutShortBigEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putShortBigEndian(i, (short) i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void bufferPutShortBigEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            bigEndianBuffer.putShort(i, (short) i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void bufferPutShortLittleEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            littleEndianBuffer.putShort(i, (short) i);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //  char
+    // ------------------------------------------------------------------------
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long segmentGetChar()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getChar(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long segmentGetCharLittleEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getCharLittleEndian(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long segmentGetCharBigEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getCharBigEndian(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long bufferGetCharBigEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += bigEndianBuffer.getChar(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long bufferGetCharLittleEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += littleEndianBuffer.getChar(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutChar()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putChar(i, (char) i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutCharLittleEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putCharLittleEndian(i, (char) i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutCharBigEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putCharBigEndian(i, (char) i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void bufferPutCharBigEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            bigEndianBuffer.putChar(i, (char) i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void bufferPutCharLittleEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            littleEndianBuffer.putChar(i, (char) i);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //  int
+    // ------------------------------------------------------------------------
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long segmentGetInt()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getInt(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long segmentGetIntLittleEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getIntLittleEndian(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long segmentGetIntBigEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getIntBigEndian(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long bufferGetIntBigEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += bigEndianBuffer.getInt(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long bufferGetIntLittleEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += littleEndianBuffer.getInt(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutInt()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putInt(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutIntLittleEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putIntLittleEndian(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutIntBigEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putIntBigEndian(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void bufferPutIntBigEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            bigEndianBuffer.putInt(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void bufferPutIntLittleEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            littleEndianBuffer.putInt(i, i);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //  long
+    // ------------------------------------------------------------------------
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long segmentGetLong()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getLong(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long segmentGetLongLittleEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getLongLittleEndian(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long segmentGetLongBigEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getLongBigEndian(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long bufferGetLongBigEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += bigEndianBuffer.getLong(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public long bufferGetLongLittleEndian()
+    {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += littleEndianBuffer.getLong(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutLong()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putLong(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutLongLittleEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putLongLittleEndian(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutLongBigEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putLongBigEndian(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void bufferPutLongBigEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            bigEndianBuffer.putLong(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void bufferPutLongLittleEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            littleEndianBuffer.putLong(i, i);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //  float
+    // ------------------------------------------------------------------------
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public double segmentGetFloat()
+    {
+        double sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getFloat(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public double segmentGetFloatLittleEndian()
+    {
+        double sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getFloatLittleEndian(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public double segmentGetFloatBigEndian()
+    {
+        double sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getFloatBigEndian(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public double bufferGetFloatBigEndian()
+    {
+        double sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += bigEndianBuffer.getFloat(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public double bufferGetFloatLittleEndian()
+    {
+        double sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += littleEndianBuffer.getFloat(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutFloat()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putFloat(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutFloatLittleEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putFloatLittleEndian(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutFloatBigEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putFloatBigEndian(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void bufferPutFloatBigEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            bigEndianBuffer.putFloat(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void bufferPutFloatLittleEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            littleEndianBuffer.putFloat(i, i);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    //  double
+    // ------------------------------------------------------------------------
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public double segmentGetDouble()
+    {
+        double sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getDouble(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public double segmentGetDoubleLittleEndian()
+    {
+        double sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getDoubleLittleEndian(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public double segmentGetDoubleBigEndian()
+    {
+        double sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += segment.getDoubleBigEndian(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public double bufferGetDoubleBigEndian()
+    {
+        double sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += bigEndianBuffer.getDouble(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public double bufferGetDoubleLittleEndian()
+    {
+        double sum = 0;
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            sum += littleEndianBuffer.getDouble(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutDouble()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putDouble(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutDoubleLittleEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putDoubleLittleEndian(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void segmentPutDoubleBigEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            segment.putDoubleBigEndian(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void bufferPutDoubleBigEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            bigEndianBuffer.putDouble(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void bufferPutDoubleLittleEndian()
+    {
+        for (int i = 0; i < OPERATIONS * STRIDE; i += STRIDE) {
+            littleEndianBuffer.putDouble(i, i);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package info.victorchu.bamboo.benchmark;
+
+import info.victorchu.bamboo.memory.ChecksumAlgorithm;
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemorySegments;
+import info.victorchu.bamboo.memory.Murmur3;
+import info.victorchu.bamboo.memory.SegmentChecksum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the bulk operations of {@link MemorySegment} against {@link ByteBuffer} on the same kind
+ * of memory, the bulk primitive array methods against a loop over the single value methods, and
+ * the checksums computed in place against checksumming a copy, and the hashes of segment ranges.
+ * The compared regions are equal, so comparisons always scan the whole length, which is the worst
+ * case and the common case when sorting on long common prefixes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemorySegmentBulkBenchmark
+{
+    @Param({"heap", "offheap"})
+    public String memory;
+
+    @Param({"8", "64", "1024", "32768"})
+    public int length;
+
+    private MemorySegment source;
+
+    private MemorySegment target;
+
+    private byte[] swapBuffer;
+
+    private ByteBuffer sourceBuffer;
+
+    private ByteBuffer targetBuffer;
+
+    private byte[] swapArray1;
+
+    private byte[] swapArray2;
+
+    private double[] doubles;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        if ("heap".equals(memory)) {
+            source = MemorySegments.allocate(length);
+            target = MemorySegments.allocate(length);
+            sourceBuffer = ByteBuffer.allocate(length);
+            targetBuffer = ByteBuffer.allocate(length);
+        }
+        else {
+            source = MemorySegments.allocateOffHeap(length);
+            target = MemorySegments.allocateOffHeap(length);
+            sourceBuffer = ByteBuffer.allocateDirect(length);
+            targetBuffer = ByteBuffer.allocateDirect(length);
+        }
+        for (int i = 0; i < length; i++) {
+            source.put(i, (byte) i);
+            target.put(i, (byte) i);
+            sourceBuffer.put(i, (byte) i);
+            targetBuffer.put(i, (byte) i);
+        }
+        swapBuffer = new byte[length];
+        swapArray1 = new byte[length];
+        swapArray2 = new byte[length];
+        doubles = new double[length / 8];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        source.free();
+        target.free();
+    }
+
+    @Benchmark
+    public void segmentCopyTo()
+    {
+        source.copyTo(0, target, 0, length);
+    }
+
+    @Benchmark
+    public void bufferCopy()
+    {
+        sourceBuffer.clear();
+        targetBuffer.clear();
+        targetBuffer.put(sourceBuffer);
+    }
+
+    @Benchmark
+    public int segmentCompare()
+    {
+        return source.compare(target, 0, 0, length);
+    }
+
+    @Benchmark
+    public int bufferCompare()
+    {
+        sourceBuffer.clear();
+        targetBuffer.clear();
+        return sourceBuffer.compareTo(targetBuffer);
+    }
+
+    @Benchmark
+    public boolean segmentEqualTo()
+    {
+        return source.equalTo(target, 0, 0, length);
+    }
+
+    @Benchmark
+    public boolean bufferEquals()
+    {
+        sourceBuffer.clear();
+        targetBuffer.clear();
+        return sourceBuffer.equals(targetBuffer);
+    }
+
+    @Benchmark
+    public void segmentSwapBytes()
+    {
+        source.swapBytes(swapBuffer, target, 0, 0, length);
+    }
+
+    @Benchmark
+    public void bufferSwap()
+    {
+        sourceBuffer.clear();
+        targetBuffer.clear();
+        sourceBuffer.get(swapArray1);
+        targetBuffer.get(swapArray2);
+        sourceBuffer.clear();
+        targetBuffer.clear();
+        sourceBuffer.put(swapArray2);
+        targetBuffer.put(swapArray1);
+    }
+
+    @Benchmark
+    public void segmentPutDoubles()
+    {
+        source.putDoubles(0, doubles, 0, doubles.length);
+    }
+
+    @Benchmark
+    public void segmentPutDoublesBigEndian()
+    {
+        source.putDoublesBigEndian(0, doubles, 0, doubles.length);
+    }
+
+    @Benchmark
+    public void segmentPutDoubleLoop()
+    {
+        for (int i = 0; i < doubles.length; i++) {
+            source.putDouble(i << 3, doubles[i]);
+        }
+    }
+
+    @Benchmark
+    public void segmentGetDoubles()
+    {
+        source.getDoubles(0, doubles, 0, doubles.length);
+    }
+
+    @Benchmark
+    public void segmentGetDoubleLoop()
+    {
+        for (int i = 0; i < doubles.length; i++) {
+            doubles[i] = source.getDouble(i << 3);
+        }
+    }
+
+    @Benchmark
+    public long segmentChecksumCrc32c()
+    {
+        return source.checksum(0, length, ChecksumAlgorithm.CRC32C);
+    }
+
+    @Benchmark
+    public long copyThenChecksumCrc32c()
+    {
+        // the former way of checksumming a page, through a copy on the heap
+        source.get(0, swapArray1, 0, length);
+        SegmentChecksum checksum = ChecksumAlgorithm.CRC32C.newChecksum();
+        checksum.update(swapArray1, 0, length);
+        return checksum.getValue();
+    }
+
+    @Benchmark
+    public long segmentChecksumXxHash64()
+    {
+        return source.checksum(0, length, ChecksumAlgorithm.XXHASH64);
+    }
+
+    @Benchmark
+    public int segmentHash()
+    {
+        return source.hash(0, length);
+    }
+
+    @Benchmark
+    public long segmentMurmur3Hash64()
+    {
+        return Murmur3.hash64(source, 0, length, 0);
+    }
+}
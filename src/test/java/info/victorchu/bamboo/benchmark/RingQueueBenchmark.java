@@ -0,0 +1,132 @@
+package info.victorchu.bamboo.benchmark;
+
+import info.victorchu.bamboo.memory.MemorySegments;
+import info.victorchu.bamboo.queue.MpscRingQueue;
+import info.victorchu.bamboo.queue.RecordHandler;
+import info.victorchu.bamboo.queue.SpscRingQueue;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the handoff of small serialized records from producer threads to a consumer thread,
+ * through the segment-backed ring queues and through an {@link ArrayBlockingQueue} of byte arrays.
+ * The {@code records} counter of the poll methods is the number of records handed off per
+ * microsecond, the offer and poll calls themselves also count the calls on a full or empty queue.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RingQueueBenchmark
+{
+    private static final int CAPACITY = 1 << 20;
+
+    private static final int RECORD_LENGTH = 32;
+
+    private final byte[] record = new byte[RECORD_LENGTH];
+
+    private SpscRingQueue spscQueue;
+
+    private MpscRingQueue mpscQueue;
+
+    private ArrayBlockingQueue<Object> blockingQueue;
+
+    /** Counts the records a consumer received. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Consumed
+    {
+        public long records;
+    }
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        spscQueue = new SpscRingQueue(MemorySegments.allocate(SpscRingQueue.sizeFor(CAPACITY)));
+        mpscQueue = new MpscRingQueue(MemorySegments.allocate(MpscRingQueue.sizeFor(CAPACITY)));
+        blockingQueue = new ArrayBlockingQueue<>(CAPACITY / RECORD_LENGTH);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public boolean spscOffer()
+    {
+        return spscQueue.offer(record, 0, RECORD_LENGTH);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public int spscPoll(Blackhole blackhole, Consumed consumed)
+    {
+        int count = spscQueue.poll(consumer(blackhole), 256);
+        consumed.records += count;
+        return count;
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(3)
+    public boolean mpscOffer()
+    {
+        return mpscQueue.offer(record, 0, RECORD_LENGTH);
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(1)
+    public int mpscPoll(Blackhole blackhole, Consumed consumed)
+    {
+        int count = mpscQueue.poll(consumer(blackhole), 256);
+        consumed.records += count;
+        return count;
+    }
+
+    @Benchmark
+    @Group("blocking")
+    @GroupThreads(3)
+    public boolean blockingOffer()
+    {
+        // a copy, like the serialized record a stage hands off
+        return blockingQueue.offer(record.clone());
+    }
+
+    @Benchmark
+    @Group("blocking")
+    @GroupThreads(1)
+    public int blockingPoll(Blackhole blackhole, Consumed consumed)
+    {
+        int count = 0;
+        Object polled;
+        while (count < 256 && (polled = blockingQueue.poll()) != null) {
+            blackhole.consume(polled);
+            count++;
+        }
+        consumed.records += count;
+        return count;
+    }
+
+    private static RecordHandler consumer(Blackhole blackhole)
+    {
+        return (segment, offset, length) -> blackhole.consume(segment.getLong(offset));
+    }
+}
@@ -0,0 +1,213 @@
+package info.victorchu.bamboo.benchmark;
+
+import info.victorchu.bamboo.memory.DataInputDeserializer;
+import info.victorchu.bamboo.memory.DataOutputSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures round trips through {@link DataOutputSerializer} and {@link DataInputDeserializer}
+ * against a heap {@link ByteBuffer}, for a record of mixed primitives, for small integers in the
+ * variable-length format and for strings.
+ *
+ * <p>The string baselines encode with {@link String#getBytes} and decode with {@link
+ * String#String(byte[], int, int, java.nio.charset.Charset)} behind a length prefix, which is what
+ * hand written serialization code typically does instead of modified UTF-8.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark
+{
+    static final int RECORDS = 256;
+
+    private final DataOutputSerializer output = new DataOutputSerializer(64 * 1024);
+
+    private final DataInputDeserializer input = new DataInputDeserializer();
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long serializerPrimitivesRoundTrip()
+            throws IOException
+    {
+        output.clear();
+        for (int i = 0; i < RECORDS; i++) {
+            output.writeInt(i);
+            output.writeLong(i * 31L);
+            output.writeDouble(i);
+            output.writeShort(i);
+            output.writeBoolean((i & 1) == 0);
+        }
+
+        input.setBuffer(output.getSharedBuffer(), 0, output.length());
+        long sum = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            sum += input.readInt();
+            sum += input.readLong();
+            sum += (long) input.readDouble();
+            sum += input.readShort();
+            sum += input.readBoolean() ? 1 : 0;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long bufferPrimitivesRoundTrip()
+    {
+        buffer.clear();
+        for (int i = 0; i < RECORDS; i++) {
+            buffer.putInt(i);
+            buffer.putLong(i * 31L);
+            buffer.putDouble(i);
+            buffer.putShort((short) i);
+            buffer.put((byte) ((i & 1) == 0 ? 1 : 0));
+        }
+
+        buffer.flip();
+        long sum = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            sum += buffer.getInt();
+            sum += buffer.getLong();
+            sum += (long) buffer.getDouble();
+            sum += buffer.getShort();
+            sum += buffer.get();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long serializerVarIntRoundTrip()
+            throws IOException
+    {
+        output.clear();
+        for (int i = 0; i < RECORDS; i++) {
+            output.writeVarInt(i);
+            output.writeVarLong(i * 31L);
+            output.writeZigZagInt(-i);
+        }
+
+        input.setBuffer(output.getSharedBuffer(), 0, output.length());
+        long sum = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            sum += input.readVarInt();
+            sum += input.readVarLong();
+            sum += input.readZigZagInt();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int serializerUtfRoundTrip(Strings strings)
+            throws IOException
+    {
+        output.clear();
+        for (String string : strings.strings) {
+            output.writeUTF(string);
+        }
+
+        input.setBuffer(output.getSharedBuffer(), 0, output.length());
+        int length = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            length += input.readUTF().length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int serializerStringRoundTrip(Strings strings)
+            throws IOException
+    {
+        output.clear();
+        for (String string : strings.strings) {
+            output.writeString(string);
+        }
+
+        input.setBuffer(output.getSharedBuffer(), 0, output.length());
+        int length = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            length += input.readString().length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int bufferUtf8RoundTrip(Strings strings)
+    {
+        buffer.clear();
+        for (String string : strings.strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+
+        buffer.flip();
+        byte[] array = buffer.array();
+        int length = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            int size = buffer.getShort();
+            length += new String(array, buffer.position(), size, StandardCharsets.UTF_8).length();
+            buffer.position(buffer.position() + size);
+        }
+        return length;
+    }
+
+    @State(Scope.Thread)
+    public static class Strings
+    {
+        @Param({"ascii", "latin", "cjk"})
+        public String charset;
+
+        private String[] strings;
+
+        @Setup(Level.Trial)
+        public void setup()
+        {
+            String alphabet;
+            switch (charset) {
+                case "ascii":
+                    alphabet = "abcdefghijklmnopqrstuvwxyz0123456789";
+                    break;
+                case "latin":
+                    alphabet = "aäbcdeéèfghiïjklmnoöpqrsßtuüvwxyz";
+                    break;
+                default:
+                    alphabet = "数据内存排序哈希连接压缩校验字典编码向量";
+                    break;
+            }
+            strings = new String[RECORDS];
+            for (int i = 0; i < RECORDS; i++) {
+                StringBuilder builder = new StringBuilder();
+                for (int j = 0; j < 8 + i % 32; j++) {
+                    builder.append(alphabet.charAt((i * 31 + j * 7) % alphabet.length()));
+                }
+                strings[i] = builder.toString();
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package info.victorchu.bamboo.benchmark;
+
+import info.victorchu.bamboo.memory.DataInputDeserializer;
+import info.victorchu.bamboo.memory.DataOutputSerializer;
+import info.victorchu.bamboo.vector.ColumnType;
+import info.victorchu.bamboo.vector.VectorBatch;
+import info.victorchu.bamboo.vector.VectorBatchBuilder;
+import info.victorchu.bamboo.vector.VectorKernels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the query {@code SELECT sum(price) WHERE quantity > threshold} over rows of a long and a
+ * double, evaluated row at a time on the serialized rows, and with the kernels on a vector batch
+ * built from the same rows. The score is the time per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorKernelsBenchmark
+{
+    private static final int ROWS = VectorBatch.DEFAULT_CAPACITY;
+
+    /** The percentage of the rows that pass the filter. */
+    @Param({"10", "50", "90"})
+    public int selectivity;
+
+    private byte[] rows;
+
+    private VectorBatchBuilder builder;
+
+    private VectorBatch batch;
+
+    private final int[] selection = new int[ROWS];
+
+    private final DataInputDeserializer input = new DataInputDeserializer();
+
+    @Setup(Level.Trial)
+    public void setup()
+            throws IOException
+    {
+        Random random = new Random(31);
+        DataOutputSerializer out = new DataOutputSerializer(ROWS * 18);
+        for (int row = 0; row < ROWS; row++) {
+            out.writeBoolean(true);
+            out.writeLong(random.nextInt(100));
+            out.writeBoolean(true);
+            out.writeDouble(random.nextDouble());
+        }
+        rows = out.getCopyOfBuffer();
+
+        builder = new VectorBatchBuilder(Arrays.asList(ColumnType.LONG, ColumnType.DOUBLE), ROWS, true);
+        DataInputDeserializer in = new DataInputDeserializer(rows);
+        while (!builder.isFull()) {
+            builder.appendRow(in);
+        }
+        batch = builder.build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        builder.free();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double rowAtATime()
+            throws IOException
+    {
+        long threshold = 100 - selectivity;
+        input.setBuffer(rows);
+        double sum = 0;
+        for (int row = 0; row < ROWS; row++) {
+            long quantity = input.readBoolean() ? input.readLong() : 0;
+            double price = input.readBoolean() ? input.readDouble() : 0;
+            if (quantity >= threshold) {
+                sum += price;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double vectorKernels()
+    {
+        long threshold = 100 - selectivity;
+        int selected = VectorKernels.filterLongGreaterThan(batch.getLongColumn(0).getValues(), ROWS, threshold - 1, selection);
+        return VectorKernels.sumDoubles(batch.getDoubleColumn(1).getValues(), selection, selected);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double buildAndVectorKernels()
+            throws IOException
+    {
+        // includes reading the rows into the batch, the cost of switching a row stream to batches
+        builder.reset();
+        input.setBuffer(rows);
+        while (!builder.isFull()) {
+            builder.appendRow(input);
+        }
+        return vectorKernels();
+    }
+}
@@ -0,0 +1,184 @@
+package info.victorchu.bamboo.collection;
+
+import info.victorchu.bamboo.memory.MemoryAllocationException;
+import info.victorchu.bamboo.memory.MemoryManager;
+import info.victorchu.bamboo.memory.ThreadCachingSegmentPool;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PagedCollectionsTest
+{
+    private static final int PAGE_SIZE = 64;
+
+    @Test
+    void testArrays()
+            throws MemoryAllocationException
+    {
+        for (PageAllocator allocator : new PageAllocator[] {PageAllocators.heap(PAGE_SIZE), PageAllocators.offHeap(PAGE_SIZE)}) {
+            IntArray ints = new IntArray(allocator);
+            LongArray longs = new LongArray(allocator);
+            DoubleArray doubles = new DoubleArray(allocator);
+            for (int i = 0; i < 1000; i++) {
+                ints.add(i * 3);
+                longs.add(i * 0x1_0000_0001L);
+                doubles.add(i / 7.0);
+            }
+            assertThat(ints.size()).isEqualTo(1000);
+            assertThat(ints.getAllocatedBytes()).isEqualTo(63 * PAGE_SIZE);
+            assertThat(longs.getAllocatedBytes()).isEqualTo(125 * PAGE_SIZE);
+
+            longs.set(999, -1);
+            for (int i = 0; i < 999; i++) {
+                assertThat(ints.get(i)).isEqualTo(i * 3);
+                assertThat(longs.get(i)).isEqualTo(i * 0x1_0000_0001L);
+                assertThat(doubles.get(i)).isEqualTo(i / 7.0);
+            }
+            assertThat(longs.get(999)).isEqualTo(-1);
+            assertThatThrownBy(() -> longs.get(1000)).isInstanceOf(IndexOutOfBoundsException.class);
+            assertThatThrownBy(() -> ints.set(-1, 0)).isInstanceOf(IndexOutOfBoundsException.class);
+
+            // clearing keeps the pages, freeing returns them
+            ints.clear();
+            assertThat(ints.isEmpty()).isTrue();
+            assertThat(ints.getAllocatedBytes()).isEqualTo(63 * PAGE_SIZE);
+            ints.add(5);
+            assertThat(ints.get(0)).isEqualTo(5);
+            ints.free();
+            longs.free();
+            doubles.free();
+            assertThat(ints.getAllocatedBytes()).isZero();
+            assertThat(ints.size()).isZero();
+        }
+    }
+
+    @Test
+    void testMapsAndSetAgainstJavaCollections()
+            throws MemoryAllocationException
+    {
+        Random random = new Random(41);
+        PageAllocator allocator = PageAllocators.offHeap(PAGE_SIZE);
+        LongLongHashMap longMap = new LongLongHashMap(allocator);
+        LongIntHashMap intMap = new LongIntHashMap(allocator);
+        LongHashSet set = new LongHashSet(allocator);
+        Map<Long, Long> expected = new HashMap<>();
+
+        for (int i = 0; i < 50_000; i++) {
+            // few distinct keys, so that keys are found, overwritten and removed often
+            long key = random.nextInt(4) == 0 ? random.nextInt(8) : random.nextLong() % 5_000;
+            long value = random.nextLong();
+            switch (random.nextInt(4)) {
+                case 0:
+                    boolean removed = expected.remove(key) != null;
+                    assertThat(longMap.remove(key)).isEqualTo(removed);
+                    assertThat(intMap.remove(key)).isEqualTo(removed);
+                    assertThat(set.remove(key)).isEqualTo(removed);
+                    break;
+                case 1:
+                    long sum = expected.getOrDefault(key, 0L) + value;
+                    expected.put(key, sum);
+                    assertThat(longMap.addTo(key, value)).isEqualTo(sum);
+                    assertThat(intMap.addTo(key, (int) value)).isEqualTo((int) sum);
+                    set.add(key);
+                    break;
+                default:
+                    boolean added = expected.put(key, value) == null;
+                    assertThat(longMap.put(key, value)).isEqualTo(added);
+                    assertThat(intMap.put(key, (int) value)).isEqualTo(added);
+                    assertThat(set.add(key)).isEqualTo(added);
+            }
+            assertThat(longMap.get(key, 7)).isEqualTo(expected.getOrDefault(key, 7L));
+        }
+
+        assertThat(longMap.size()).isEqualTo(expected.size());
+        assertThat(intMap.size()).isEqualTo(expected.size());
+        assertThat(set.size()).isEqualTo(expected.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertThat(longMap.get(entry.getKey(), 0)).isEqualTo(entry.getValue());
+            assertThat(intMap.get(entry.getKey(), 0)).isEqualTo(entry.getValue().intValue());
+            assertThat(set.contains(entry.getKey())).isTrue();
+        }
+        assertThat(longMap.containsKey(123_456_789L)).isFalse();
+        assertThat(intMap.get(123_456_789L, -3)).isEqualTo(-3);
+
+        Map<Long, Long> visited = new HashMap<>();
+        LongLongHashMap.Cursor cursor = longMap.cursor();
+        while (cursor.next()) {
+            visited.put(cursor.getKey(), cursor.getValue());
+            cursor.setValue(cursor.getValue() + 1);
+        }
+        assertThat(visited).isEqualTo(expected);
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertThat(longMap.get(entry.getKey(), 0)).isEqualTo(entry.getValue() + 1);
+        }
+
+        Set<Long> keys = new HashSet<>();
+        LongHashSet.Cursor keyCursor = set.cursor();
+        while (keyCursor.next()) {
+            keys.add(keyCursor.getKey());
+        }
+        assertThat(keys).isEqualTo(expected.keySet());
+
+        longMap.free();
+        intMap.free();
+        set.free();
+        assertThat(longMap.getAllocatedBytes()).isZero();
+        assertThat(longMap.containsKey(1)).isFalse();
+        assertThat(longMap.cursor().next()).isFalse();
+        longMap.put(1, 2);
+        assertThat(longMap.get(1, 0)).isEqualTo(2);
+        longMap.free();
+    }
+
+    @Test
+    void testPooledPagesAreRecycledAndFailedGrowthKeepsTheMap()
+            throws MemoryAllocationException
+    {
+        try (ThreadCachingSegmentPool pool = new ThreadCachingSegmentPool(PAGE_SIZE, 11, false)) {
+            LongLongHashMap map = new LongLongHashMap(PageAllocators.pooled(pool));
+            assertThat(map.getNumSlots()).isEqualTo(8);
+
+            // 8 and 16 slots fit into the pool, but 32 slots need 8 pages besides the 4 in use
+            int inserted = 0;
+            try {
+                for (long key = 1; ; key++) {
+                    map.put(key, -key);
+                    inserted++;
+                }
+            }
+            catch (MemoryAllocationException e) {
+                assertThat(inserted).isEqualTo(12);
+            }
+            assertThat(map.size()).isEqualTo(12);
+            assertThat(map.getNumSlots()).isEqualTo(16);
+            for (long key = 1; key <= 12; key++) {
+                assertThat(map.get(key, 0)).isEqualTo(-key);
+            }
+
+            map.free();
+            LongArray array = new LongArray(PageAllocators.pooled(pool));
+            for (int i = 0; i < 11 * PAGE_SIZE / 8; i++) {
+                array.add(i);
+            }
+            assertThatThrownBy(() -> array.add(0)).isInstanceOf(MemoryAllocationException.class);
+        }
+
+        MemoryManager memoryManager = new MemoryManager(64 * 4096, 4096, true, false);
+        Object owner = new Object();
+        LongHashSet set = new LongHashSet(PageAllocators.managed(memoryManager, owner), 10_000);
+        for (long key = 0; key < 10_000; key++) {
+            set.add(key * 31);
+        }
+        assertThat(memoryManager.getAvailableNumPages()).isEqualTo(64 - 32);
+        set.free();
+        assertThat(memoryManager.verifyEmpty()).isTrue();
+        memoryManager.shutdown();
+    }
+}
@@ -0,0 +1,204 @@
+package info.victorchu.bamboo.compress;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemorySegments;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompressedBlockViewTest
+{
+    private static final int PAGE_SIZE = 4096;
+
+    private static byte[] compressibleBytes(Random random, int length)
+    {
+        // a few recurring values, like the fields of serialized records
+        String[] words = {"alpha-beta-gamma;", "delta-epsilon;", "zeta-eta-theta-iota;", "kappa-lambda-mu;"};
+        byte[] bytes = new byte[length];
+        int position = 0;
+        while (position < length) {
+            byte[] word = words[random.nextInt(words.length)].getBytes();
+            for (int i = 0; i < word.length && position < length; i++) {
+                bytes[position++] = word[i];
+            }
+        }
+        return bytes;
+    }
+
+    private static byte[] randomBytes(Random random, int length)
+    {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static void assertLz4RoundTrip(byte[] data, boolean offHeap)
+            throws IOException
+    {
+        int capacity = Lz4Compressor.maxCompressedLength(data.length);
+        MemorySegment source = offHeap ? MemorySegments.allocateOffHeap(data.length + 8) : MemorySegments.allocate(data.length + 8);
+        MemorySegment compressed = offHeap ? MemorySegments.allocateOffHeap(capacity + 8) : MemorySegments.allocate(capacity + 8);
+        MemorySegment restored = offHeap ? MemorySegments.allocateOffHeap(data.length + 8) : MemorySegments.allocate(data.length + 8);
+        try {
+            source.put(3, data, 0, data.length);
+            int compressedLength = new Lz4Compressor().compress(source, 3, data.length, compressed, 5, capacity);
+            assertThat(compressedLength).isPositive().isLessThanOrEqualTo(capacity);
+
+            assertThat(Lz4Decompressor.decompress(compressed, 5, compressedLength, restored, 1, data.length)).isEqualTo(data.length);
+            byte[] result = new byte[data.length];
+            restored.get(1, result, 0, result.length);
+            assertThat(result).isEqualTo(data);
+        }
+        finally {
+            source.free();
+            compressed.free();
+            restored.free();
+        }
+    }
+
+    @Test
+    void testLz4RoundTrip()
+            throws IOException
+    {
+        Random random = new Random(17);
+        for (boolean offHeap : new boolean[] {false, true}) {
+            for (int length : new int[] {0, 1, 12, 13, 100, 4096, 70_000}) {
+                assertLz4RoundTrip(compressibleBytes(random, length), offHeap);
+                assertLz4RoundTrip(randomBytes(random, length), offHeap);
+            }
+            // long runs decode through overlapping matches of short offsets
+            byte[] runs = new byte[10_000];
+            for (int i = 0; i < runs.length; i++) {
+                runs[i] = (byte) (i < 5_000 ? 7 : i % 3);
+            }
+            assertLz4RoundTrip(runs, offHeap);
+        }
+    }
+
+    @Test
+    void testLz4ShrinksRepetitiveDataAndRejectsSmallTargets()
+    {
+        Random random = new Random(19);
+        MemorySegment source = MemorySegments.allocate(PAGE_SIZE);
+        MemorySegment target = MemorySegments.allocate(Lz4Compressor.maxCompressedLength(PAGE_SIZE));
+        Lz4Compressor compressor = new Lz4Compressor();
+
+        source.put(0, compressibleBytes(random, PAGE_SIZE), 0, PAGE_SIZE);
+        assertThat(compressor.compress(source, 0, PAGE_SIZE, target, 0, target.size())).isLessThan(PAGE_SIZE / 2);
+
+        source.put(0, randomBytes(random, PAGE_SIZE), 0, PAGE_SIZE);
+        assertThat(compressor.compress(source, 0, PAGE_SIZE, target, 0, PAGE_SIZE - 1)).isEqualTo(-1);
+    }
+
+    @Test
+    void testMalformedLz4Block()
+    {
+        MemorySegment source = MemorySegments.allocate(16);
+        MemorySegment target = MemorySegments.allocate(64);
+
+        // a match pointing before the start of the output
+        source.put(0, new byte[] {0x10, 'a', 0x05, 0x00, 0x00}, 0, 5);
+        assertThatThrownBy(() -> Lz4Decompressor.decompress(source, 0, 5, target, 0, 64))
+                .isInstanceOf(IOException.class);
+
+        // literals running past the end of the block
+        source.put(0, new byte[] {(byte) 0xF0, (byte) 200}, 0, 2);
+        assertThatThrownBy(() -> Lz4Decompressor.decompress(source, 0, 2, target, 0, 64))
+                .isInstanceOf(IOException.class);
+
+        // output larger than the target
+        source.put(0, new byte[] {0x1F, 'a', 0x01, 0x00, 100}, 0, 5);
+        assertThatThrownBy(() -> Lz4Decompressor.decompress(source, 0, 5, target, 0, 64))
+                .isInstanceOf(IOException.class);
+    }
+
+    private static byte[] writeBlocks(byte[] data, MemorySegment page, MemorySegment blockBuffer)
+            throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CompressedBlockOutputView view = new CompressedBlockOutputView(Channels.newChannel(out), page, blockBuffer)) {
+            view.writeInt(data.length);
+            view.write(data);
+            view.writeUTF("end");
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readBlocks(byte[] blocks, MemorySegment page, MemorySegment blockBuffer)
+            throws IOException
+    {
+        try (CompressedBlockInputView view = new CompressedBlockInputView(Channels.newChannel(new ByteArrayInputStream(blocks)), page, blockBuffer)) {
+            byte[] data = new byte[view.readInt()];
+            view.readFully(data);
+            assertThat(view.readUTF()).isEqualTo("end");
+            assertThatThrownBy(view::readByte).isInstanceOf(EOFException.class);
+            return data;
+        }
+    }
+
+    @Test
+    void testViewRoundTrip()
+            throws IOException
+    {
+        Random random = new Random(23);
+        byte[] compressible = compressibleBytes(random, 10 * PAGE_SIZE + 123);
+        byte[] incompressible = randomBytes(random, 3 * PAGE_SIZE + 7);
+
+        for (boolean offHeap : new boolean[] {false, true}) {
+            MemorySegment page = offHeap ? MemorySegments.allocateOffHeap(PAGE_SIZE) : MemorySegments.allocate(PAGE_SIZE);
+            MemorySegment blockBuffer = offHeap ? MemorySegments.allocateOffHeap(PAGE_SIZE) : MemorySegments.allocate(PAGE_SIZE);
+            try {
+                byte[] blocks = writeBlocks(compressible, page, blockBuffer);
+                assertThat(blocks.length).isLessThan(compressible.length / 2);
+                assertThat(readBlocks(blocks, page, blockBuffer)).isEqualTo(compressible);
+
+                // incompressible pages are stored as they are, behind their headers
+                blocks = writeBlocks(incompressible, page, blockBuffer);
+                assertThat(blocks.length).isLessThanOrEqualTo(incompressible.length + 4 + 5 + 5 * CompressedBlockOutputView.HEADER_LENGTH);
+                assertThat(readBlocks(blocks, page, blockBuffer)).isEqualTo(incompressible);
+            }
+            finally {
+                page.free();
+                blockBuffer.free();
+            }
+        }
+    }
+
+    @Test
+    void testEmptyAndCorruptedStreams()
+            throws IOException
+    {
+        MemorySegment page = MemorySegments.allocate(PAGE_SIZE);
+        MemorySegment blockBuffer = MemorySegments.allocate(PAGE_SIZE);
+
+        try (CompressedBlockInputView view = new CompressedBlockInputView(Channels.newChannel(new ByteArrayInputStream(new byte[0])), page, blockBuffer)) {
+            assertThatThrownBy(view::readInt).isInstanceOf(EOFException.class);
+        }
+
+        byte[] blocks = writeBlocks(compressibleBytes(new Random(29), 3 * PAGE_SIZE), page, blockBuffer);
+
+        byte[] corrupted = blocks.clone();
+        corrupted[CompressedBlockOutputView.HEADER_LENGTH + 40] ^= 0x01;
+        assertThatThrownBy(() -> readBlocks(corrupted, page, blockBuffer)).isInstanceOf(IOException.class);
+
+        byte[] wrongChecksum = blocks.clone();
+        wrongChecksum[9] ^= 0x01;
+        assertThatThrownBy(() -> readBlocks(wrongChecksum, page, blockBuffer))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Checksum mismatch");
+
+        byte[] truncated = new byte[blocks.length - 10];
+        System.arraycopy(blocks, 0, truncated, 0, truncated.length);
+        assertThatThrownBy(() -> readBlocks(truncated, page, blockBuffer))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Truncated");
+    }
+}
@@ -0,0 +1,116 @@
+package info.victorchu.bamboo.hash;
+
+import info.victorchu.bamboo.memory.DataInputDeserializer;
+import info.victorchu.bamboo.memory.DataOutputSerializer;
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemorySegments;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BlockedBloomFilterTest
+{
+    private static final int NUM_KEYS = 100_000;
+
+    private static double falsePositiveRate(BlockedBloomFilter filter, long firstAbsentKey)
+    {
+        int positives = 0;
+        for (long key = firstAbsentKey; key < firstAbsentKey + NUM_KEYS; key++) {
+            if (filter.mightContain(key << 16)) {
+                positives++;
+            }
+        }
+        return positives / (double) NUM_KEYS;
+    }
+
+    @Test
+    void testNoFalseNegativesAndFalsePositiveRate()
+    {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            for (int bitsPerKey : new int[] {10, 16}) {
+                int size = BlockedBloomFilter.sizeFor(NUM_KEYS, bitsPerKey);
+                MemorySegment segment = offHeap ? MemorySegments.allocateOffHeap(size + 8) : MemorySegments.allocate(size + 8);
+                segment.putLong(0, -1L);
+                BlockedBloomFilter filter = BlockedBloomFilter.create(segment, 8, size);
+
+                // sequential keys, the way partition-local hash codes share bits
+                for (long key = 0; key < NUM_KEYS; key++) {
+                    filter.add(key << 16);
+                }
+                for (long key = 0; key < NUM_KEYS; key++) {
+                    assertThat(filter.mightContain(key << 16)).isTrue();
+                }
+
+                assertThat(falsePositiveRate(filter, NUM_KEYS))
+                        .as("false positive rate at %s bits per key", bitsPerKey)
+                        .isLessThan(bitsPerKey == 10 ? 0.02 : 0.003);
+
+                // the filter stays inside of its range
+                assertThat(segment.getLong(0)).isEqualTo(-1L);
+                segment.free();
+            }
+        }
+    }
+
+    @Test
+    void testMergeAndClear()
+    {
+        int size = BlockedBloomFilter.sizeFor(1000, 16);
+        BlockedBloomFilter evens = BlockedBloomFilter.create(MemorySegments.allocate(size), 0, size);
+        BlockedBloomFilter odds = BlockedBloomFilter.create(MemorySegments.allocateOffHeap(size), 0, size);
+        for (long key = 0; key < 2000; key += 2) {
+            evens.add(key);
+            odds.add(key + 1);
+        }
+
+        evens.merge(odds);
+        for (long key = 0; key < 2000; key++) {
+            assertThat(evens.mightContain(key)).isTrue();
+        }
+
+        BlockedBloomFilter other = BlockedBloomFilter.create(MemorySegments.allocate(2 * size), 0, 2 * size);
+        assertThatThrownBy(() -> evens.merge(other)).isInstanceOf(IllegalArgumentException.class);
+
+        evens.clear();
+        assertThat(falsePositiveRate(evens, 0)).isZero();
+    }
+
+    @Test
+    void testSerialization()
+            throws IOException
+    {
+        Random random = new Random(43);
+        long[] keys = new long[5000];
+        int size = BlockedBloomFilter.sizeFor(keys.length, 12);
+        BlockedBloomFilter filter = BlockedBloomFilter.create(MemorySegments.allocateOffHeap(size), 0, size);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+            filter.add(keys[i]);
+        }
+
+        DataOutputSerializer out = new DataOutputSerializer(64);
+        out.writeInt(filter.getSizeInBytes());
+        filter.writeTo(out);
+
+        DataInputDeserializer in = new DataInputDeserializer(out.getCopyOfBuffer());
+        int restoredSize = in.readInt();
+        MemorySegment restoredBits = MemorySegments.allocate(restoredSize + 64);
+        BlockedBloomFilter restored = BlockedBloomFilter.wrap(restoredBits, 64, restoredSize);
+        restored.readFrom(in);
+
+        for (long key : keys) {
+            assertThat(restored.mightContain(key)).isTrue();
+        }
+        for (int i = 0; i < 10_000; i++) {
+            long key = random.nextLong();
+            assertThat(restored.mightContain(key)).isEqualTo(filter.mightContain(key));
+        }
+
+        assertThatThrownBy(() -> BlockedBloomFilter.create(restoredBits, 0, 100)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BlockedBloomFilter.create(restoredBits, 128, restoredSize)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
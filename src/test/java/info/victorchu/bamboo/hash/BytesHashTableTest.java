@@ -0,0 +1,94 @@
+package info.victorchu.bamboo.hash;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemorySegments;
+import info.victorchu.bamboo.memory.TestSegments;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BytesHashTableTest
+{
+    private static final int PAGE_SIZE = 4096;
+
+    private static boolean add(BytesHashTable table, MemorySegment keyBuffer, String key, long amount)
+    {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        keyBuffer.put(0, bytes, 0, bytes.length);
+        BytesHashTable.Entry entry = table.lookupOrInsert(keyBuffer, 0, bytes.length, BytesHashTable.hash(keyBuffer, 0, bytes.length));
+        if (entry == null) {
+            return false;
+        }
+        MemorySegment segment = entry.getSegment();
+        if (entry.isNew()) {
+            assertThat(segment.getLong(entry.getValueOffset())).isZero();
+        }
+        segment.putLong(entry.getValueOffset(), segment.getLong(entry.getValueOffset()) + amount);
+        return true;
+    }
+
+    private static Map<String, Long> collect(BytesHashTable table)
+    {
+        Map<String, Long> result = new HashMap<>();
+        BytesHashTable.EntryIterator iterator = table.entries();
+        BytesHashTable.Entry entry;
+        while ((entry = iterator.next()) != null) {
+            byte[] key = new byte[entry.getKeyLength()];
+            entry.getSegment().get(entry.getKeyOffset(), key, 0, key.length);
+            result.put(new String(key, StandardCharsets.UTF_8), entry.getSegment().getLong(entry.getValueOffset()));
+        }
+        return result;
+    }
+
+    @Test
+    void testAggregateAndGrow()
+    {
+        BytesHashTable table = new BytesHashTable(TestSegments.allocate(1024, PAGE_SIZE), 8);
+        MemorySegment keyBuffer = MemorySegments.allocate(64);
+        Map<String, Long> expected = new HashMap<>();
+        Random random = new Random(23);
+        for (int i = 0; i < 100_000; i++) {
+            // variable key lengths, so that entries leave gaps at the end of the record segments
+            String key = "key-" + random.nextInt(20_000) + (i % 3 == 0 ? "-long-suffix" : "");
+            assertThat(add(table, keyBuffer, key, i)).isTrue();
+            expected.merge(key, (long) i, Long::sum);
+        }
+
+        assertThat(table.size()).isEqualTo(expected.size());
+        assertThat(table.getNumSlots()).isGreaterThan(expected.size());
+        assertThat(collect(table)).isEqualTo(expected);
+
+        byte[] bytes = "missing".getBytes(StandardCharsets.UTF_8);
+        keyBuffer.put(0, bytes, 0, bytes.length);
+        assertThat(table.lookup(keyBuffer, 0, bytes.length, BytesHashTable.hash(keyBuffer, 0, bytes.length))).isNull();
+    }
+
+    @Test
+    void testReportsFullAndResets()
+    {
+        BytesHashTable table = new BytesHashTable(TestSegments.allocate(8, PAGE_SIZE), 8);
+        MemorySegment keyBuffer = MemorySegments.allocate(64);
+        int inserted = 0;
+        while (add(table, keyBuffer, "k" + inserted, 1)) {
+            inserted++;
+        }
+        assertThat(inserted).isGreaterThan(0);
+        assertThat(table.size()).isEqualTo(inserted);
+
+        // existing keys can still be updated when the table is full
+        assertThat(add(table, keyBuffer, "k0", 1)).isTrue();
+        assertThat(collect(table)).containsEntry("k0", 2L).hasSize(inserted);
+
+        table.reset();
+        assertThat(table.isEmpty()).isTrue();
+        assertThat(table.getNumOccupiedSegments()).isEqualTo(1);
+        assertThat(add(table, keyBuffer, "k0", 5)).isTrue();
+        assertThat(collect(table)).containsOnlyKeys("k0").containsEntry("k0", 5L);
+        assertThat(table.dispose()).hasSize(8);
+    }
+}
@@ -0,0 +1,149 @@
+package info.victorchu.bamboo.io;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemorySegments;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IOManagerTest
+{
+    private static final int PAGE_SIZE = 4096;
+
+    private static final int NUM_BLOCKS = 64;
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void testWriteAndReadBack()
+            throws Exception
+    {
+        Path file = tempDirectory.resolve("blocks");
+        AtomicInteger written = new AtomicInteger();
+        RequestDoneCallback<MemorySegment> callback = new RequestDoneCallback<MemorySegment>()
+        {
+            @Override
+            public void requestSuccessful(MemorySegment buffer)
+            {
+                written.incrementAndGet();
+            }
+
+            @Override
+            public void requestFailed(MemorySegment buffer, IOException e)
+            {
+                throw new AssertionError(e);
+            }
+        };
+
+        try (IOManager ioManager = new IOManager(2, 4)) {
+            // two segments are enough, they are recycled once their write completed
+            List<CompletableFuture<MemorySegment>> pending = new ArrayList<>();
+            pending.add(CompletableFuture.completedFuture(MemorySegments.allocate(PAGE_SIZE)));
+            pending.add(CompletableFuture.completedFuture(MemorySegments.allocateOffHeap(PAGE_SIZE)));
+            try (BlockChannelWriter writer = ioManager.createBlockChannelWriter(
+                    FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), callback)) {
+                for (int block = 0; block < NUM_BLOCKS; block++) {
+                    MemorySegment segment = pending.remove(0).get();
+                    for (int offset = 0; offset < PAGE_SIZE; offset += 4) {
+                        segment.putIntBigEndian(offset, block);
+                    }
+                    pending.add(writer.writeBlock(segment, block == NUM_BLOCKS - 1 ? 100 : PAGE_SIZE));
+                    assertThat(writer.getNumOutstandingRequests()).isLessThanOrEqualTo(4);
+                }
+            }
+            assertThat(written.get()).isEqualTo(NUM_BLOCKS);
+
+            BlockChannelReader reader = ioManager.createBlockChannelReader(FileChannel.open(file, StandardOpenOption.READ));
+            try {
+                assertThat(reader.getSize()).isEqualTo((NUM_BLOCKS - 1) * (long) PAGE_SIZE + 100);
+
+                // issue all reads up front, so that the file is read ahead
+                List<CompletableFuture<MemorySegment>> reads = new ArrayList<>();
+                for (int block = 0; block < NUM_BLOCKS - 1; block++) {
+                    reads.add(reader.readBlock(MemorySegments.allocate(PAGE_SIZE)));
+                }
+                for (int block = 0; block < NUM_BLOCKS - 1; block++) {
+                    MemorySegment segment = reads.get(block).get();
+                    assertThat(segment.getIntBigEndian(0)).isEqualTo(block);
+                    assertThat(segment.getIntBigEndian(PAGE_SIZE - 4)).isEqualTo(block);
+                }
+
+                // the last block is short
+                CompletableFuture<MemorySegment> last = reader.readBlock(MemorySegments.allocate(PAGE_SIZE));
+                assertThatThrownBy(last::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(EOFException.class);
+                assertThatThrownBy(() -> reader.readBlock(MemorySegments.allocate(100))).isInstanceOf(IOException.class);
+            }
+            finally {
+                // closing reports the failed request once more
+                assertThatThrownBy(reader::close).isInstanceOf(IOException.class).hasCauseInstanceOf(EOFException.class);
+            }
+        }
+    }
+
+    @Test
+    void testShutdownRejectsRequests()
+            throws Exception
+    {
+        Path file = tempDirectory.resolve("rejected");
+        IOManager ioManager = new IOManager();
+        BlockChannelWriter writer = ioManager.createBlockChannelWriter(FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+        ioManager.close();
+
+        assertThat(ioManager.isShutdown()).isTrue();
+        assertThatThrownBy(() -> writer.writeBlock(MemorySegments.allocate(16))).isInstanceOf(IOException.class);
+        assertThat(writer.getNumOutstandingRequests()).isZero();
+        writer.close();
+    }
+
+    @Test
+    void testThrowingCallbackDoesNotStopTheThread()
+            throws Exception
+    {
+        RequestDoneCallback<MemorySegment> throwing = new RequestDoneCallback<MemorySegment>()
+        {
+            @Override
+            public void requestSuccessful(MemorySegment buffer)
+            {
+                throw new IllegalStateException("callback failed");
+            }
+
+            @Override
+            public void requestFailed(MemorySegment buffer, IOException e)
+            {
+                throw new IllegalStateException("callback failed");
+            }
+        };
+
+        // a single thread serves both channels
+        try (IOManager ioManager = new IOManager(1, 4)) {
+            BlockChannelWriter failing = ioManager.createBlockChannelWriter(
+                    FileChannel.open(tempDirectory.resolve("failing"), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), throwing);
+            MemorySegment segment = MemorySegments.allocate(PAGE_SIZE);
+            assertThat(failing.writeBlock(segment).get()).isSameAs(segment);
+
+            BlockChannelWriter next = ioManager.createBlockChannelWriter(
+                    FileChannel.open(tempDirectory.resolve("next"), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+            assertThat(next.writeBlock(MemorySegments.allocate(PAGE_SIZE)).get(10, TimeUnit.SECONDS)).isNotNull();
+            next.close();
+
+            // the failure of the callback is reported by the channel
+            assertThatThrownBy(() -> failing.writeBlock(segment)).isInstanceOf(IOException.class);
+            assertThatThrownBy(failing::close).isInstanceOf(IOException.class).hasRootCauseInstanceOf(IllegalStateException.class);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package info.victorchu.bamboo.join;
+
+import info.victorchu.bamboo.memory.DataInputView;
+import info.victorchu.bamboo.memory.DataOutputView;
+import info.victorchu.bamboo.memory.TestSegments;
+import info.victorchu.bamboo.record.ListObjectIterator;
+import info.victorchu.bamboo.record.RecordSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HybridHashJoinTest
+{
+    private static final int PAGE_SIZE = 1024;
+
+    /** Records are pairs of a key and a value, with a padding that makes them take some space. */
+    private static final RecordSerializer<long[]> SERIALIZER = new RecordSerializer<long[]>()
+    {
+        @Override
+        public void serialize(long[] record, DataOutputView target)
+                throws IOException
+        {
+            target.writeLong(record[0]);
+            target.writeLong(record[1]);
+            target.writeLong(~record[1]);
+        }
+
+        @Override
+        public long[] deserialize(DataInputView source)
+                throws IOException
+        {
+            long[] record = {source.readLong(), source.readLong()};
+            assertThat(source.readLong()).isEqualTo(~record[1]);
+            return record;
+        }
+    };
+
+    private static final KeyExtractor<long[]> KEY = (record, target) -> target.writeLong(record[0]);
+
+    @TempDir
+    File tempDirectory;
+
+    private static List<long[]> records(Random random, int count, int numKeys, long firstValue)
+    {
+        List<long[]> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(new long[] {random.nextInt(numKeys), firstValue + i});
+        }
+        return records;
+    }
+
+    private static List<String> expectedJoin(List<long[]> build, List<long[]> probe)
+    {
+        Map<Long, List<Long>> table = new HashMap<>();
+        for (long[] record : build) {
+            table.computeIfAbsent(record[0], key -> new ArrayList<>()).add(record[1]);
+        }
+        List<String> result = new ArrayList<>();
+        for (long[] record : probe) {
+            for (Long buildValue : table.getOrDefault(record[0], Collections.emptyList())) {
+                result.add(record[0] + ":" + buildValue + ":" + record[1]);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static List<String> join(HybridHashJoin<long[], long[]> join, List<long[]> build, List<long[]> probe)
+            throws IOException
+    {
+        List<String> result = new ArrayList<>();
+        join.join(new ListObjectIterator<>(build), new ListObjectIterator<>(probe), (buildRecord, probeRecord) -> {
+            assertThat(buildRecord[0]).isEqualTo(probeRecord[0]);
+            result.add(buildRecord[0] + ":" + buildRecord[1] + ":" + probeRecord[1]);
+        });
+        Collections.sort(result);
+        return result;
+    }
+
+    private HybridHashJoin<long[], long[]> createJoin(int numPages)
+    {
+        return new HybridHashJoin<>(SERIALIZER, SERIALIZER, KEY, KEY, TestSegments.allocate(numPages, PAGE_SIZE), tempDirectory);
+    }
+
+    @Test
+    void testJoinInMemory()
+            throws Exception
+    {
+        Random random = new Random(3);
+        List<long[]> build = records(random, 500, 200, 0);
+        List<long[]> probe = records(random, 1000, 400, 1_000_000);
+
+        try (HybridHashJoin<long[], long[]> join = createJoin(64)) {
+            assertThat(join(join, build, probe)).isEqualTo(expectedJoin(build, probe));
+            assertThat(join.getNumSpilledPartitions()).isZero();
+        }
+    }
+
+    @Test
+    void testJoinWithSpilledAndRecursivePartitions()
+            throws Exception
+    {
+        Random random = new Random(11);
+        List<long[]> build = records(random, 20_000, 5_000, 0);
+        List<long[]> probe = records(random, 30_000, 8_000, 1_000_000);
+        List<String> expected = expectedJoin(build, probe);
+
+        for (int numPages : new int[] {12, 40}) {
+            try (HybridHashJoin<long[], long[]> join = createJoin(numPages)) {
+                assertThat(join(join, build, probe)).isEqualTo(expected);
+                // far more partitions than one level has are spilled, so the join recursed
+                assertThat(join.getNumSpilledPartitions()).isGreaterThan(32);
+
+                // all memory is free again after a join
+                assertThat(join(join, build, probe)).isEqualTo(expected);
+            }
+            assertThat(tempDirectory.list()).isEmpty();
+        }
+    }
+
+    @Test
+    void testJoinSkewedKey()
+            throws Exception
+    {
+        Random random = new Random(5);
+        List<long[]> build = records(random, 2_000, 1_000, 0);
+        List<long[]> probe = records(random, 2_000, 1_000, 1_000_000);
+        // a single key with more records than the memory of the join can hold, which cannot be
+        // partitioned by any number of hash bits
+        for (int i = 0; i < 4_000; i++) {
+            build.add(new long[] {7, 10_000 + i});
+        }
+        for (int i = 0; i < 3; i++) {
+            probe.add(new long[] {7, 2_000_000 + i});
+        }
+
+        try (HybridHashJoin<long[], long[]> join = createJoin(24)) {
+            assertThat(join(join, build, probe)).isEqualTo(expectedJoin(build, probe));
+        }
+        assertThat(tempDirectory.list()).isEmpty();
+    }
+}
@@ -0,0 +1,223 @@
+package info.victorchu.bamboo.memory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChecksumTest
+{
+    private static final byte[] CHECK = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    File tempDirectory;
+
+    private static MemorySegment segment(byte[] bytes, int offset, boolean offHeap)
+    {
+        MemorySegment segment = offHeap ? MemorySegments.allocateOffHeap(offset + bytes.length) : MemorySegments.allocate(offset + bytes.length);
+        segment.put(offset, bytes, 0, bytes.length);
+        return segment;
+    }
+
+    @Test
+    void testKnownValues()
+    {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            MemorySegment segment = segment(CHECK, 3, offHeap);
+            assertThat(segment.checksum(3, 9, ChecksumAlgorithm.CRC32)).isEqualTo(0xCBF43926L);
+            assertThat(segment.checksum(3, 9, ChecksumAlgorithm.CRC32C)).isEqualTo(0xE3069283L);
+            assertThat(segment.checksum(3, 0, ChecksumAlgorithm.XXHASH64)).isEqualTo(0xEF46DB3751D8E999L);
+            segment.free();
+        }
+
+        byte[] abc = "abc".getBytes(StandardCharsets.US_ASCII);
+        assertThat(XxHash64.hash(MemorySegments.wrap(abc), 0, abc.length, 0)).isEqualTo(0x44BC2CF5AD770999L);
+        byte[] sentence = "Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII);
+        assertThat(XxHash64.hash(MemorySegments.wrap(sentence), 0, sentence.length, 0)).isEqualTo(0xFBCEA83C8A378BF1L);
+
+        Crc32cChecksum fallback = new Crc32cChecksum(false);
+        fallback.update(CHECK, 0, CHECK.length);
+        assertThat(fallback.getValue()).isEqualTo(0xE3069283L);
+    }
+
+    @Test
+    void testStreamingMatchesOneShot()
+    {
+        Random random = new Random(31);
+        for (int length : new int[] {0, 1, 7, 31, 32, 33, 100, 1000, 10_000}) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            for (boolean offHeap : new boolean[] {false, true}) {
+                MemorySegment segment = segment(bytes, 5, offHeap);
+                for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+                    long expected = segment.checksum(5, length, algorithm);
+
+                    // segment ranges, arrays and single bytes in random chunks
+                    SegmentChecksum checksum = algorithm.newChecksum();
+                    int position = 0;
+                    while (position < length) {
+                        int chunk = Math.min(length - position, random.nextInt(40));
+                        switch (random.nextInt(3)) {
+                            case 0:
+                                checksum.update(segment, 5 + position, chunk);
+                                break;
+                            case 1:
+                                checksum.update(bytes, position, chunk);
+                                break;
+                            default:
+                                for (int i = 0; i < chunk; i++) {
+                                    checksum.update(bytes[position + i]);
+                                }
+                        }
+                        position += chunk;
+                    }
+                    assertThat(checksum.getValue()).as("%s of %s bytes", algorithm, length).isEqualTo(expected);
+
+                    checksum.reset();
+                    checksum.update(bytes, 0, length);
+                    assertThat(checksum.getValue()).isEqualTo(expected);
+                }
+
+                Crc32cChecksum fallback = new Crc32cChecksum(false);
+                fallback.update(segment, 5, length);
+                assertThat(fallback.getValue()).isEqualTo(segment.checksum(5, length, ChecksumAlgorithm.CRC32C));
+                segment.free();
+            }
+        }
+    }
+
+    @Test
+    void testChecksumViews()
+            throws IOException
+    {
+        DataOutputSerializer target = new DataOutputSerializer(64);
+        ChecksumOutputView out = new ChecksumOutputView(target, ChecksumAlgorithm.CRC32C.newChecksum());
+        out.writeBoolean(true);
+        out.writeShort(-2);
+        out.writeChar('x');
+        out.writeInt(42);
+        out.writeLong(Long.MIN_VALUE);
+        out.writeFloat(1.5f);
+        out.writeDouble(-2.25);
+        out.writeUTF("héllo");
+        out.write(MemorySegments.wrap(CHECK), 2, 5);
+        out.writeBytes("line\r\n");
+        // skipped bytes are written as zeros
+        out.skipBytesToWrite(3);
+        // longer than the buffer of the views
+        byte[] large = new byte[10_000];
+        new Random(3).nextBytes(large);
+        out.write(large);
+        out.writeInt(7);
+
+        MemorySegment written = MemorySegments.wrap(target.getCopyOfBuffer());
+        assertThat(out.getChecksum().getValue()).isEqualTo(written.checksum(0, written.size(), ChecksumAlgorithm.CRC32C));
+
+        DataInputDeserializer source = new DataInputDeserializer(target.getCopyOfBuffer());
+        ChecksumInputView in = new ChecksumInputView(source, ChecksumAlgorithm.CRC32C.newChecksum());
+        assertThat(in.readBoolean()).isTrue();
+        assertThat(in.readShort()).isEqualTo((short) -2);
+        assertThat(in.readChar()).isEqualTo('x');
+        assertThat(in.readInt()).isEqualTo(42);
+        assertThat(in.readLong()).isEqualTo(Long.MIN_VALUE);
+        assertThat(in.readFloat()).isEqualTo(1.5f);
+        assertThat(in.readDouble()).isEqualTo(-2.25);
+        assertThat(in.readUTF()).isEqualTo("héllo");
+        in.skipBytesToRead(5);
+        assertThat(in.readLine()).isEqualTo("line");
+        assertThat(in.readByte()).isZero();
+        in.skipBytesToRead(2);
+        byte[] read = new byte[large.length];
+        in.readFully(read);
+        assertThat(read).isEqualTo(large);
+        assertThat(in.readInt()).isEqualTo(7);
+        in.verify(out.getChecksum().getValue());
+        assertThatThrownBy(() -> in.verify(out.getChecksum().getValue() + 1)).isInstanceOf(IOException.class);
+    }
+
+    private static FileChannelInputView openPages(File file, int pageSize)
+            throws IOException
+    {
+        return new FileChannelInputView(FileChannel.open(file.toPath(), StandardOpenOption.READ), TestSegments.allocate(2, pageSize), ChecksumAlgorithm.CRC32C);
+    }
+
+    private static void corrupt(File file, long position)
+            throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0x10);
+        }
+    }
+
+    /** Reads the ints of a file into the given list, until the file ends or fails. */
+    private static void readInts(File file, int pageSize, List<Integer> values)
+            throws IOException
+    {
+        try (FileChannelInputView in = openPages(file, pageSize)) {
+            for (int i = 0; i < 100; i++) {
+                values.add(in.readInt());
+            }
+        }
+    }
+
+    @Test
+    void testFileChannelViewsVerifyEveryPage()
+            throws IOException
+    {
+        // 56 bytes of data per page of 64 bytes, so 100 ints fill seven pages and two ints of an eighth
+        File file = new File(tempDirectory, "checksummed");
+        FileChannelOutputView out = new FileChannelOutputView(
+                FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE), MemorySegments.allocate(64), ChecksumAlgorithm.CRC32C);
+        try {
+            for (int i = 0; i < 100; i++) {
+                out.writeInt(i);
+            }
+        }
+        finally {
+            out.close();
+        }
+        assertThat(out.getWriteOffset()).isEqualTo(7 * 64 + 8 + FileChannelOutputView.PAGE_TRAILER_LENGTH);
+        assertThat(file.length()).isEqualTo(7 * 64 + 16);
+        File copy = new File(tempDirectory, "copy");
+
+        List<Integer> values = new ArrayList<>();
+        readInts(file, 64, values);
+        assertThat(values).hasSize(100);
+
+        // a corrupt first page is detected before any of its records is returned
+        Files.copy(file.toPath(), copy.toPath());
+        corrupt(copy, 10);
+        List<Integer> none = new ArrayList<>();
+        assertThatThrownBy(() -> readInts(copy, 64, none)).isInstanceOf(IOException.class).hasMessageContaining("Checksum mismatch");
+        assertThat(none).isEmpty();
+
+        // a corrupt later page fails the read ahead that covers it, the pages before are served
+        Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        corrupt(copy, 5 * 64 + 10);
+        List<Integer> firstPages = new ArrayList<>();
+        assertThatThrownBy(() -> readInts(copy, 64, firstPages)).isInstanceOf(IOException.class).hasMessageContaining("Checksum mismatch");
+        assertThat(firstPages).hasSize(4 * 14);
+
+        // a corrupt trailer, and pages of another size, are rejected as well
+        Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        corrupt(copy, 64 - FileChannelOutputView.PAGE_TRAILER_LENGTH + 3);
+        assertThatThrownBy(() -> readInts(copy, 64, new ArrayList<>())).isInstanceOf(IOException.class).hasMessageContaining("Corrupt page");
+        assertThatThrownBy(() -> readInts(file, 128, new ArrayList<>())).isInstanceOf(IOException.class).hasMessageContaining("Corrupt page");
+    }
+}
@@ -0,0 +1,318 @@
+package info.victorchu.bamboo.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DataSerializerTest
+{
+    private static final int[] INTS = {0, 1, -1, 63, -64, 64, 127, 128, 16383, 16384, Integer.MAX_VALUE, Integer.MIN_VALUE};
+
+    private static final long[] LONGS = {0, 1, -1, 127, 128, 1L << 35, -(1L << 35), (1L << 56) - 1, Long.MAX_VALUE, Long.MIN_VALUE};
+
+    @Test
+    void testVarIntRoundTrip()
+            throws Exception
+    {
+        // a tiny start size, so that every write has to resize at some point
+        DataOutputSerializer out = new DataOutputSerializer(1);
+        for (int value : INTS) {
+            int before = out.length();
+            out.writeVarInt(value);
+            assertThat(out.length() - before).isEqualTo(DataOutputSerializer.getVarIntSize(value));
+            out.writeZigZagInt(value);
+        }
+        for (long value : LONGS) {
+            int before = out.length();
+            out.writeVarLong(value);
+            assertThat(out.length() - before).isEqualTo(DataOutputSerializer.getVarLongSize(value));
+            out.writeZigZagLong(value);
+        }
+
+        DataInputDeserializer in = new DataInputDeserializer(out.getSharedBuffer(), 0, out.length());
+        for (int value : INTS) {
+            assertThat(in.readVarInt()).isEqualTo(value);
+            assertThat(in.readZigZagInt()).isEqualTo(value);
+        }
+        for (long value : LONGS) {
+            assertThat(in.readVarLong()).isEqualTo(value);
+            assertThat(in.readZigZagLong()).isEqualTo(value);
+        }
+        assertThat(in.available()).isZero();
+    }
+
+    @Test
+    void testVarIntSizes()
+            throws Exception
+    {
+        assertThat(DataOutputSerializer.getVarIntSize(127)).isEqualTo(1);
+        assertThat(DataOutputSerializer.getVarIntSize(128)).isEqualTo(2);
+        assertThat(DataOutputSerializer.getVarIntSize(-1)).isEqualTo(5);
+        assertThat(DataOutputSerializer.getVarLongSize(-1)).isEqualTo(10);
+
+        DataOutputSerializer out = new DataOutputSerializer(16);
+        out.writeZigZagInt(-64);
+        out.writeZigZagLong(63);
+        assertThat(out.length()).isEqualTo(2);
+    }
+
+    @Test
+    void testBatchRoundTrip()
+            throws Exception
+    {
+        Random random = new Random(7);
+        int[] ints = new int[1000];
+        long[] longs = new long[1000];
+        for (int i = 0; i < ints.length; i++) {
+            // mostly small values with the occasional large one
+            ints[i] = i % 50 == 0 ? random.nextInt() : random.nextInt(2000) - 1000;
+            longs[i] = i % 50 == 0 ? random.nextLong() : random.nextInt(1 << 20);
+        }
+
+        DataOutputSerializer out = new DataOutputSerializer(8);
+        out.writeVarInts(ints, 0, ints.length);
+        out.writeZigZagInts(ints, 10, 500);
+        out.writeVarLongs(longs, 0, longs.length);
+        out.writeZigZagLongs(longs, 1, 998);
+
+        DataInputDeserializer in = new DataInputDeserializer(out.getCopyOfBuffer());
+        int[] intsRead = new int[ints.length];
+        in.readVarInts(intsRead, 0, ints.length);
+        assertThat(intsRead).isEqualTo(ints);
+        int[] zigZagInts = new int[500];
+        in.readZigZagInts(zigZagInts, 0, 500);
+        for (int i = 0; i < 500; i++) {
+            assertThat(zigZagInts[i]).isEqualTo(ints[10 + i]);
+        }
+        long[] longsRead = new long[longs.length];
+        in.readVarLongs(longsRead, 0, longs.length);
+        assertThat(longsRead).isEqualTo(longs);
+        long[] zigZagLongs = new long[longs.length];
+        in.readZigZagLongs(zigZagLongs, 1, 998);
+        for (int i = 1; i < 999; i++) {
+            assertThat(zigZagLongs[i]).isEqualTo(longs[i]);
+        }
+        assertThat(in.available()).isZero();
+    }
+
+    @Test
+    void testTruncatedAndMalformedVarInts()
+            throws Exception
+    {
+        DataOutputSerializer out = new DataOutputSerializer(16);
+        out.writeVarInt(Integer.MIN_VALUE);
+        DataInputDeserializer in = new DataInputDeserializer(out.getSharedBuffer(), 0, out.length() - 1);
+        assertThatThrownBy(in::readVarInt).isInstanceOf(EOFException.class);
+
+        byte[] continuations = {-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 1};
+        assertThatThrownBy(() -> new DataInputDeserializer(continuations).readVarInt())
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Malformed");
+        assertThatThrownBy(() -> new DataInputDeserializer(continuations).readVarLong())
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Malformed");
+        assertThatThrownBy(() -> new DataInputDeserializer(continuations, 0, 6).readVarInt())
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Malformed");
+    }
+
+    @Test
+    void testPrimitiveArrayRoundTrip()
+            throws Exception
+    {
+        Random random = new Random(13);
+        long[] longs = new long[64];
+        double[] doubles = new double[64];
+        short[] shorts = new short[64];
+        for (int i = 0; i < 64; i++) {
+            longs[i] = random.nextLong();
+            doubles[i] = random.nextDouble();
+            shorts[i] = (short) random.nextInt();
+        }
+
+        DataOutputSerializer out = new DataOutputSerializer(4);
+        out.writeByte(1);
+        out.writeLongs(longs, 0, 64);
+        out.writeDoublesLittleEndian(doubles, 0, 64);
+        out.writeShorts(shorts, 8, 16);
+
+        // the big-endian variants are compatible with the single value methods
+        DataInputDeserializer in = new DataInputDeserializer(out.getCopyOfBuffer());
+        in.readByte();
+        for (long value : longs) {
+            assertThat(in.readLong()).isEqualTo(value);
+        }
+        double[] doublesRead = new double[64];
+        in.readDoublesLittleEndian(doublesRead, 0, 64);
+        assertThat(doublesRead).isEqualTo(doubles);
+        short[] shortsRead = new short[16];
+        in.readShorts(shortsRead, 0, 16);
+        for (int i = 0; i < 16; i++) {
+            assertThat(shortsRead[i]).isEqualTo(shorts[8 + i]);
+        }
+        assertThat(in.available()).isZero();
+
+        long[] tooMany = new long[65];
+        DataInputDeserializer truncated = new DataInputDeserializer(out.getSharedBuffer(), 1, 64 * 8);
+        assertThatThrownBy(() -> truncated.readLongs(tooMany, 0, 65)).isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    void testStringRoundTrip()
+            throws Exception
+    {
+        StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 30_000; i++) {
+            longString.append((char) ('a' + i % 26)).append('\u00e9');
+        }
+        String[] strings = {
+                "", "ascii only", "caf\u00e9", "\u6570\u636e\u5185\u5b58", "emoji \ud83d\ude00!", "\u0000nul",
+                "lone \ud800 surrogate", "\udc00", longString.toString(), repeat('x', 127), repeat('x', 128)};
+
+        DataOutputSerializer out = new DataOutputSerializer(1);
+        for (String string : strings) {
+            out.writeString(string);
+        }
+        DataInputDeserializer in = new DataInputDeserializer(out.getCopyOfBuffer());
+        for (String string : strings) {
+            assertThat(in.readString()).isEqualTo(string);
+        }
+        assertThat(in.available()).isZero();
+
+        // well-formed strings are standard UTF-8 behind a variable-length length
+        out.clear();
+        String string = "emoji \ud83d\ude00 caf\u00e9";
+        out.writeString(string);
+        byte[] expected = string.getBytes(StandardCharsets.UTF_8);
+        assertThat(Utf8.encodedLength(string)).isEqualTo(expected.length);
+        assertThat(out.getSharedBuffer()[0]).isEqualTo((byte) expected.length);
+        assertThat(Arrays.copyOfRange(out.getSharedBuffer(), 1, out.length())).isEqualTo(expected);
+    }
+
+    @Test
+    void testModifiedUtfCompatibility()
+            throws Exception
+    {
+        String[] strings = {"", "ascii", "caf\u00e9 \u6570\u636e", "\u0000", "emoji \ud83d\ude00"};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(bytes);
+        DataOutputSerializer out = new DataOutputSerializer(4);
+        for (String string : strings) {
+            stream.writeUTF(string);
+            out.writeUTF(string);
+        }
+        assertThat(out.getCopyOfBuffer()).isEqualTo(bytes.toByteArray());
+
+        DataInputDeserializer in = new DataInputDeserializer(bytes.toByteArray());
+        for (String string : strings) {
+            assertThat(in.readUTF()).isEqualTo(string);
+        }
+
+        out.clear();
+        out.writeLongUTF(strings[2]);
+        assertThat(new DataInputDeserializer(out.getCopyOfBuffer()).readLongUTF()).isEqualTo(strings[2]);
+
+        // too long strings are rejected without leaving partial output behind
+        out.clear();
+        out.writeInt(42);
+        assertThatThrownBy(() -> out.writeUTF(repeat('\u00e9', 40_000))).isInstanceOf(UTFDataFormatException.class);
+        assertThat(out.length()).isEqualTo(4);
+    }
+
+    @Test
+    void testWriteBytes()
+            throws Exception
+    {
+        DataOutputSerializer out = new DataOutputSerializer(2);
+        out.writeBytes("abc");
+        out.writeByte(1);
+        assertThat(out.getCopyOfBuffer()).isEqualTo(new byte[] {'a', 'b', 'c', 1});
+    }
+
+    @Test
+    void testMalformedUtf8()
+    {
+        byte[] bytes = {2, (byte) 0xC3, 0x41};
+        assertThatThrownBy(() -> new DataInputDeserializer(bytes).readString()).isInstanceOf(UTFDataFormatException.class);
+        byte[] truncated = {2, 0x41, (byte) 0xE6};
+        assertThatThrownBy(() -> new DataInputDeserializer(truncated).readString()).isInstanceOf(UTFDataFormatException.class);
+        byte[] tooShort = {5, 0x41};
+        assertThatThrownBy(() -> new DataInputDeserializer(tooShort).readString()).isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    void testStringDictionary()
+            throws Exception
+    {
+        String[] values = {"DE", "page_view", "host-0042.example.com", "\u6570\u636e", "FR"};
+        Random random = new Random(21);
+        String[] strings = new String[1000];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = i % 100 == 0 ? "unique-" + i : values[random.nextInt(values.length)];
+        }
+        strings[500] = repeat('y', DataOutputSerializer.MAX_DICTIONARY_STRING_LENGTH + 1);
+        strings[501] = strings[500];
+
+        DataOutputSerializer plain = new DataOutputSerializer(64);
+        DataOutputSerializer out = new DataOutputSerializer(64);
+        out.enableStringDictionary(8);
+        for (String string : strings) {
+            plain.writeDictionaryString(string);
+            out.writeDictionaryString(string);
+        }
+        assertThat(out.length()).isLessThan(plain.length() / 4);
+
+        // the format does not depend on whether the writer remembers strings
+        DataInputDeserializer in = new DataInputDeserializer(plain.getCopyOfBuffer());
+        for (String string : strings) {
+            assertThat(in.readDictionaryString()).isEqualTo(string);
+        }
+        assertThat(in.available()).isZero();
+
+        in = new DataInputDeserializer(out.getCopyOfBuffer());
+        String[] read = new String[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            read[i] = in.readDictionaryString();
+            assertThat(read[i]).isEqualTo(strings[i]);
+        }
+        assertThat(in.available()).isZero();
+        // repeated strings are resolved to the instance read first
+        for (int i = 0; i < strings.length; i++) {
+            if (strings[i].equals(values[0])) {
+                assertThat(read[i]).isSameAs(read[Arrays.asList(strings).indexOf(values[0])]);
+            }
+        }
+
+        // a new scope must be started on both sides
+        out.clear();
+        out.resetStringDictionary();
+        out.writeDictionaryString(values[1]);
+        out.writeDictionaryString(values[1]);
+        in.setBuffer(out.getCopyOfBuffer());
+        in.resetStringDictionary();
+        assertThat(in.readDictionaryString()).isEqualTo(values[1]);
+        assertThat(in.readDictionaryString()).isEqualTo(values[1]);
+
+        in.setBuffer(new byte[] {(byte) ((5 << 1) | 1)});
+        assertThatThrownBy(in::readDictionaryString)
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Unknown string dictionary id");
+    }
+
+    private static String repeat(char c, int count)
+    {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,112 @@
+package info.victorchu.bamboo.memory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedMemorySegmentTest
+{
+    private static final int NUM_LONGS = 10_000;
+
+    @TempDir
+    Path tempDirectory;
+
+    private Path writeLongs()
+            throws Exception
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(NUM_LONGS * 8);
+        for (int i = 0; i < NUM_LONGS; i++) {
+            buffer.putLong(i * 31L);
+        }
+        Path file = tempDirectory.resolve("longs");
+        Files.write(file, buffer.array());
+        return file;
+    }
+
+    @Test
+    void testReadOnlyMapping()
+            throws Exception
+    {
+        Path file = writeLongs();
+        MemorySegment segment;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            segment = MemorySegments.map(channel, 8, 16, FileChannel.MapMode.READ_ONLY);
+        }
+
+        // the mapping outlives the channel
+        assertThat(segment.isOffHeap()).isTrue();
+        assertThat(segment.isReadOnly()).isTrue();
+        assertThat(segment.size()).isEqualTo(16);
+        assertThat(segment.getLongBigEndian(0)).isEqualTo(31L);
+        assertThat(segment.getLongBigEndian(8)).isEqualTo(62L);
+
+        MemorySegment expected = MemorySegments.allocate(16);
+        expected.putLongBigEndian(0, 31L);
+        expected.putLongBigEndian(8, 62L);
+        assertThat(segment.equalTo(expected, 0, 0, 16)).isTrue();
+        assertThat(segment.compare(expected, 0, 0, 16)).isZero();
+
+        // writes are rejected instead of hitting the read-only mapping
+        assertThatThrownBy(() -> segment.putLong(0, 1L)).isInstanceOf(ReadOnlyBufferException.class);
+        assertThatThrownBy(() -> segment.put(15, (byte) 1)).isInstanceOf(ReadOnlyBufferException.class);
+        assertThatThrownBy(() -> segment.putLongs(0, new long[2], 0, 2)).isInstanceOf(ReadOnlyBufferException.class);
+        assertThatThrownBy(() -> expected.copyTo(0, segment, 0, 16)).isInstanceOf(ReadOnlyBufferException.class);
+        assertThatThrownBy(() -> segment.swapBytes(new byte[16], expected, 0, 0, 16)).isInstanceOf(ReadOnlyBufferException.class);
+        assertThatThrownBy(() -> segment.put(new DataInputDeserializer(new byte[16]), 0, 16)).isInstanceOf(ReadOnlyBufferException.class);
+        assertThatThrownBy(() -> segment.putLong(16, 1L)).isInstanceOf(ReadOnlyBufferException.class);
+        assertThat(segment.getLongBigEndian(0)).isEqualTo(31L);
+        // reading into a writable segment still works
+        segment.copyTo(0, expected, 0, 16);
+
+        segment.free();
+        assertThatThrownBy(() -> segment.getLongBigEndian(0)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testMapSegmentsReadAsOneStream()
+            throws Exception
+    {
+        Path file = writeLongs();
+        List<MemorySegment> segments;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // 1 KiB segments, so that values straddle the segment boundaries
+            segments = MemorySegments.mapSegments(channel, 4, channel.size() - 4, FileChannel.MapMode.READ_ONLY, 1024);
+        }
+        assertThat(segments).hasSize((NUM_LONGS * 8 - 4 + 1023) / 1024);
+
+        MemorySegment last = segments.get(segments.size() - 1);
+        RandomAccessInputView in = new RandomAccessInputView(segments, 1024, last.size());
+        in.skipBytesToRead(4);
+        for (int i = 1; i < NUM_LONGS; i++) {
+            assertThat(in.readLong()).isEqualTo(i * 31L);
+        }
+
+        for (MemorySegment segment : segments) {
+            segment.free();
+        }
+    }
+
+    @Test
+    void testReadWriteMappingWritesThrough()
+            throws Exception
+    {
+        Path file = writeLongs();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MemorySegment segment = MemorySegments.map(channel, 0, 8, FileChannel.MapMode.READ_WRITE);
+            assertThat(segment.isReadOnly()).isFalse();
+            segment.putLongBigEndian(0, -1L);
+            segment.free();
+        }
+        assertThat(ByteBuffer.wrap(Files.readAllBytes(file)).getLong(0)).isEqualTo(-1L);
+    }
+}
@@ -0,0 +1,93 @@
+package info.victorchu.bamboo.memory;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoryManagerTest
+{
+    private static final int PAGE_SIZE = MemoryManager.MIN_PAGE_SIZE;
+    private static final int NUM_PAGES = 16;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testAllocateAndReleasePerOwner(boolean offHeap)
+            throws MemoryAllocationException
+    {
+        MemoryManager memoryManager = new MemoryManager((long) PAGE_SIZE * NUM_PAGES, PAGE_SIZE, offHeap, false);
+        Object owner1 = new Object();
+        Object owner2 = new Object();
+
+        List<MemorySegment> pages1 = memoryManager.allocatePages(owner1, 10);
+        List<MemorySegment> pages2 = memoryManager.allocatePages(owner2, 6);
+        assertThat(memoryManager.getAvailableNumPages()).isEqualTo(0);
+        for (MemorySegment page : pages1) {
+            assertThat(page.size()).isEqualTo(PAGE_SIZE);
+            assertThat(page.isOffHeap()).isEqualTo(offHeap);
+            assertThat(page.getOwner()).isSameAs(owner1);
+        }
+
+        assertThatThrownBy(() -> memoryManager.allocatePages(owner1, 1))
+                .isInstanceOf(MemoryAllocationException.class);
+
+        memoryManager.release(pages2.get(0));
+        assertThat(pages2.get(0).isFreed()).isTrue();
+        assertThat(memoryManager.getAvailableNumPages()).isEqualTo(1);
+
+        memoryManager.releaseAll(owner1);
+        for (MemorySegment page : pages1) {
+            assertThat(page.isFreed()).isTrue();
+        }
+        assertThat(memoryManager.getAvailableNumPages()).isEqualTo(11);
+
+        memoryManager.release(pages2);
+        assertThat(memoryManager.verifyEmpty()).isTrue();
+        memoryManager.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testReleasedMemoryIsRecycled(boolean offHeap)
+            throws MemoryAllocationException
+    {
+        MemoryManager memoryManager = new MemoryManager((long) PAGE_SIZE * NUM_PAGES, PAGE_SIZE, offHeap, true);
+        Object owner = new Object();
+
+        MemorySegment first = memoryManager.allocatePages(owner, 1).get(0);
+        first.putLong(0, 42L);
+        memoryManager.release(first);
+        assertThatThrownBy(() -> first.getLong(0)).isInstanceOf(IllegalStateException.class);
+
+        // the pool is a queue, so cycle through all pages to get the first chunk back
+        List<MemorySegment> all = memoryManager.allocatePages(owner, NUM_PAGES);
+        assertThat(all).extracting(segment -> segment.getLong(0)).contains(42L);
+        memoryManager.shutdown();
+        assertThat(all.get(0).isFreed()).isTrue();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testReleaseSegmentFreedByItsUser(boolean offHeap)
+            throws MemoryAllocationException
+    {
+        MemoryManager memoryManager = new MemoryManager((long) PAGE_SIZE * NUM_PAGES, PAGE_SIZE, offHeap, false);
+        Object owner = new Object();
+
+        List<MemorySegment> pages = memoryManager.allocatePages(owner, 4);
+        pages.get(0).free();
+        memoryManager.release(pages.get(0));
+        assertThat(memoryManager.getAvailableNumPages()).isEqualTo(NUM_PAGES - 3);
+        // releasing it again is ignored
+        memoryManager.release(pages.get(0));
+        assertThat(memoryManager.getAvailableNumPages()).isEqualTo(NUM_PAGES - 3);
+
+        pages.get(1).free();
+        memoryManager.releaseAll(owner);
+        assertThat(memoryManager.verifyEmpty()).isTrue();
+        memoryManager.shutdown();
+    }
+}
@@ -2,6 +2,7 @@ package info.victorchu.bamboo.memory;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.Random;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -92,4 +93,57 @@ class MemorySegmentTest
             assertThat(segment.get(pos)).isEqualTo((byte) random.nextInt());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void testBulkPrimitiveArrays() {
+        final MemorySegment segment = createSegment(4096);
+        long[] longs = new long[100];
+        int[] ints = new int[100];
+        double[] doubles = new double[100];
+        char[] chars = new char[100];
+        for (int i = 0; i < 100; i++) {
+            longs[i] = random.nextLong();
+            ints[i] = random.nextInt();
+            doubles[i] = random.nextDouble();
+            chars[i] = (char) random.nextInt();
+        }
+
+        // odd indexes, the bulk methods do not require aligned memory
+        segment.putLongs(1, longs, 10, 80);
+        segment.putIntsBigEndian(1001, ints, 0, 100);
+        segment.putDoublesLittleEndian(1501, doubles, 0, 100);
+        segment.putCharsBigEndian(2301, chars, 0, 100);
+        for (int i = 0; i < 80; i++) {
+            assertThat(segment.getLong(1 + 8 * i)).isEqualTo(longs[10 + i]);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertThat(segment.getIntBigEndian(1001 + 4 * i)).isEqualTo(ints[i]);
+            assertThat(segment.getDoubleLittleEndian(1501 + 8 * i)).isEqualTo(doubles[i]);
+            assertThat(segment.getCharBigEndian(2301 + 2 * i)).isEqualTo(chars[i]);
+        }
+
+        long[] longsRead = new long[100];
+        segment.getLongs(1, longsRead, 10, 80);
+        assertArrayEquals(Arrays.copyOfRange(longs, 10, 90), Arrays.copyOfRange(longsRead, 10, 90));
+        int[] intsRead = new int[100];
+        segment.getIntsBigEndian(1001, intsRead, 0, 100);
+        assertArrayEquals(ints, intsRead);
+        double[] doublesRead = new double[100];
+        segment.getDoublesLittleEndian(1501, doublesRead, 0, 100);
+        assertArrayEquals(doubles, doublesRead);
+        char[] charsRead = new char[100];
+        segment.getCharsBigEndian(2301, charsRead, 0, 100);
+        assertArrayEquals(chars, charsRead);
+
+        assertThatThrownBy(() -> segment.putLongs(4096 - 7 * 8, longs, 0, 8))
+                .isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> segment.getInts(0, intsRead, 90, 11))
+                .isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> segment.getInts(-1, intsRead, 0, 1))
+                .isInstanceOf(IndexOutOfBoundsException.class);
+
+        segment.free();
+        assertThatThrownBy(() -> segment.getLongs(0, longsRead, 0, 1))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,76 @@
+package info.victorchu.bamboo.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OffHeapMemorySegmentTest
+        extends MemorySegmentTest
+{
+    /** The segments created for the tests, freed after each test; freeing twice is harmless. */
+    private final List<MemorySegment> segments = new ArrayList<>();
+
+    @Override
+    MemorySegment createSegment(int size) {
+        MemorySegment segment = MemorySegments.allocateOffHeap(size);
+        segments.add(segment);
+        return segment;
+    }
+
+    @AfterEach
+    void freeSegments() {
+        for (MemorySegment segment : segments) {
+            segment.free();
+        }
+        segments.clear();
+    }
+
+    @Test
+    void testOffHeapAccessors() {
+        MemorySegment segment = createSegment(64);
+        assertThat(segment.isOffHeap()).isTrue();
+        assertThatThrownBy(segment::getArray).isInstanceOf(IllegalStateException.class);
+
+        segment.putLongBigEndian(8, 0x0102030405060708L);
+        ByteBuffer wrapper = segment.wrap(8, 8);
+        assertThat(wrapper.remaining()).isEqualTo(8);
+        assertThat(wrapper.getLong()).isEqualTo(0x0102030405060708L);
+
+        MemorySegment heap = MemorySegments.allocate(64);
+        segment.copyTo(8, heap, 0, 8);
+        assertThat(heap.compare(segment, 0, 8, 8)).isEqualTo(0);
+        assertThat(heap.equalTo(segment, 0, 8, 8)).isTrue();
+        segment.free();
+    }
+
+    @Test
+    void testFreeRunsCleanupOnce() {
+        AtomicInteger released = new AtomicInteger();
+        MemorySegment segment = MemorySegments.allocateUnsafe(128, released::incrementAndGet);
+        segment.free();
+        segment.free();
+        assertThat(released.get()).isEqualTo(1);
+        assertThat(segment.isFreed()).isTrue();
+        assertThatThrownBy(() -> segment.getLong(0)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> segment.wrap(0, 8)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testWrapDirect() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(32);
+        buffer.putInt(4, 42);
+        MemorySegment segment = MemorySegments.wrapDirect(buffer);
+        assertThat(segment.size()).isEqualTo(32);
+        assertThat(segment.getIntBigEndian(4)).isEqualTo(42);
+        assertThat(segment.getOffHeapBuffer()).isSameAs(buffer);
+        assertThatThrownBy(() -> MemorySegments.wrapDirect(ByteBuffer.allocate(8)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
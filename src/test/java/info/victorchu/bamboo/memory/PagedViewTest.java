@@ -0,0 +1,88 @@
+package info.victorchu.bamboo.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PagedViewTest
+{
+    private static final int PAGE_SIZE = 64;
+
+    @Test
+    void testRoundTripAcrossPageBoundaries()
+            throws Exception
+    {
+        List<MemorySegment> written = new ArrayList<>();
+        SimpleCollectingOutputView out = new SimpleCollectingOutputView(written, new ListMemorySegmentSource(TestSegments.allocate(64, PAGE_SIZE)), PAGE_SIZE);
+
+        Random random = new Random(42);
+        byte[] bytes = new byte[150];
+        random.nextBytes(bytes);
+
+        // odd offsets, so that all primitives straddle page boundaries at some point
+        for (int i = 0; i < 20; i++) {
+            out.writeByte(i);
+            out.writeShort(i * 31);
+            out.writeChar('a' + i);
+            out.writeInt(i * 1_000_003);
+            out.writeLong(i * 1_000_000_007L);
+            out.writeDouble(i / 3.0);
+            out.writeBoolean(i % 2 == 0);
+        }
+        out.writeUTF("paged é中 views");
+        out.write(bytes);
+        MemorySegment source = MemorySegments.wrap(bytes);
+        out.write(source, 10, 100);
+        long end = out.getCurrentOffset();
+
+        RandomAccessInputView in = new RandomAccessInputView(written, PAGE_SIZE, out.getCurrentPositionInSegment());
+        for (int i = 0; i < 20; i++) {
+            assertThat(in.readByte()).isEqualTo((byte) i);
+            assertThat(in.readShort()).isEqualTo((short) (i * 31));
+            assertThat(in.readChar()).isEqualTo((char) ('a' + i));
+            assertThat(in.readInt()).isEqualTo(i * 1_000_003);
+            assertThat(in.readLong()).isEqualTo(i * 1_000_000_007L);
+            assertThat(in.readDouble()).isEqualTo(i / 3.0);
+            assertThat(in.readBoolean()).isEqualTo(i % 2 == 0);
+        }
+        assertThat(in.readUTF()).isEqualTo("paged é中 views");
+        byte[] read = new byte[bytes.length];
+        in.readFully(read);
+        assertThat(read).isEqualTo(bytes);
+        byte[] part = new byte[100];
+        in.readFully(part);
+        assertThat(part).isEqualTo(Arrays.copyOfRange(bytes, 10, 110));
+        assertThat(in.getReadPosition()).isEqualTo(end);
+        assertThatThrownBy(in::readByte).isInstanceOf(EOFException.class);
+        assertThat(in.read(new byte[4])).isEqualTo(-1);
+
+        // random access back into the middle of the data
+        in.setReadPosition(1);
+        assertThat(in.readShort()).isEqualTo((short) 0);
+    }
+
+    @Test
+    void testExhaustedSourceFailsWithEof()
+            throws Exception
+    {
+        List<MemorySegment> written = new ArrayList<>();
+        SimpleCollectingOutputView out = new SimpleCollectingOutputView(written, new ListMemorySegmentSource(TestSegments.allocate(2, PAGE_SIZE)), PAGE_SIZE);
+        out.skipBytesToWrite(PAGE_SIZE * 2 - 4);
+        out.writeInt(7);
+        assertThatThrownBy(() -> out.writeInt(8)).isInstanceOf(EOFException.class);
+        assertThat(written).hasSize(2);
+
+        RandomAccessOutputView random = new RandomAccessOutputView(written.toArray(new MemorySegment[0]), PAGE_SIZE);
+        random.setWritePosition(PAGE_SIZE - 2);
+        random.writeInt(0x01020304);
+        assertThat(written.get(0).getShortBigEndian(PAGE_SIZE - 2)).isEqualTo((short) 0x0102);
+        assertThat(written.get(1).getShortBigEndian(0)).isEqualTo((short) 0x0304);
+    }
+}
@@ -0,0 +1,24 @@
+package info.victorchu.bamboo.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allocates the pages of memory that the tests hand to paged views, sorters and hash tables.
+ */
+public final class TestSegments
+{
+    private TestSegments() {}
+
+    /**
+     * Allocates the given number of heap segments of the given size.
+     */
+    public static List<MemorySegment> allocate(int numPages, int pageSize)
+    {
+        List<MemorySegment> segments = new ArrayList<>(numPages);
+        for (int i = 0; i < numPages; i++) {
+            segments.add(MemorySegments.allocate(pageSize));
+        }
+        return segments;
+    }
+}
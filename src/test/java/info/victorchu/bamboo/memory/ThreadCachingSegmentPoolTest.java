@@ -0,0 +1,115 @@
+package info.victorchu.bamboo.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ThreadCachingSegmentPoolTest
+{
+    @Test
+    void testCapAndRecycling()
+            throws Exception
+    {
+        try (ThreadCachingSegmentPool pool = new ThreadCachingSegmentPool(1024, 8, false, 4)) {
+            List<MemorySegment> segments = new ArrayList<>();
+            pool.requestSegments(segments, 8);
+            assertThat(pool.getNumCreatedSegments()).isEqualTo(8);
+            assertThatThrownBy(pool::requestSegment).isInstanceOf(MemoryAllocationException.class);
+
+            // overflows the magazine, so part of the segments go to the shared stack
+            pool.recycle(segments);
+            assertThat(segments).isEmpty();
+            pool.requestSegments(segments, 8);
+            assertThat(segments).doesNotHaveDuplicates();
+            assertThat(pool.getNumCreatedSegments()).isEqualTo(8);
+
+            assertThatThrownBy(() -> pool.requestSegments(segments, -1)).isInstanceOf(IllegalArgumentException.class);
+            MemorySegment segment = segments.get(0);
+            pool.recycle(segment);
+            // the tests run with assertions enabled
+            assertThatThrownBy(() -> pool.recycle(segment))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("recycled twice");
+            assertThat(pool.requestSegment()).isSameAs(segment);
+        }
+    }
+
+    @Test
+    void testCachedSegmentsAreSharedAfterRelease()
+            throws Exception
+    {
+        try (ThreadCachingSegmentPool pool = new ThreadCachingSegmentPool(1024, 2, true, 4)) {
+            MemorySegment first = pool.requestSegment();
+            MemorySegment second = pool.requestSegment();
+            pool.recycle(first);
+            pool.recycle(second);
+            pool.releaseThreadCache();
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<?> future = executor.submit(() -> {
+                    pool.requestSegment();
+                    pool.requestSegment();
+                    return null;
+                });
+                future.get();
+            }
+            finally {
+                executor.shutdownNow();
+            }
+            assertThat(pool.getNumCreatedSegments()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void testConcurrentRequestAndRecycle()
+            throws Exception
+    {
+        final int numThreads = 8;
+        final int numSegments = 256;
+        try (ThreadCachingSegmentPool pool = new ThreadCachingSegmentPool(64, numSegments, false, 8)) {
+            ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                final long marker = t + 1;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<MemorySegment> held = new ArrayList<>();
+                    for (int round = 0; round < 10_000; round++) {
+                        for (int i = 0; i < 4; i++) {
+                            MemorySegment segment = pool.requestSegment();
+                            segment.putLong(0, marker);
+                            held.add(segment);
+                        }
+                        for (MemorySegment segment : held) {
+                            // nobody else may have been handed the segment in the meantime
+                            assertThat(segment.getLong(0)).isEqualTo(marker);
+                        }
+                        pool.recycle(held);
+                    }
+                    pool.releaseThreadCache();
+                    return null;
+                }));
+            }
+            start.countDown();
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+            finally {
+                executor.shutdownNow();
+            }
+            assertThat(pool.getNumCreatedSegments()).isLessThanOrEqualTo(numSegments);
+        }
+    }
+}
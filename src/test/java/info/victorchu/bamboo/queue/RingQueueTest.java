@@ -0,0 +1,212 @@
+package info.victorchu.bamboo.queue;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemorySegments;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RingQueueTest
+{
+    private static final int CAPACITY = 1024;
+
+    private static MemorySegment allocate(boolean offHeap)
+    {
+        int size = AbstractRingQueue.sizeFor(CAPACITY);
+        return offHeap ? MemorySegments.allocateOffHeap(size) : MemorySegments.allocate(size);
+    }
+
+    private static byte[] record(Random random, int maxLength)
+    {
+        byte[] bytes = new byte[random.nextInt(maxLength + 1)];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] copy(MemorySegment segment, int offset, int length)
+    {
+        byte[] bytes = new byte[length];
+        segment.get(offset, bytes, 0, length);
+        return bytes;
+    }
+
+    @Test
+    void testSingleThreadedWrapAround()
+    {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            for (boolean multiProducer : new boolean[] {false, true}) {
+                MemorySegment segment = allocate(offHeap);
+                AbstractRingQueue queue = multiProducer ? new MpscRingQueue(segment) : new SpscRingQueue(segment);
+                assertThat(queue.getCapacity()).isEqualTo(CAPACITY);
+                assertThat(queue.getMaxRecordLength()).isEqualTo(CAPACITY / 8 - AbstractRingQueue.HEADER_LENGTH);
+                assertThat(queue.isEmpty()).isTrue();
+
+                Random random = new Random(47);
+                List<byte[]> pending = new ArrayList<>();
+                List<byte[]> received = new ArrayList<>();
+                for (int round = 0; round < 500; round++) {
+                    // fill the ring until it rejects a record, then drain a part of it
+                    byte[] record;
+                    while (queue.offer(record = record(random, queue.getMaxRecordLength()), 0, record.length)) {
+                        pending.add(record);
+                    }
+                    assertThat(queue.getUsedBytes()).isGreaterThan(CAPACITY - 2 * (queue.getMaxRecordLength() + AbstractRingQueue.HEADER_LENGTH));
+
+                    int limit = 1 + random.nextInt(pending.size());
+                    int polled = queue.poll((bytes, offset, length) -> received.add(copy(bytes, offset, length)), limit);
+                    assertThat(polled).isEqualTo(limit);
+                    for (int i = 0; i < polled; i++) {
+                        assertThat(received.get(i)).isEqualTo(pending.get(i));
+                    }
+                    pending.subList(0, polled).clear();
+                    received.clear();
+                }
+
+                assertThat(queue.poll((bytes, offset, length) -> received.add(copy(bytes, offset, length)))).isEqualTo(pending.size());
+                assertThat(received).containsExactlyElementsOf(pending);
+                assertThat(queue.isEmpty()).isTrue();
+                segment.free();
+            }
+        }
+    }
+
+    @Test
+    void testClaimCommitAndAbort()
+    {
+        SpscRingQueue queue = new SpscRingQueue(allocate(false));
+        assertThatThrownBy(() -> queue.tryClaim(queue.getMaxRecordLength() + 1)).isInstanceOf(IllegalArgumentException.class);
+
+        int first = queue.tryClaim(8);
+        queue.getSegment().putLong(first, 1L);
+        int second = queue.tryClaim(8);
+        queue.getSegment().putLong(second, 2L);
+        int third = queue.tryClaim(8);
+        queue.getSegment().putLong(third, 3L);
+
+        List<Long> received = new ArrayList<>();
+        RecordHandler handler = (segment, offset, length) -> received.add(segment.getLong(offset));
+
+        // the consumer waits for the first claimed record
+        queue.commit(second);
+        assertThat(queue.poll(handler)).isZero();
+        queue.commit(first);
+        queue.abort(third);
+        assertThat(queue.poll(handler)).isEqualTo(2);
+        assertThat(received).containsExactly(1L, 2L);
+        assertThat(queue.isEmpty()).isTrue();
+        assertThatThrownBy(() -> queue.commit(first)).isInstanceOf(IllegalArgumentException.class);
+
+        // a record that fails in the handler counts as consumed
+        queue.offer(new byte[] {1}, 0, 1);
+        queue.offer(new byte[] {2}, 0, 1);
+        assertThatThrownBy(() -> queue.poll((segment, offset, length) -> {
+            throw new IllegalStateException();
+        })).isInstanceOf(IllegalStateException.class);
+        List<Byte> bytes = new ArrayList<>();
+        assertThat(queue.poll((segment, offset, length) -> bytes.add(segment.get(offset)))).isEqualTo(1);
+        assertThat(bytes).containsExactly((byte) 2);
+    }
+
+    @Test
+    void testSpscAcrossThreads()
+            throws Exception
+    {
+        MemorySegment segment = allocate(true);
+        SpscRingQueue queue = new SpscRingQueue(segment);
+        int numRecords = 200_000;
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> producer = executor.submit(() -> {
+                byte[] record = new byte[queue.getMaxRecordLength()];
+                MemorySegment wrapped = MemorySegments.wrap(record);
+                for (int i = 0; i < numRecords; i++) {
+                    wrapped.putInt(0, i);
+                    int length = 4 + i % (record.length - 4);
+                    while (!queue.offer(record, 0, length)) {
+                        Thread.yield();
+                    }
+                }
+            });
+
+            int[] next = new int[1];
+            while (next[0] < numRecords) {
+                int polled = queue.poll((bytes, offset, length) -> {
+                    assertThat(bytes.getInt(offset)).isEqualTo(next[0]);
+                    assertThat(length).isEqualTo(4 + next[0] % (queue.getMaxRecordLength() - 4));
+                    next[0]++;
+                });
+                if (polled == 0) {
+                    Thread.yield();
+                }
+            }
+            producer.get();
+            assertThat(queue.isEmpty()).isTrue();
+        }
+        finally {
+            executor.shutdownNow();
+            segment.free();
+        }
+    }
+
+    @Test
+    void testMpscAcrossThreads()
+            throws Exception
+    {
+        MemorySegment segment = allocate(false);
+        MpscRingQueue queue = new MpscRingQueue(segment);
+        int numProducers = 4;
+        int recordsPerProducer = 50_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(numProducers);
+        try {
+            List<Future<?>> producers = new ArrayList<>();
+            for (int p = 0; p < numProducers; p++) {
+                int producerId = p;
+                producers.add(executor.submit(() -> {
+                    for (int i = 0; i < recordsPerProducer; i++) {
+                        int length = 8 + (i * 7 + producerId) % 32;
+                        int offset;
+                        while ((offset = queue.tryClaim(length)) < 0) {
+                            Thread.yield();
+                        }
+                        queue.getSegment().putInt(offset, producerId);
+                        queue.getSegment().putInt(offset + 4, i);
+                        queue.commit(offset);
+                    }
+                }));
+            }
+
+            int[] next = new int[numProducers];
+            int[] received = new int[1];
+            while (received[0] < numProducers * recordsPerProducer) {
+                int polled = queue.poll((bytes, offset, length) -> {
+                    int producerId = bytes.getInt(offset);
+                    assertThat(bytes.getInt(offset + 4)).isEqualTo(next[producerId]);
+                    assertThat(length).isEqualTo(8 + (next[producerId] * 7 + producerId) % 32);
+                    next[producerId]++;
+                    received[0]++;
+                });
+                if (polled == 0) {
+                    Thread.yield();
+                }
+            }
+            for (Future<?> producer : producers) {
+                producer.get();
+            }
+            assertThat(next).containsOnly(recordsPerProducer);
+            assertThat(queue.isEmpty()).isTrue();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package info.victorchu.bamboo.record;
+
+import java.util.List;
+
+/**
+ * An iterator over the records of a list, to feed records to the operators in tests.
+ */
+public final class ListObjectIterator<T>
+        implements MutableObjectIterator<T>
+{
+    private final List<T> records;
+
+    private int next;
+
+    public ListObjectIterator(List<T> records)
+    {
+        this.records = records;
+    }
+
+    @Override
+    public T next(T reuse)
+    {
+        return next();
+    }
+
+    @Override
+    public T next()
+    {
+        return next < records.size() ? records.get(next++) : null;
+    }
+}
@@ -0,0 +1,166 @@
+package info.victorchu.bamboo.record;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemorySegments;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NormalizedKeyWriterTest
+{
+    private static final int KEY_LENGTH = 64;
+
+    private static <T> void assertKeysOrderLikeValues(List<T> values, Comparator<T> comparator, BiConsumer<NormalizedKeyWriter, T> fieldWriter)
+    {
+        MemorySegment keys = MemorySegments.allocate(values.size() * KEY_LENGTH);
+        NormalizedKeyWriter writer = new NormalizedKeyWriter();
+        for (int i = 0; i < values.size(); i++) {
+            writer.reset(keys, i * KEY_LENGTH, KEY_LENGTH);
+            fieldWriter.accept(writer, values.get(i));
+            writer.finish();
+            assertThat(writer.isTruncated()).isFalse();
+        }
+
+        for (int i = 0; i < values.size(); i++) {
+            for (int j = 0; j < values.size(); j++) {
+                int expected = Integer.signum(comparator.compare(values.get(i), values.get(j)));
+                int actual = Integer.signum(keys.compare(keys, i * KEY_LENGTH, j * KEY_LENGTH, KEY_LENGTH));
+                assertThat(actual).as("%s compared to %s", values.get(i), values.get(j)).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void testIntegralNumbers()
+    {
+        Random random = new Random(3);
+        List<Long> values = new ArrayList<>();
+        for (long value : new long[] {Long.MIN_VALUE, Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE, Long.MAX_VALUE}) {
+            values.add(value);
+        }
+        for (int i = 0; i < 100; i++) {
+            values.add(random.nextLong() >> random.nextInt(64));
+        }
+        assertKeysOrderLikeValues(values, Long::compare, NormalizedKeyWriter::writeLong);
+
+        List<Integer> ints = new ArrayList<>();
+        for (long value : values) {
+            ints.add((int) value);
+        }
+        assertKeysOrderLikeValues(ints, Integer::compare, NormalizedKeyWriter::writeInt);
+
+        List<Short> shorts = new ArrayList<>();
+        for (long value : values) {
+            shorts.add((short) value);
+        }
+        assertKeysOrderLikeValues(shorts, Short::compare, NormalizedKeyWriter::writeShort);
+
+        List<Byte> bytes = new ArrayList<>();
+        for (long value : values) {
+            bytes.add((byte) value);
+        }
+        assertKeysOrderLikeValues(bytes, Byte::compare, NormalizedKeyWriter::writeByte);
+    }
+
+    @Test
+    void testFloatingPointNumbers()
+    {
+        Random random = new Random(5);
+        List<Double> values = new ArrayList<>();
+        for (double value : new double[] {
+                Double.NEGATIVE_INFINITY, -Double.MAX_VALUE, -1.5, -Double.MIN_VALUE, -0.0, 0.0,
+                Double.MIN_VALUE, 1.5, Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NaN, Double.longBitsToDouble(0xFFF8000000000001L)}) {
+            values.add(value);
+        }
+        for (int i = 0; i < 100; i++) {
+            values.add((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20));
+        }
+        assertKeysOrderLikeValues(values, Double::compare, NormalizedKeyWriter::writeDouble);
+
+        List<Float> floats = new ArrayList<>();
+        for (double value : values) {
+            floats.add((float) value);
+        }
+        assertKeysOrderLikeValues(floats, Float::compare, NormalizedKeyWriter::writeFloat);
+    }
+
+    @Test
+    void testStrings()
+    {
+        Random random = new Random(7);
+        char[] alphabet = {'\0', '\u0001', 'a', 'b', 'é', '߿', 'ࠀ', '\uD83D', '\uDE00', '￿'};
+        List<String> values = new ArrayList<>();
+        values.add("");
+        for (int i = 0; i < 150; i++) {
+            char[] chars = new char[random.nextInt(6)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+            values.add(new String(chars));
+        }
+        assertKeysOrderLikeValues(values, String::compareTo, NormalizedKeyWriter::writeString);
+    }
+
+    @Test
+    void testCompositeKeysWithNullsAndDescendingFields()
+    {
+        Random random = new Random(9);
+        List<Object[]> values = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            String name = random.nextInt(5) == 0 ? null : "ab".substring(0, random.nextInt(3));
+            Integer number = random.nextInt(5) == 0 ? null : random.nextInt(3) - 1;
+            values.add(new Object[] {name, number, (double) random.nextInt(3)});
+        }
+
+        // name ascending and number descending, both with nulls first, amount ascending
+        Comparator<Object[]> comparator = Comparator.<Object[], String>comparing(value -> (String) value[0], Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(value -> (Integer) value[1], Comparator.nullsFirst(Comparator.reverseOrder()))
+                .thenComparing(value -> (Double) value[2]);
+
+        assertKeysOrderLikeValues(values, comparator, (writer, value) -> {
+            if (writer.writeNullFlag(value[0] == null)) {
+                writer.writeString((String) value[0]);
+            }
+            writer.setDescending(true);
+            if (writer.writeNullFlag(value[1] == null)) {
+                writer.writeInt((Integer) value[1]);
+            }
+            writer.setDescending(false);
+            writer.writeDouble((Double) value[2]);
+        });
+    }
+
+    @Test
+    void testTruncatedKeys()
+    {
+        MemorySegment segment = MemorySegments.allocate(16);
+        NormalizedKeyWriter writer = new NormalizedKeyWriter();
+
+        writer.reset(segment, 1, 3);
+        writer.writeInt(0x01020304);
+        writer.writeLong(5);
+        writer.finish();
+        assertThat(writer.isTruncated()).isTrue();
+        byte[] bytes = new byte[5];
+        segment.get(0, bytes, 0, 5);
+        assertThat(bytes).isEqualTo(new byte[] {0, (byte) 0x81, 0x02, 0x03, 0});
+
+        writer.reset(segment, 0, 8);
+        writer.writeString("abc");
+        writer.finish();
+        assertThat(writer.isTruncated()).isFalse();
+        bytes = new byte[8];
+        segment.get(0, bytes, 0, 8);
+        assertThat(bytes).isEqualTo(new byte[] {'a', 'b', 'c', 0, 0, 0, 0, 0});
+
+        writer.reset(segment, 0, 4);
+        writer.writeString("abcdef");
+        assertThat(writer.isTruncated()).isTrue();
+    }
+}
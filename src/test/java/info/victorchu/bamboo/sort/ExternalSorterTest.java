@@ -0,0 +1,194 @@
+package info.victorchu.bamboo.sort;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.DataInputView;
+import info.victorchu.bamboo.memory.DataOutputView;
+import info.victorchu.bamboo.memory.TestSegments;
+import info.victorchu.bamboo.record.ListObjectIterator;
+import info.victorchu.bamboo.record.MutableObjectIterator;
+import info.victorchu.bamboo.record.RecordComparator;
+import info.victorchu.bamboo.record.RecordSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static info.victorchu.bamboo.sort.NormalizedKeySorterTest.LONG_COMPARATOR;
+import static info.victorchu.bamboo.sort.NormalizedKeySorterTest.LONG_SERIALIZER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExternalSorterTest
+{
+    private static final int PAGE_SIZE = 1024;
+
+    @TempDir
+    File tempDirectory;
+
+    private static List<Long> drain(MutableObjectIterator<Long> iterator)
+            throws IOException
+    {
+        List<Long> records = new ArrayList<>();
+        Long record;
+        while ((record = iterator.next()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Test
+    void testSortFitsIntoMemory()
+            throws Exception
+    {
+        try (ExternalSorter<Long> sorter = new ExternalSorter<>(LONG_SERIALIZER, LONG_COMPARATOR, TestSegments.allocate(16, PAGE_SIZE), tempDirectory)) {
+            for (long i = 100; i > 0; i--) {
+                sorter.add(i);
+            }
+            assertThat(drain(sorter.finish())).hasSize(100).isSorted();
+            assertThat(sorter.getNumSpilledRuns()).isZero();
+        }
+    }
+
+    @Test
+    void testSpillAndMultiPassMerge()
+            throws Exception
+    {
+        Random random = new Random(17);
+        List<Long> input = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            input.add((long) random.nextInt(10_000));
+        }
+
+        // 9 pages with 2 read-ahead pages each allow merging 4 runs at once, far fewer than spilled
+        ExternalSorter<Long> sorter = new ExternalSorter<>(LONG_SERIALIZER, LONG_COMPARATOR, TestSegments.allocate(9, PAGE_SIZE), tempDirectory, 2);
+        try {
+            for (Long record : input) {
+                sorter.add(record);
+            }
+            List<Long> sorted = drain(sorter.finish());
+
+            Collections.sort(input);
+            assertThat(sorted).isEqualTo(input);
+            assertThat(sorter.getNumSpilledRuns()).isGreaterThan(100);
+        }
+        finally {
+            sorter.close();
+        }
+        assertThat(tempDirectory.list()).isEmpty();
+    }
+
+    @Test
+    void testMultiPassMergeIsStable()
+            throws Exception
+    {
+        RecordSerializer<long[]> serializer = new RecordSerializer<long[]>()
+        {
+            @Override
+            public void serialize(long[] record, DataOutputView target)
+                    throws IOException
+            {
+                target.writeLong(record[0]);
+                target.writeLong(record[1]);
+            }
+
+            @Override
+            public long[] deserialize(DataInputView source)
+                    throws IOException
+            {
+                return new long[] {source.readLong(), source.readLong()};
+            }
+        };
+
+        // records of the same key are further apart than a run is long, so every run holds
+        // distinct keys and only the merge decides the order of equal keys
+        int numKeys = 1000;
+        int numRecords = 40_000;
+        try (ExternalSorter<long[]> sorter = new ExternalSorter<>(serializer, new FirstFieldComparator(), TestSegments.allocate(9, PAGE_SIZE), tempDirectory, 2)) {
+            for (int i = 0; i < numRecords; i++) {
+                sorter.add(new long[] {(i * 7919L) % numKeys, i});
+            }
+            MutableObjectIterator<long[]> sorted = sorter.finish();
+            assertThat(sorter.getNumSpilledRuns()).isGreaterThan(numRecords / numKeys);
+
+            long[] previous = sorted.next();
+            int count = 1;
+            long[] record;
+            while ((record = sorted.next()) != null) {
+                assertThat(previous[0] < record[0] || (previous[0] == record[0] && previous[1] < record[1]))
+                        .as("%s before %s", Arrays.toString(previous), Arrays.toString(record))
+                        .isTrue();
+                previous = record;
+                count++;
+            }
+            assertThat(count).isEqualTo(numRecords);
+        }
+    }
+
+    @Test
+    void testLoserTreeMergeIsStable()
+            throws Exception
+    {
+        List<MutableObjectIterator<long[]>> inputs = new ArrayList<>();
+        for (int input = 0; input < 5; input++) {
+            List<long[]> records = new ArrayList<>();
+            for (long key = input % 2; key < 20; key += 2) {
+                records.add(new long[] {key, input});
+            }
+            inputs.add(new ListObjectIterator<>(records));
+        }
+
+        LoserTreeMergeIterator<long[]> merge = new LoserTreeMergeIterator<>(inputs, new FirstFieldComparator());
+        long[] previous = null;
+        int count = 0;
+        long[] record;
+        while ((record = merge.next()) != null) {
+            if (previous != null) {
+                assertThat(previous[0] < record[0] || (previous[0] == record[0] && previous[1] < record[1]))
+                        .as("%s before %s", Arrays.toString(previous), Arrays.toString(record))
+                        .isTrue();
+            }
+            previous = record;
+            count++;
+        }
+        assertThat(count).isEqualTo(50);
+    }
+
+    private static final class FirstFieldComparator
+            implements RecordComparator<long[]>
+    {
+        @Override
+        public int compare(long[] first, long[] second)
+        {
+            return Long.compare(first[0], second[0]);
+        }
+
+        @Override
+        public boolean supportsNormalizedKey()
+        {
+            return false;
+        }
+
+        @Override
+        public int getNormalizeKeyLen()
+        {
+            return 0;
+        }
+
+        @Override
+        public boolean isNormalizedKeyPrefixOnly(int keyBytes)
+        {
+            return true;
+        }
+
+        @Override
+        public void putNormalizedKey(long[] record, MemorySegment target, int offset, int numBytes)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package info.victorchu.bamboo.sort;
+
+import info.victorchu.bamboo.memory.DataInputView;
+import info.victorchu.bamboo.memory.DataOutputView;
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.TestSegments;
+import info.victorchu.bamboo.record.MutableObjectIterator;
+import info.victorchu.bamboo.record.NormalizedKeyWriter;
+import info.victorchu.bamboo.record.RecordComparator;
+import info.victorchu.bamboo.record.RecordSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NormalizedKeySorterTest
+{
+    private static final int PAGE_SIZE = 4096;
+
+    static final RecordSerializer<Long> LONG_SERIALIZER = new RecordSerializer<Long>()
+    {
+        @Override
+        public void serialize(Long record, DataOutputView target)
+                throws IOException
+        {
+            target.writeLong(record);
+        }
+
+        @Override
+        public Long deserialize(DataInputView source)
+                throws IOException
+        {
+            return source.readLong();
+        }
+    };
+
+    static final RecordComparator<Long> LONG_COMPARATOR = new RecordComparator<Long>()
+    {
+        @Override
+        public int compare(Long first, Long second)
+        {
+            return Long.compare(first, second);
+        }
+
+        @Override
+        public boolean supportsNormalizedKey()
+        {
+            return true;
+        }
+
+        @Override
+        public int getNormalizeKeyLen()
+        {
+            return 8;
+        }
+
+        @Override
+        public boolean isNormalizedKeyPrefixOnly(int keyBytes)
+        {
+            return keyBytes < 8;
+        }
+
+        @Override
+        public void putNormalizedKey(Long record, MemorySegment target, int offset, int numBytes)
+        {
+            // flip the sign bit, so that the unsigned byte-wise order matches the signed order
+            long key = record - Long.MIN_VALUE;
+            for (int i = 0; i < numBytes; i++) {
+                target.put(offset + i, (byte) (key >>> ((7 - i) << 3)));
+            }
+        }
+    };
+
+    private static final RecordSerializer<String> STRING_SERIALIZER = new RecordSerializer<String>()
+    {
+        @Override
+        public void serialize(String record, DataOutputView target)
+                throws IOException
+        {
+            target.writeUTF(record);
+        }
+
+        @Override
+        public String deserialize(DataInputView source)
+                throws IOException
+        {
+            return source.readUTF();
+        }
+    };
+
+    private static final RecordComparator<String> STRING_COMPARATOR = new RecordComparator<String>()
+    {
+        private final NormalizedKeyWriter writer = new NormalizedKeyWriter();
+
+        @Override
+        public int compare(String first, String second)
+        {
+            return first.compareTo(second);
+        }
+
+        @Override
+        public boolean supportsNormalizedKey()
+        {
+            return true;
+        }
+
+        @Override
+        public int getNormalizeKeyLen()
+        {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public boolean isNormalizedKeyPrefixOnly(int keyBytes)
+        {
+            return true;
+        }
+
+        @Override
+        public void putNormalizedKey(String record, MemorySegment target, int offset, int numBytes)
+        {
+            writer.reset(target, offset, numBytes);
+            writer.writeString(record);
+            writer.finish();
+        }
+    };
+
+    private static <T> List<T> fillAndSort(NormalizedKeySorter<T> sorter, List<T> input, IndexedSorter algorithm)
+            throws IOException
+    {
+        for (T record : input) {
+            assertThat(sorter.write(record)).isTrue();
+        }
+        assertThat(sorter.size()).isEqualTo(input.size());
+        algorithm.sort(sorter);
+
+        List<T> sorted = new ArrayList<>();
+        MutableObjectIterator<T> iterator = sorter.getIterator();
+        T record;
+        while ((record = iterator.next()) != null) {
+            sorted.add(record);
+        }
+        return sorted;
+    }
+
+    @Test
+    void testSortLongsFullyDeterminedByKey()
+            throws Exception
+    {
+        Random random = new Random(11);
+        List<Long> input = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            input.add(random.nextLong());
+        }
+
+        NormalizedKeySorter<Long> sorter = new NormalizedKeySorter<>(LONG_SERIALIZER, LONG_COMPARATOR, TestSegments.allocate(64, PAGE_SIZE));
+        List<Long> sorted = fillAndSort(sorter, input, new QuickSort());
+        assertThat(sorted).hasSize(input.size()).isSorted();
+    }
+
+    @Test
+    void testSortStringsWithPrefixKeyAndDuplicates()
+            throws Exception
+    {
+        Random random = new Random(13);
+        List<String> input = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            // long common prefixes, so that most comparisons have to fall back to the records
+            input.add("common-prefix-" + random.nextInt(200));
+        }
+
+        for (IndexedSorter algorithm : new IndexedSorter[] {new QuickSort(), new HeapSort()}) {
+            NormalizedKeySorter<String> sorter = new NormalizedKeySorter<>(STRING_SERIALIZER, STRING_COMPARATOR, TestSegments.allocate(64, PAGE_SIZE), 8);
+            List<String> sorted = fillAndSort(sorter, input, algorithm);
+            List<String> expected = new ArrayList<>(input);
+            expected.sort(null);
+            assertThat(sorted).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void testComparisonsReuseMutableRecords()
+            throws Exception
+    {
+        AtomicInteger created = new AtomicInteger();
+        RecordSerializer<long[]> serializer = new RecordSerializer<long[]>()
+        {
+            @Override
+            public void serialize(long[] record, DataOutputView target)
+                    throws IOException
+            {
+                target.writeLong(record[0]);
+            }
+
+            @Override
+            public long[] deserialize(DataInputView source)
+                    throws IOException
+            {
+                created.incrementAndGet();
+                return new long[] {source.readLong()};
+            }
+
+            @Override
+            public long[] deserialize(long[] reuse, DataInputView source)
+                    throws IOException
+            {
+                reuse[0] = source.readLong();
+                return reuse;
+            }
+        };
+        RecordComparator<long[]> comparator = new RecordComparator<long[]>()
+        {
+            @Override
+            public int compare(long[] first, long[] second)
+            {
+                return Long.compare(first[0], second[0]);
+            }
+
+            @Override
+            public boolean supportsNormalizedKey()
+            {
+                return false;
+            }
+
+            @Override
+            public int getNormalizeKeyLen()
+            {
+                return 0;
+            }
+
+            @Override
+            public boolean isNormalizedKeyPrefixOnly(int keyBytes)
+            {
+                return true;
+            }
+
+            @Override
+            public void putNormalizedKey(long[] record, MemorySegment target, int offset, int numBytes)
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        // without a normalized key, every comparison deserializes both records
+        NormalizedKeySorter<long[]> sorter = new NormalizedKeySorter<>(serializer, comparator, TestSegments.allocate(16, PAGE_SIZE));
+        Random random = new Random(19);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(sorter.write(new long[] {random.nextInt(100)})).isTrue();
+        }
+        new QuickSort().sort(sorter);
+        assertThat(created.get()).isEqualTo(2);
+
+        long previous = Long.MIN_VALUE;
+        long[] record = new long[1];
+        for (int i = 0; i < sorter.size(); i++) {
+            record = sorter.getRecord(record, i);
+            assertThat(record[0]).isGreaterThanOrEqualTo(previous);
+            previous = record[0];
+        }
+    }
+
+    @Test
+    void testWriteFailsWhenFullAndResetReclaimsMemory()
+            throws Exception
+    {
+        NormalizedKeySorter<Long> sorter = new NormalizedKeySorter<>(LONG_SERIALIZER, LONG_COMPARATOR, TestSegments.allocate(4, PAGE_SIZE));
+        long written = 0;
+        while (sorter.write(written)) {
+            written++;
+        }
+        assertThat(sorter.size()).isEqualTo((int) written);
+        assertThat(sorter.getOccupancy()).isLessThanOrEqualTo(sorter.getCapacity());
+        assertThat(sorter.getRecord((int) written - 1)).isEqualTo(written - 1);
+
+        sorter.reset();
+        assertThat(sorter.isEmpty()).isTrue();
+        for (long i = 0; i < written; i++) {
+            assertThat(sorter.write(written - i)).isTrue();
+        }
+        new QuickSort().sort(sorter);
+        assertThat(sorter.getRecord(0)).isEqualTo(1L);
+        assertThat(sorter.dispose()).hasSize(4);
+    }
+}
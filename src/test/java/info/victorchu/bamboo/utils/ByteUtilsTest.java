@@ -0,0 +1,139 @@
+package info.victorchu.bamboo.utils;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+import info.victorchu.bamboo.memory.MemorySegments;
+import info.victorchu.bamboo.memory.Murmur3;
+import info.victorchu.bamboo.memory.XxHash64;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ByteUtilsTest
+{
+    @Test
+    void testKnownHashValues()
+    {
+        byte[] fox = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII);
+        assertThat(ByteUtils.murmur3Hash64(fox, 0, fox.length, 0)).isEqualTo(0xE34BBC7BBC071B6CL);
+        assertThat(ByteUtils.murmur3Hash64(new byte[0], 0, 0, 0)).isZero();
+
+        byte[] sentence = "Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII);
+        assertThat(ByteUtils.xxHash64(sentence, 0, sentence.length, 0)).isEqualTo(0xFBCEA83C8A378BF1L);
+        assertThat(ByteUtils.xxHash64(new byte[0], 0, 0, 0)).isEqualTo(0xEF46DB3751D8E999L);
+    }
+
+    @Test
+    void testArrayAndSegmentHashesAgree()
+    {
+        Random random = new Random(37);
+        byte[] bytes = new byte[300];
+        random.nextBytes(bytes);
+        MemorySegment heap = MemorySegments.wrap(bytes);
+        MemorySegment offHeap = MemorySegments.allocateOffHeap(bytes.length);
+        offHeap.put(0, bytes, 0, bytes.length);
+
+        for (int i = 0; i < 500; i++) {
+            int offset = random.nextInt(100);
+            int length = random.nextInt(bytes.length - offset);
+            int hash = ByteUtils.hash(bytes, offset, length);
+            assertThat(heap.hash(offset, length)).isEqualTo(hash);
+            assertThat(offHeap.hash(offset, length)).isEqualTo(hash);
+
+            long xxHash = ByteUtils.xxHash64(bytes, offset, length, i);
+            assertThat(XxHash64.hash(heap, offset, length, i)).isEqualTo(xxHash);
+            assertThat(XxHash64.hash(offHeap, offset, length, i)).isEqualTo(xxHash);
+
+            long murmur = ByteUtils.murmur3Hash64(bytes, offset, length, i);
+            assertThat(Murmur3.hash64(heap, offset, length, i)).isEqualTo(murmur);
+            assertThat(Murmur3.hash64(offHeap, offset, length, i)).isEqualTo(murmur);
+        }
+
+        assertThatThrownBy(() -> heap.hash(250, 51)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> ByteUtils.hash(bytes, -1, 2)).isInstanceOf(IndexOutOfBoundsException.class);
+        offHeap.free();
+        assertThatThrownBy(() -> offHeap.hash(0, 8)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> Murmur3.hash64(offHeap, 0, 8, 0)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testLowBitsSpreadSequentialKeys()
+    {
+        // sequential keys are the worst case for a weak hash, their bytes differ in a few bits only
+        int buckets = 64;
+        int keys = 64 * 1024;
+        int[] counts = new int[buckets];
+        byte[] key = new byte[8];
+        for (int i = 0; i < keys; i++) {
+            for (int b = 0; b < 8; b++) {
+                key[b] = (byte) ((long) i >>> (56 - 8 * b));
+            }
+            counts[ByteUtils.hash(key, 0, 8) & (buckets - 1)]++;
+        }
+        for (int count : counts) {
+            assertThat(count).isBetween(keys / buckets * 8 / 10, keys / buckets * 12 / 10);
+        }
+    }
+
+    private static int naiveCompare(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo)
+    {
+        int length = Math.min(aTo - aFrom, bTo - bFrom);
+        for (int i = 0; i < length; i++) {
+            int diff = (a[aFrom + i] & 0xFF) - (b[bFrom + i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (aTo - aFrom) - (bTo - bFrom);
+    }
+
+    private static int naiveMismatch(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo)
+    {
+        int length = Math.min(aTo - aFrom, bTo - bFrom);
+        for (int i = 0; i < length; i++) {
+            if (a[aFrom + i] != b[bFrom + i]) {
+                return i;
+            }
+        }
+        return aTo - aFrom == bTo - bFrom ? -1 : length;
+    }
+
+    @Test
+    void testCompareEqualsAndMismatch()
+    {
+        Random random = new Random(41);
+        byte[] a = new byte[100];
+        byte[] b = new byte[100];
+        for (int round = 0; round < 20_000; round++) {
+            // mostly equal bytes with a single difference, which may be in a high bit
+            random.nextBytes(a);
+            int shift = random.nextInt(5);
+            System.arraycopy(a, 0, b, shift, a.length - shift);
+            int aFrom = random.nextInt(20);
+            int aTo = aFrom + random.nextInt(a.length - aFrom - shift);
+            int bFrom = aFrom + shift;
+            int bTo = Math.min(b.length, bFrom + (random.nextBoolean() ? aTo - aFrom : random.nextInt(b.length - bFrom)));
+            if (random.nextBoolean() && bTo > bFrom) {
+                int position = bFrom + random.nextInt(bTo - bFrom);
+                b[position] ^= (byte) (1 << random.nextInt(8));
+            }
+
+            int expected = naiveCompare(a, aFrom, aTo, b, bFrom, bTo);
+            assertThat(ByteUtils.compareUnsigned(a, aFrom, aTo, b, bFrom, bTo)).isEqualTo(expected);
+            assertThat(ByteUtils.compareUnsigned(b, bFrom, bTo, a, aFrom, aTo)).isEqualTo(-expected);
+            assertThat(ByteUtils.equals(a, aFrom, aTo, b, bFrom, bTo)).isEqualTo(expected == 0);
+            assertThat(ByteUtils.mismatch(a, aFrom, aTo, b, bFrom, bTo)).isEqualTo(naiveMismatch(a, aFrom, aTo, b, bFrom, bTo));
+        }
+
+        byte[] high = {1, 2, 3, 4, 5, 6, 7, (byte) 0x80, 9};
+        byte[] low = {1, 2, 3, 4, 5, 6, 7, 0x7F, 9};
+        assertThat(ByteUtils.compareUnsigned(high, 0, 9, low, 0, 9)).isPositive();
+        assertThat(ByteUtils.mismatch(high, 0, 9, low, 0, 9)).isEqualTo(7);
+        assertThat(ByteUtils.mismatch(high, 0, 5, high, 0, 9)).isEqualTo(5);
+        assertThat(ByteUtils.mismatch(high, 0, 9, high, 0, 9)).isEqualTo(-1);
+        assertThatThrownBy(() -> ByteUtils.mismatch(high, 0, 10, low, 0, 9)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+}
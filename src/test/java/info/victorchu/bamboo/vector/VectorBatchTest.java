@@ -0,0 +1,157 @@
+package info.victorchu.bamboo.vector;
+
+import info.victorchu.bamboo.memory.DataInputDeserializer;
+import info.victorchu.bamboo.memory.DataOutputSerializer;
+import info.victorchu.bamboo.memory.MemorySegments;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VectorBatchTest
+{
+    private static final int NUM_ROWS = 10_000;
+
+    private static byte[] bytes(int row)
+    {
+        // some values are longer than the initial data segment allows on average
+        char[] chars = new char[row % 97];
+        Arrays.fill(chars, (char) ('a' + row % 26));
+        return new String(chars).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isNull(int row, int column)
+    {
+        return (row * 31 + column) % 7 == 0;
+    }
+
+    @Test
+    void testReadRowsFromDataInputView()
+            throws IOException
+    {
+        DataOutputSerializer out = new DataOutputSerializer(1024);
+        for (int row = 0; row < NUM_ROWS; row++) {
+            out.writeBoolean(!isNull(row, 0));
+            if (!isNull(row, 0)) {
+                out.writeBoolean(row % 3 == 0);
+            }
+            out.writeBoolean(!isNull(row, 1));
+            if (!isNull(row, 1)) {
+                out.writeInt(-row);
+            }
+            out.writeBoolean(!isNull(row, 2));
+            if (!isNull(row, 2)) {
+                out.writeLong(row * 1_000_000_007L);
+            }
+            out.writeBoolean(!isNull(row, 3));
+            if (!isNull(row, 3)) {
+                out.writeDouble(row / 4.0);
+            }
+            out.writeBoolean(!isNull(row, 4));
+            if (!isNull(row, 4)) {
+                byte[] bytes = bytes(row);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        for (boolean offHeap : new boolean[] {false, true}) {
+            VectorBatchBuilder builder = new VectorBatchBuilder(
+                    Arrays.asList(ColumnType.BOOLEAN, ColumnType.INT, ColumnType.LONG, ColumnType.DOUBLE, ColumnType.VARBINARY),
+                    VectorBatch.DEFAULT_CAPACITY,
+                    offHeap);
+            DataInputDeserializer in = new DataInputDeserializer(out.getSharedBuffer(), 0, out.length());
+            byte[] buffer = new byte[128];
+            int row = 0;
+            int batches = 0;
+            while (in.available() > 0 || !builder.isEmpty()) {
+                if (in.available() > 0 && !builder.isFull()) {
+                    builder.appendRow(in);
+                    continue;
+                }
+                VectorBatch batch = builder.build();
+                assertThat(batch.getColumnCount()).isEqualTo(5);
+                for (int position = 0; position < batch.getPositionCount(); position++, row++) {
+                    for (int column = 0; column < 5; column++) {
+                        assertThat(batch.getColumn(column).isNull(position)).isEqualTo(isNull(row, column));
+                    }
+                    if (!isNull(row, 0)) {
+                        assertThat(batch.getBooleanColumn(0).getBoolean(position)).isEqualTo(row % 3 == 0);
+                    }
+                    if (!isNull(row, 1)) {
+                        assertThat(batch.getIntColumn(1).getInt(position)).isEqualTo(-row);
+                    }
+                    if (!isNull(row, 2)) {
+                        assertThat(batch.getLongColumn(2).getLong(position)).isEqualTo(row * 1_000_000_007L);
+                    }
+                    if (!isNull(row, 3)) {
+                        assertThat(batch.getDoubleColumn(3).getDouble(position)).isEqualTo(row / 4.0);
+                    }
+                    VarbinaryVector strings = batch.getVarbinaryColumn(4);
+                    if (isNull(row, 4)) {
+                        assertThat(strings.getLength(position)).isZero();
+                    }
+                    else {
+                        byte[] expected = bytes(row);
+                        assertThat(strings.getBytes(position, buffer, 0)).isEqualTo(expected.length);
+                        assertThat(Arrays.copyOf(buffer, expected.length)).isEqualTo(expected);
+                        assertThat(strings.equalTo(position, MemorySegments.wrap(expected), 0, expected.length)).isTrue();
+                        assertThat(strings.compareTo(position, MemorySegments.wrap(expected), 0, expected.length)).isZero();
+                    }
+                }
+                batches++;
+                builder.reset();
+            }
+            assertThat(row).isEqualTo(NUM_ROWS);
+            assertThat(batches).isEqualTo((NUM_ROWS + VectorBatch.DEFAULT_CAPACITY - 1) / VectorBatch.DEFAULT_CAPACITY);
+            builder.free();
+        }
+    }
+
+    @Test
+    void testSetFieldsDirectly()
+    {
+        VectorBatchBuilder builder = new VectorBatchBuilder(Arrays.asList(ColumnType.LONG, ColumnType.VARBINARY), 64, false);
+        LongVector longs = (LongVector) builder.getColumn(0);
+        VarbinaryVector strings = (VarbinaryVector) builder.getColumn(1);
+        Random random = new Random(41);
+        byte[] big = new byte[10_000];
+        random.nextBytes(big);
+
+        for (int round = 0; round < 3; round++) {
+            while (!builder.isFull()) {
+                int position = builder.getPositionCount();
+                longs.setLong(position, position + round);
+                strings.setBytes(position, big, position, position * 100);
+                builder.completeRow();
+            }
+            assertThatThrownBy(builder::completeRow).isInstanceOf(IllegalStateException.class);
+
+            VectorBatch batch = builder.build();
+            assertThat(batch.getLongColumn(0).mayHaveNull()).isFalse();
+            assertThat(batch.getVarbinaryColumn(1).getData().size()).isGreaterThanOrEqualTo(63 * 100);
+            for (int position = 0; position < 64; position++) {
+                assertThat(batch.getLongColumn(0).getLong(position)).isEqualTo(position + round);
+                assertThat(batch.getVarbinaryColumn(1).equalTo(position, MemorySegments.wrap(big), position, position * 100)).isTrue();
+                // the values are packed at the width of the type
+                assertThat(batch.getLongColumn(0).getValues().getLong(position * 8)).isEqualTo(position + round);
+            }
+            builder.reset();
+        }
+
+        // a null value is cleared by setting a value at its position
+        longs.setNull(0);
+        assertThat(longs.isNull(0)).isTrue();
+        longs.setLong(0, 7);
+        assertThat(longs.isNull(0)).isFalse();
+
+        assertThatThrownBy(() -> strings.setBytes(1, big, 0, 1)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> builder.getColumn(2)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> ColumnType.VARBINARY.getFixedWidth()).isInstanceOf(UnsupportedOperationException.class);
+    }
+}
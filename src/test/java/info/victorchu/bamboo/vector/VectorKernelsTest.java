@@ -0,0 +1,134 @@
+package info.victorchu.bamboo.vector;
+
+import info.victorchu.bamboo.memory.MemorySegment;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VectorKernelsTest
+{
+    private static final int CAPACITY = 1000;
+
+    private static int[] expected(long[] values, int[] selection, int selectedCount, LongPredicate predicate)
+    {
+        return Arrays.stream(selection, 0, selectedCount).filter(position -> predicate.test(values[position])).toArray();
+    }
+
+    private static int[] selected(int[] selection, int selectedCount)
+    {
+        return Arrays.copyOf(selection, selectedCount);
+    }
+
+    @Test
+    void testFiltersAndAggregates()
+    {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            VectorBatchBuilder builder = new VectorBatchBuilder(Arrays.asList(ColumnType.LONG, ColumnType.DOUBLE), CAPACITY, offHeap);
+            LongVector longColumn = (LongVector) builder.getColumn(0);
+            DoubleVector doubleColumn = (DoubleVector) builder.getColumn(1);
+            Random random = new Random(37);
+            long[] longs = new long[CAPACITY];
+            double[] doubles = new double[CAPACITY];
+            boolean[] nulls = new boolean[CAPACITY];
+            for (int position = 0; position < CAPACITY; position++) {
+                longs[position] = position % 10 == 0 ? Long.MIN_VALUE + position : random.nextInt(2000) - 1000;
+                doubles[position] = random.nextInt(1000) / 8.0;
+                nulls[position] = random.nextInt(5) == 0;
+                longColumn.setLong(position, longs[position]);
+                doubleColumn.setDouble(position, doubles[position]);
+                if (nulls[position]) {
+                    longColumn.setNull(position);
+                }
+                builder.completeRow();
+            }
+            MemorySegment longValues = longColumn.getValues();
+            MemorySegment doubleValues = doubleColumn.getValues();
+
+            // every count, to cover the tails of the loops and of the null bitmap words
+            int[] selection = new int[CAPACITY];
+            for (int count : new int[] {0, 1, 63, 64, 65, 999, CAPACITY}) {
+                int selectedCount = VectorKernels.filterLongGreaterThan(longValues, count, 0, selection);
+                assertThat(selected(selection, selectedCount)).isEqualTo(expected(longs, IntStream.range(0, count).toArray(), count, v -> v > 0));
+
+                int notNull = VectorKernels.filterNotNull(longColumn, count, selection);
+                int[] expectedNotNull = IntStream.range(0, count).filter(position -> !nulls[position]).toArray();
+                assertThat(selected(selection, notNull)).isEqualTo(expectedNotNull);
+                assertThat(VectorKernels.countNonNull(longColumn, count)).isEqualTo(expectedNotNull.length);
+                assertThat(VectorKernels.countNonNull(doubleColumn, count)).isEqualTo(count);
+
+                assertThat(VectorKernels.sumLongs(longValues, count)).isEqualTo(Arrays.stream(longs, 0, count).sum());
+                // the values are multiples of an eighth, so their sums are exact in any order
+                assertThat(VectorKernels.sumDoubles(doubleValues, count)).isEqualTo(Arrays.stream(doubles, 0, count).sum());
+                long[] minMax = new long[2];
+                VectorKernels.minMaxLong(longValues, count, minMax);
+                assertThat(minMax[0]).isEqualTo(Arrays.stream(longs, 0, count).min().orElse(Long.MAX_VALUE));
+                assertThat(minMax[1]).isEqualTo(Arrays.stream(longs, 0, count).max().orElse(Long.MIN_VALUE));
+            }
+
+            // a chain of filters narrows one selection in place
+            int selectedCount = VectorKernels.filterNotNull(longColumn, CAPACITY, selection);
+            int[] notNull = selected(selection, selectedCount);
+            selectedCount = VectorKernels.filterLongBetween(longValues, selection, selectedCount, -500, 500, selection);
+            int[] between = expected(longs, notNull, notNull.length, v -> v >= -500 && v <= 500);
+            assertThat(selected(selection, selectedCount)).isEqualTo(between);
+
+            int[] lessThan = new int[CAPACITY];
+            int lessThanCount = VectorKernels.filterLongLessThan(longValues, selection, selectedCount, 100, lessThan);
+            assertThat(selected(lessThan, lessThanCount)).isEqualTo(expected(longs, between, between.length, v -> v < 100));
+            int equalCount = VectorKernels.filterLongEqual(longValues, selection, selectedCount, longs[between[0]], lessThan);
+            assertThat(selected(lessThan, equalCount)).isEqualTo(expected(longs, between, between.length, v -> v == longs[between[0]]));
+            int greaterCount = VectorKernels.filterLongGreaterThan(longValues, selection, selectedCount, 100, lessThan);
+            assertThat(selected(lessThan, greaterCount)).isEqualTo(expected(longs, between, between.length, v -> v > 100));
+            assertThat(VectorKernels.filterLongBetween(longValues, selection, selectedCount, 1, 0, lessThan)).isZero();
+
+            assertThat(VectorKernels.countNonNull(longColumn, notNull, notNull.length)).isEqualTo(notNull.length);
+            assertThat(VectorKernels.countNonNull(longColumn, IntStream.range(0, CAPACITY).toArray(), CAPACITY)).isEqualTo(notNull.length);
+            assertThat(VectorKernels.filterNotNull(longColumn, IntStream.range(0, CAPACITY).toArray(), CAPACITY, lessThan)).isEqualTo(notNull.length);
+            assertThat(selected(lessThan, notNull.length)).isEqualTo(notNull);
+
+            assertThat(VectorKernels.sumLongs(longValues, selection, selectedCount)).isEqualTo(Arrays.stream(between).mapToLong(p -> longs[p]).sum());
+            assertThat(VectorKernels.sumDoubles(doubleValues, selection, selectedCount)).isEqualTo(Arrays.stream(between).mapToDouble(p -> doubles[p]).sum());
+            long[] minMax = new long[2];
+            VectorKernels.minMaxLong(longValues, selection, selectedCount, minMax);
+            assertThat(minMax[0]).isEqualTo(Arrays.stream(between).mapToLong(p -> longs[p]).min().getAsLong());
+            assertThat(minMax[1]).isEqualTo(Arrays.stream(between).mapToLong(p -> longs[p]).max().getAsLong());
+
+            // doubles
+            int doubleCount = VectorKernels.filterDoubleGreaterThan(doubleValues, CAPACITY, 60.0, selection);
+            int[] expectedGreater = IntStream.range(0, CAPACITY).filter(p -> doubles[p] > 60.0).toArray();
+            assertThat(selected(selection, doubleCount)).isEqualTo(expectedGreater);
+            doubleCount = VectorKernels.filterDoubleLessThan(doubleValues, selection, doubleCount, 90.0, selection);
+            assertThat(selected(selection, doubleCount)).isEqualTo(Arrays.stream(expectedGreater).filter(p -> doubles[p] < 90.0).toArray());
+            int lessCount = VectorKernels.filterDoubleLessThan(doubleValues, CAPACITY, 10.0, lessThan);
+            assertThat(selected(lessThan, lessCount)).isEqualTo(IntStream.range(0, CAPACITY).filter(p -> doubles[p] < 10.0).toArray());
+            int greaterSelectedCount = VectorKernels.filterDoubleGreaterThan(doubleValues, lessThan, lessCount, 5.0, lessThan);
+            assertThat(selected(lessThan, greaterSelectedCount)).isEqualTo(IntStream.range(0, CAPACITY).filter(p -> doubles[p] < 10.0 && doubles[p] > 5.0).toArray());
+
+            builder.free();
+        }
+    }
+
+    @Test
+    void testBoundsAreChecked()
+    {
+        VectorBatchBuilder builder = new VectorBatchBuilder(Arrays.asList(ColumnType.LONG), 64, false);
+        LongVector column = (LongVector) builder.getColumn(0);
+        MemorySegment values = column.getValues();
+
+        assertThatThrownBy(() -> VectorKernels.filterLongGreaterThan(values, 65, 0, new int[65])).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VectorKernels.filterLongGreaterThan(values, 64, 0, new int[63])).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VectorKernels.sumLongs(values, new int[] {0, 64}, 2)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> VectorKernels.sumLongs(values, new int[] {-1}, 1)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> VectorKernels.sumLongs(values, new int[] {0}, 2)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VectorKernels.countNonNull(column, 65)).isInstanceOf(IllegalArgumentException.class);
+
+        builder.free();
+        assertThatThrownBy(() -> VectorKernels.sumLongs(values, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}